@@ -0,0 +1,110 @@
+package de.woerteler.persistent.bench;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Baseline benchmarks for {@link ArrayList}. All updates work on a copy of the list, because
+ * this is what a persistent sequence offers: the original stays unchanged.
+ *
+ * @author Leo Woerteler
+ */
+public class ArrayListBenchmark extends SizedBenchmark {
+  /** The benchmarked list. */
+  private ArrayList<Integer> list;
+
+  @Override
+  void setup() {
+    list = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) list.add(i);
+  }
+
+  /**
+   * Random access.
+   * @return element
+   */
+  @Benchmark
+  public Integer get() {
+    return list.get(position());
+  }
+
+  /**
+   * Prepending an element to a copy.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> cons() {
+    final ArrayList<Integer> copy = new ArrayList<>(size + 1);
+    copy.add(VALUE);
+    copy.addAll(list);
+    return copy;
+  }
+
+  /**
+   * Appending an element to a copy.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> snoc() {
+    final ArrayList<Integer> copy = new ArrayList<>(size + 1);
+    copy.addAll(list);
+    copy.add(VALUE);
+    return copy;
+  }
+
+  /**
+   * Concatenating the list with itself.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> concat() {
+    final ArrayList<Integer> copy = new ArrayList<>(2 * size);
+    copy.addAll(list);
+    copy.addAll(list);
+    return copy;
+  }
+
+  /**
+   * Copying the first half of the elements starting at a random position.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> subArray() {
+    final int pos = position();
+    return new ArrayList<>(list.subList(pos, pos + (size - pos + 1) / 2));
+  }
+
+  /**
+   * Inserting an element at a random position of a copy.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> insertBefore() {
+    final ArrayList<Integer> copy = new ArrayList<>(size + 1);
+    copy.addAll(list);
+    copy.add(position(), VALUE);
+    return copy;
+  }
+
+  /**
+   * Removing the element at a random position of a copy.
+   * @return resulting list
+   */
+  @Benchmark
+  public List<Integer> remove() {
+    final ArrayList<Integer> copy = new ArrayList<>(list);
+    copy.remove(position());
+    return copy;
+  }
+
+  /**
+   * Iterating over all elements.
+   * @param bh black hole consuming the elements
+   */
+  @Benchmark
+  public void iterate(final Blackhole bh) {
+    for(final Integer i : list) bh.consume(i);
+  }
+}
@@ -0,0 +1,105 @@
+package de.woerteler.persistent.bench;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Baseline benchmarks for {@link HashMap}. All updates work on a copy of the map, because
+ * this is what a persistent map offers: the original stays unchanged.
+ *
+ * @author Leo Woerteler
+ */
+public class HashMapBenchmark extends SizedBenchmark {
+  /** The benchmarked map. */
+  private HashMap<Integer, Integer> map;
+  /** Small map with new and existing keys to be added. */
+  private HashMap<Integer, Integer> other;
+  /** Boxed keys. */
+  private Integer[] keys;
+
+  @Override
+  void setup() {
+    keys = new Integer[size];
+    map = new HashMap<>();
+    for(int i = 0; i < size; i++) {
+      keys[i] = i;
+      map.put(keys[i], keys[i]);
+    }
+
+    other = new HashMap<>();
+    for(int i = 0; i < 64; i++) other.put(size / 2 + i, VALUE);
+  }
+
+  /**
+   * Successful lookup.
+   * @return bound value
+   */
+  @Benchmark
+  public Integer get() {
+    return map.get(keys[position()]);
+  }
+
+  /**
+   * Inserting a new key into a copy.
+   * @return resulting map
+   */
+  @Benchmark
+  public Map<Integer, Integer> insert() {
+    final HashMap<Integer, Integer> copy = new HashMap<>(map);
+    copy.put(-1, VALUE);
+    return copy;
+  }
+
+  /**
+   * Replacing the value of an existing key in a copy.
+   * @return resulting map
+   */
+  @Benchmark
+  public Map<Integer, Integer> replace() {
+    final HashMap<Integer, Integer> copy = new HashMap<>(map);
+    copy.put(keys[position()], VALUE);
+    return copy;
+  }
+
+  /**
+   * Deleting an existing key from a copy.
+   * @return resulting map
+   */
+  @Benchmark
+  public Map<Integer, Integer> delete() {
+    final HashMap<Integer, Integer> copy = new HashMap<>(map);
+    copy.remove(keys[position()]);
+    return copy;
+  }
+
+  /**
+   * Merging a small map into a copy.
+   * @return resulting map
+   */
+  @Benchmark
+  public Map<Integer, Integer> addAll() {
+    final HashMap<Integer, Integer> copy = new HashMap<>(map);
+    copy.putAll(other);
+    return copy;
+  }
+
+  /**
+   * Point lookups of all keys.
+   * @param bh black hole consuming the values
+   */
+  @Benchmark
+  public void lookupAll(final Blackhole bh) {
+    for(final Integer k : keys) bh.consume(map.get(k));
+  }
+
+  /**
+   * Iterating over all entries.
+   * @param bh black hole consuming the entries
+   */
+  @Benchmark
+  public void iterate(final Blackhole bh) {
+    for(final Map.Entry<Integer, Integer> e : map.entrySet()) bh.consume(e);
+  }
+}
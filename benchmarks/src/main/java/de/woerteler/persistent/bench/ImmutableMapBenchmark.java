@@ -0,0 +1,101 @@
+package de.woerteler.persistent.bench;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import de.woerteler.persistent.map.*;
+
+/**
+ * Benchmarks for {@link ImmutableMap}. The map contains the keys {@code 0 .. size - 1}, all keys
+ * are boxed in advance.
+ *
+ * @author Leo Woerteler
+ */
+public class ImmutableMapBenchmark extends SizedBenchmark {
+  /** The benchmarked map. */
+  private ImmutableMap<Integer, Integer> map;
+  /** Small map with new and existing keys to be added. */
+  private ImmutableMap<Integer, Integer> other;
+  /** Boxed keys. */
+  private Integer[] keys;
+
+  @Override
+  void setup() {
+    keys = new Integer[size];
+    ImmutableMap<Integer, Integer> m = ImmutableMap.empty();
+    for(int i = 0; i < size; i++) {
+      keys[i] = i;
+      m = m.insert(keys[i], keys[i]);
+    }
+    map = m;
+
+    ImmutableMap<Integer, Integer> o = ImmutableMap.empty();
+    for(int i = 0; i < 64; i++) o = o.insert(size / 2 + i, VALUE);
+    other = o;
+  }
+
+  /**
+   * Successful lookup.
+   * @return bound value
+   */
+  @Benchmark
+  public Integer get() {
+    return map.get(keys[position()]);
+  }
+
+  /**
+   * Inserting a new key.
+   * @return resulting map
+   */
+  @Benchmark
+  public ImmutableMap<Integer, Integer> insert() {
+    return map.insert(-1, VALUE);
+  }
+
+  /**
+   * Replacing the value of an existing key.
+   * @return resulting map
+   */
+  @Benchmark
+  public ImmutableMap<Integer, Integer> replace() {
+    return map.insert(keys[position()], VALUE);
+  }
+
+  /**
+   * Deleting an existing key.
+   * @return resulting map
+   */
+  @Benchmark
+  public ImmutableMap<Integer, Integer> delete() {
+    return map.delete(keys[position()]);
+  }
+
+  /**
+   * Merging a small map into the benchmarked one.
+   * @return resulting map
+   */
+  @Benchmark
+  public ImmutableMap<Integer, Integer> addAll() {
+    return map.addAll(other);
+  }
+
+  /**
+   * Point lookups of all keys, for comparison with {@link #iterate(Blackhole)}.
+   * @param bh black hole consuming the values
+   */
+  @Benchmark
+  public void lookupAll(final Blackhole bh) {
+    for(final Integer k : keys) bh.consume(map.get(k));
+  }
+
+  /**
+   * Iterating over all entries.
+   * @param bh black hole consuming the entries
+   */
+  @Benchmark
+  public void iterate(final Blackhole bh) {
+    for(final Map.Entry<Integer, Integer> e : map) bh.consume(e);
+  }
+}
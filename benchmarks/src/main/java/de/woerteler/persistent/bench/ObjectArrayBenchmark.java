@@ -0,0 +1,97 @@
+package de.woerteler.persistent.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+
+/**
+ * Benchmarks for {@link ObjectArray}.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectArrayBenchmark extends SizedBenchmark {
+  /** The benchmarked array. */
+  private ObjectArray<Integer> array;
+
+  @Override
+  void setup() {
+    final ObjectArrayBuilder<Integer> builder = new ObjectArrayBuilder<>();
+    for(int i = 0; i < size; i++) builder.append(i);
+    array = builder.freeze();
+  }
+
+  /**
+   * Random access.
+   * @return element
+   */
+  @Benchmark
+  public Integer get() {
+    return array.get(position());
+  }
+
+  /**
+   * Prepending an element.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> cons() {
+    return array.cons(VALUE);
+  }
+
+  /**
+   * Appending an element.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> snoc() {
+    return array.snoc(VALUE);
+  }
+
+  /**
+   * Concatenating the array with itself.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> concat() {
+    return array.concat(array);
+  }
+
+  /**
+   * Extracting the first half of the elements starting at a random position.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> subArray() {
+    final int pos = position();
+    return array.subArray(pos, (size - pos + 1) / 2);
+  }
+
+  /**
+   * Inserting an element at a random position.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> insertBefore() {
+    return array.insertBefore(position(), VALUE);
+  }
+
+  /**
+   * Removing the element at a random position.
+   * @return resulting array
+   */
+  @Benchmark
+  public Array<Integer> remove() {
+    return array.remove(position());
+  }
+
+  /**
+   * Iterating over all elements.
+   * @param bh black hole consuming the elements
+   */
+  @Benchmark
+  public void iterate(final Blackhole bh) {
+    for(final Integer i : array) bh.consume(i);
+  }
+}
@@ -0,0 +1,62 @@
+package de.woerteler.persistent.bench;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Common state of all benchmarks, parameterized by the number of elements in the benchmarked
+ * collection. Positions for random access are drawn in advance so that generating them does not
+ * show up in the measurements.
+ *
+ * @author Leo Woerteler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class SizedBenchmark {
+  /** Number of pre-computed random positions, must be a power of two. */
+  private static final int POSITIONS = 1 << 10;
+  /** Value used for all insertions. */
+  static final Integer VALUE = 42;
+
+  /** Number of elements in the benchmarked collection. */
+  @Param({ "10", "1000", "100000", "10000000", "100000000" })
+  public int size;
+
+  /** Random positions between {@code 0} and {@code size - 1}. */
+  private int[] positions;
+  /** Index of the next position to use. */
+  private int next;
+
+  /**
+   * Draws the random positions and builds the benchmarked collection.
+   */
+  @Setup(Level.Trial)
+  public final void setupPositions() {
+    final Random rng = new Random(size);
+    positions = new int[POSITIONS];
+    for(int i = 0; i < POSITIONS; i++) positions[i] = rng.nextInt(size);
+    next = 0;
+    setup();
+  }
+
+  /**
+   * Builds the benchmarked collection with {@link #size} elements {@code 0 .. size - 1}.
+   */
+  abstract void setup();
+
+  /**
+   * Returns the next random position.
+   * @return position between {@code 0} and {@code size - 1}
+   */
+  final int position() {
+    final int pos = positions[next];
+    next = (next + 1) & POSITIONS - 1;
+    return pos;
+  }
+}
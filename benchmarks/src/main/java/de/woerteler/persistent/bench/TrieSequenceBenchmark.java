@@ -0,0 +1,87 @@
+package de.woerteler.persistent.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import de.woerteler.persistent.*;
+
+/**
+ * Benchmarks for {@link TrieSequence}.
+ *
+ * @author Leo Woerteler
+ */
+public class TrieSequenceBenchmark extends SizedBenchmark {
+  /** The benchmarked sequence. */
+  private TrieSequence<Integer> seq;
+
+  @Override
+  void setup() {
+    final Integer[] vals = new Integer[size];
+    for(int i = 0; i < size; i++) vals[i] = i;
+    seq = TrieSequence.from(vals);
+  }
+
+  /**
+   * Random access.
+   * @return element
+   */
+  @Benchmark
+  public Integer get() {
+    return seq.get(position());
+  }
+
+  /**
+   * Appending an element.
+   * @return resulting sequence
+   */
+  @Benchmark
+  public PersistentSequence<Integer> add() {
+    return seq.add(VALUE);
+  }
+
+  /**
+   * Appending the sequence to itself.
+   * @return resulting sequence
+   */
+  @Benchmark
+  public PersistentSequence<Integer> append() {
+    return seq.append(seq);
+  }
+
+  /**
+   * Extracting the first half of the elements starting at a random position.
+   * @return resulting sequence
+   */
+  @Benchmark
+  public TrieSequence<Integer> slice() {
+    final int pos = position();
+    return seq.slice(pos, pos + (size - pos + 1) / 2);
+  }
+
+  /**
+   * Inserting an element at a random position.
+   * @return resulting sequence
+   */
+  @Benchmark
+  public TrieSequence<Integer> insertAt() {
+    return seq.insertAt(position(), VALUE);
+  }
+
+  /**
+   * Removing the element at a random position.
+   * @return resulting sequence
+   */
+  @Benchmark
+  public TrieSequence<Integer> removeAt() {
+    return seq.removeAt(position());
+  }
+
+  /**
+   * Iterating over all elements.
+   * @param bh black hole consuming the elements
+   */
+  @Benchmark
+  public void iterate(final Blackhole bh) {
+    for(final Integer i : seq) bh.consume(i);
+  }
+}
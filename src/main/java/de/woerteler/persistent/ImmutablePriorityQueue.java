@@ -0,0 +1,194 @@
+package de.woerteler.persistent;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An immutable priority queue. The elements are stored in insertion order in an
+ * {@link ObjectArray} whose nodes cache the greatest element they contain, so the maximum is
+ * located for removal by a single search down the finger tree. Every queue determines its
+ * maximum when it is created, which only measures the nodes created by the last update, so
+ * {@link #peek()} takes constant time.
+ * Of several equal elements the one inserted first is returned first.
+ * <p>
+ * Elements must not be {@code null}.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+public final class ImmutablePriorityQueue<E> implements Iterable<E> {
+  /** Measure selecting the greatest element by natural ordering. */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static final Measure<Object, Object> NATURAL_MAX =
+      Measures.max((a, b) -> ((Comparable) a).compareTo(b));
+  /** The empty queue using the natural ordering of its elements. */
+  private static final ImmutablePriorityQueue<?> EMPTY =
+      new ImmutablePriorityQueue<>(ObjectArray.empty(), null, NATURAL_MAX);
+
+  /** Elements of this queue in insertion order. */
+  private final ObjectArray<E> elems;
+  /** Comparator for the elements, {@code null} for their natural ordering. */
+  private final Comparator<? super E> comparator;
+  /** Measure selecting the greatest element, shared by all queues derived from this one. */
+  private final Measure<? super E, ? extends E> max;
+  /** The greatest element, {@code null} if the queue is empty. */
+  private final E top;
+
+  /**
+   * Constructor.
+   * @param elems elements
+   * @param comparator comparator for the elements, {@code null} for their natural ordering
+   * @param max measure selecting the greatest element
+   */
+  private ImmutablePriorityQueue(final ObjectArray<E> elems,
+      final Comparator<? super E> comparator, final Measure<? super E, ? extends E> max) {
+    this.elems = elems;
+    this.comparator = comparator;
+    this.max = max;
+    top = elems.measure(max);
+  }
+
+  /**
+   * The empty queue ordered by the natural ordering of its elements.
+   * @param <E> element type
+   * @return empty queue
+   */
+  @SuppressWarnings("unchecked")
+  public static <E extends Comparable<? super E>> ImmutablePriorityQueue<E> empty() {
+    return (ImmutablePriorityQueue<E>) EMPTY;
+  }
+
+  /**
+   * The empty queue ordered by the given comparator. Queues derived from it share the cached
+   * maxima of their nodes, so it should be created only once per comparator.
+   * @param <E> element type
+   * @param comparator comparator for the elements
+   * @return empty queue
+   */
+  public static <E> ImmutablePriorityQueue<E> empty(final Comparator<? super E> comparator) {
+    return new ImmutablePriorityQueue<>(ObjectArray.<E>empty(), comparator,
+        Measures.max(comparator));
+  }
+
+  /**
+   * Comparator used to order the elements of this queue.
+   * @return the comparator, {@code null} for the natural ordering of the elements
+   */
+  public Comparator<? super E> comparator() {
+    return comparator;
+  }
+
+  /**
+   * Inserts the given element into this queue.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to insert
+   * @return queue containing the element
+   */
+  public ImmutablePriorityQueue<E> insert(final E elem) {
+    return with(elems.snoc(Objects.requireNonNull(elem)));
+  }
+
+  /**
+   * Inserts all elements of the given queue into this one. Both queues must use the same
+   * ordering, the result uses the one of this queue.
+   * Running time: <i>O(log min(m, n))</i>
+   * @param other the other queue
+   * @return queue containing the elements of both queues
+   */
+  public ImmutablePriorityQueue<E> meld(final ImmutablePriorityQueue<E> other) {
+    if(other.isEmpty()) return this;
+    if(isEmpty()) return with(other.elems);
+    final Array<E> res = elems.concat(other.elems);
+    return with((ObjectArray<E>) res);
+  }
+
+  /**
+   * Returns the greatest element of this queue.
+   * Running time: <i>O(1)</i>
+   * @return the element, {@code null} if the queue is empty
+   */
+  public E peek() {
+    return top;
+  }
+
+  /**
+   * Removes the greatest element returned by {@link #peek()} from this queue.
+   * Running time: <i>O(log n)</i>
+   * @return queue without the element
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public ImmutablePriorityQueue<E> extractMax() {
+    if(top == null) throw new NoSuchElementException("Queue is empty.");
+    return with(elems.remove(elems.search(max, m -> m != null && compare(m, top) >= 0)));
+  }
+
+  /**
+   * Number of elements contained in this queue.
+   * @return size
+   */
+  public long size() {
+    return elems.size();
+  }
+
+  /**
+   * Checks if this queue is empty.
+   * @return {@code true} if the queue contains no elements, {@code false} otherwise
+   */
+  public boolean isEmpty() {
+    return elems.isEmpty();
+  }
+
+  /**
+   * Iterates over the elements of this queue in insertion order.
+   * @return the iterator
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return elems.iterator();
+  }
+
+  @Override
+  public void forEach(final Consumer<? super E> action) {
+    elems.forEach(action);
+  }
+
+  /**
+   * Returns a sequential stream over the elements of this queue in insertion order.
+   * @return the stream
+   */
+  public Stream<E> stream() {
+    return elems.stream();
+  }
+
+  /**
+   * Creates a queue with the same ordering as this one containing the given elements.
+   * @param array the elements
+   * @return the queue
+   */
+  private ImmutablePriorityQueue<E> with(final ObjectArray<E> array) {
+    return new ImmutablePriorityQueue<>(array, comparator, max);
+  }
+
+  /**
+   * Compares two elements.
+   * @param a first element
+   * @param b second element
+   * @return result of the comparison
+   */
+  @SuppressWarnings("unchecked")
+  private int compare(final E a, final E b) {
+    return comparator != null ? comparator.compare(a, b) : ((Comparable<? super E>) a).compareTo(b);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PriorityQueue[");
+    forEach(e -> sb.append(sb.charAt(sb.length() - 1) == '[' ? "" : ", ").append(e));
+    return sb.append(']').toString();
+  }
+}
@@ -1,6 +1,8 @@
 package de.woerteler.persistent;
 
 import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 /**
  * An interface for immutable sequences.
@@ -35,6 +37,29 @@ public interface PersistentSequence<E> extends Iterable<E> {
    */
   E get(final int pos);
 
+  /**
+   * Replaces the element at the given position in the sequence.
+   * @param pos position of the element
+   * @param item the new element
+   * @return a sequence where the element at position {@code pos} is {@code item}
+   * @throws IndexOutOfBoundsException if the given position is not in the range of indices
+   *   of this sequence
+   */
+  PersistentSequence<E> set(final int pos, final E item);
+
+  /**
+   * Replaces the element at the given position in the sequence with the result of applying the
+   * given function to it.
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return a sequence where the element at position {@code pos} is replaced
+   * @throws IndexOutOfBoundsException if the given position is not in the range of indices
+   *   of this sequence
+   */
+  default PersistentSequence<E> update(final int pos, final UnaryOperator<E> fun) {
+    return set(pos, fun.apply(get(pos)));
+  }
+
   /**
    * Number of elements of this sequence.
    * @return number of elements
@@ -58,4 +83,20 @@ public interface PersistentSequence<E> extends Iterable<E> {
    * @return array containing the elements of this sequence
    */
   E[] toArray(final E[] array);
+
+  /**
+   * Returns a sequential stream over the elements of this sequence.
+   * @return the stream
+   */
+  default Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel stream over the elements of this sequence.
+   * @return the stream
+   */
+  default Stream<E> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
 }
@@ -0,0 +1,124 @@
+package de.woerteler.persistent;
+
+import java.util.*;
+
+import de.woerteler.persistent.TrieSequence.Node;
+
+/**
+ * A mutable builder for {@link TrieSequence}s. Elements are appended to an owned tail array that
+ * becomes a leaf of the trie without being copied once it is full. All trie nodes created by this
+ * builder are tagged with an owner token and modified in place by subsequent updates, nodes shared
+ * with other sequences are copied on first modification. Calling {@link #freeze()} takes a
+ * snapshot in constant time, after which the builder can be used further without
+ * affecting it.
+ *
+ * @author Leo Woerteler
+ * @param <T> element type
+ */
+public final class TransientSequence<T> {
+  /** Owner token of all nodes that may be modified in place. */
+  private Object owner = new Object();
+  /** Root node of the trie, {@code null} if there are no full leaves. */
+  private Node root;
+  /** Tail array of length {@link TrieSequence#SIZE}, always owned by this builder. */
+  private Object[] tail = new Object[TrieSequence.SIZE];
+  /** Number of elements in {@link #tail}. */
+  private int tailSize;
+
+  /** Constructor for an empty sequence. */
+  public TransientSequence() {
+  }
+
+  /**
+   * Constructor initializing this builder with the elements of the given sequence.
+   * @param seq initial elements
+   */
+  public TransientSequence(final TrieSequence<T> seq) {
+    root = seq.root;
+    tailSize = seq.cache.length;
+    System.arraycopy(seq.cache, 0, tail, 0, tailSize);
+  }
+
+  /**
+   * Appends the given element.
+   * @param elem element to append
+   * @return this builder for convenience
+   */
+  public TransientSequence<T> add(final T elem) {
+    tail[tailSize++] = elem;
+    if(tailSize == TrieSequence.SIZE) {
+      // the full tail becomes a leaf
+      root = Node.push(root, new Node(tail, owner), owner);
+      tail = new Object[TrieSequence.SIZE];
+      tailSize = 0;
+    }
+    return this;
+  }
+
+  /**
+   * Appends all elements of the given iterable.
+   * @param elems elements to append
+   * @return this builder for convenience
+   */
+  public TransientSequence<T> addAll(final Iterable<? extends T> elems) {
+    for(final T elem : elems) add(elem);
+    return this;
+  }
+
+  /**
+   * Gets the element at the given position.
+   * @param pos position of the element
+   * @return the element
+   * @throws IndexOutOfBoundsException if the position is not in the range of indices
+   */
+  @SuppressWarnings("unchecked")
+  public T get(final int pos) {
+    if(pos < 0 || pos >= size()) throw new IndexOutOfBoundsException("Index: " + pos);
+    final int rs = root == null ? 0 : root.size;
+    if(pos >= rs) return (T) tail[pos - rs];
+    final int[] start = { 0 };
+    return (T) root.find(pos, start).subs[pos - start[0]];
+  }
+
+  /**
+   * Replaces the element at the given position.
+   * @param pos position of the element
+   * @param elem the new element
+   * @return this builder for convenience
+   * @throws IndexOutOfBoundsException if the position is not in the range of indices
+   */
+  public TransientSequence<T> set(final int pos, final T elem) {
+    if(pos < 0 || pos >= size()) throw new IndexOutOfBoundsException("Index: " + pos);
+    final int rs = root == null ? 0 : root.size;
+    if(pos < rs) root = root.update(pos, old -> elem, owner);
+    else tail[pos - rs] = elem;
+    return this;
+  }
+
+  /**
+   * Number of elements in this builder.
+   * @return size
+   */
+  public int size() {
+    return (root == null ? 0 : root.size) + tailSize;
+  }
+
+  /**
+   * Creates a {@link TrieSequence} containing the current elements of this builder. Only the
+   * tail is copied, nodes shared with the result are never modified again.
+   * @return immutable snapshot
+   */
+  public TrieSequence<T> freeze() {
+    if(root == null && tailSize == 0) return TrieSequence.empty();
+    owner = new Object();
+    return new TrieSequence<T>(root, Arrays.copyOf(tail, tailSize));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("TransientSequence[");
+    if(root != null) root.toString(sb);
+    return sb.append("; ").append(Arrays.toString(Arrays.copyOf(tail, tailSize))).append(']')
+        .toString();
+  }
+}
@@ -2,6 +2,7 @@ package de.woerteler.persistent;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.function.*;
 
 /**
  * An immutable sequence.
@@ -11,7 +12,7 @@ import java.util.*;
  */
 public final class TrieSequence<T> implements PersistentSequence<T>, RandomAccess {
   /** Root node. */
-  private final Node root;
+  final Node root;
 
   /** Number of bits per step. */
   private static final int BITS = 5;
@@ -19,6 +20,10 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
   public static final int SIZE = 1 << BITS;
   /** Bit mask for the last {@code BITS} bits in an {@code int}. */
   private static final int LAST = SIZE - 1;
+  /** Nodes with more than {@code SIZE - INVARIANT} slots are not rebalanced by concatenation. */
+  private static final int INVARIANT = 1;
+  /** Maximum number of extra nodes per level allowed after concatenation. */
+  private static final int EXTRAS = 2;
 
   /** the empty sequence. */
   public static final TrieSequence<?> EMPTY =
@@ -28,11 +33,11 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
   final Object[] cache;
 
   /**
-   * Private constructor.
+   * Constructor.
    * @param r root node
    * @param ch cache
    */
-  private TrieSequence(final Node r, final Object[] ch) {
+  TrieSequence(final Node r, final Object[] ch) {
     root = r;
     cache = ch;
   }
@@ -67,22 +72,7 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
    */
   public static <T> TrieSequence<T> from(final Iterable<T> it) {
     if(it instanceof TrieSequence) return (TrieSequence<T>) it;
-    final Iterator<?> iter = it.iterator();
-    if(!iter.hasNext()) return empty();
-
-    Object[] cache = new Object[SIZE];
-    Node root = null;
-    int pos = 0;
-    do {
-      cache[pos++] = iter.next();
-      if(pos == SIZE) {
-        final Node nd = new Node(cache);
-        root = root == null ? nd : root.insert(nd);
-        pos = 0;
-        cache = new Object[SIZE];
-      }
-    } while(iter.hasNext());
-    return new TrieSequence<T>(root, Arrays.copyOf(cache, pos));
+    return new TransientSequence<T>().addAll(it).freeze();
   }
 
   /**
@@ -92,26 +82,24 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
    * @param array The array.
    * @return The sequence containing all elements from the array in the same order.
    */
-  @SuppressWarnings("unchecked")
+  @SafeVarargs
   public static <T> TrieSequence<T> from(final T... array) {
-    if(array.length == 0) return empty();
-    Node root = null;
-    int pos = 0;
-    while(pos + SIZE <= array.length) {
-      final Object[] leaf = new Object[SIZE];
-      System.arraycopy(array, pos, leaf, 0, SIZE);
-      final Node curr = new Node(leaf);
-      root = root == null ? curr : root.insert(curr);
-      pos += SIZE;
-    }
-    final Object[] cache = new Object[array.length - pos];
-    if(cache.length > 0) System.arraycopy(array, pos, cache, 0, cache.length);
-    return new TrieSequence<T>(root, cache);
+    return new TransientSequence<T>().addAll(Arrays.asList(array)).freeze();
+  }
+
+  /**
+   * Creates a mutable {@link TransientSequence} initialized with the elements of this sequence.
+   * This is much faster than repeated calls to {@link #add(Object)} when many elements are
+   * added at once.
+   * @return transient copy of this sequence
+   */
+  public TransientSequence<T> asTransient() {
+    return new TransientSequence<T>(this);
   }
 
   @Override
   public int size() {
-    return (root == null ? 0 : root.size * SIZE) + cache.length;
+    return (root == null ? 0 : root.size) + cache.length;
   }
 
   @Override
@@ -124,23 +112,43 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
     // cache is flushed only when it's full
     if(cl < LAST) return new TrieSequence<T>(root, newCache);
     // insert the full cache into the tree
-    final Node l = new Node(newCache);
-    return new TrieSequence<T>(root == null ? l : root.insert(l), EMPTY.cache);
+    return new TrieSequence<T>(Node.push(root, new Node(newCache, null), null), EMPTY.cache);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public T get(final int pos) {
-    if(root != null && pos < root.size << BITS) {
-      Node nd = root;
-      while(nd.level > 0) nd = (Node) nd.subs[(pos >>> (nd.level * BITS)) & LAST];
-      return (T) nd.subs[pos & LAST];
-    }
-    return (T) cache[pos & LAST];
+    if(root == null || pos >= root.size) return (T) cache[pos - (root == null ? 0 : root.size)];
+    return (T) root.get(pos);
+  }
+
+  @Override
+  public TrieSequence<T> set(final int pos, final T item) {
+    return update(pos, old -> item);
   }
 
   /**
-   * Appends the given sequence to this one.
+   * Replaces the element at the given position with the result of applying the given function
+   * to it. Only the nodes on the path to the element, or the insertion buffer, are copied.
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return sequence with the updated element
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TrieSequence<T> update(final int pos, final UnaryOperator<T> fun) {
+    if(pos < 0 || pos >= size()) throw new IndexOutOfBoundsException("Index: " + pos);
+    if(root != null && pos < root.size)
+      return new TrieSequence<T>(root.update(pos, fun, null), cache);
+    final Object[] newCache = cache.clone();
+    final int p = pos - (root == null ? 0 : root.size);
+    newCache[p] = fun.apply((T) cache[p]);
+    return new TrieSequence<T>(root, newCache);
+  }
+
+  /**
+   * Appends the given sequence to this one. If both are {@link TrieSequence}s, the tries are
+   * concatenated in <i>O(log n)</i> by rebalancing only the nodes along the seam.
    * @param sequence sequence to append
    * @return copy of this sequence where <code>seq</code> is appended
    */
@@ -148,59 +156,239 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
   @SuppressWarnings("unchecked")
   public PersistentSequence<T> append(final PersistentSequence<? extends T> sequence) {
     if(sequence.size() == 0) return this;
-    if(this == EMPTY) return (PersistentSequence<T>) sequence;
+    if(sequence instanceof TrieSequence) return concat((TrieSequence<? extends T>) sequence);
+    return asTransient().addAll(sequence).freeze();
+  }
 
-    if(!(sequence instanceof TrieSequence)) {
-      TrieSequence<T> seq = this;
-      for(final T elem : sequence) seq = seq.add(elem);
-      return seq;
+  /**
+   * Concatenates this sequence and the given one.
+   * Running time: <i>O(log n)</i>
+   * @param seq sequence to append
+   * @return concatenated sequence
+   */
+  @SuppressWarnings("unchecked")
+  public TrieSequence<T> concat(final TrieSequence<? extends T> seq) {
+    if(seq.size() == 0) return this;
+    if(size() == 0) return (TrieSequence<T>) seq;
+
+    if(seq.root == null) {
+      // only the insertion buffers have to be merged
+      final int l = cache.length, r = seq.cache.length;
+      final Object[] buffer = Arrays.copyOf(cache, l + r);
+      System.arraycopy(seq.cache, 0, buffer, l, r);
+      if(l + r < SIZE) return new TrieSequence<T>(root, buffer);
+      final Node leaf = new Node(Arrays.copyOf(buffer, SIZE), null);
+      return new TrieSequence<T>(Node.push(root, leaf, null),
+          Arrays.copyOfRange(buffer, SIZE, l + r));
     }
 
-    final TrieSequence<? extends T> seq = (TrieSequence<? extends T>) sequence;
-    if(cache.length == 0) return fastAppend(seq);
+    // the insertion buffer of this sequence becomes a (possibly partial) leaf
+    final Node left = cache.length == 0 ? root : Node.push(root, new Node(cache, null), null);
+    return new TrieSequence<T>(trim(concat(left, seq.root, true)), seq.cache);
+  }
 
-    // cache is non-empty, so all chunks have to be shifted
-    Node node = root;
-    final Iterator<Node> iter = seq.nodeIterator();
-    final int len = cache.length, rest = SIZE - len;
-    Object[] curr = Arrays.copyOf(cache, SIZE);
-    while(iter.hasNext()) {
-      final Object[] chunk = iter.next().subs;
-      System.arraycopy(chunk, 0, curr, len, rest);
-      node = node == null ? new Node(curr) : node.insert(new Node(curr));
-      curr = Arrays.copyOfRange(chunk, rest, rest + SIZE);
+  /**
+   * Returns the elements at the positions {@code from} to {@code to - 1} of this sequence.
+   * Only the nodes on the paths to both ends of the range are copied.
+   * Running time: <i>O(log n)</i>
+   * @param from position of the first element, inclusive
+   * @param to end position, exclusive
+   * @return the slice
+   * @throws IndexOutOfBoundsException if {@code from < 0 || to > size() || from > to}
+   */
+  public TrieSequence<T> slice(final int from, final int to) {
+    final int n = size();
+    if(from < 0 || to > n || from > to)
+      throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + n);
+    if(from == to) return empty();
+    if(from == 0 && to == n) return this;
+
+    final int rs = root == null ? 0 : root.size;
+    if(from >= rs) return new TrieSequence<T>(null, Arrays.copyOfRange(cache, from - rs, to - rs));
+    Node nd = root;
+    if(to < rs) nd = nd.takeFirst(to);
+    if(from > 0) nd = nd.dropFirst(from);
+    return new TrieSequence<T>(trim(nd),
+        to <= rs ? EMPTY.cache : Arrays.copyOf(cache, to - rs));
+  }
+
+  /**
+   * Splits this sequence at the given position.
+   * Running time: <i>O(log n)</i>
+   * @param pos split position
+   * @return two-element array containing the elements before and after {@code pos}
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos > size()}
+   */
+  @SuppressWarnings("unchecked")
+  public TrieSequence<T>[] split(final int pos) {
+    return (TrieSequence<T>[]) new TrieSequence<?>[] { slice(0, pos), slice(pos, size()) };
+  }
+
+  /**
+   * Inserts the given element at the given position.
+   * Running time: <i>O(log n)</i>
+   * @param pos insertion position
+   * @param item element to insert
+   * @return sequence with the element inserted
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos > size()}
+   */
+  public TrieSequence<T> insertAt(final int pos, final T item) {
+    final int n = size();
+    if(pos == n) return add(item);
+    return slice(0, pos).add(item).concat(slice(pos, n));
+  }
+
+  /**
+   * Removes the element at the given position.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element to remove
+   * @return sequence without the element
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= size()}
+   */
+  public TrieSequence<T> removeAt(final int pos) {
+    final int n = size();
+    if(pos < 0 || pos >= n) throw new IndexOutOfBoundsException("Index: " + pos);
+    return slice(0, pos).concat(slice(pos + 1, n));
+  }
+
+  /**
+   * Removes inner nodes with only one child from the top of the given trie.
+   * @param node root node
+   * @return new root node
+   */
+  private static Node trim(final Node node) {
+    Node nd = node;
+    while(nd.level > 0 && nd.subs.length == 1) nd = (Node) nd.subs[0];
+    return nd;
+  }
+
+  /**
+   * Concatenates the two given tries, rebalancing the nodes along the seam.
+   * If {@code top} is {@code false}, the result is always one level higher than the higher one
+   * of the input nodes and has one or two children.
+   * @param l left trie
+   * @param r right trie
+   * @param top flag for the top-most call
+   * @return concatenated trie
+   */
+  private static Node concat(final Node l, final Node r, final boolean top) {
+    if(l.level > r.level) return rebalance(l, concat(l.last(), r, false), null, top);
+    if(l.level < r.level) return rebalance(null, concat(l, (Node) r.subs[0], false), r, top);
+    if(l.level == 0) {
+      final int ls = l.size, n = ls + r.size;
+      if(top && n <= SIZE) {
+        final Object[] vals = Arrays.copyOf(l.subs, n);
+        System.arraycopy(r.subs, 0, vals, ls, r.size);
+        return new Node(vals, null);
+      }
+      return Node.inner(new Node[] { l, r }, 1, null);
     }
+    return rebalance(l, concat(l.last(), (Node) r.subs[0], false), r, top);
+  }
 
-    final int clen = seq.cache.length;
-    if(clen == 0) return new TrieSequence<T>(node, Arrays.copyOf(curr, cache.length));
+  /**
+   * Merges the children of the given nodes (except for the last child of {@code l} and the first
+   * one of {@code r}, which are contained in {@code c}) and redistributes their slots so that
+   * at most {@link #EXTRAS} more nodes than necessary are used.
+   * @param l left node, may be {@code null}
+   * @param c center node, containing the merged boundary children
+   * @param r right node, may be {@code null}
+   * @param top flag for the top-most call
+   * @return the merged node, see {@link #concat(Node, Node, boolean)}
+   */
+  private static Node rebalance(final Node l, final Node c, final Node r, final boolean top) {
+    final int ln = l == null ? 0 : l.subs.length - 1, cn = c.subs.length,
+        rn = r == null ? 0 : r.subs.length - 1;
+    final Node[] all = new Node[ln + cn + rn];
+    if(ln > 0) System.arraycopy(l.subs, 0, all, 0, ln);
+    System.arraycopy(c.subs, 0, all, ln, cn);
+    if(rn > 0) System.arraycopy(r.subs, 1, all, ln + cn, rn);
+
+    final Node[] nodes = redistribute(all, plan(all));
+    final int n = nodes.length, level = c.level;
+    if(n <= SIZE) {
+      final Node nd = Node.inner(nodes, level, null);
+      return top ? nd : Node.inner(new Node[] { nd }, level + 1, null);
+    }
+    final Node a = Node.inner(Arrays.copyOf(nodes, SIZE), level, null),
+        b = Node.inner(Arrays.copyOfRange(nodes, SIZE, n), level, null);
+    return Node.inner(new Node[] { a, b }, level + 1, null);
+  }
 
-    if(clen < rest) {
-      // cache fits into current chunk
-      final Object[] newCache = Arrays.copyOf(curr, len + clen);
-      System.arraycopy(seq.cache, 0, newCache, len, clen);
-      return new TrieSequence<T>(node, newCache);
+  /**
+   * Computes the number of slots of each node after rebalancing. Under-full nodes are merged
+   * with their right neighbors until at most {@link #EXTRAS} more nodes than the optimal
+   * number are left.
+   * @param all nodes to rebalance
+   * @return numbers of slots
+   */
+  private static int[] plan(final Node[] all) {
+    int n = all.length, total = 0;
+    final int[] counts = new int[n];
+    for(int i = 0; i < n; i++) {
+      counts[i] = all[i].subs.length;
+      total += counts[i];
     }
 
-    // insert additional chunk first
-    System.arraycopy(seq.cache, 0, curr, len, rest);
-    final Object[] newCache = Arrays.copyOfRange(seq.cache, rest, clen);
-    node = node == null ? new Node(curr) : node.insert(new Node(curr));
-    return new TrieSequence<T>(node, newCache);
+    final int optimal = (total + SIZE - 1) / SIZE;
+    int i = 0;
+    while(n > optimal + EXTRAS) {
+      while(counts[i] > SIZE - INVARIANT) i++;
+      // distribute the slots of node i over its right neighbors
+      int rem = counts[i];
+      do {
+        final int min = Math.min(rem + counts[i + 1], SIZE);
+        counts[i] = min;
+        rem += counts[i + 1] - min;
+        i++;
+      } while(rem > 0);
+      System.arraycopy(counts, i + 1, counts, i, n - i - 1);
+      n--;
+      i--;
+    }
+    return Arrays.copyOf(counts, n);
+  }
+
+  /**
+   * Creates new nodes according to the given plan. Nodes that are not changed are reused.
+   * @param all nodes to rebalance
+   * @param counts numbers of slots of the new nodes
+   * @return the new nodes
+   */
+  private static Node[] redistribute(final Node[] all, final int[] counts) {
+    final int n = counts.length, level = all[0].level;
+    final Node[] out = new Node[n];
+    for(int k = 0, i = 0, off = 0; k < n; k++) {
+      final int cnt = counts[k];
+      if(off == 0 && all[i].subs.length == cnt) {
+        out[k] = all[i++];
+        continue;
+      }
+
+      final Object[] subs = level == 0 ? new Object[cnt] : new Node[cnt];
+      for(int filled = 0; filled < cnt;) {
+        final Object[] src = all[i].subs;
+        final int len = Math.min(cnt - filled, src.length - off);
+        System.arraycopy(src, off, subs, filled, len);
+        filled += len;
+        off += len;
+        if(off == src.length) {
+          i++;
+          off = 0;
+        }
+      }
+      out[k] = level == 0 ? new Node(subs, null) : Node.inner((Node[]) subs, level, null);
+    }
+    return out;
   }
 
   /**
-   * Faster version of {@link #append(PersistentSequence)} if {@link #cache} is empty.
-   * This allows for all leaf nodes to be shared. Sharing would be possible for inner
-   * nodes up to height {@code Integer.numberOfTrailingZeros(seq.size())}, but isn't
-   * implemented.
-   * @param seq Sequence to append
-   * @return new sequence
+   * Checks that this sequence does not violate any invariants.
+   * @throws AssertionError if an invariant was violated
    */
-  private TrieSequence<T> fastAppend(final TrieSequence<? extends T> seq) {
-    Node node = root;
-    final Iterator<Node> iter = seq.nodeIterator();
-    while(iter.hasNext()) node = node.insert(iter.next());
-    return new TrieSequence<T>(node, seq.cache);
+  void checkInvariants() {
+    if(cache.length >= SIZE) throw new AssertionError("Insertion buffer too big: " + cache.length);
+    if(root != null) root.checkInvariants();
   }
 
   @Override
@@ -328,6 +516,33 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
     };
   }
 
+  /**
+   * Returns a spliterator over the elements of this sequence that splits at the boundaries of
+   * the leaf chunks. It reports {@link Spliterator#ORDERED}, {@link Spliterator#SIZED},
+   * {@link Spliterator#SUBSIZED} and {@link Spliterator#IMMUTABLE}.
+   * @return the spliterator
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new ChunkSpliterator(0, size());
+  }
+
+  /**
+   * Returns the chunk of values containing the given position.
+   * @param pos position
+   * @param start array whose first entry is set to the position of the chunk's first element
+   * @return leaf array or insertion buffer
+   */
+  private Object[] chunk(final int pos, final int[] start) {
+    final int rs = root == null ? 0 : root.size;
+    if(pos >= rs) {
+      start[0] = rs;
+      return cache;
+    }
+    start[0] = 0;
+    return root.find(pos, start).subs;
+  }
+
   @Override
   public Object[] toArray() {
     return writeTo(new Object[size()]);
@@ -352,6 +567,7 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
     while(chunks.hasNext()) {
       final Object[] chunk = chunks.next();
       System.arraycopy(chunk, 0, arr, pos, chunk.length);
+      pos += chunk.length;
     }
     return arr;
   }
@@ -379,62 +595,379 @@ public final class TrieSequence<T> implements PersistentSequence<T>, RandomAcces
   }
 
   /**
-   * Node of the sequence's tree.
+   * Spliterator over a range of positions, splits are aligned to chunk boundaries.
    * @author Leo Woerteler
    */
-  private static final class Node {
-    /** Number of blocks in this node. */
-    final int size;
-    /** Bits to be compared. */
+  private final class ChunkSpliterator implements Spliterator<T> {
+    /** Position of the next element. */
+    private int pos;
+    /** End of the range, exclusive. */
+    private final int end;
+    /** Chunk containing the position {@link #pos}, {@code null} if not looked up yet. */
+    private Object[] curr;
+    /** Position of the first element of {@link #curr}. */
+    private final int[] start = { 0 };
+
+    /**
+     * Constructor.
+     * @param pos position of the first element
+     * @param end end of the range, exclusive
+     */
+    ChunkSpliterator(final int pos, final int end) {
+      this.pos = pos;
+      this.end = end;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(final Consumer<? super T> action) {
+      if(pos >= end) return false;
+      if(curr == null) curr = chunk(pos, start);
+      final int p = pos++ - start[0];
+      if(p == curr.length - 1) {
+        // leave the chunk before the element is consumed
+        final Object[] c = curr;
+        curr = null;
+        action.accept((T) c[p]);
+      } else {
+        action.accept((T) curr[p]);
+      }
+      return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(final Consumer<? super T> action) {
+      while(pos < end) {
+        final Object[] c = curr != null ? curr : chunk(pos, start);
+        curr = null;
+        final int off = pos - start[0], n = Math.min(end - pos, c.length - off);
+        pos += n;
+        for(int i = 0; i < n; i++) action.accept((T) c[off + i]);
+      }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      // split at the start of the chunk containing the middle position, or at its end
+      final int[] st = { 0 };
+      final Object[] c = chunk(pos + end >>> 1, st);
+      final int mid = st[0] > pos ? st[0] : st[0] + c.length;
+      if(mid >= end) return null;
+      final Spliterator<T> prefix = new ChunkSpliterator(pos, mid);
+      pos = mid;
+      curr = null;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return end - pos;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+    }
+  }
+
+  /**
+   * Node of the sequence's tree. Leaves contain between one and {@link #SIZE} elements.
+   * Inner nodes are either <i>balanced</i>, i.e. all children except for the last one are full,
+   * so that the child containing a position can be computed by shifting, or <i>relaxed</i>
+   * and store a table of the cumulative sizes of their children.
+   * @author Leo Woerteler
+   */
+  static final class Node {
+    /** Number of elements in this node, only modified in owned nodes. */
+    int size;
+    /** Height of this node, leaves have level {@code 0}. */
     final int level;
-    /** Child nodes. */
-    final Object[] subs;
+    /** Child nodes, or elements if this is a leaf. */
+    Object[] subs;
+    /** Cumulative sizes of the children, {@code null} for leaves and balanced nodes. */
+    int[] sizes;
+    /** Owner token of the {@link TransientSequence} allowed to modify this node. */
+    private final Object owner;
 
     /**
      * Constructor for leaf nodes.
      * @param sub elements
+     * @param ow owner token, {@code null} for persistent nodes
      */
-    Node(final Object[] sub) {
-      this(sub, 1, 0);
+    Node(final Object[] sub, final Object ow) {
+      this(sub, sub.length, 0, null, ow);
     }
 
     /**
-     * Private constructor for inner nodes.
+     * Private constructor.
      * @param sub children
      * @param s size
      * @param lvl level
+     * @param sz size table, {@code null} for balanced nodes
+     * @param ow owner token, {@code null} for persistent nodes
      */
-    private Node(final Object[] sub, final int s, final int lvl) {
+    private Node(final Object[] sub, final int s, final int lvl, final int[] sz,
+        final Object ow) {
       subs = sub;
       size = s;
       level = lvl;
+      sizes = sz;
+      owner = ow;
+    }
+
+    /**
+     * Creates an inner node, computing its size table if it is not balanced.
+     * @param children child nodes
+     * @param level level of the node
+     * @param ow owner token, {@code null} for persistent nodes
+     * @return the node
+     */
+    static Node inner(final Node[] children, final int level, final Object ow) {
+      final Node nd = new Node(children, 0, level, null, ow);
+      for(final Node ch : children) nd.size += ch.size;
+      if(!nd.balanced()) nd.sizes = nd.table();
+      return nd;
+    }
+
+    /**
+     * Appends a leaf to the given trie.
+     * @param root root of the trie, may be {@code null}
+     * @param leaf leaf to append
+     * @param ow owner token of a {@link TransientSequence}, {@code null} for persistent updates
+     * @return new root
+     */
+    static Node push(final Node root, final Node leaf, final Object ow) {
+      if(root == null) return leaf;
+      if(root.level > 0) {
+        final Node nd = root.pushLeaf(leaf, ow);
+        if(nd != null) return nd;
+      }
+      return inner(new Node[] { root, path(leaf, root.level, ow) }, root.level + 1, ow);
+    }
+
+    /**
+     * Wraps the given leaf into single-child inner nodes up to the given level.
+     * @param leaf the leaf
+     * @param level level of the result
+     * @param ow owner token, {@code null} for persistent nodes
+     * @return the node
+     */
+    private static Node path(final Node leaf, final int level, final Object ow) {
+      Node nd = leaf;
+      for(int l = 1; l <= level; l++) nd = new Node(new Node[] { nd }, nd.size, l, null, ow);
+      return nd;
+    }
+
+    /**
+     * Checks if this node may be modified in place by the given owner.
+     * @param ow owner token, {@code null} for persistent updates
+     * @return result of check
+     */
+    private boolean ownedBy(final Object ow) {
+      return ow != null && ow == owner;
+    }
+
+    /**
+     * Returns a copy of this node owned by the given owner.
+     * @param ow owner token, {@code null} for persistent nodes
+     * @return the copy
+     */
+    private Node copy(final Object ow) {
+      return new Node(subs.clone(), size, level, sizes == null ? null : sizes.clone(), ow);
+    }
+
+    /**
+     * Checks if all children of this inner node except for the last one are full and the last
+     * one is balanced.
+     * @return result of check
+     */
+    private boolean balanced() {
+      final int n = subs.length;
+      final long full = 1L << (level * BITS);
+      for(int i = 0; i < n - 1; i++) if(((Node) subs[i]).size != full) return false;
+      final Node lst = (Node) subs[n - 1];
+      return lst.level == 0 || lst.sizes == null;
+    }
+
+    /**
+     * Computes the cumulative sizes of the children of this inner node.
+     * @return size table
+     */
+    private int[] table() {
+      final int n = subs.length;
+      final int[] table = new int[n];
+      for(int i = 0, s = 0; i < n; i++) table[i] = s += ((Node) subs[i]).size;
+      return table;
     }
 
     /**
-     * Inserts a new leaf into this node.
-     * @param l leaf to insert
-     * @return copy of this node where the leaf is inserted
+     * Returns the last child of this inner node.
+     * @return last child
      */
-    public Node insert(final Node l) {
-      final int nextFree = size >>> ((level - 1) * BITS);
-      if(level == 0 || nextFree == SIZE)
-        return new Node(new Node[] { this, l }, size + 1, level + 1);
-
-      final Node[] newSubs;
-      final int sl = subs.length;
-      if(nextFree == sl) {
-        // add a new entry
-        newSubs = new Node[sl + 1];
-        System.arraycopy(subs, 0, newSubs, 0, sl);
-        newSubs[sl] = l;
+    Node last() {
+      return (Node) subs[subs.length - 1];
+    }
+
+    /**
+     * Returns the index of the child of this inner node that contains the given position.
+     * @param pos position
+     * @return index of the child
+     */
+    private int child(final int pos) {
+      final int shift = level * BITS;
+      int i = shift < Integer.SIZE ? pos >>> shift : 0;
+      if(sizes != null) while(sizes[i] <= pos) i++;
+      return i;
+    }
+
+    /**
+     * Returns the number of elements in the children before the given one.
+     * @param i index of the child
+     * @return offset of the child
+     */
+    private int offset(final int i) {
+      return i == 0 ? 0 : sizes == null ? i << level * BITS : sizes[i - 1];
+    }
+
+    /**
+     * Returns the element at the given position below this node, descending in a loop.
+     * @param pos position relative to this node
+     * @return the element
+     */
+    Object get(final int pos) {
+      Node nd = this;
+      int p = pos;
+      while(nd.level > 0) {
+        final int i = nd.child(p);
+        p -= nd.offset(i);
+        nd = (Node) nd.subs[i];
+      }
+      return nd.subs[p];
+    }
+
+    /**
+     * Finds the leaf containing the given position.
+     * @param pos position
+     * @param start array whose first entry is incremented by the position of the leaf's first
+     *   element relative to this node
+     * @return the leaf
+     */
+    Node find(final int pos, final int[] start) {
+      Node nd = this;
+      int p = pos;
+      while(nd.level > 0) {
+        final int i = nd.child(p), off = nd.offset(i);
+        p -= off;
+        start[0] += off;
+        nd = (Node) nd.subs[i];
+      }
+      return nd;
+    }
+
+    /**
+     * Appends a leaf to the right-most path of this inner node.
+     * @param leaf leaf to append
+     * @param ow owner token of a {@link TransientSequence}, {@code null} for persistent updates
+     * @return node with the leaf appended, {@code null} if there is no room left
+     */
+    private Node pushLeaf(final Node leaf, final Object ow) {
+      final int n = subs.length, ls = leaf.size;
+      final Node lst = (Node) subs[n - 1];
+      final Node newLast = lst.level == 0 ? null : lst.pushLeaf(leaf, ow);
+      if(newLast == null && n == SIZE) return null;
+
+      final Node nd = ownedBy(ow) ? this : copy(ow);
+      nd.size += ls;
+      if(newLast != null) {
+        nd.subs[n - 1] = newLast;
+        if(nd.sizes != null) nd.sizes[n - 1] += ls;
+        else if(newLast.level > 0 && newLast.sizes != null) nd.sizes = nd.table();
       } else {
-        // recursively insert
-        newSubs = new Node[sl];
-        System.arraycopy(subs, 0, newSubs, 0, sl);
-        newSubs[nextFree] = ((Node) subs[nextFree]).insert(l);
+        // add a new child
+        final Node[] newSubs = new Node[n + 1];
+        System.arraycopy(subs, 0, newSubs, 0, n);
+        newSubs[n] = path(leaf, level - 1, ow);
+        nd.subs = newSubs;
+        if(nd.sizes != null) {
+          nd.sizes = Arrays.copyOf(nd.sizes, n + 1);
+          nd.sizes[n] = nd.size;
+        } else if(lst.size != 1L << (level * BITS)) {
+          nd.sizes = nd.table();
+        }
       }
+      return nd;
+    }
 
-      return new Node(newSubs, size + 1, level);
+    /**
+     * Replaces the element at the given position, copying the {@link #subs} arrays on the path
+     * that are not owned by {@code ow}.
+     * @param <T> element type
+     * @param pos position of the element
+     * @param fun function computing the new element from the old one
+     * @param ow owner token of a {@link TransientSequence}, {@code null} for persistent updates
+     * @return node with the updated element
+     */
+    @SuppressWarnings("unchecked")
+    <T> Node update(final int pos, final UnaryOperator<T> fun, final Object ow) {
+      final Node nd = ownedBy(ow) ? this : copy(ow);
+      if(level == 0) {
+        nd.subs[pos] = fun.apply((T) subs[pos]);
+      } else {
+        final int i = child(pos);
+        nd.subs[i] = ((Node) subs[i]).update(pos - offset(i), fun, ow);
+      }
+      return nd;
+    }
+
+    /**
+     * Returns a node of the same level containing the first {@code n} elements of this node.
+     * @param n number of elements to keep, {@code 0 < n < size}
+     * @return the node
+     */
+    Node takeFirst(final int n) {
+      if(level == 0) return new Node(Arrays.copyOf(subs, n), null);
+      final int i = child(n - 1), off = offset(i);
+      final Node[] out = new Node[i + 1];
+      System.arraycopy(subs, 0, out, 0, i + 1);
+      if(n - off < out[i].size) out[i] = out[i].takeFirst(n - off);
+      return inner(out, level, null);
+    }
+
+    /**
+     * Returns a node of the same level without the first {@code n} elements of this node.
+     * @param n number of elements to drop, {@code 0 < n < size}
+     * @return the node
+     */
+    Node dropFirst(final int n) {
+      if(level == 0) return new Node(Arrays.copyOfRange(subs, n, subs.length), null);
+      final int i = child(n), off = offset(i);
+      final Node[] out = new Node[subs.length - i];
+      System.arraycopy(subs, i, out, 0, out.length);
+      if(n > off) out[0] = out[0].dropFirst(n - off);
+      return inner(out, level, null);
+    }
+
+    /**
+     * Checks that this node does not violate any invariants.
+     * @throws AssertionError if an invariant was violated
+     */
+    void checkInvariants() {
+      final int n = subs.length;
+      if(n == 0 || n > SIZE) throw new AssertionError("Illegal number of slots: " + n);
+      if(level == 0) {
+        if(size != n) throw new AssertionError("Wrong leaf size: " + size + " != " + n);
+        return;
+      }
+      for(final Object sub : subs) {
+        final Node ch = (Node) sub;
+        if(ch.level != level - 1) throw new AssertionError("Wrong level: " + ch.level);
+        ch.checkInvariants();
+      }
+      final int[] table = table();
+      if(table[n - 1] != size) throw new AssertionError("Wrong size: " + size);
+      if(sizes != null ? !Arrays.equals(sizes, table) : !balanced())
+        throw new AssertionError("Wrong size table: " + Arrays.toString(sizes));
     }
 
     /**
@@ -1,6 +1,8 @@
 package de.woerteler.persistent.array;
 
 import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 /**
  * An efficient persistent sequence based on Hinze and Patterson's Finger Trees.
@@ -129,6 +131,63 @@ public abstract class Array<E> implements Iterable<E> {
    */
   public abstract Array<E> remove(final long pos);
 
+  /**
+   * Replaces the element at the given position in this array.
+   * Only the digit or the path to the leaf containing the element is copied.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element, must be between {@code 0} and {@code this.size() - 1}
+   * @param val new element
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public Array<E> set(final long pos, final E val) {
+    return update(pos, old -> val);
+  }
+
+  /**
+   * Replaces the element at the given position in this array with the result of applying the
+   * given function to it, in a single pass over the tree.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element, must be between {@code 0} and {@code this.size() - 1}
+   * @param fun function computing the new element from the old one
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public abstract Array<E> update(final long pos, final UnaryOperator<E> fun);
+
+  /**
+   * Creates an array containing the results of applying the given function to the elements of
+   * this array. Large arrays are processed in parallel, so the function must be thread-safe and
+   * may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param <R> result type
+   * @param fun function to apply
+   * @return array of the results
+   */
+  public abstract <R> Array<R> map(final Function<? super E, ? extends R> fun);
+
+  /**
+   * Creates an array of the same kind as this one containing only the elements of this array
+   * that satisfy the given predicate, in their original order. Large arrays are processed in
+   * parallel, so the predicate must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param pred predicate to test
+   * @return array of the matching elements
+   */
+  public abstract Array<E> filter(final Predicate<? super E> pred);
+
+  /**
+   * Combines all elements of this array with the given associative operator. Large arrays are
+   * processed in parallel, so the operator must be thread-safe.
+   * Running time: <i>O(n)</i>
+   * @param identity identity of the operator, returned for the empty array
+   * @param op associative operator
+   * @return the result
+   */
+  public E reduce(final E identity, final BinaryOperator<E> op) {
+    return parallelStream().reduce(identity, op);
+  }
+
   /**
    * Returns a {@link ListIterator} over the elements of this array starting at the given position.
    * @param start starting position, i.e. position of the first element returned by
@@ -142,6 +201,34 @@ public abstract class Array<E> implements Iterable<E> {
     return listIterator(0);
   }
 
+  /**
+   * Returns a spliterator over the elements of this array. It reports
+   * {@link Spliterator#ORDERED}, {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED} and
+   * {@link Spliterator#IMMUTABLE}, splits in <i>O(1)</i> and starts traversing a split
+   * in <i>O(log n)</i>.
+   * @return the spliterator
+   */
+  @Override
+  public Spliterator<E> spliterator() {
+    return new ArraySpliterator<E>(this, 0, size());
+  }
+
+  /**
+   * Returns a sequential stream over the elements of this array.
+   * @return the stream
+   */
+  public final Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel stream over the elements of this array.
+   * @return the stream
+   */
+  public final Stream<E> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
   @Override
   public final boolean equals(final Object obj) {
     if(this == obj) return true;
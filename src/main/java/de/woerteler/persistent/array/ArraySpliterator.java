@@ -0,0 +1,82 @@
+package de.woerteler.persistent.array;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Spliterator over a range of positions in an {@link Array}. Splitting halves the range in
+ * constant time, traversal starts a {@link ListIterator} at the first position of the range,
+ * which descends into the tree only once.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class ArraySpliterator<E> implements Spliterator<E> {
+  /** Characteristics of all array spliterators. */
+  static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+
+  /** The array. */
+  private final Array<E> array;
+  /** Position of the next element. */
+  private long pos;
+  /** End of the range, exclusive. */
+  private final long end;
+  /** Iterator positioned at {@link #pos}, {@code null} if traversal has not started. */
+  private ListIterator<E> iter;
+
+  /**
+   * Constructor.
+   * @param array the array
+   * @param pos position of the first element
+   * @param end end of the range, exclusive
+   */
+  ArraySpliterator(final Array<E> array, final long pos, final long end) {
+    this.array = array;
+    this.pos = pos;
+    this.end = end;
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super E> action) {
+    if(pos >= end) return false;
+    if(iter == null) iter = array.listIterator(pos);
+    pos++;
+    action.accept(iter.next());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(final Consumer<? super E> action) {
+    if(pos >= end) return;
+    if(iter == null && pos == 0 && end == array.size()) {
+      // the whole array, use internal iteration
+      array.forEach(action);
+      pos = end;
+      return;
+    }
+    final ListIterator<E> it = iter != null ? iter : array.listIterator(pos);
+    for(; pos < end; pos++) action.accept(it.next());
+    iter = null;
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    final long mid = pos + end >>> 1;
+    if(mid == pos) return null;
+    // the prefix gets its own iterator, this spliterator is repositioned lazily
+    final Spliterator<E> prefix = new ArraySpliterator<E>(array, pos, mid);
+    pos = mid;
+    iter = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - pos;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
@@ -0,0 +1,19 @@
+package de.woerteler.persistent.array;
+
+/**
+ * Callback receiving consecutive chunks of an array's elements during bulk traversal.
+ * The chunk arrays are shared with the array's internal structure and must not be modified.
+ *
+ * @author Leo Woerteler
+ * @param <A> type of the chunk array
+ */
+@FunctionalInterface
+public interface ChunkConsumer<A> {
+  /**
+   * Consumes the elements {@code chunk[off]} to {@code chunk[off + len - 1]}.
+   * @param chunk array containing the elements
+   * @param off position of the first element in the chunk
+   * @param len number of elements, always positive
+   */
+  void accept(A chunk, int off, int len);
+}
@@ -0,0 +1,326 @@
+package de.woerteler.persistent.array.doubles;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An array storing primitive doubles.
+ *
+ * @author Leo Woerteler
+ */
+public abstract class DoubleArray extends Array<Double> {
+  /** Minimum size of a double leaf. */
+  static final int MIN_LEAF = 8;
+  /** Maximum size of a double leaf. */
+  static final int MAX_LEAF = 2 * MIN_LEAF - 1;
+  /** Minimum number of elements in a digit. */
+  static final int MIN_DIGIT = MIN_LEAF / 2;
+  /** Maximum number of elements in a digit. */
+  static final int MAX_DIGIT = MAX_LEAF + MIN_DIGIT;
+  /** Maximum size of a small array. */
+  static final int MAX_SMALL = 2 * MIN_DIGIT - 1;
+
+  /**
+   * The empty sequence.
+   * Running time: <i>O(1)</i> and no allocation
+   * @param <E> element type
+   * @return (unique) instance of an empty sequence
+   */
+  public static <E> DoubleArray empty() {
+    return EmptyDoubleArray.INSTANCE;
+  }
+
+  /**
+   * Creates a singleton array containing the given element.
+   * @param elem the contained element
+   * @return the singleton array
+   */
+  public static DoubleArray singleton(final double elem) {
+    return new SmallDoubleArray(new double[] { elem });
+  }
+
+  /**
+   * Creates an array containing the given elements.
+   * @param elems elements
+   * @return the resulting array
+   */
+  public static DoubleArray from(final double... elems) {
+    DoubleArray arr = DoubleArray.empty();
+    for(final double i : elems) arr = arr.snocDouble(i);
+    return arr;
+  }
+
+  /**
+   * Creates an array containing the elements from the given {@link Iterable}.
+   * @param iter the iterable
+   * @return the resulting array
+   */
+  public static DoubleArray from(final Iterable<Double> iter) {
+    DoubleArray arr = DoubleArray.empty();
+    for(final Double i : iter) arr = arr.snoc(i);
+    return arr;
+  }
+
+  /**
+   * Creates an array containing the elements from the given {@link Iterator}.
+   * @param iter the iterator
+   * @return the resulting array
+   */
+  public static DoubleArray from(final Iterator<Double> iter) {
+    DoubleArray arr = DoubleArray.empty();
+    while(iter.hasNext()) arr = arr.snoc(iter.next());
+    return arr;
+  }
+
+  @Override
+  public final DoubleArray cons(final Double elem) {
+    return consDouble(elem);
+  }
+
+  @Override
+  public final DoubleArray snoc(final Double elem) {
+    return snocDouble(elem);
+  }
+
+  @Override
+  public final Double get(final long index) {
+    return getDouble(index);
+  }
+
+  @Override
+  public final DoubleArray set(final long pos, final Double val) {
+    return setDouble(pos, val);
+  }
+
+  @Override
+  public final DoubleArray update(final long pos, final UnaryOperator<Double> fun) {
+    return updateDouble(pos, fun::apply);
+  }
+
+  /**
+   * Prepends a primitive {@code double} to the front of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to prepend
+   * @return resulting array
+   */
+  public abstract DoubleArray consDouble(final double elem);
+
+  /**
+   * Appends a primitive {@code double} to the back of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to append
+   * @return resulting array
+   */
+  public abstract DoubleArray snocDouble(final double elem);
+
+  /**
+   * Gets the element at the given position in this array without boxing it.
+   * Running time: <i>O(log n)</i>
+   * @param index index of the element to get
+   * @return the corresponding element
+   * @throws IndexOutOfBoundsException if the index is smaller that {@code 0}
+   *             or {@code >=} the {@link #size()} of this array
+   */
+  public abstract double getDouble(final long index);
+
+  /**
+   * Replaces the element at the given position in this array with a primitive {@code double}.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param val new element
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public final DoubleArray setDouble(final long pos, final double val) {
+    return updateDouble(pos, old -> val);
+  }
+
+  /**
+   * Replaces the element at the given position in this array with the result of applying the
+   * given function to it.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public abstract DoubleArray updateDouble(final long pos, final DoubleUnaryOperator fun);
+
+  @Override
+  public abstract DoubleArray init();
+
+  @Override
+  public abstract DoubleArray tail();
+
+  @Override
+  public abstract DoubleArray subArray(final long pos, final long len);
+
+  @Override
+  public abstract DoubleArray reverse();
+
+  @Override
+  public abstract DoubleArray insertBefore(final long pos, final Double val);
+
+  @Override
+  public abstract DoubleArray remove(final long pos);
+
+  /**
+   * Calls the given action for consecutive chunks of the elements of this array, from left to
+   * right. The chunks are the digits and leaves of the tree, so there are only
+   * <i>O(n / MIN_LEAF)</i> calls.
+   * Running time: <i>O(n)</i>
+   * @param action action receiving the chunks, which must not be modified
+   */
+  public abstract void forEachChunk(final ChunkConsumer<double[]> action);
+
+  /**
+   * Calls the given action for every element of this array without boxing it.
+   * Running time: <i>O(n)</i>
+   * @param action action to call
+   */
+  public final void forEachDouble(final DoubleConsumer action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  @Override
+  public final void forEach(final Consumer<? super Double> action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  /**
+   * Creates an array of the same shape as this one containing the results of applying the
+   * given function to the elements of this array, without boxing them. Large arrays are
+   * processed in parallel, so the function must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  public abstract DoubleArray mapDouble(final DoubleUnaryOperator fun);
+
+  /**
+   * Creates an {@link ObjectArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param <R> result type
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  public final <R> ObjectArray<R> mapToObj(final DoubleFunction<? extends R> fun) {
+    return foldChunks(ObjectArray.<R>empty(), chunk -> {
+      final int n = chunk.length;
+      final R[] out = (R[]) new Object[n];
+      for(int i = 0; i < n; i++) out[i] = fun.apply(chunk[i]);
+      return ObjectArray.from(out);
+    }, (a, b) -> (ObjectArray<R>) a.concat(b));
+  }
+
+  @Override
+  public final <R> ObjectArray<R> map(final Function<? super Double, ? extends R> fun) {
+    return mapToObj(fun::apply);
+  }
+
+  /**
+   * Creates an array containing only the elements of this array that satisfy the given
+   * predicate, without boxing them. Large arrays are processed in parallel, so the predicate
+   * must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param pred predicate to test
+   * @return array of the matching elements
+   */
+  public final DoubleArray filterDouble(final DoublePredicate pred) {
+    return foldChunks(DoubleArray.empty(), chunk -> {
+      final double[] out = new double[chunk.length];
+      int n = 0;
+      for(final double elem : chunk) if(pred.test(elem)) out[n++] = elem;
+      return from(n == out.length ? out : Arrays.copyOf(out, n));
+    }, (a, b) -> (DoubleArray) a.concat(b));
+  }
+
+  @Override
+  public final DoubleArray filter(final Predicate<? super Double> pred) {
+    return filterDouble(pred::test);
+  }
+
+  /**
+   * Applies the given function to the digits and leaves of this array and combines the results
+   * from left to right. The leaves of the middle tree are processed in parallel, see
+   * {@link FingerTree#foldLeaves(Object, Function, BinaryOperator)}.
+   * @param <R> result type
+   * @param empty result for the empty array
+   * @param chunk function applied to the digits and leaves, which must not be modified
+   * @param combine associative function combining adjacent results
+   * @return the combined result
+   */
+  abstract <R> R foldChunks(final R empty, final Function<double[], R> chunk,
+      final BinaryOperator<R> combine);
+
+  /**
+   * Prepends the given elements to this array.
+   * @param vals values, with length at most {@link SmallDoubleArray#MAX_SMALL}
+   * @return resulting array
+   */
+  abstract DoubleArray consSmall(final double[] vals);
+
+  /**
+   * Returns an array containing the values at the indices {@code from} to {@code to - 1} in
+   * the given array. Its length is always {@code to - from}. If {@code from} is smaller than zero,
+   * the first {@code -from} entries in the resulting array are {@code null}.
+   * If {@code to > arr.length} then the last {@code to - arr.length} entries are {@code null}.
+   * If {@code from == 0 && to == arr.length}, the original array is returned.
+   * @param arr input array
+   * @param from first index, inclusive (may be negative)
+   * @param to last index, exclusive (may be greater than {@code arr.length})
+   * @return resulting array
+   */
+  static final double[] slice(final double[] arr, final int from, final int to) {
+    if(from == 0 && to == arr.length) return arr;
+    final double[] out = new double[to - from];
+    final int in0 = Math.max(0, from), in1 = Math.min(to, arr.length);
+    final int out0 = Math.max(-from, 0);
+    System.arraycopy(arr, in0, out, out0, in1 - in0);
+    return out;
+  }
+
+  /**
+   * Concatenates the two double arrays.
+   * @param as first array
+   * @param bs second array
+   * @return resulting array
+   */
+  static final double[] concat(final double[] as, final double[] bs) {
+    final int l = as.length, r = bs.length, n = l + r;
+    final double[] out = new double[n];
+    System.arraycopy(as, 0, out, 0, l);
+    System.arraycopy(bs, 0, out, l, r);
+    return out;
+  }
+
+  /**
+   * Applies the given function to all elements of the given array.
+   * @param vals the elements
+   * @param fun function to apply
+   * @return array of the results
+   */
+  static final double[] map(final double[] vals, final DoubleUnaryOperator fun) {
+    final int n = vals.length;
+    final double[] out = new double[n];
+    for(int i = 0; i < n; i++) out[i] = fun.applyAsDouble(vals[i]);
+    return out;
+  }
+
+  /**
+   * Checks that this array's implementation does not violate any invariants.
+   * @throws AssertionError if an invariant was violated
+   */
+  abstract void checkInvariants();
+}
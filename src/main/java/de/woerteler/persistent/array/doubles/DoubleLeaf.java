@@ -0,0 +1,250 @@
+package de.woerteler.persistent.array.doubles;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A leaf node directly containing primitive doubles.
+ *
+ * @author Leo Woerteler
+ */
+final class DoubleLeaf implements Node<Double, Double> {
+  /** Elements stored in this leaf node. */
+  final double[] values;
+
+  /**
+   * Constructor.
+   * @param values the values
+   */
+  DoubleLeaf(final double[] values) {
+    this.values = values;
+    assert values.length >= DoubleArray.MIN_LEAF && values.length <= DoubleArray.MAX_LEAF;
+  }
+
+  @Override
+  public long size() {
+    return values.length;
+  }
+
+  @Override
+  public DoubleLeaf reverse() {
+    final int n = values.length;
+    final double[] out = new double[n];
+    for(int i = 0; i < n; i++) out[i] = values[n - 1 - i];
+    return new DoubleLeaf(out);
+  }
+
+  @Override
+  public DoubleLeaf update(final long pos, final UnaryOperator<Double> fun) {
+    final int p = (int) pos;
+    final double[] out = values.clone();
+    out[p] = fun.apply(values[p]);
+    return new DoubleLeaf(out);
+  }
+
+  @Override
+  public boolean insert(final Node<Double, Double>[] siblings,
+      final long pos, final Double val) {
+    final int p = (int) pos, n = values.length;
+    final double v = val;
+    final double[] vals = new double[n + 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    vals[p] = v;
+    System.arraycopy(values, p, vals, p + 1, n - p);
+
+    if(n < DoubleArray.MAX_LEAF) {
+      // there is capacity
+      siblings[1] = new DoubleLeaf(vals);
+      return false;
+    }
+
+    final DoubleLeaf left = (DoubleLeaf) siblings[0];
+    if(left != null && left.values.length < DoubleArray.MAX_LEAF) {
+      // push elements to the left sibling
+      final double[] lvals = left.values;
+      final int l = lvals.length, diff = DoubleArray.MAX_LEAF - l, move = (diff + 1) / 2;
+      final double[] newLeft = new double[l + move], newRight = new double[n + 1 - move];
+      System.arraycopy(lvals, 0, newLeft, 0, l);
+      System.arraycopy(vals, 0, newLeft, l, move);
+      System.arraycopy(vals, move, newRight, 0, newRight.length);
+      siblings[0] = new DoubleLeaf(newLeft);
+      siblings[1] = new DoubleLeaf(newRight);
+      return false;
+    }
+
+    final DoubleLeaf right = (DoubleLeaf) siblings[2];
+    if(right != null && right.values.length < DoubleArray.MAX_LEAF) {
+      // push elements to the right sibling
+      final double[] rvals = right.values;
+      final int r = rvals.length, diff = DoubleArray.MAX_LEAF - r, move = (diff + 1) / 2,
+          l = n + 1 - move;
+      final double[] newLeft = new double[l], newRight = new double[r + move];
+      System.arraycopy(vals, 0, newLeft, 0, l);
+      System.arraycopy(vals, l, newRight, 0, move);
+      System.arraycopy(rvals, 0, newRight, move, r);
+      siblings[1] = new DoubleLeaf(newLeft);
+      siblings[2] = new DoubleLeaf(newRight);
+      return false;
+    }
+
+    // split the node
+    final int l = vals.length / 2, r = vals.length - l;
+    final double[] newLeft = new double[l], newRight = new double[r];
+    System.arraycopy(vals, 0, newLeft, 0, l);
+    System.arraycopy(vals, l, newRight, 0, r);
+    siblings[3] = siblings[2];
+    siblings[1] = new DoubleLeaf(newLeft);
+    siblings[2] = new DoubleLeaf(newRight);
+    return true;
+  }
+
+  @Override
+  public NodeLike<Double, Double>[] remove(final Node<Double, Double> left,
+      final Node<Double, Double> right, final long pos) {
+    final int p = (int) pos, n = values.length;
+    @SuppressWarnings("unchecked")
+    final NodeLike<Double, Double>[] out = new NodeLike[] { left, null, right };
+    if(n > DoubleArray.MIN_LEAF) {
+      // we do not have to split
+      final double[] vals = new double[n - 1];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+      out[1] = new DoubleLeaf(vals);
+      return out;
+    }
+
+    final DoubleLeaf leftLeaf = (DoubleLeaf) left;
+    if(leftLeaf != null && leftLeaf.arity() > DoubleArray.MIN_LEAF) {
+      // steal from the left neighbor
+      final double[] lvals = leftLeaf.values;
+      final int l = lvals.length, diff = l - DoubleArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = l - move, rl = n - 1 + move;
+      final double[] newLeft = new double[ll], newRight = new double[rl];
+
+      System.arraycopy(lvals, 0, newLeft, 0, ll);
+      System.arraycopy(lvals, ll, newRight, 0, move);
+      System.arraycopy(values, 0, newRight, move, p);
+      System.arraycopy(values, p + 1, newRight, move + p, n - 1 - p);
+      out[0] = new DoubleLeaf(newLeft);
+      out[1] = new DoubleLeaf(newRight);
+      return out;
+    }
+
+    final DoubleLeaf rightLeaf = (DoubleLeaf) right;
+    if(rightLeaf != null && rightLeaf.arity() > DoubleArray.MIN_LEAF) {
+      // steal from the right neighbor
+      final double[] rvals = rightLeaf.values;
+      final int r = rvals.length, diff = r - DoubleArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = n - 1 + move, rl = r - move;
+      final double[] newLeft = new double[ll], newRight = new double[rl];
+
+      System.arraycopy(values, 0, newLeft, 0, p);
+      System.arraycopy(values, p + 1, newLeft, p, n - 1 - p);
+      System.arraycopy(rvals, 0, newLeft, n - 1, move);
+      System.arraycopy(rvals, move, newRight, 0, rl);
+      out[1] = new DoubleLeaf(newLeft);
+      out[2] = new DoubleLeaf(newRight);
+      return out;
+    }
+
+    if(left != null) {
+      // merge with left neighbor
+      final double[] lvals = ((DoubleLeaf) left).values;
+      final int l = lvals.length, r = values.length;
+      final double[] vals = new double[l + r - 1];
+      System.arraycopy(lvals, 0, vals, 0, l);
+      System.arraycopy(values, 0, vals, l, p);
+      System.arraycopy(values, p + 1, vals, l + p, r - 1 - p);
+      out[0] = new DoubleLeaf(vals);
+      out[1] = null;
+      return out;
+    }
+
+    if(right != null) {
+      // merge with right neighbor
+      final double[] rvals = ((DoubleLeaf) right).values;
+      final int l = values.length, r = rvals.length;
+      final double[] vals = new double[l - 1 + r];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, l - 1 - p);
+      System.arraycopy(rvals, 0, vals, l - 1, r);
+      out[1] = null;
+      out[2] = new DoubleLeaf(vals);
+      return out;
+    }
+
+    // underflow
+    final double[] vals = new double[n - 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+    out[1] = new PartialDoubleLeaf(vals);
+    return out;
+  }
+
+  @Override
+  public int append(final NodeLike<Double, Double>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[pos] = this;
+      return 1;
+    }
+
+    final NodeLike<Double, Double> left = nodes[pos - 1];
+    if(!(left instanceof PartialDoubleLeaf)) {
+      nodes[pos] = this;
+      return pos + 1;
+    }
+
+    final double[] ls = ((PartialDoubleLeaf) left).elems, rs = values;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= DoubleArray.MAX_LEAF) {
+      // merge into one node
+      final double[] vals = new double[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new DoubleLeaf(vals);
+      return pos;
+    }
+
+    // split into two
+    final int ll = n / 2, rl = n - ll, move = r - rl;
+    final double[] newLeft = new double[ll], newRight = new double[rl];
+    System.arraycopy(ls, 0, newLeft, 0, l);
+    System.arraycopy(rs, 0, newLeft, l, move);
+    System.arraycopy(rs, move, newRight, 0, rl);
+    nodes[pos - 1] = new DoubleLeaf(newLeft);
+    nodes[pos] = new DoubleLeaf(newRight);
+    return pos + 1;
+  }
+
+  @Override
+  public NodeLike<Double, Double> slice(final long off, final long size) {
+    final int p = (int) off, n = (int) size;
+    final double[] out = new double[n];
+    System.arraycopy(values, p, out, 0, n);
+    return n < DoubleArray.MIN_LEAF ? new PartialDoubleLeaf(out) : new DoubleLeaf(out);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '(' + size() + ')' + Arrays.toString(values);
+  }
+
+  @Override
+  public long checkInvariants() {
+    if(values.length < DoubleArray.MIN_LEAF || values.length > DoubleArray.MAX_LEAF)
+      throw new AssertionError("Wrong " + getClass().getSimpleName() + " size: " + values.length);
+    return values.length;
+  }
+
+  @Override
+  public int arity() {
+    return values.length;
+  }
+
+  @Override
+  public Double getSub(final int index) {
+    return values[index];
+  }
+}
@@ -0,0 +1,135 @@
+package de.woerteler.persistent.array.doubles;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * The empty array.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class EmptyDoubleArray<E> extends DoubleArray {
+  /** The empty array. */
+  static final EmptyDoubleArray<?> INSTANCE = new EmptyDoubleArray<>();
+
+  /** Hidden constructor. */
+  private EmptyDoubleArray() {
+  }
+
+  @Override
+  public DoubleArray consDouble(final double elem) {
+    return new SmallDoubleArray(new double[] { elem });
+  }
+
+  @Override
+  public DoubleArray snocDouble(final double elem) {
+    return new SmallDoubleArray(new double[] { elem });
+  }
+
+  @Override
+  public double getDouble(final long index) {
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public long size() {
+    return 0;
+  }
+
+  @Override
+  public Array<Double> concat(final Array<Double> seq) {
+    return seq;
+  }
+
+  @Override
+  public Double head() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public Double last() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public DoubleArray init() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public DoubleArray tail() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public DoubleArray subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > 0)
+      throw new IndexOutOfBoundsException("end out of bounds: " + (pos + len) + " > 0");
+    return this;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return true;
+  }
+
+  @Override
+  public DoubleArray reverse() {
+    return this;
+  }
+
+  @Override
+  public DoubleArray insertBefore(final long pos, final Double val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > 0) throw new IndexOutOfBoundsException("position too big: " + pos);
+    return new SmallDoubleArray(new double[] { val.doubleValue() });
+  }
+
+  @Override
+  public DoubleArray updateDouble(final long pos, final DoubleUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public DoubleArray remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public ListIterator<Double> listIterator(final long start) {
+    return Collections.emptyListIterator();
+  }
+
+  @Override
+  public DoubleArray mapDouble(final DoubleUnaryOperator fun) {
+    return this;
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<double[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return empty;
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<double[]> action) {
+    // no chunks
+  }
+
+  @Override
+  void checkInvariants() {
+    // nothing can go wrong
+  }
+
+  @Override
+  DoubleArray consSmall(final double[] vals) {
+    return new SmallDoubleArray(vals);
+  }
+}
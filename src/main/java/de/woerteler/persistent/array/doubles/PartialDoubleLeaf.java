@@ -0,0 +1,59 @@
+package de.woerteler.persistent.array.doubles;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A partial shallow node containing fewer elements than required in a node.
+ *
+ * @author Leo Woerteler
+ */
+final class PartialDoubleLeaf implements NodeLike<Double, Double> {
+  /** The single element. */
+  final double[] elems;
+
+  /**
+   * Constructor.
+   * @param elems the elements
+   */
+  PartialDoubleLeaf(final double[] elems) {
+    this.elems = elems;
+  }
+
+  @Override
+  public int append(final NodeLike<Double, Double>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[0] = this;
+      return 1;
+    }
+
+    final NodeLike<Double, Double> left = nodes[pos - 1];
+    if(left instanceof PartialDoubleLeaf) {
+      final double[] ls = ((PartialDoubleLeaf) left).elems, rs = elems;
+      final int l = ls.length, r = rs.length, n = l + r;
+      final double[] vals = new double[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = n < DoubleArray.MIN_LEAF ? new PartialDoubleLeaf(vals) : new DoubleLeaf(vals);
+      return pos;
+    }
+
+    final double[] ls = ((DoubleLeaf) left).values, rs = elems;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= DoubleArray.MAX_LEAF) {
+      final double[] vals = new double[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new DoubleLeaf(vals);
+      return pos;
+    }
+
+    final int ll = n / 2, rl = n - ll, move = l - ll;
+    final double[] newLeft = new double[ll], newRight = new double[rl];
+    System.arraycopy(ls, 0, newLeft, 0, ll);
+    System.arraycopy(ls, ll, newRight, 0, move);
+    System.arraycopy(rs, 0, newRight, move, r);
+    nodes[pos - 1] = new DoubleLeaf(newLeft);
+    nodes[pos] = new DoubleLeaf(newRight);
+    return pos + 1;
+  }
+}
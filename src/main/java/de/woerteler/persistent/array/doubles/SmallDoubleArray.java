@@ -0,0 +1,260 @@
+package de.woerteler.persistent.array.doubles;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * A singleton array.
+ *
+ * @author Leo Woerteler
+ */
+final class SmallDoubleArray extends DoubleArray {
+  /** The elements. */
+  final double[] elems;
+
+  /**
+   * Constructor.
+   * @param elems elements
+   */
+  SmallDoubleArray(final double[] elems) {
+    this.elems = elems;
+    assert elems.length >= 1 && elems.length <= MAX_SMALL;
+  }
+
+  @Override
+  public DoubleArray consDouble(final double head) {
+    if(elems.length < MAX_SMALL) {
+      final double[] newElems = slice(elems, -1, elems.length);
+      newElems[0] = head;
+      return new SmallDoubleArray(newElems);
+    }
+
+    final int mid = MIN_DIGIT - 1;
+    final double[] left = slice(elems, -1, mid), right = slice(elems, mid, elems.length);
+    left[0] = head;
+    return new DeepDoubleArray(left, right);
+  }
+
+  @Override
+  public DoubleArray snocDouble(final double last) {
+    if(elems.length < MAX_SMALL) {
+      final double[] newElems = slice(elems, 0, elems.length + 1);
+      newElems[newElems.length - 1] = last;
+      return new SmallDoubleArray(newElems);
+    }
+
+    final double[] left = slice(elems, 0, MIN_DIGIT),
+        right = slice(elems, MIN_DIGIT, elems.length + 1);
+    right[right.length - 1] = last;
+    return new DeepDoubleArray(left, right);
+  }
+
+  @Override
+  public double getDouble(final long index) {
+    // index to small?
+    if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
+
+    // index too big?
+    if(index >= elems.length) throw new IndexOutOfBoundsException(index + " >= " + elems.length);
+
+    return elems[(int) index];
+  }
+
+  @Override
+  public long size() {
+    return elems.length;
+  }
+
+  @Override
+  public Array<Double> concat(final Array<Double> seq) {
+    if(seq.isEmpty()) return this;
+    if(seq instanceof DoubleArray) return ((DoubleArray) seq).consSmall(elems);
+    Array<Double> curr = seq;
+    for(int i = elems.length; --i >= 0;) curr = curr.cons(elems[i]);
+    return curr;
+  }
+
+  @Override
+  public Double head() {
+    return elems[0];
+  }
+
+  @Override
+  public Double last() {
+    return elems[elems.length - 1];
+  }
+
+  @Override
+  public DoubleArray init() {
+    if(elems.length == 1) return empty();
+    return new SmallDoubleArray(slice(elems, 0, elems.length - 1));
+  }
+
+  @Override
+  public DoubleArray tail() {
+    if(elems.length == 1) return empty();
+    return new SmallDoubleArray(slice(elems, 1, elems.length));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+  @Override
+  public DoubleArray reverse() {
+    final int n = elems.length;
+    if(n == 1) return this;
+    final double[] es = new double[n];
+    for(int i = 0; i < n; i++) es[i] = elems[n - 1 - i];
+    return new SmallDoubleArray(es);
+  }
+
+  @Override
+  public DoubleArray insertBefore(final long pos, final Double val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    final int p = (int) pos, n = elems.length;
+    final double v = val;
+    final double[] out = new double[n + 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    out[p] = v;
+    System.arraycopy(elems, p, out, p + 1, n - p);
+
+    if(n < MAX_SMALL) return new SmallDoubleArray(out);
+    return new DeepDoubleArray(slice(out, 0, MIN_DIGIT), slice(out, MIN_DIGIT, n + 1));
+  }
+
+  @Override
+  public DoubleArray updateDouble(final long pos, final DoubleUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos;
+    final double[] out = elems.clone();
+    out[p] = fun.applyAsDouble(elems[p]);
+    return new SmallDoubleArray(out);
+  }
+
+  @Override
+  public DoubleArray remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos, n = elems.length;
+    if(n == 1) return empty();
+
+    final double[] out = new double[n - 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    System.arraycopy(elems, p + 1, out, p, n - 1 - p);
+    return new SmallDoubleArray(out);
+  }
+
+  @Override
+  public DoubleArray subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > elems.length)
+      throw new IndexOutOfBoundsException("end out of bounds: "
+          + (pos + len) + " > " + elems.length);
+
+    final int p = (int) pos, n = (int) len;
+    return n == 0 ? DoubleArray.empty() : new SmallDoubleArray(slice(elems, p, p + n));
+  }
+
+  @Override
+  public ListIterator<Double> listIterator(final long start) {
+    if(start < 0 || start > elems.length) throw new IndexOutOfBoundsException("" + start);
+    return new ListIterator<Double>() {
+      private int index = (int) start;
+
+      @Override
+      public int nextIndex() {
+        return index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return index < elems.length;
+      }
+
+      @Override
+      public Double next() {
+        if(index >= elems.length) throw new NoSuchElementException();
+        return elems[index++];
+      }
+
+      @Override
+      public int previousIndex() {
+        return index - 1;
+      }
+
+      @Override
+      public boolean hasPrevious() {
+        return index > 0;
+      }
+
+      @Override
+      public Double previous() {
+        if(index <= 0) throw new NoSuchElementException();
+        return elems[--index];
+      }
+
+      @Override
+      public void set(final Double e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void add(final Double e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public DoubleArray mapDouble(final DoubleUnaryOperator fun) {
+    return new SmallDoubleArray(map(elems, fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<double[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return chunk.apply(elems);
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<double[]> action) {
+    action.accept(elems, 0, elems.length);
+  }
+
+  @Override
+  void checkInvariants() {
+    final int n = elems.length;
+    if(n == 0) throw new AssertionError("Empty array in " + getClass().getSimpleName());
+    if(n > MAX_SMALL) throw new AssertionError("Array too big: " + n);
+  }
+
+  @Override
+  DoubleArray consSmall(final double[] left) {
+    final int l = left.length, r = elems.length, n = l + r;
+    if(Math.min(l, r) >= MIN_DIGIT) {
+      // both arrays can be used as digits
+      return new DeepDoubleArray(left, elems);
+    }
+
+    final double[] out = new double[n];
+    System.arraycopy(left, 0, out, 0, l);
+    System.arraycopy(elems, 0, out, l, r);
+    if(n <= MAX_SMALL) return new SmallDoubleArray(out);
+
+    final int mid = n / 2;
+    return new DeepDoubleArray(slice(out, 0, mid), slice(out, mid, n));
+  }
+}
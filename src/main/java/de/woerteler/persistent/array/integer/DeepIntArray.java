@@ -1,6 +1,7 @@
 package de.woerteler.persistent.array.integer;
 
 import java.util.*;
+import java.util.function.*;
 
 import de.woerteler.persistent.array.*;
 import de.woerteler.persistent.fingertree.*;
@@ -67,7 +68,7 @@ final class DeepIntArray extends IntArray {
   }
 
   @Override
-  public IntArray cons(final Integer elem) {
+  public IntArray consInt(final int elem) {
     if(left.length < MAX_DIGIT) {
       final int[] newLeft = slice(left, -1, left.length);
       newLeft[0] = elem;
@@ -82,7 +83,7 @@ final class DeepIntArray extends IntArray {
   }
 
   @Override
-  public IntArray snoc(final Integer elem) {
+  public IntArray snocInt(final int elem) {
     if(right.length < MAX_DIGIT) {
       final int[] newRight = slice(right, 0, right.length + 1);
       newRight[right.length] = elem;
@@ -185,6 +186,11 @@ final class DeepIntArray extends IntArray {
       return new DeepIntArray(left, newMid, slice(newRight, mid, r));
     }
 
+    // arrays with off-heap leaves stay off-heap
+    if(seq instanceof OffHeapIntArray) {
+      return OffHeapIntArray.copyOf(((OffHeapIntArray) seq).arena, this).concat(seq);
+    }
+
     final DeepIntArray other = (DeepIntArray) seq;
 
     // make nodes out of the digits facing each other
@@ -205,7 +211,7 @@ final class DeepIntArray extends IntArray {
   }
 
   @Override
-  public Integer get(final long index) {
+  public int getInt(final long index) {
     // index to small?
     if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
 
@@ -218,7 +224,8 @@ final class DeepIntArray extends IntArray {
     if(index >= midSize) return right[(int) (index - midSize)];
 
     // the element is in the middle tree
-    return middle.get(index - left.length);
+    final LeafPosition<Integer> lp = middle.locate(index - left.length);
+    return ((IntLeaf) lp.leaf).values[lp.pos];
   }
 
   @Override
@@ -263,6 +270,28 @@ final class DeepIntArray extends IntArray {
         slice(temp, m, r + 1));
   }
 
+  @Override
+  public IntArray updateInt(final long pos, final IntUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    final long midSize = left.length + middle.size();
+    if(pos >= midSize + right.length)
+      throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    if(pos < left.length) {
+      final int p = (int) pos;
+      final int[] newLeft = left.clone();
+      newLeft[p] = fun.applyAsInt(left[p]);
+      return new DeepIntArray(newLeft, middle, right);
+    }
+    if(pos >= midSize) {
+      final int p = (int) (pos - midSize);
+      final int[] newRight = right.clone();
+      newRight[p] = fun.applyAsInt(right[p]);
+      return new DeepIntArray(left, middle, newRight);
+    }
+    return new DeepIntArray(left, middle.update(pos - left.length, fun::applyAsInt), right);
+  }
+
   @Override
   public IntArray remove(final long pos) {
     if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
@@ -633,6 +662,64 @@ final class DeepIntArray extends IntArray {
     };
   }
 
+  @Override
+  void copy(final long from, final int[] dst, final int pos, final int len) {
+    final int l = left.length;
+    final long m = middle.size();
+    long i = from;
+    int p = pos, rest = len;
+    if(i < l) {
+      // start in left digit
+      final int n = (int) Math.min(l - i, rest);
+      System.arraycopy(left, (int) i, dst, p, n);
+      i += n;
+      p += n;
+      rest -= n;
+    }
+
+    if(rest > 0 && i < l + m) {
+      // copy the overlapping parts of the leaves in the middle tree
+      final int n = (int) Math.min(l + m - i, rest);
+      final int[] out = { p };
+      middle.forEachLeaf(i - l, n, (leaf, off, k) -> {
+        System.arraycopy(((IntLeaf) leaf).values, off, dst, out[0], k);
+        out[0] += k;
+      });
+      i += n;
+      p += n;
+      rest -= n;
+    }
+
+    // the rest is in the right digit
+    if(rest > 0) System.arraycopy(right, (int) (i - l - m), dst, p, rest);
+  }
+
+  @Override
+  public IntArray mapInt(final IntUnaryOperator fun) {
+    final FingerTree<Integer, Integer> mid = middle.mapLeaves(
+        leaf -> new IntLeaf(map(((IntLeaf) leaf).values, fun)));
+    return new DeepIntArray(map(left, fun), mid, map(right, fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<int[], R> chunk,
+      final BinaryOperator<R> combine) {
+    final R l = chunk.apply(left), r = chunk.apply(right);
+    if(middle.isEmpty()) return combine.apply(l, r);
+    final R mid = middle.foldLeaves(empty, leaf -> chunk.apply(((IntLeaf) leaf).values), combine);
+    return combine.apply(combine.apply(l, mid), r);
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<int[]> action) {
+    action.accept(left, 0, left.length);
+    middle.forEachLeaf(leaf -> {
+      final int[] vals = ((IntLeaf) leaf).values;
+      action.accept(vals, 0, vals.length);
+    });
+    action.accept(right, 0, right.length);
+  }
+
   @Override
   void checkInvariants() {
     final int l = left.length, r = right.length;
@@ -1,6 +1,7 @@
 package de.woerteler.persistent.array.integer;
 
 import java.util.*;
+import java.util.function.*;
 
 import de.woerteler.persistent.array.*;
 
@@ -19,17 +20,17 @@ final class EmptyIntArray<E> extends IntArray {
   }
 
   @Override
-  public IntArray cons(final Integer elem) {
+  public IntArray consInt(final int elem) {
     return new SmallIntArray(new int[] { elem });
   }
 
   @Override
-  public IntArray snoc(final Integer elem) {
+  public IntArray snocInt(final int elem) {
     return new SmallIntArray(new int[] { elem });
   }
 
   @Override
-  public Integer get(final long index) {
+  public int getInt(final long index) {
     throw new IndexOutOfBoundsException();
   }
 
@@ -89,6 +90,12 @@ final class EmptyIntArray<E> extends IntArray {
     return new SmallIntArray(new int[] { val.intValue() });
   }
 
+  @Override
+  public IntArray updateInt(final long pos, final IntUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
   @Override
   public IntArray remove(final long pos) {
     if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
@@ -100,6 +107,27 @@ final class EmptyIntArray<E> extends IntArray {
     return Collections.emptyListIterator();
   }
 
+  @Override
+  void copy(final long from, final int[] dst, final int pos, final int len) {
+    // nothing to copy
+  }
+
+  @Override
+  public IntArray mapInt(final IntUnaryOperator fun) {
+    return this;
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<int[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return empty;
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<int[]> action) {
+    // no chunks
+  }
+
   @Override
   void checkInvariants() {
     // nothing can go wrong
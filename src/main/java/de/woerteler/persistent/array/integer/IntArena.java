@@ -0,0 +1,218 @@
+package de.woerteler.persistent.array.integer;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.util.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * Off-heap storage for the leaves of {@link IntArray}s, either in direct {@link ByteBuffer}s
+ * or in a memory-mapped file. Arrays created by an arena keep their digits on the heap, but
+ * all leaves of their middle tree are regions inside the arena, so huge arrays only consist
+ * of a few heap objects per several hundred elements.
+ *
+ * <p>Regions are written once when they are allocated and never modified afterwards,
+ * updates copy the touched leaf into a fresh region. The space of regions that are no longer
+ * referenced is not reused, an arena is meant to be released as a whole together with all
+ * arrays using it.</p>
+ *
+ * @author Leo Woerteler
+ */
+public final class IntArena implements Closeable {
+  /** Minimum number of ints per block, big enough for at least two regions. */
+  private static final int MIN_BLOCK = 1 << 10;
+  /** Default number of ints per block. */
+  private static final int DEFAULT_BLOCK = 1 << 22;
+  /** Maximum number of ints per block, so that the size in bytes still fits into an int. */
+  private static final int MAX_BLOCK = 1 << 28;
+
+  /** File channel of a memory-mapped arena, {@code null} for direct buffers. */
+  private final FileChannel channel;
+  /** Number of bits of an address used for the position inside a block. */
+  private final int bits;
+  /** Blocks of memory, replaced when a block is added. */
+  private volatile IntBuffer[] blocks = new IntBuffer[0];
+  /** Address of the next free int. */
+  private long next;
+
+  /**
+   * Constructor.
+   * @param channel file channel of a memory-mapped arena, {@code null} for direct buffers
+   * @param blockSize number of ints per block
+   */
+  private IntArena(final FileChannel channel, final int blockSize) {
+    if(Integer.bitCount(blockSize) != 1 || blockSize < MIN_BLOCK || blockSize > MAX_BLOCK)
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    this.channel = channel;
+    this.bits = Integer.numberOfTrailingZeros(blockSize);
+  }
+
+  /**
+   * Creates an arena that stores its leaves in direct byte buffers.
+   * @return the arena
+   */
+  public static IntArena direct() {
+    return direct(DEFAULT_BLOCK);
+  }
+
+  /**
+   * Creates an arena that stores its leaves in direct byte buffers of the given size.
+   * @param blockSize number of ints per buffer, must be a power of two between
+   *   {@code 1024} and {@code 2^28}
+   * @return the arena
+   */
+  public static IntArena direct(final int blockSize) {
+    return new IntArena(null, blockSize);
+  }
+
+  /**
+   * Creates an arena that stores its leaves in the given file, which is created if it does not
+   * exist and overwritten otherwise.
+   * @param file the file
+   * @return the arena
+   * @throws IOException if the file cannot be opened
+   */
+  public static IntArena mapped(final Path file) throws IOException {
+    return mapped(file, DEFAULT_BLOCK);
+  }
+
+  /**
+   * Creates an arena that stores its leaves in the given file, which is mapped into memory in
+   * blocks of the given size.
+   * @param file the file
+   * @param blockSize number of ints per mapped block, must be a power of two between
+   *   {@code 1024} and {@code 2^28}
+   * @return the arena
+   * @throws IOException if the file cannot be opened
+   */
+  public static IntArena mapped(final Path file, final int blockSize) throws IOException {
+    final FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      return new IntArena(ch, blockSize);
+    } catch(final IllegalArgumentException ex) {
+      ch.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Returns an empty array whose leaves are stored in this arena.
+   * @return empty array
+   */
+  public IntArray empty() {
+    return OffHeapIntArray.empty(this);
+  }
+
+  /**
+   * Returns an array containing the same elements as the given one whose leaves are stored in
+   * this arena. If the array already uses this arena, it is returned unchanged.
+   * Running time: <i>O(n)</i>
+   * @param arr the array
+   * @return array stored in this arena
+   */
+  public IntArray copyOf(final IntArray arr) {
+    return OffHeapIntArray.copyOf(this, arr);
+  }
+
+  /**
+   * Number of ints allocated in this arena so far, including the unused ends of blocks.
+   * @return number of ints
+   */
+  public synchronized long allocated() {
+    return next;
+  }
+
+  /**
+   * Allocates a region of the given size that does not cross a block boundary.
+   * @param n size of the region in ints, at most the block size
+   * @return address of the region
+   */
+  synchronized long allocate(final int n) {
+    final IntBuffer[] bs = blocks;
+    final long addr = next;
+    if(addr >>> bits < bs.length && (addr & (1 << bits) - 1) + n <= 1 << bits) {
+      next = addr + n;
+      return addr;
+    }
+
+    // start a new block
+    final int b = bs.length;
+    final IntBuffer[] newBlocks = Arrays.copyOf(bs, b + 1);
+    newBlocks[b] = newBlock(b);
+    blocks = newBlocks;
+    final long start = (long) b << bits;
+    next = start + n;
+    return start;
+  }
+
+  /**
+   * Creates the block with the given index.
+   * @param b index of the block
+   * @return the block
+   */
+  private IntBuffer newBlock(final int b) {
+    final int bytes = Integer.BYTES << bits;
+    final ByteBuffer buffer;
+    if(channel == null) {
+      buffer = ByteBuffer.allocateDirect(bytes);
+    } else {
+      try {
+        buffer = channel.map(MapMode.READ_WRITE, (long) b * bytes, bytes);
+      } catch(final IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    return buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  /**
+   * Returns the int at the given address.
+   * @param addr the address
+   * @return the value
+   */
+  int get(final long addr) {
+    return blocks[(int) (addr >>> bits)].get((int) addr & (1 << bits) - 1);
+  }
+
+  /**
+   * Copies ints from a region of this arena into the given array.
+   * @param addr address of the first int to copy
+   * @param dst destination array
+   * @param pos position in the destination array
+   * @param len number of ints to copy
+   */
+  void read(final long addr, final int[] dst, final int pos, final int len) {
+    final IntBuffer buffer = blocks[(int) (addr >>> bits)].duplicate();
+    buffer.position((int) addr & (1 << bits) - 1);
+    buffer.get(dst, pos, len);
+  }
+
+  /**
+   * Copies ints from the given array into a freshly allocated region of this arena.
+   * @param src source array
+   * @param pos position of the first int in the source array
+   * @param len number of ints to copy
+   * @return address of the new region
+   */
+  long write(final int[] src, final int pos, final int len) {
+    final long addr = allocate(len);
+    final IntBuffer buffer = blocks[(int) (addr >>> bits)].duplicate();
+    buffer.position((int) addr & (1 << bits) - 1);
+    buffer.put(src, pos, len);
+    return addr;
+  }
+
+  /**
+   * Closes the file of a memory-mapped arena. The leaves of existing arrays stay readable
+   * until they are garbage-collected, but no new leaves can be allocated.
+   */
+  @Override
+  public void close() throws IOException {
+    if(channel != null) channel.close();
+  }
+}
@@ -1,8 +1,12 @@
 package de.woerteler.persistent.array.integer;
 
 import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
 
 /**
  * An array storing integer.
@@ -20,6 +24,10 @@ public abstract class IntArray extends Array<Integer> {
   static final int MAX_DIGIT = MAX_LEAF + MIN_DIGIT;
   /** Maximum size of a small array. */
   static final int MAX_SMALL = 2 * MIN_DIGIT - 1;
+  /** Preferred size of leaves created in bulk. */
+  private static final int NODE_SIZE = (MIN_LEAF + MAX_LEAF + 1) / 2;
+  /** Minimum size of a spliterator that is drained in parallel. */
+  private static final int PARALLEL_SIZE = 1 << 15;
 
   /**
    * The empty sequence.
@@ -41,26 +49,44 @@ public abstract class IntArray extends Array<Integer> {
   }
 
   /**
-   * Creates an array containing the given elements.
+   * Creates an array containing the given elements. The tree is built bottom-up in a single pass.
+   * Running time: <i>O(n)</i>
    * @param elems elements
    * @return the resulting array
    */
   @SafeVarargs
   public static IntArray from(final int... elems) {
-    IntArray arr = IntArray.empty();
-    for(final int i : elems) arr = arr.snoc(i);
-    return arr;
+    return build(elems);
   }
 
   /**
-   * Creates an array containing the elements from the given {@link Iterable}.
+   * Creates an array containing the elements from the given {@link Iterable}. The elements of a
+   * {@link Collection} are copied in bulk, see {@link #from(int...)}.
    * @param iter the iterable
    * @return the resulting array
    */
   public static IntArray from(final Iterable<Integer> iter) {
-    IntArray arr = IntArray.empty();
-    for(final Integer i : iter) arr = arr.snoc(i);
-    return arr;
+    if(!(iter instanceof Collection)) return from(iter.iterator());
+    final int[] vals = new int[((Collection<Integer>) iter).size()];
+    int i = 0;
+    for(final Integer v : iter) vals[i++] = v;
+    return build(vals);
+  }
+
+  /**
+   * Creates an array containing the elements of the given spliterator. Large spliterators with a
+   * known size are drained in parallel, others are appended one by one.
+   * @param spliter element spliterator
+   * @return the resulting array
+   */
+  public static IntArray from(final Spliterator.OfInt spliter) {
+    final long size = spliter.getExactSizeIfKnown();
+    if(size < 0) {
+      final IntArrayBuilder builder = new IntArrayBuilder();
+      spliter.forEachRemaining((IntConsumer) builder::append);
+      return builder.freeze();
+    }
+    return build(StreamSupport.intStream(spliter, size >= PARALLEL_SIZE).toArray());
   }
 
   /**
@@ -74,11 +100,170 @@ public abstract class IntArray extends Array<Integer> {
     return arr;
   }
 
+  /**
+   * Creates an array containing the given elements by cutting them into digits and leaves of
+   * equal size and building the middle tree bottom-up.
+   * @param vals the elements, the array is not retained
+   * @return the resulting array
+   */
+  private static IntArray build(final int[] vals) {
+    final int n = vals.length;
+    if(n == 0) return empty();
+    if(n <= MAX_SMALL) return new SmallIntArray(vals.clone());
+    if(n <= 2 * MAX_DIGIT) {
+      final int mid = n / 2;
+      return new DeepIntArray(Arrays.copyOf(vals, mid), Arrays.copyOfRange(vals, mid, n));
+    }
+
+    final int d = Math.min((MIN_DIGIT + MAX_DIGIT) / 2, (n - 2 * MIN_LEAF) / 2), m = n - 2 * d;
+    int k = (m + NODE_SIZE - 1) / NODE_SIZE;
+    while(m / k < MIN_LEAF) k--;
+    final int leaves = k;
+    final FingerTree<Integer, Integer> middle = FingerTree.build(leaves, m, i -> new IntLeaf(
+        Arrays.copyOfRange(vals, d + (int) ((long) m * i / leaves),
+            d + (int) ((long) m * (i + 1) / leaves))));
+    return new DeepIntArray(Arrays.copyOf(vals, d), middle, Arrays.copyOfRange(vals, n - d, n));
+  }
+
   @Override
-  public abstract IntArray cons(final Integer elem);
+  public final IntArray cons(final Integer elem) {
+    return consInt(elem);
+  }
 
   @Override
-  public abstract IntArray snoc(final Integer elem);
+  public final IntArray snoc(final Integer elem) {
+    return snocInt(elem);
+  }
+
+  @Override
+  public final Integer get(final long index) {
+    return getInt(index);
+  }
+
+  @Override
+  public final IntArray set(final long pos, final Integer val) {
+    return setInt(pos, val);
+  }
+
+  @Override
+  public final IntArray update(final long pos, final UnaryOperator<Integer> fun) {
+    return updateInt(pos, fun::apply);
+  }
+
+  /**
+   * Prepends a primitive {@code int} to the front of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to prepend
+   * @return resulting array
+   */
+  public abstract IntArray consInt(final int elem);
+
+  /**
+   * Appends a primitive {@code int} to the back of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to append
+   * @return resulting array
+   */
+  public abstract IntArray snocInt(final int elem);
+
+  /**
+   * Gets the element at the given position in this array without boxing it.
+   * Running time: <i>O(log n)</i>
+   * @param index index of the element to get
+   * @return the corresponding element
+   * @throws IndexOutOfBoundsException if the index is smaller that {@code 0}
+   *             or {@code >=} the {@link #size()} of this array
+   */
+  public abstract int getInt(final long index);
+
+  /**
+   * Replaces the element at the given position in this array with a primitive {@code int}.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param val new element
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public final IntArray setInt(final long pos, final int val) {
+    return updateInt(pos, old -> val);
+  }
+
+  /**
+   * Replaces the element at the given position in this array with the result of applying the
+   * given function to it.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public abstract IntArray updateInt(final long pos, final IntUnaryOperator fun);
+
+  /**
+   * Copies the elements at the positions {@code from} to {@code from + len - 1} into the first
+   * {@code len} entries of the given array.
+   * Running time: <i>O(len + log n)</i>
+   * @param dst destination array
+   * @param from position of the first element to copy
+   * @param len number of elements to copy
+   * @throws IndexOutOfBoundsException if the range is not contained in this array or
+   *             {@code dst} is shorter than {@code len}
+   */
+  public final void copyTo(final int[] dst, final long from, final int len) {
+    if(from < 0) throw new IndexOutOfBoundsException("first index < 0: " + from);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(len > size() - from)
+      throw new IndexOutOfBoundsException("end out of bounds: " + (from + len) + " > " + size());
+    if(len > dst.length)
+      throw new IndexOutOfBoundsException("destination too small: " + dst.length + " < " + len);
+    copy(from, dst, 0, len);
+  }
+
+  /**
+   * Returns an iterator over the elements of this array that does not box them.
+   * The elements are copied out of the array in chunks of {@code 4 * MAX_LEAF} elements, so the
+   * <i>O(log n)</i> descent locating a chunk is shared by all of its elements.
+   * @return primitive iterator
+   */
+  public final PrimitiveIterator.OfInt intIterator() {
+    return new PrimitiveIterator.OfInt() {
+      /** Buffer for the current chunk. */
+      private final int[] buffer = new int[(int) Math.min(size(), 4 * MAX_LEAF)];
+      /** Position of the current chunk in the array. */
+      private long offset;
+      /** Position inside the buffer. */
+      private int pos;
+      /** Number of valid elements in the buffer. */
+      private int len;
+
+      @Override
+      public boolean hasNext() {
+        return pos < len || offset + len < size();
+      }
+
+      @Override
+      public int nextInt() {
+        if(pos == len) {
+          offset += len;
+          final long rest = size() - offset;
+          if(rest <= 0) throw new NoSuchElementException();
+          len = (int) Math.min(rest, buffer.length);
+          copy(offset, buffer, 0, len);
+          pos = 0;
+        }
+        return buffer[pos++];
+      }
+    };
+  }
+
+  /**
+   * Copies elements from this array into the given array without any checks.
+   * @param from position of the first element in this array
+   * @param dst destination array
+   * @param pos position of the first element in the destination array
+   * @param len number of elements to copy
+   */
+  abstract void copy(final long from, final int[] dst, final int pos, final int len);
 
   @Override
   public abstract IntArray init();
@@ -98,6 +283,134 @@ public abstract class IntArray extends Array<Integer> {
   @Override
   public abstract IntArray remove(final long pos);
 
+  /**
+   * Calls the given action for consecutive chunks of the elements of this array, from left to
+   * right. The chunks are the digits and leaves of the tree, so there are only
+   * <i>O(n / MIN_LEAF)</i> calls.
+   * Running time: <i>O(n)</i>
+   * @param action action receiving the chunks, which must not be modified
+   */
+  public abstract void forEachChunk(final ChunkConsumer<int[]> action);
+
+  /**
+   * Calls the given action for every element of this array without boxing it.
+   * Running time: <i>O(n)</i>
+   * @param action action to call
+   */
+  public final void forEachInt(final IntConsumer action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  @Override
+  public final void forEach(final Consumer<? super Integer> action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  /**
+   * Creates an array of the same shape as this one containing the results of applying the
+   * given function to the elements of this array, without boxing them. Large arrays are
+   * processed in parallel, so the function must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  public abstract IntArray mapInt(final IntUnaryOperator fun);
+
+  /**
+   * Creates an array containing the results of applying the given function to the elements of
+   * this array, see {@link #mapInt(IntUnaryOperator)}.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  public final IntArray mapToInt(final ToIntFunction<? super Integer> fun) {
+    return mapInt(fun::applyAsInt);
+  }
+
+  /**
+   * Creates an {@link ObjectArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param <R> result type
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  public final <R> ObjectArray<R> mapToObj(final IntFunction<? extends R> fun) {
+    return foldChunks(ObjectArray.<R>empty(), chunk -> {
+      final int n = chunk.length;
+      final R[] out = (R[]) new Object[n];
+      for(int i = 0; i < n; i++) out[i] = fun.apply(chunk[i]);
+      return ObjectArray.from(out);
+    }, (a, b) -> (ObjectArray<R>) a.concat(b));
+  }
+
+  @Override
+  public final <R> ObjectArray<R> map(final Function<? super Integer, ? extends R> fun) {
+    return mapToObj(fun::apply);
+  }
+
+  /**
+   * Creates an array containing only the elements of this array that satisfy the given
+   * predicate, without boxing them. Large arrays are processed in parallel, so the predicate
+   * must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param pred predicate to test
+   * @return array of the matching elements
+   */
+  public final IntArray filterInt(final IntPredicate pred) {
+    return foldChunks(IntArray.empty(), chunk -> {
+      final int[] out = new int[chunk.length];
+      int n = 0;
+      for(final int elem : chunk) if(pred.test(elem)) out[n++] = elem;
+      return build(n == out.length ? out : Arrays.copyOf(out, n));
+    }, (a, b) -> (IntArray) a.concat(b));
+  }
+
+  @Override
+  public final IntArray filter(final Predicate<? super Integer> pred) {
+    return filterInt(pred::test);
+  }
+
+  /**
+   * Combines all elements of this array with the given associative operator without boxing them.
+   * Large arrays are processed in parallel, so the operator must be thread-safe.
+   * Running time: <i>O(n)</i>
+   * @param identity identity of the operator, returned for the empty array
+   * @param op associative operator
+   * @return the result
+   */
+  public final int reduceInt(final int identity, final IntBinaryOperator op) {
+    return foldChunks(identity, chunk -> {
+      int res = identity;
+      for(final int elem : chunk) res = op.applyAsInt(res, elem);
+      return res;
+    }, op::applyAsInt);
+  }
+
+  @Override
+  public final Integer reduce(final Integer identity, final BinaryOperator<Integer> op) {
+    return reduceInt(identity, op::apply);
+  }
+
+  /**
+   * Applies the given function to the digits and leaves of this array and combines the results
+   * from left to right. The leaves of the middle tree are processed in parallel, see
+   * {@link FingerTree#foldLeaves(Object, Function, BinaryOperator)}.
+   * @param <R> result type
+   * @param empty result for the empty array
+   * @param chunk function applied to the digits and leaves, which must not be modified
+   * @param combine associative function combining adjacent results
+   * @return the combined result
+   */
+  abstract <R> R foldChunks(final R empty, final Function<int[], R> chunk,
+      final BinaryOperator<R> combine);
+
   /**
    * Prepends the given elements to this array.
    * @param vals values, with length at most {@link SmallIntArray#MAX_SMALL}
@@ -139,6 +452,19 @@ public abstract class IntArray extends Array<Integer> {
     return out;
   }
 
+  /**
+   * Applies the given function to all elements of the given array.
+   * @param vals the elements
+   * @param fun function to apply
+   * @return array of the results
+   */
+  static final int[] map(final int[] vals, final IntUnaryOperator fun) {
+    final int n = vals.length;
+    final int[] out = new int[n];
+    for(int i = 0; i < n; i++) out[i] = fun.applyAsInt(vals[i]);
+    return out;
+  }
+
   /**
    * Checks that this array's implementation does not violate any invariants.
    * @throws AssertionError if an invariant was violated
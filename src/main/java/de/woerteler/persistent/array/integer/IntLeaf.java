@@ -1,6 +1,7 @@
 package de.woerteler.persistent.array.integer;
 
 import java.util.*;
+import java.util.function.*;
 
 import de.woerteler.persistent.fingertree.*;
 
@@ -35,6 +36,14 @@ final class IntLeaf implements Node<Integer, Integer> {
     return new IntLeaf(out);
   }
 
+  @Override
+  public IntLeaf update(final long pos, final UnaryOperator<Integer> fun) {
+    final int p = (int) pos;
+    final int[] out = values.clone();
+    out[p] = fun.apply(values[p]);
+    return new IntLeaf(out);
+  }
+
   @Override
   public boolean insert(final Node<Integer, Integer>[] siblings,
       final long pos, final Integer val) {
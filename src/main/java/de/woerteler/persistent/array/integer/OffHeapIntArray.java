@@ -0,0 +1,513 @@
+package de.woerteler.persistent.array.integer;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An array whose middle tree consists of leaves stored in an {@link IntArena}.
+ * Only the digits, which are touched by every {@link #consInt(int)} and {@link #snocInt(int)},
+ * are kept on the heap. In contrast to {@link DeepIntArray}, both digits may be empty.
+ * <p>
+ * The digits are heap {@link IntArray}s themselves, so adding an element to them takes
+ * amortized constant time. Once a digit grows beyond {@link #MAX_REGION} elements, they are
+ * moved into a new region of the arena, which costs {@code O(MAX_REGION)} for every
+ * {@link #MAX_REGION} added elements.
+ *
+ * @author Leo Woerteler
+ */
+final class OffHeapIntArray extends IntArray {
+  /** Minimum number of ints in an off-heap leaf. */
+  static final int MIN_REGION = 256;
+  /** Maximum number of ints in an off-heap leaf, also the maximum size of a digit. */
+  static final int MAX_REGION = 2 * MIN_REGION - 1;
+
+  /** Arena containing the leaves of the middle tree. */
+  final IntArena arena;
+  /** Left digit, stored on the heap. */
+  private final IntArray left;
+  /** Middle tree. */
+  private final FingerTree<Integer, Integer> middle;
+  /** Right digit, stored on the heap. */
+  private final IntArray right;
+
+  /**
+   * Constructor.
+   * @param arena arena containing the leaves of the middle tree
+   * @param left left digit
+   * @param middle middle tree
+   * @param right right digit
+   */
+  OffHeapIntArray(final IntArena arena, final IntArray left,
+      final FingerTree<Integer, Integer> middle, final IntArray right) {
+    this.arena = arena;
+    this.left = left;
+    this.middle = middle;
+    this.right = right;
+    assert left.size() <= MAX_REGION && right.size() <= MAX_REGION;
+  }
+
+  /**
+   * Creates an empty array whose leaves are stored in the given arena.
+   * @param arena the arena
+   * @return empty array
+   */
+  static OffHeapIntArray empty(final IntArena arena) {
+    return new OffHeapIntArray(arena, IntArray.empty(), FingerTree.<Integer>empty(),
+        IntArray.empty());
+  }
+
+  /**
+   * Copies the elements of the given digit into a new array.
+   * @param digit the digit
+   * @return the elements
+   */
+  private static int[] values(final IntArray digit) {
+    final int[] vals = new int[(int) digit.size()];
+    digit.copy(0, vals, 0, vals.length);
+    return vals;
+  }
+
+  /**
+   * Creates an array from the given parts, moving the elements of digits that are too big
+   * into new leaves of the middle tree.
+   * @param arena arena containing the leaves of the middle tree
+   * @param left left digit, possibly too big
+   * @param middle middle tree
+   * @param right right digit, possibly too big
+   * @return the array
+   */
+  private static OffHeapIntArray get(final IntArena arena, final IntArray left,
+      final FingerTree<Integer, Integer> middle, final IntArray right) {
+    FingerTree<Integer, Integer> mid = middle;
+    IntArray ls = left, rs = right;
+    final long l = ls.size(), r = rs.size();
+    if(l > MAX_REGION) {
+      // keep the first elements, the rest fills whole leaves
+      final int k = (int) (l % MAX_REGION);
+      final int[] buffer = new int[MAX_REGION];
+      for(long i = l; i > k; i -= MAX_REGION) {
+        ls.copy(i - MAX_REGION, buffer, 0, MAX_REGION);
+        mid = mid.cons(new OffHeapIntLeaf(arena, buffer));
+      }
+      ls = ls.subArray(0, k);
+    }
+    if(r > MAX_REGION) {
+      // keep the last elements, the rest fills whole leaves
+      final long k = r - r % MAX_REGION;
+      final int[] buffer = new int[MAX_REGION];
+      for(long i = 0; i < k; i += MAX_REGION) {
+        rs.copy(i, buffer, 0, MAX_REGION);
+        mid = mid.snoc(new OffHeapIntLeaf(arena, buffer));
+      }
+      rs = rs.subArray(k, r - k);
+    }
+    return new OffHeapIntArray(arena, ls, mid, rs);
+  }
+
+  /**
+   * Copies the given array into the given arena.
+   * @param arena the arena
+   * @param arr array to copy
+   * @return array stored in the arena
+   */
+  static OffHeapIntArray copyOf(final IntArena arena, final IntArray arr) {
+    if(arr instanceof OffHeapIntArray && ((OffHeapIntArray) arr).arena == arena)
+      return (OffHeapIntArray) arr;
+
+    final int[] buffer = new int[MAX_REGION], fill = { 0 };
+    @SuppressWarnings("unchecked")
+    final FingerTree<Integer, Integer>[] mid = new FingerTree[] { FingerTree.empty() };
+    arr.forEachChunk((chunk, off, len) -> {
+      for(int p = off, end = off + len; p < end;) {
+        final int n = Math.min(end - p, MAX_REGION - fill[0]);
+        System.arraycopy(chunk, p, buffer, fill[0], n);
+        p += n;
+        fill[0] += n;
+        if(fill[0] == MAX_REGION) {
+          mid[0] = mid[0].snoc(new OffHeapIntLeaf(arena, buffer));
+          fill[0] = 0;
+        }
+      }
+    });
+    return new OffHeapIntArray(arena, IntArray.empty(), mid[0],
+        IntArray.from(Arrays.copyOf(buffer, fill[0])));
+  }
+
+  /**
+   * Splits the given values into between one and three leaves of balanced size.
+   * @param vals values, at least {@link #MIN_REGION} and at most {@code 3 * MAX_REGION}
+   * @return the leaves
+   */
+  private Node<Integer, Integer>[] leaves(final int[] vals) {
+    final int n = vals.length, k = (n + MAX_REGION - 1) / MAX_REGION;
+    @SuppressWarnings("unchecked")
+    final Node<Integer, Integer>[] nodes = new Node[k];
+    for(int i = 0, p = 0; i < k; i++) {
+      final int len = n / k + (i < n % k ? 1 : 0);
+      nodes[i] = new OffHeapIntLeaf(arena, vals, p, len);
+      p += len;
+    }
+    return nodes;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return left.isEmpty() && middle.isEmpty() && right.isEmpty();
+  }
+
+  @Override
+  public long size() {
+    return left.size() + middle.size() + right.size();
+  }
+
+  @Override
+  public Integer head() {
+    if(isEmpty()) throw new NoSuchElementException();
+    return getInt(0);
+  }
+
+  @Override
+  public Integer last() {
+    if(isEmpty()) throw new NoSuchElementException();
+    return getInt(size() - 1);
+  }
+
+  @Override
+  public IntArray consInt(final int elem) {
+    return get(arena, left.consInt(elem), middle, right);
+  }
+
+  @Override
+  public IntArray snocInt(final int elem) {
+    return get(arena, left, middle, right.snocInt(elem));
+  }
+
+  @Override
+  public IntArray concat(final Array<Integer> seq) {
+    // empty array
+    if(seq.isEmpty()) return this;
+
+    // arrays in other arenas or on the heap are copied
+    final OffHeapIntArray other = copyOf(arena, seq instanceof IntArray ? (IntArray) seq
+        : from(seq));
+    if(isEmpty()) return other;
+
+    final IntArray inner = (IntArray) right.concat(other.left);
+    if(other.middle.isEmpty())
+      return get(arena, left, middle, (IntArray) inner.concat(other.right));
+    if(middle.isEmpty())
+      return get(arena, (IntArray) left.concat(inner), other.middle, other.right);
+
+    // make leaves out of the digits facing each other, merging them with the last leaf if needed
+    FingerTree<Integer, Integer> mid = middle;
+    int[] vals = values(inner);
+    if(vals.length < MIN_REGION) {
+      vals = concat(((OffHeapIntLeaf) mid.last()).values(), vals);
+      mid = mid.init();
+    }
+    return new OffHeapIntArray(arena, left, mid.concat(leaves(vals), vals.length, other.middle),
+        other.right);
+  }
+
+  @Override
+  public int getInt(final long index) {
+    if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
+    final long l = left.size(), m = middle.size(), size = l + m + right.size();
+    if(index >= size) throw new IndexOutOfBoundsException(index + " >= " + size);
+
+    if(index < l) return left.getInt(index);
+    if(index >= l + m) return right.getInt(index - l - m);
+    final LeafPosition<Integer> lp = middle.locate(index - l);
+    return ((OffHeapIntLeaf) lp.leaf).get(lp.pos);
+  }
+
+  @Override
+  public IntArray init() {
+    if(!right.isEmpty()) return new OffHeapIntArray(arena, left, middle, right.init());
+    if(!middle.isEmpty()) {
+      final int[] last = ((OffHeapIntLeaf) middle.last()).values();
+      return new OffHeapIntArray(arena, left, middle.init(),
+          IntArray.from(slice(last, 0, last.length - 1)));
+    }
+    if(left.isEmpty()) throw new IllegalStateException();
+    return new OffHeapIntArray(arena, left.init(), middle, right);
+  }
+
+  @Override
+  public IntArray tail() {
+    if(!left.isEmpty()) return new OffHeapIntArray(arena, left.tail(), middle, right);
+    if(!middle.isEmpty()) {
+      final int[] head = ((OffHeapIntLeaf) middle.head()).values();
+      return new OffHeapIntArray(arena, IntArray.from(slice(head, 1, head.length)),
+          middle.tail(), right);
+    }
+    if(right.isEmpty()) throw new IllegalStateException();
+    return new OffHeapIntArray(arena, left, middle, right.tail());
+  }
+
+  @Override
+  public IntArray subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    final long l = left.size(), r = right.size(), m = middle.size(), size = l + m + r;
+    if(len > size - pos)
+      throw new IndexOutOfBoundsException("end out of bounds: " + (pos + len) + " > " + size);
+    if(len == size) return this;
+
+    final long end = pos + len, lf = Math.min(pos, l), rf = Math.max(0, Math.min(pos - l - m, r));
+    IntArray newLeft = left.subArray(lf, Math.min(end, l) - lf);
+    final IntArray newRight = right.subArray(rf, Math.max(0, end - l - m) - rf);
+    FingerTree<Integer, Integer> newMiddle = FingerTree.empty();
+    final long from = Math.max(pos - l, 0), to = Math.min(end - l, m);
+    if(from == 0 && to == m) {
+      newMiddle = middle;
+    } else if(from < to) {
+      final TreeSlice<Integer, Integer> slice = middle.slice(from, to - from);
+      if(slice.isTree()) {
+        newMiddle = slice.getTree();
+      } else {
+        // the remaining elements of the middle tree are moved into the left digit
+        newLeft = (IntArray) newLeft.concat(
+            IntArray.from(((PartialOffHeapIntLeaf) slice.getPartial()).elems));
+      }
+    }
+    return get(arena, newLeft, newMiddle, newRight);
+  }
+
+  @Override
+  public IntArray reverse() {
+    return new OffHeapIntArray(arena, right.reverse(), middle.reverse(), left.reverse());
+  }
+
+  @Override
+  public IntArray insertBefore(final long pos, final Integer val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > size()) throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    final long l = left.size();
+    if(pos <= l) return get(arena, left.insertBefore(pos, val), middle, right);
+
+    final long m = middle.size();
+    if(pos - l < m) {
+      // only the touched leaf is copied
+      return new OffHeapIntArray(arena, left, middle.insert(pos - l, val), right);
+    }
+    return get(arena, left, middle, right.insertBefore(pos - l - m, val));
+  }
+
+  @Override
+  public IntArray updateInt(final long pos, final IntUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    final long l = left.size(), midSize = l + middle.size();
+    if(pos >= midSize + right.size())
+      throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    if(pos < l) return new OffHeapIntArray(arena, left.updateInt(pos, fun), middle, right);
+    if(pos >= midSize)
+      return new OffHeapIntArray(arena, left, middle, right.updateInt(pos - midSize, fun));
+    return new OffHeapIntArray(arena, left, middle.update(pos - l, fun::applyAsInt), right);
+  }
+
+  @Override
+  public IntArray remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= size()) throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    final long l = left.size();
+    if(pos < l) return new OffHeapIntArray(arena, left.remove(pos), middle, right);
+
+    final long m = middle.size();
+    if(pos - l >= m) return new OffHeapIntArray(arena, left, middle, right.remove(pos - l - m));
+
+    final TreeSlice<Integer, Integer> slice = middle.remove(pos - l);
+    if(slice.isTree()) return new OffHeapIntArray(arena, left, slice.getTree(), right);
+    // the middle tree was a single leaf that is now too small
+    final int[] elems = ((PartialOffHeapIntLeaf) slice.getPartial()).elems;
+    return get(arena, (IntArray) left.concat(IntArray.from(elems)), FingerTree.<Integer>empty(),
+        right);
+  }
+
+  @Override
+  public ListIterator<Integer> listIterator(final long start) {
+    final long size = size();
+    if(start < 0 || start > size) throw new IndexOutOfBoundsException("position: " + start);
+
+    return new ListIterator<Integer>() {
+      /** Buffer holding the chunk around the current position. */
+      private final int[] buffer = new int[MAX_REGION];
+      /** Position of the next element. */
+      private long pos = start;
+      /** Position of the first element in the buffer. */
+      private long from;
+      /** Number of valid elements in the buffer. */
+      private int len;
+
+      /**
+       * Returns the element at the given position, loading its chunk if necessary.
+       * @param p position of the element
+       * @return the element
+       */
+      private int load(final long p) {
+        if(p < from || p >= from + len) {
+          final long l = left.size(), m = middle.size();
+          if(p < l) {
+            from = 0;
+            len = (int) l;
+            left.copy(0, buffer, 0, len);
+          } else if(p < l + m) {
+            middle.forEachLeaf(p - l, 1, (leaf, off, n) -> {
+              from = p - off;
+              len = leaf.arity();
+              ((OffHeapIntLeaf) leaf).copy(0, buffer, 0, len);
+            });
+          } else {
+            from = l + m;
+            len = (int) right.size();
+            right.copy(0, buffer, 0, len);
+          }
+        }
+        return buffer[(int) (p - from)];
+      }
+
+      @Override
+      public int nextIndex() {
+        return (int) pos;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return pos < size;
+      }
+
+      @Override
+      public Integer next() {
+        if(pos >= size) throw new NoSuchElementException();
+        return load(pos++);
+      }
+
+      @Override
+      public int previousIndex() {
+        return (int) pos - 1;
+      }
+
+      @Override
+      public boolean hasPrevious() {
+        return pos > 0;
+      }
+
+      @Override
+      public Integer previous() {
+        if(pos <= 0) throw new NoSuchElementException();
+        return load(--pos);
+      }
+
+      @Override
+      public void add(final Integer e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void set(final Integer e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  void copy(final long from, final int[] dst, final int pos, final int len) {
+    final long l = left.size(), m = middle.size();
+    long i = from;
+    int p = pos, rest = len;
+    if(i < l) {
+      // start in left digit
+      final int n = (int) Math.min(l - i, rest);
+      left.copy(i, dst, p, n);
+      i += n;
+      p += n;
+      rest -= n;
+    }
+
+    if(rest > 0 && i < l + m) {
+      // copy the overlapping parts of the leaves in the middle tree
+      final int n = (int) Math.min(l + m - i, rest);
+      final int[] out = { p };
+      middle.forEachLeaf(i - l, n, (leaf, off, k) -> {
+        ((OffHeapIntLeaf) leaf).copy(off, dst, out[0], k);
+        out[0] += k;
+      });
+      i += n;
+      p += n;
+      rest -= n;
+    }
+
+    // the rest is in the right digit
+    if(rest > 0) right.copy(i - l - m, dst, p, rest);
+  }
+
+  @Override
+  public IntArray mapInt(final IntUnaryOperator fun) {
+    final FingerTree<Integer, Integer> mid = middle.mapLeaves(
+        leaf -> new OffHeapIntLeaf(arena, map(((OffHeapIntLeaf) leaf).values(), fun)));
+    return new OffHeapIntArray(arena, left.mapInt(fun), mid, right.mapInt(fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<int[], R> chunk,
+      final BinaryOperator<R> combine) {
+    // both digits may be empty
+    final List<R> parts = new ArrayList<>(3);
+    if(!left.isEmpty()) parts.add(left.foldChunks(empty, chunk, combine));
+    if(!middle.isEmpty()) {
+      parts.add(middle.foldLeaves(empty,
+          leaf -> chunk.apply(((OffHeapIntLeaf) leaf).values()), combine));
+    }
+    if(!right.isEmpty()) parts.add(right.foldChunks(empty, chunk, combine));
+    if(parts.isEmpty()) return empty;
+    R res = parts.get(0);
+    for(int i = 1; i < parts.size(); i++) res = combine.apply(res, parts.get(i));
+    return res;
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<int[]> action) {
+    left.forEachChunk(action);
+    if(!middle.isEmpty()) {
+      // the leaves are copied into a buffer one after the other
+      final int[] buffer = new int[MAX_REGION];
+      middle.forEachLeaf(leaf -> {
+        final int n = leaf.arity();
+        ((OffHeapIntLeaf) leaf).copy(0, buffer, 0, n);
+        action.accept(buffer, 0, n);
+      });
+    }
+    right.forEachChunk(action);
+  }
+
+  @Override
+  void checkInvariants() {
+    final long l = left.size(), r = right.size();
+    if(l > MAX_REGION) throw new AssertionError("Left digit: " + l);
+    if(r > MAX_REGION) throw new AssertionError("Right digit: " + r);
+    if(left instanceof OffHeapIntArray || right instanceof OffHeapIntArray)
+      throw new AssertionError("Off-heap digit");
+    left.checkInvariants();
+    right.checkInvariants();
+    middle.checkInvariants();
+    middle.forEachLeaf(leaf -> {
+      if(((OffHeapIntLeaf) leaf).arena != arena) throw new AssertionError("Foreign leaf");
+    });
+  }
+
+  @Override
+  IntArray consSmall(final int[] vals) {
+    return get(arena, left.consSmall(vals), middle, right);
+  }
+}
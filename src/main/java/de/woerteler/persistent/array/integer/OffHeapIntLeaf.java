@@ -0,0 +1,299 @@
+package de.woerteler.persistent.array.integer;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A leaf node whose elements are stored in a region of an {@link IntArena}.
+ *
+ * @author Leo Woerteler
+ */
+final class OffHeapIntLeaf implements Node<Integer, Integer> {
+  /** Arena containing the elements. */
+  final IntArena arena;
+  /** Address of the first element. */
+  private final long address;
+  /** Number of elements. */
+  private final int length;
+
+  /**
+   * Constructor, copying the given values into a fresh region of the arena.
+   * @param arena the arena
+   * @param values the values
+   */
+  OffHeapIntLeaf(final IntArena arena, final int[] values) {
+    this(arena, values, 0, values.length);
+  }
+
+  /**
+   * Constructor, copying a range of the given array into a fresh region of the arena.
+   * @param arena the arena
+   * @param values array containing the values
+   * @param pos position of the first value
+   * @param len number of values
+   */
+  OffHeapIntLeaf(final IntArena arena, final int[] values, final int pos, final int len) {
+    this.arena = arena;
+    this.address = arena.write(values, pos, len);
+    this.length = len;
+    assert len >= OffHeapIntArray.MIN_REGION && len <= OffHeapIntArray.MAX_REGION;
+  }
+
+  /**
+   * Returns a copy of the elements of this leaf.
+   * @return the elements
+   */
+  int[] values() {
+    final int[] out = new int[length];
+    arena.read(address, out, 0, length);
+    return out;
+  }
+
+  /**
+   * Copies elements of this leaf into the given array.
+   * @param off position of the first element in this leaf
+   * @param dst destination array
+   * @param pos position in the destination array
+   * @param len number of elements to copy
+   */
+  void copy(final int off, final int[] dst, final int pos, final int len) {
+    arena.read(address + off, dst, pos, len);
+  }
+
+  /**
+   * Returns the element at the given position in this leaf.
+   * @param pos position of the element
+   * @return the element
+   */
+  int get(final int pos) {
+    return arena.get(address + pos);
+  }
+
+  @Override
+  public long size() {
+    return length;
+  }
+
+  @Override
+  public OffHeapIntLeaf reverse() {
+    final int[] values = values(), out = new int[length];
+    for(int i = 0; i < length; i++) out[i] = values[length - 1 - i];
+    return new OffHeapIntLeaf(arena, out);
+  }
+
+  @Override
+  public OffHeapIntLeaf update(final long pos, final UnaryOperator<Integer> fun) {
+    final int p = (int) pos;
+    final int[] out = values();
+    out[p] = fun.apply(out[p]);
+    return new OffHeapIntLeaf(arena, out);
+  }
+
+  @Override
+  public boolean insert(final Node<Integer, Integer>[] siblings,
+      final long pos, final Integer val) {
+    final int p = (int) pos, n = length, v = val;
+    final int[] vals = new int[n + 1];
+    copy(0, vals, 0, p);
+    vals[p] = v;
+    copy(p, vals, p + 1, n - p);
+
+    if(n < OffHeapIntArray.MAX_REGION) {
+      // there is capacity
+      siblings[1] = new OffHeapIntLeaf(arena, vals);
+      return false;
+    }
+
+    final OffHeapIntLeaf left = (OffHeapIntLeaf) siblings[0];
+    if(left != null && left.length < OffHeapIntArray.MAX_REGION) {
+      // push elements to the left sibling
+      final int[] lvals = left.values();
+      final int l = lvals.length, diff = OffHeapIntArray.MAX_REGION - l, move = (diff + 1) / 2;
+      final int[] newLeft = new int[l + move], newRight = new int[n + 1 - move];
+      System.arraycopy(lvals, 0, newLeft, 0, l);
+      System.arraycopy(vals, 0, newLeft, l, move);
+      System.arraycopy(vals, move, newRight, 0, newRight.length);
+      siblings[0] = new OffHeapIntLeaf(arena, newLeft);
+      siblings[1] = new OffHeapIntLeaf(arena, newRight);
+      return false;
+    }
+
+    final OffHeapIntLeaf right = (OffHeapIntLeaf) siblings[2];
+    if(right != null && right.length < OffHeapIntArray.MAX_REGION) {
+      // push elements to the right sibling
+      final int[] rvals = right.values();
+      final int r = rvals.length, diff = OffHeapIntArray.MAX_REGION - r, move = (diff + 1) / 2,
+          l = n + 1 - move;
+      final int[] newLeft = new int[l], newRight = new int[r + move];
+      System.arraycopy(vals, 0, newLeft, 0, l);
+      System.arraycopy(vals, l, newRight, 0, move);
+      System.arraycopy(rvals, 0, newRight, move, r);
+      siblings[1] = new OffHeapIntLeaf(arena, newLeft);
+      siblings[2] = new OffHeapIntLeaf(arena, newRight);
+      return false;
+    }
+
+    // split the node
+    final int l = vals.length / 2, r = vals.length - l;
+    final int[] newLeft = new int[l], newRight = new int[r];
+    System.arraycopy(vals, 0, newLeft, 0, l);
+    System.arraycopy(vals, l, newRight, 0, r);
+    siblings[3] = siblings[2];
+    siblings[1] = new OffHeapIntLeaf(arena, newLeft);
+    siblings[2] = new OffHeapIntLeaf(arena, newRight);
+    return true;
+  }
+
+  @Override
+  public NodeLike<Integer, Integer>[] remove(final Node<Integer, Integer> left,
+      final Node<Integer, Integer> right, final long pos) {
+    final int p = (int) pos, n = length;
+    @SuppressWarnings("unchecked")
+    final NodeLike<Integer, Integer>[] out = new NodeLike[] { left, null, right };
+    if(n > OffHeapIntArray.MIN_REGION) {
+      // we do not have to split
+      final int[] vals = new int[n - 1];
+      copy(0, vals, 0, p);
+      copy(p + 1, vals, p, n - 1 - p);
+      out[1] = new OffHeapIntLeaf(arena, vals);
+      return out;
+    }
+
+    final int[] values = values();
+
+    final OffHeapIntLeaf leftLeaf = (OffHeapIntLeaf) left;
+    if(leftLeaf != null && leftLeaf.arity() > OffHeapIntArray.MIN_REGION) {
+      // steal from the left neighbor
+      final int[] lvals = leftLeaf.values();
+      final int l = lvals.length, diff = l - OffHeapIntArray.MIN_REGION, move = (diff + 1) / 2;
+      final int ll = l - move, rl = n - 1 + move;
+      final int[] newLeft = new int[ll], newRight = new int[rl];
+
+      System.arraycopy(lvals, 0, newLeft, 0, ll);
+      System.arraycopy(lvals, ll, newRight, 0, move);
+      System.arraycopy(values, 0, newRight, move, p);
+      System.arraycopy(values, p + 1, newRight, move + p, n - 1 - p);
+      out[0] = new OffHeapIntLeaf(arena, newLeft);
+      out[1] = new OffHeapIntLeaf(arena, newRight);
+      return out;
+    }
+
+    final OffHeapIntLeaf rightLeaf = (OffHeapIntLeaf) right;
+    if(rightLeaf != null && rightLeaf.arity() > OffHeapIntArray.MIN_REGION) {
+      // steal from the right neighbor
+      final int[] rvals = rightLeaf.values();
+      final int r = rvals.length, diff = r - OffHeapIntArray.MIN_REGION, move = (diff + 1) / 2;
+      final int ll = n - 1 + move, rl = r - move;
+      final int[] newLeft = new int[ll], newRight = new int[rl];
+
+      System.arraycopy(values, 0, newLeft, 0, p);
+      System.arraycopy(values, p + 1, newLeft, p, n - 1 - p);
+      System.arraycopy(rvals, 0, newLeft, n - 1, move);
+      System.arraycopy(rvals, move, newRight, 0, rl);
+      out[1] = new OffHeapIntLeaf(arena, newLeft);
+      out[2] = new OffHeapIntLeaf(arena, newRight);
+      return out;
+    }
+
+    if(left != null) {
+      // merge with left neighbor
+      final int[] lvals = ((OffHeapIntLeaf) left).values();
+      final int l = lvals.length, r = n;
+      final int[] vals = new int[l + r - 1];
+      System.arraycopy(lvals, 0, vals, 0, l);
+      System.arraycopy(values, 0, vals, l, p);
+      System.arraycopy(values, p + 1, vals, l + p, r - 1 - p);
+      out[0] = new OffHeapIntLeaf(arena, vals);
+      out[1] = null;
+      return out;
+    }
+
+    if(right != null) {
+      // merge with right neighbor
+      final int[] rvals = ((OffHeapIntLeaf) right).values();
+      final int l = n, r = rvals.length;
+      final int[] vals = new int[l - 1 + r];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, l - 1 - p);
+      System.arraycopy(rvals, 0, vals, l - 1, r);
+      out[1] = null;
+      out[2] = new OffHeapIntLeaf(arena, vals);
+      return out;
+    }
+
+    // underflow
+    final int[] vals = new int[n - 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+    out[1] = new PartialOffHeapIntLeaf(arena, vals);
+    return out;
+  }
+
+  @Override
+  public int append(final NodeLike<Integer, Integer>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[pos] = this;
+      return 1;
+    }
+
+    final NodeLike<Integer, Integer> left = nodes[pos - 1];
+    if(!(left instanceof PartialOffHeapIntLeaf)) {
+      nodes[pos] = this;
+      return pos + 1;
+    }
+
+    final int[] ls = ((PartialOffHeapIntLeaf) left).elems, rs = values();
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= OffHeapIntArray.MAX_REGION) {
+      // merge into one node
+      final int[] vals = new int[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new OffHeapIntLeaf(arena, vals);
+      return pos;
+    }
+
+    // split into two
+    final int ll = n / 2, rl = n - ll, move = r - rl;
+    final int[] newLeft = new int[ll], newRight = new int[rl];
+    System.arraycopy(ls, 0, newLeft, 0, l);
+    System.arraycopy(rs, 0, newLeft, l, move);
+    System.arraycopy(rs, move, newRight, 0, rl);
+    nodes[pos - 1] = new OffHeapIntLeaf(arena, newLeft);
+    nodes[pos] = new OffHeapIntLeaf(arena, newRight);
+    return pos + 1;
+  }
+
+  @Override
+  public NodeLike<Integer, Integer> slice(final long off, final long size) {
+    final int p = (int) off, n = (int) size;
+    final int[] out = new int[n];
+    copy(p, out, 0, n);
+    return n < OffHeapIntArray.MIN_REGION ? new PartialOffHeapIntLeaf(arena, out)
+        : new OffHeapIntLeaf(arena, out);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '(' + size() + ')' + Arrays.toString(values());
+  }
+
+  @Override
+  public long checkInvariants() {
+    if(length < OffHeapIntArray.MIN_REGION || length > OffHeapIntArray.MAX_REGION)
+      throw new AssertionError("Wrong " + getClass().getSimpleName() + " size: " + length);
+    return length;
+  }
+
+  @Override
+  public int arity() {
+    return length;
+  }
+
+  @Override
+  public Integer getSub(final int index) {
+    return get(index);
+  }
+}
@@ -0,0 +1,65 @@
+package de.woerteler.persistent.array.integer;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A partial leaf of an {@link OffHeapIntArray} containing fewer elements than required in a
+ * leaf. It only exists temporarily, so its elements are kept on the heap.
+ *
+ * @author Leo Woerteler
+ */
+final class PartialOffHeapIntLeaf implements NodeLike<Integer, Integer> {
+  /** Arena for the leaves created from this partial leaf. */
+  private final IntArena arena;
+  /** The elements. */
+  final int[] elems;
+
+  /**
+   * Constructor.
+   * @param arena arena for the leaves created from this partial leaf
+   * @param elems the elements
+   */
+  PartialOffHeapIntLeaf(final IntArena arena, final int[] elems) {
+    this.arena = arena;
+    this.elems = elems;
+  }
+
+  @Override
+  public int append(final NodeLike<Integer, Integer>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[0] = this;
+      return 1;
+    }
+
+    final NodeLike<Integer, Integer> left = nodes[pos - 1];
+    if(left instanceof PartialOffHeapIntLeaf) {
+      final int[] ls = ((PartialOffHeapIntLeaf) left).elems, rs = elems;
+      final int l = ls.length, r = rs.length, n = l + r;
+      final int[] vals = new int[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = n < OffHeapIntArray.MIN_REGION ? new PartialOffHeapIntLeaf(arena, vals)
+          : new OffHeapIntLeaf(arena, vals);
+      return pos;
+    }
+
+    final int[] ls = ((OffHeapIntLeaf) left).values(), rs = elems;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= OffHeapIntArray.MAX_REGION) {
+      final int[] vals = new int[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new OffHeapIntLeaf(arena, vals);
+      return pos;
+    }
+
+    final int ll = n / 2, rl = n - ll, move = l - ll;
+    final int[] newLeft = new int[ll], newRight = new int[rl];
+    System.arraycopy(ls, 0, newLeft, 0, ll);
+    System.arraycopy(ls, ll, newRight, 0, move);
+    System.arraycopy(rs, 0, newRight, move, r);
+    nodes[pos - 1] = new OffHeapIntLeaf(arena, newLeft);
+    nodes[pos] = new OffHeapIntLeaf(arena, newRight);
+    return pos + 1;
+  }
+}
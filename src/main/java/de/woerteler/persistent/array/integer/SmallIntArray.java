@@ -1,6 +1,7 @@
 package de.woerteler.persistent.array.integer;
 
 import java.util.*;
+import java.util.function.*;
 
 import de.woerteler.persistent.array.*;
 
@@ -23,10 +24,10 @@ final class SmallIntArray extends IntArray {
   }
 
   @Override
-  public IntArray cons(final Integer head) {
+  public IntArray consInt(final int head) {
     if(elems.length < MAX_SMALL) {
       final int[] newElems = slice(elems, -1, elems.length);
-      newElems[0] = head.intValue();
+      newElems[0] = head;
       return new SmallIntArray(newElems);
     }
 
@@ -37,7 +38,7 @@ final class SmallIntArray extends IntArray {
   }
 
   @Override
-  public IntArray snoc(final Integer last) {
+  public IntArray snocInt(final int last) {
     if(elems.length < MAX_SMALL) {
       final int[] newElems = slice(elems, 0, elems.length + 1);
       newElems[newElems.length - 1] = last;
@@ -51,7 +52,7 @@ final class SmallIntArray extends IntArray {
   }
 
   @Override
-  public Integer get(final long index) {
+  public int getInt(final long index) {
     // index to small?
     if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
 
@@ -69,7 +70,7 @@ final class SmallIntArray extends IntArray {
   @Override
   public Array<Integer> concat(final Array<Integer> seq) {
     if(seq.isEmpty()) return this;
-    if(seq instanceof IntArray) ((IntArray) seq).consSmall(elems);
+    if(seq instanceof IntArray) return ((IntArray) seq).consSmall(elems);
     Array<Integer> curr = seq;
     for(int i = elems.length; --i >= 0;) curr = curr.cons(elems[i]);
     return curr;
@@ -126,6 +127,16 @@ final class SmallIntArray extends IntArray {
     return new DeepIntArray(slice(out, 0, MIN_DIGIT), slice(out, MIN_DIGIT, n + 1));
   }
 
+  @Override
+  public IntArray updateInt(final long pos, final IntUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos;
+    final int[] out = elems.clone();
+    out[p] = fun.applyAsInt(elems[p]);
+    return new SmallIntArray(out);
+  }
+
   @Override
   public IntArray remove(final long pos) {
     if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
@@ -206,6 +217,27 @@ final class SmallIntArray extends IntArray {
     };
   }
 
+  @Override
+  void copy(final long from, final int[] dst, final int pos, final int len) {
+    System.arraycopy(elems, (int) from, dst, pos, len);
+  }
+
+  @Override
+  public IntArray mapInt(final IntUnaryOperator fun) {
+    return new SmallIntArray(map(elems, fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<int[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return chunk.apply(elems);
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<int[]> action) {
+    action.accept(elems, 0, elems.length);
+  }
+
   @Override
   void checkInvariants() {
     final int n = elems.length;
@@ -0,0 +1,135 @@
+package de.woerteler.persistent.array.longs;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * The empty array.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class EmptyLongArray<E> extends LongArray {
+  /** The empty array. */
+  static final EmptyLongArray<?> INSTANCE = new EmptyLongArray<>();
+
+  /** Hidden constructor. */
+  private EmptyLongArray() {
+  }
+
+  @Override
+  public LongArray consLong(final long elem) {
+    return new SmallLongArray(new long[] { elem });
+  }
+
+  @Override
+  public LongArray snocLong(final long elem) {
+    return new SmallLongArray(new long[] { elem });
+  }
+
+  @Override
+  public long getLong(final long index) {
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public long size() {
+    return 0;
+  }
+
+  @Override
+  public Array<Long> concat(final Array<Long> seq) {
+    return seq;
+  }
+
+  @Override
+  public Long head() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public Long last() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public LongArray init() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public LongArray tail() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public LongArray subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > 0)
+      throw new IndexOutOfBoundsException("end out of bounds: " + (pos + len) + " > 0");
+    return this;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return true;
+  }
+
+  @Override
+  public LongArray reverse() {
+    return this;
+  }
+
+  @Override
+  public LongArray insertBefore(final long pos, final Long val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > 0) throw new IndexOutOfBoundsException("position too big: " + pos);
+    return new SmallLongArray(new long[] { val.longValue() });
+  }
+
+  @Override
+  public LongArray updateLong(final long pos, final LongUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public LongArray remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public ListIterator<Long> listIterator(final long start) {
+    return Collections.emptyListIterator();
+  }
+
+  @Override
+  public LongArray mapLong(final LongUnaryOperator fun) {
+    return this;
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<long[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return empty;
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<long[]> action) {
+    // no chunks
+  }
+
+  @Override
+  void checkInvariants() {
+    // nothing can go wrong
+  }
+
+  @Override
+  LongArray consSmall(final long[] vals) {
+    return new SmallLongArray(vals);
+  }
+}
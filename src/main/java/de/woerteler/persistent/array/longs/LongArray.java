@@ -0,0 +1,326 @@
+package de.woerteler.persistent.array.longs;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An array storing primitive longs.
+ *
+ * @author Leo Woerteler
+ */
+public abstract class LongArray extends Array<Long> {
+  /** Minimum size of a long leaf. */
+  static final int MIN_LEAF = 8;
+  /** Maximum size of a long leaf. */
+  static final int MAX_LEAF = 2 * MIN_LEAF - 1;
+  /** Minimum number of elements in a digit. */
+  static final int MIN_DIGIT = MIN_LEAF / 2;
+  /** Maximum number of elements in a digit. */
+  static final int MAX_DIGIT = MAX_LEAF + MIN_DIGIT;
+  /** Maximum size of a small array. */
+  static final int MAX_SMALL = 2 * MIN_DIGIT - 1;
+
+  /**
+   * The empty sequence.
+   * Running time: <i>O(1)</i> and no allocation
+   * @param <E> element type
+   * @return (unique) instance of an empty sequence
+   */
+  public static <E> LongArray empty() {
+    return EmptyLongArray.INSTANCE;
+  }
+
+  /**
+   * Creates a singleton array containing the given element.
+   * @param elem the contained element
+   * @return the singleton array
+   */
+  public static LongArray singleton(final long elem) {
+    return new SmallLongArray(new long[] { elem });
+  }
+
+  /**
+   * Creates an array containing the given elements.
+   * @param elems elements
+   * @return the resulting array
+   */
+  public static LongArray from(final long... elems) {
+    LongArray arr = LongArray.empty();
+    for(final long i : elems) arr = arr.snocLong(i);
+    return arr;
+  }
+
+  /**
+   * Creates an array containing the elements from the given {@link Iterable}.
+   * @param iter the iterable
+   * @return the resulting array
+   */
+  public static LongArray from(final Iterable<Long> iter) {
+    LongArray arr = LongArray.empty();
+    for(final Long i : iter) arr = arr.snoc(i);
+    return arr;
+  }
+
+  /**
+   * Creates an array containing the elements from the given {@link Iterator}.
+   * @param iter the iterator
+   * @return the resulting array
+   */
+  public static LongArray from(final Iterator<Long> iter) {
+    LongArray arr = LongArray.empty();
+    while(iter.hasNext()) arr = arr.snoc(iter.next());
+    return arr;
+  }
+
+  @Override
+  public final LongArray cons(final Long elem) {
+    return consLong(elem);
+  }
+
+  @Override
+  public final LongArray snoc(final Long elem) {
+    return snocLong(elem);
+  }
+
+  @Override
+  public final Long get(final long index) {
+    return getLong(index);
+  }
+
+  @Override
+  public final LongArray set(final long pos, final Long val) {
+    return setLong(pos, val);
+  }
+
+  @Override
+  public final LongArray update(final long pos, final UnaryOperator<Long> fun) {
+    return updateLong(pos, fun::apply);
+  }
+
+  /**
+   * Prepends a primitive {@code long} to the front of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to prepend
+   * @return resulting array
+   */
+  public abstract LongArray consLong(final long elem);
+
+  /**
+   * Appends a primitive {@code long} to the back of this array.
+   * Running time: <i>O(1)*</i>
+   * @param elem element to append
+   * @return resulting array
+   */
+  public abstract LongArray snocLong(final long elem);
+
+  /**
+   * Gets the element at the given position in this array without boxing it.
+   * Running time: <i>O(log n)</i>
+   * @param index index of the element to get
+   * @return the corresponding element
+   * @throws IndexOutOfBoundsException if the index is smaller that {@code 0}
+   *             or {@code >=} the {@link #size()} of this array
+   */
+  public abstract long getLong(final long index);
+
+  /**
+   * Replaces the element at the given position in this array with a primitive {@code long}.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param val new element
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public final LongArray setLong(final long pos, final long val) {
+    return updateLong(pos, old -> val);
+  }
+
+  /**
+   * Replaces the element at the given position in this array with the result of applying the
+   * given function to it.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return resulting array
+   * @throws IndexOutOfBoundsException if {@code pos < 0 || pos >= this.size()} holds
+   */
+  public abstract LongArray updateLong(final long pos, final LongUnaryOperator fun);
+
+  @Override
+  public abstract LongArray init();
+
+  @Override
+  public abstract LongArray tail();
+
+  @Override
+  public abstract LongArray subArray(final long pos, final long len);
+
+  @Override
+  public abstract LongArray reverse();
+
+  @Override
+  public abstract LongArray insertBefore(final long pos, final Long val);
+
+  @Override
+  public abstract LongArray remove(final long pos);
+
+  /**
+   * Calls the given action for consecutive chunks of the elements of this array, from left to
+   * right. The chunks are the digits and leaves of the tree, so there are only
+   * <i>O(n / MIN_LEAF)</i> calls.
+   * Running time: <i>O(n)</i>
+   * @param action action receiving the chunks, which must not be modified
+   */
+  public abstract void forEachChunk(final ChunkConsumer<long[]> action);
+
+  /**
+   * Calls the given action for every element of this array without boxing it.
+   * Running time: <i>O(n)</i>
+   * @param action action to call
+   */
+  public final void forEachLong(final LongConsumer action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  @Override
+  public final void forEach(final Consumer<? super Long> action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept(chunk[i]);
+    });
+  }
+
+  /**
+   * Creates an array of the same shape as this one containing the results of applying the
+   * given function to the elements of this array, without boxing them. Large arrays are
+   * processed in parallel, so the function must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  public abstract LongArray mapLong(final LongUnaryOperator fun);
+
+  /**
+   * Creates an {@link ObjectArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param <R> result type
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  public final <R> ObjectArray<R> mapToObj(final LongFunction<? extends R> fun) {
+    return foldChunks(ObjectArray.<R>empty(), chunk -> {
+      final int n = chunk.length;
+      final R[] out = (R[]) new Object[n];
+      for(int i = 0; i < n; i++) out[i] = fun.apply(chunk[i]);
+      return ObjectArray.from(out);
+    }, (a, b) -> (ObjectArray<R>) a.concat(b));
+  }
+
+  @Override
+  public final <R> ObjectArray<R> map(final Function<? super Long, ? extends R> fun) {
+    return mapToObj(fun::apply);
+  }
+
+  /**
+   * Creates an array containing only the elements of this array that satisfy the given
+   * predicate, without boxing them. Large arrays are processed in parallel, so the predicate
+   * must be thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param pred predicate to test
+   * @return array of the matching elements
+   */
+  public final LongArray filterLong(final LongPredicate pred) {
+    return foldChunks(LongArray.empty(), chunk -> {
+      final long[] out = new long[chunk.length];
+      int n = 0;
+      for(final long elem : chunk) if(pred.test(elem)) out[n++] = elem;
+      return from(n == out.length ? out : Arrays.copyOf(out, n));
+    }, (a, b) -> (LongArray) a.concat(b));
+  }
+
+  @Override
+  public final LongArray filter(final Predicate<? super Long> pred) {
+    return filterLong(pred::test);
+  }
+
+  /**
+   * Applies the given function to the digits and leaves of this array and combines the results
+   * from left to right. The leaves of the middle tree are processed in parallel, see
+   * {@link FingerTree#foldLeaves(Object, Function, BinaryOperator)}.
+   * @param <R> result type
+   * @param empty result for the empty array
+   * @param chunk function applied to the digits and leaves, which must not be modified
+   * @param combine associative function combining adjacent results
+   * @return the combined result
+   */
+  abstract <R> R foldChunks(final R empty, final Function<long[], R> chunk,
+      final BinaryOperator<R> combine);
+
+  /**
+   * Prepends the given elements to this array.
+   * @param vals values, with length at most {@link SmallLongArray#MAX_SMALL}
+   * @return resulting array
+   */
+  abstract LongArray consSmall(final long[] vals);
+
+  /**
+   * Returns an array containing the values at the indices {@code from} to {@code to - 1} in
+   * the given array. Its length is always {@code to - from}. If {@code from} is smaller than zero,
+   * the first {@code -from} entries in the resulting array are {@code null}.
+   * If {@code to > arr.length} then the last {@code to - arr.length} entries are {@code null}.
+   * If {@code from == 0 && to == arr.length}, the original array is returned.
+   * @param arr input array
+   * @param from first index, inclusive (may be negative)
+   * @param to last index, exclusive (may be greater than {@code arr.length})
+   * @return resulting array
+   */
+  static final long[] slice(final long[] arr, final int from, final int to) {
+    if(from == 0 && to == arr.length) return arr;
+    final long[] out = new long[to - from];
+    final int in0 = Math.max(0, from), in1 = Math.min(to, arr.length);
+    final int out0 = Math.max(-from, 0);
+    System.arraycopy(arr, in0, out, out0, in1 - in0);
+    return out;
+  }
+
+  /**
+   * Concatenates the two long arrays.
+   * @param as first array
+   * @param bs second array
+   * @return resulting array
+   */
+  static final long[] concat(final long[] as, final long[] bs) {
+    final int l = as.length, r = bs.length, n = l + r;
+    final long[] out = new long[n];
+    System.arraycopy(as, 0, out, 0, l);
+    System.arraycopy(bs, 0, out, l, r);
+    return out;
+  }
+
+  /**
+   * Applies the given function to all elements of the given array.
+   * @param vals the elements
+   * @param fun function to apply
+   * @return array of the results
+   */
+  static final long[] map(final long[] vals, final LongUnaryOperator fun) {
+    final int n = vals.length;
+    final long[] out = new long[n];
+    for(int i = 0; i < n; i++) out[i] = fun.applyAsLong(vals[i]);
+    return out;
+  }
+
+  /**
+   * Checks that this array's implementation does not violate any invariants.
+   * @throws AssertionError if an invariant was violated
+   */
+  abstract void checkInvariants();
+}
@@ -0,0 +1,140 @@
+package de.woerteler.persistent.array.longs;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A builder for creating an {@link LongArray} by prepending and appending elements.
+ *
+ * @author Leo Woerteler
+ */
+public final class LongArrayBuilder {
+  /** Capacity of the root. */
+  private static final int CAP = 2 * LongArray.MAX_DIGIT;
+  /** Size of inner nodes. */
+  private static final int NODE_SIZE = (LongArray.MIN_LEAF + LongArray.MAX_LEAF + 1) / 2;
+
+  /** Ring buffer containing the root-level elements. */
+  private final long[] vals = new long[CAP];
+
+  /** Number of elements in left digit. */
+  private int inLeft;
+  /** Middle between left and right digit in the buffer. */
+  private int mid = CAP / 2;
+  /** Number of elements in right digit. */
+  private int inRight;
+  /** Builder for the middle tree. */
+  private final FingerTreeBuilder<Long> tree = new FingerTreeBuilder<>();
+
+  /**
+   * Adds an element to the start of the array.
+   * @param elem element to add
+   */
+  public void prepend(final long elem) {
+    if(inLeft < LongArray.MAX_DIGIT) {
+      // just insert the element
+      vals[(mid - inLeft + CAP - 1) % CAP] = elem;
+      inLeft++;
+    } else if(tree.isEmpty() && inRight < LongArray.MAX_DIGIT) {
+      // move the middle to the left
+      mid = (mid + CAP - 1) % CAP;
+      vals[(mid - inLeft + CAP) % CAP] = elem;
+      inRight++;
+    } else {
+      // push leaf node into the tree
+      final long[] leaf = new long[NODE_SIZE];
+      final int start = (mid - NODE_SIZE + CAP) % CAP;
+      for(int i = 0; i < NODE_SIZE; i++) leaf[i] = vals[(start + i) % CAP];
+      tree.prepend(new LongLeaf(leaf));
+
+      // move rest of the nodes to the right
+      final int rest = inLeft - NODE_SIZE;
+      final int p0 = (mid - inLeft + CAP) % CAP;
+      for(int i = 0; i < rest; i++) {
+        final int from = (p0 + i) % CAP, to = (from + NODE_SIZE) % CAP;
+        vals[to] = vals[from];
+      }
+
+      // insert the element
+      vals[(mid - rest + CAP - 1) % CAP] = elem;
+      inLeft = rest + 1;
+    }
+  }
+
+  /**
+   * Adds an element to the end of the array.
+   * @param elem element to add
+   */
+  public void append(final long elem) {
+    if(inRight < LongArray.MAX_DIGIT) {
+      // just insert the element
+      vals[(mid + inRight) % CAP] = elem;
+      inRight++;
+    } else if(tree.isEmpty() && inLeft < LongArray.MAX_DIGIT) {
+      // move the middle to the right
+      mid = (mid + 1) % CAP;
+      vals[(mid + inRight + CAP - 1) % CAP] = elem;
+      inLeft++;
+    } else {
+      // push leaf node into the tree
+      final long[] leaf = new long[NODE_SIZE];
+      final int start = mid;
+      for(int i = 0; i < NODE_SIZE; i++) leaf[i] = vals[(start + i) % CAP];
+      tree.append(new LongLeaf(leaf));
+
+      // move rest of the nodes to the right
+      final int rest = inRight - NODE_SIZE;
+      for(int i = 0; i < rest; i++) {
+        final int to = (mid + i) % CAP, from = (to + NODE_SIZE) % CAP;
+        vals[to] = vals[from];
+      }
+
+      // insert the element
+      vals[(mid + rest) % CAP] = elem;
+      inRight = rest + 1;
+    }
+  }
+
+  /**
+   * Creates an {@link LongArray} containing the elements of this builder.
+   * @return resulting array
+   */
+  public LongArray freeze() {
+    final int n = inLeft + inRight;
+    if(n == 0) return LongArray.empty();
+
+    final int start = (mid - inLeft + CAP) % CAP;
+    if(n <= LongArray.MAX_SMALL) {
+      // small long array, fill directly
+      final long[] small = new long[n];
+      for(int i = 0; i < n; i++) small[i] = vals[(start + i) % CAP];
+      return new SmallLongArray(small);
+    }
+
+    // deep array
+    final int a = tree.isEmpty() ? n / 2 : inLeft, b = n - a;
+    final long[] ls = new long[a], rs = new long[b];
+    for(int i = 0; i < a; i++) ls[i] = vals[(start + i) % CAP];
+    for(int i = a; i < n; i++) rs[i - a] = vals[(start + i) % CAP];
+    return new DeepLongArray(ls, tree.freeze(), rs);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append('[');
+    if(tree.isEmpty()) {
+      final int n = inLeft + inRight, first = (mid - inLeft + CAP) % CAP;
+      if(n > 0) {
+        sb.append(vals[first]);
+        for(int i = 1; i < n; i++) sb.append(", ").append(vals[(first + i) % CAP]);
+      }
+      return sb.append(']').toString();
+    }
+
+    final int first = (mid - inLeft + CAP) % CAP;
+    sb.append(vals[first]);
+    for(int i = 1; i < inLeft; i++) sb.append(", ").append(vals[(first + i) % CAP]);
+    for(final Long val : tree) sb.append(", ").append(val);
+    for(int i = 0; i < inRight; i++) sb.append(", ").append(vals[(mid + i) % CAP]);
+    return sb.append(']').toString();
+  }
+}
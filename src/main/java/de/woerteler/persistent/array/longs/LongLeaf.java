@@ -0,0 +1,250 @@
+package de.woerteler.persistent.array.longs;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A leaf node directly containing primitive longs.
+ *
+ * @author Leo Woerteler
+ */
+final class LongLeaf implements Node<Long, Long> {
+  /** Elements stored in this leaf node. */
+  final long[] values;
+
+  /**
+   * Constructor.
+   * @param values the values
+   */
+  LongLeaf(final long[] values) {
+    this.values = values;
+    assert values.length >= LongArray.MIN_LEAF && values.length <= LongArray.MAX_LEAF;
+  }
+
+  @Override
+  public long size() {
+    return values.length;
+  }
+
+  @Override
+  public LongLeaf reverse() {
+    final int n = values.length;
+    final long[] out = new long[n];
+    for(int i = 0; i < n; i++) out[i] = values[n - 1 - i];
+    return new LongLeaf(out);
+  }
+
+  @Override
+  public LongLeaf update(final long pos, final UnaryOperator<Long> fun) {
+    final int p = (int) pos;
+    final long[] out = values.clone();
+    out[p] = fun.apply(values[p]);
+    return new LongLeaf(out);
+  }
+
+  @Override
+  public boolean insert(final Node<Long, Long>[] siblings,
+      final long pos, final Long val) {
+    final int p = (int) pos, n = values.length;
+    final long v = val;
+    final long[] vals = new long[n + 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    vals[p] = v;
+    System.arraycopy(values, p, vals, p + 1, n - p);
+
+    if(n < LongArray.MAX_LEAF) {
+      // there is capacity
+      siblings[1] = new LongLeaf(vals);
+      return false;
+    }
+
+    final LongLeaf left = (LongLeaf) siblings[0];
+    if(left != null && left.values.length < LongArray.MAX_LEAF) {
+      // push elements to the left sibling
+      final long[] lvals = left.values;
+      final int l = lvals.length, diff = LongArray.MAX_LEAF - l, move = (diff + 1) / 2;
+      final long[] newLeft = new long[l + move], newRight = new long[n + 1 - move];
+      System.arraycopy(lvals, 0, newLeft, 0, l);
+      System.arraycopy(vals, 0, newLeft, l, move);
+      System.arraycopy(vals, move, newRight, 0, newRight.length);
+      siblings[0] = new LongLeaf(newLeft);
+      siblings[1] = new LongLeaf(newRight);
+      return false;
+    }
+
+    final LongLeaf right = (LongLeaf) siblings[2];
+    if(right != null && right.values.length < LongArray.MAX_LEAF) {
+      // push elements to the right sibling
+      final long[] rvals = right.values;
+      final int r = rvals.length, diff = LongArray.MAX_LEAF - r, move = (diff + 1) / 2,
+          l = n + 1 - move;
+      final long[] newLeft = new long[l], newRight = new long[r + move];
+      System.arraycopy(vals, 0, newLeft, 0, l);
+      System.arraycopy(vals, l, newRight, 0, move);
+      System.arraycopy(rvals, 0, newRight, move, r);
+      siblings[1] = new LongLeaf(newLeft);
+      siblings[2] = new LongLeaf(newRight);
+      return false;
+    }
+
+    // split the node
+    final int l = vals.length / 2, r = vals.length - l;
+    final long[] newLeft = new long[l], newRight = new long[r];
+    System.arraycopy(vals, 0, newLeft, 0, l);
+    System.arraycopy(vals, l, newRight, 0, r);
+    siblings[3] = siblings[2];
+    siblings[1] = new LongLeaf(newLeft);
+    siblings[2] = new LongLeaf(newRight);
+    return true;
+  }
+
+  @Override
+  public NodeLike<Long, Long>[] remove(final Node<Long, Long> left,
+      final Node<Long, Long> right, final long pos) {
+    final int p = (int) pos, n = values.length;
+    @SuppressWarnings("unchecked")
+    final NodeLike<Long, Long>[] out = new NodeLike[] { left, null, right };
+    if(n > LongArray.MIN_LEAF) {
+      // we do not have to split
+      final long[] vals = new long[n - 1];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+      out[1] = new LongLeaf(vals);
+      return out;
+    }
+
+    final LongLeaf leftLeaf = (LongLeaf) left;
+    if(leftLeaf != null && leftLeaf.arity() > LongArray.MIN_LEAF) {
+      // steal from the left neighbor
+      final long[] lvals = leftLeaf.values;
+      final int l = lvals.length, diff = l - LongArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = l - move, rl = n - 1 + move;
+      final long[] newLeft = new long[ll], newRight = new long[rl];
+
+      System.arraycopy(lvals, 0, newLeft, 0, ll);
+      System.arraycopy(lvals, ll, newRight, 0, move);
+      System.arraycopy(values, 0, newRight, move, p);
+      System.arraycopy(values, p + 1, newRight, move + p, n - 1 - p);
+      out[0] = new LongLeaf(newLeft);
+      out[1] = new LongLeaf(newRight);
+      return out;
+    }
+
+    final LongLeaf rightLeaf = (LongLeaf) right;
+    if(rightLeaf != null && rightLeaf.arity() > LongArray.MIN_LEAF) {
+      // steal from the right neighbor
+      final long[] rvals = rightLeaf.values;
+      final int r = rvals.length, diff = r - LongArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = n - 1 + move, rl = r - move;
+      final long[] newLeft = new long[ll], newRight = new long[rl];
+
+      System.arraycopy(values, 0, newLeft, 0, p);
+      System.arraycopy(values, p + 1, newLeft, p, n - 1 - p);
+      System.arraycopy(rvals, 0, newLeft, n - 1, move);
+      System.arraycopy(rvals, move, newRight, 0, rl);
+      out[1] = new LongLeaf(newLeft);
+      out[2] = new LongLeaf(newRight);
+      return out;
+    }
+
+    if(left != null) {
+      // merge with left neighbor
+      final long[] lvals = ((LongLeaf) left).values;
+      final int l = lvals.length, r = values.length;
+      final long[] vals = new long[l + r - 1];
+      System.arraycopy(lvals, 0, vals, 0, l);
+      System.arraycopy(values, 0, vals, l, p);
+      System.arraycopy(values, p + 1, vals, l + p, r - 1 - p);
+      out[0] = new LongLeaf(vals);
+      out[1] = null;
+      return out;
+    }
+
+    if(right != null) {
+      // merge with right neighbor
+      final long[] rvals = ((LongLeaf) right).values;
+      final int l = values.length, r = rvals.length;
+      final long[] vals = new long[l - 1 + r];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, l - 1 - p);
+      System.arraycopy(rvals, 0, vals, l - 1, r);
+      out[1] = null;
+      out[2] = new LongLeaf(vals);
+      return out;
+    }
+
+    // underflow
+    final long[] vals = new long[n - 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+    out[1] = new PartialLongLeaf(vals);
+    return out;
+  }
+
+  @Override
+  public int append(final NodeLike<Long, Long>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[pos] = this;
+      return 1;
+    }
+
+    final NodeLike<Long, Long> left = nodes[pos - 1];
+    if(!(left instanceof PartialLongLeaf)) {
+      nodes[pos] = this;
+      return pos + 1;
+    }
+
+    final long[] ls = ((PartialLongLeaf) left).elems, rs = values;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= LongArray.MAX_LEAF) {
+      // merge into one node
+      final long[] vals = new long[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new LongLeaf(vals);
+      return pos;
+    }
+
+    // split into two
+    final int ll = n / 2, rl = n - ll, move = r - rl;
+    final long[] newLeft = new long[ll], newRight = new long[rl];
+    System.arraycopy(ls, 0, newLeft, 0, l);
+    System.arraycopy(rs, 0, newLeft, l, move);
+    System.arraycopy(rs, move, newRight, 0, rl);
+    nodes[pos - 1] = new LongLeaf(newLeft);
+    nodes[pos] = new LongLeaf(newRight);
+    return pos + 1;
+  }
+
+  @Override
+  public NodeLike<Long, Long> slice(final long off, final long size) {
+    final int p = (int) off, n = (int) size;
+    final long[] out = new long[n];
+    System.arraycopy(values, p, out, 0, n);
+    return n < LongArray.MIN_LEAF ? new PartialLongLeaf(out) : new LongLeaf(out);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '(' + size() + ')' + Arrays.toString(values);
+  }
+
+  @Override
+  public long checkInvariants() {
+    if(values.length < LongArray.MIN_LEAF || values.length > LongArray.MAX_LEAF)
+      throw new AssertionError("Wrong " + getClass().getSimpleName() + " size: " + values.length);
+    return values.length;
+  }
+
+  @Override
+  public int arity() {
+    return values.length;
+  }
+
+  @Override
+  public Long getSub(final int index) {
+    return values[index];
+  }
+}
@@ -0,0 +1,59 @@
+package de.woerteler.persistent.array.longs;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A partial shallow node containing fewer elements than required in a node.
+ *
+ * @author Leo Woerteler
+ */
+final class PartialLongLeaf implements NodeLike<Long, Long> {
+  /** The single element. */
+  final long[] elems;
+
+  /**
+   * Constructor.
+   * @param elems the elements
+   */
+  PartialLongLeaf(final long[] elems) {
+    this.elems = elems;
+  }
+
+  @Override
+  public int append(final NodeLike<Long, Long>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[0] = this;
+      return 1;
+    }
+
+    final NodeLike<Long, Long> left = nodes[pos - 1];
+    if(left instanceof PartialLongLeaf) {
+      final long[] ls = ((PartialLongLeaf) left).elems, rs = elems;
+      final int l = ls.length, r = rs.length, n = l + r;
+      final long[] vals = new long[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = n < LongArray.MIN_LEAF ? new PartialLongLeaf(vals) : new LongLeaf(vals);
+      return pos;
+    }
+
+    final long[] ls = ((LongLeaf) left).values, rs = elems;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= LongArray.MAX_LEAF) {
+      final long[] vals = new long[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new LongLeaf(vals);
+      return pos;
+    }
+
+    final int ll = n / 2, rl = n - ll, move = l - ll;
+    final long[] newLeft = new long[ll], newRight = new long[rl];
+    System.arraycopy(ls, 0, newLeft, 0, ll);
+    System.arraycopy(ls, ll, newRight, 0, move);
+    System.arraycopy(rs, 0, newRight, move, r);
+    nodes[pos - 1] = new LongLeaf(newLeft);
+    nodes[pos] = new LongLeaf(newRight);
+    return pos + 1;
+  }
+}
@@ -0,0 +1,260 @@
+package de.woerteler.persistent.array.longs;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * A singleton array.
+ *
+ * @author Leo Woerteler
+ */
+final class SmallLongArray extends LongArray {
+  /** The elements. */
+  final long[] elems;
+
+  /**
+   * Constructor.
+   * @param elems elements
+   */
+  SmallLongArray(final long[] elems) {
+    this.elems = elems;
+    assert elems.length >= 1 && elems.length <= MAX_SMALL;
+  }
+
+  @Override
+  public LongArray consLong(final long head) {
+    if(elems.length < MAX_SMALL) {
+      final long[] newElems = slice(elems, -1, elems.length);
+      newElems[0] = head;
+      return new SmallLongArray(newElems);
+    }
+
+    final int mid = MIN_DIGIT - 1;
+    final long[] left = slice(elems, -1, mid), right = slice(elems, mid, elems.length);
+    left[0] = head;
+    return new DeepLongArray(left, right);
+  }
+
+  @Override
+  public LongArray snocLong(final long last) {
+    if(elems.length < MAX_SMALL) {
+      final long[] newElems = slice(elems, 0, elems.length + 1);
+      newElems[newElems.length - 1] = last;
+      return new SmallLongArray(newElems);
+    }
+
+    final long[] left = slice(elems, 0, MIN_DIGIT),
+        right = slice(elems, MIN_DIGIT, elems.length + 1);
+    right[right.length - 1] = last;
+    return new DeepLongArray(left, right);
+  }
+
+  @Override
+  public long getLong(final long index) {
+    // index to small?
+    if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
+
+    // index too big?
+    if(index >= elems.length) throw new IndexOutOfBoundsException(index + " >= " + elems.length);
+
+    return elems[(int) index];
+  }
+
+  @Override
+  public long size() {
+    return elems.length;
+  }
+
+  @Override
+  public Array<Long> concat(final Array<Long> seq) {
+    if(seq.isEmpty()) return this;
+    if(seq instanceof LongArray) return ((LongArray) seq).consSmall(elems);
+    Array<Long> curr = seq;
+    for(int i = elems.length; --i >= 0;) curr = curr.cons(elems[i]);
+    return curr;
+  }
+
+  @Override
+  public Long head() {
+    return elems[0];
+  }
+
+  @Override
+  public Long last() {
+    return elems[elems.length - 1];
+  }
+
+  @Override
+  public LongArray init() {
+    if(elems.length == 1) return empty();
+    return new SmallLongArray(slice(elems, 0, elems.length - 1));
+  }
+
+  @Override
+  public LongArray tail() {
+    if(elems.length == 1) return empty();
+    return new SmallLongArray(slice(elems, 1, elems.length));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+  @Override
+  public LongArray reverse() {
+    final int n = elems.length;
+    if(n == 1) return this;
+    final long[] es = new long[n];
+    for(int i = 0; i < n; i++) es[i] = elems[n - 1 - i];
+    return new SmallLongArray(es);
+  }
+
+  @Override
+  public LongArray insertBefore(final long pos, final Long val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    final int p = (int) pos, n = elems.length;
+    final long v = val;
+    final long[] out = new long[n + 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    out[p] = v;
+    System.arraycopy(elems, p, out, p + 1, n - p);
+
+    if(n < MAX_SMALL) return new SmallLongArray(out);
+    return new DeepLongArray(slice(out, 0, MIN_DIGIT), slice(out, MIN_DIGIT, n + 1));
+  }
+
+  @Override
+  public LongArray updateLong(final long pos, final LongUnaryOperator fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos;
+    final long[] out = elems.clone();
+    out[p] = fun.applyAsLong(elems[p]);
+    return new SmallLongArray(out);
+  }
+
+  @Override
+  public LongArray remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos, n = elems.length;
+    if(n == 1) return empty();
+
+    final long[] out = new long[n - 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    System.arraycopy(elems, p + 1, out, p, n - 1 - p);
+    return new SmallLongArray(out);
+  }
+
+  @Override
+  public LongArray subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > elems.length)
+      throw new IndexOutOfBoundsException("end out of bounds: "
+          + (pos + len) + " > " + elems.length);
+
+    final int p = (int) pos, n = (int) len;
+    return n == 0 ? LongArray.empty() : new SmallLongArray(slice(elems, p, p + n));
+  }
+
+  @Override
+  public ListIterator<Long> listIterator(final long start) {
+    if(start < 0 || start > elems.length) throw new IndexOutOfBoundsException("" + start);
+    return new ListIterator<Long>() {
+      private int index = (int) start;
+
+      @Override
+      public int nextIndex() {
+        return index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return index < elems.length;
+      }
+
+      @Override
+      public Long next() {
+        if(index >= elems.length) throw new NoSuchElementException();
+        return elems[index++];
+      }
+
+      @Override
+      public int previousIndex() {
+        return index - 1;
+      }
+
+      @Override
+      public boolean hasPrevious() {
+        return index > 0;
+      }
+
+      @Override
+      public Long previous() {
+        if(index <= 0) throw new NoSuchElementException();
+        return elems[--index];
+      }
+
+      @Override
+      public void set(final Long e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void add(final Long e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public LongArray mapLong(final LongUnaryOperator fun) {
+    return new SmallLongArray(map(elems, fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<long[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return chunk.apply(elems);
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<long[]> action) {
+    action.accept(elems, 0, elems.length);
+  }
+
+  @Override
+  void checkInvariants() {
+    final int n = elems.length;
+    if(n == 0) throw new AssertionError("Empty array in " + getClass().getSimpleName());
+    if(n > MAX_SMALL) throw new AssertionError("Array too big: " + n);
+  }
+
+  @Override
+  LongArray consSmall(final long[] left) {
+    final int l = left.length, r = elems.length, n = l + r;
+    if(Math.min(l, r) >= MIN_DIGIT) {
+      // both arrays can be used as digits
+      return new DeepLongArray(left, elems);
+    }
+
+    final long[] out = new long[n];
+    System.arraycopy(left, 0, out, 0, l);
+    System.arraycopy(elems, 0, out, l, r);
+    if(n <= MAX_SMALL) return new SmallLongArray(out);
+
+    final int mid = n / 2;
+    return new DeepLongArray(slice(out, 0, mid), slice(out, mid, n));
+  }
+}
@@ -0,0 +1,154 @@
+package de.woerteler.persistent.array.object;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.fingertree.*;
+import de.woerteler.persistent.io.*;
+
+/**
+ * The empty array.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class EmptyObjectArray<E> extends ObjectArray<E> {
+  /** The empty array. */
+  static final EmptyObjectArray<?> INSTANCE = new EmptyObjectArray<>();
+
+  /** Hidden constructor. */
+  private EmptyObjectArray() {
+  }
+
+  @Override
+  public ObjectArray<E> cons(final E elem) {
+    return new SmallObjectArray<>(new Object[] { elem });
+  }
+
+  @Override
+  public ObjectArray<E> snoc(final E elem) {
+    return new SmallObjectArray<>(new Object[] { elem });
+  }
+
+  @Override
+  public E get(final long index) {
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public long size() {
+    return 0;
+  }
+
+  @Override
+  public Array<E> concat(final Array<E> seq) {
+    return seq;
+  }
+
+  @Override
+  public E head() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public E last() {
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public ObjectArray<E> init() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public ObjectArray<E> tail() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public ObjectArray<E> subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > 0)
+      throw new IndexOutOfBoundsException("end out of bounds: " + (pos + len) + " > 0");
+    return this;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return true;
+  }
+
+  @Override
+  public ObjectArray<E> reverse() {
+    return this;
+  }
+
+  @Override
+  public ObjectArray<E> insertBefore(final long pos, final E val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > 0) throw new IndexOutOfBoundsException("position too big: " + pos);
+    return new SmallObjectArray<>(new Object[] { val });
+  }
+
+  @Override
+  public ObjectArray<E> update(final long pos, final UnaryOperator<E> fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public ObjectArray<E> remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    throw new IndexOutOfBoundsException("position too big: " + pos);
+  }
+
+  @Override
+  public ListIterator<E> listIterator(final long start) {
+    return Collections.emptyListIterator();
+  }
+
+  @Override
+  public <R> ObjectArray<R> map(final Function<? super E, ? extends R> fun) {
+    return empty();
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<Object[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return empty;
+  }
+
+  @Override
+  public <M> M measure(final Measure<? super E, M> measure) {
+    return measure.identity();
+  }
+
+  @Override
+  public <M> long search(final Measure<? super E, M> measure, final Predicate<? super M> pred) {
+    return -1;
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<Object[]> action) {
+    // no chunks
+  }
+
+  @Override
+  public void write(final SharingOutput out, final ValueCodec<? super E> codec)
+      throws IOException {
+    out.writeVarInt(EMPTY_TAG);
+  }
+
+  @Override
+  void checkInvariants() {
+    // nothing can go wrong
+  }
+
+  @Override
+  ObjectArray<E> consSmall(final Object[] vals) {
+    return new SmallObjectArray<>(vals);
+  }
+}
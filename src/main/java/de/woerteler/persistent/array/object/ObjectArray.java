@@ -1,30 +1,48 @@
 package de.woerteler.persistent.array.object;
 
+import java.io.*;
 import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.doubles.*;
+import de.woerteler.persistent.array.integer.*;
+import de.woerteler.persistent.array.longs.*;
 import de.woerteler.persistent.fingertree.*;
+import de.woerteler.persistent.io.*;
 
 /**
- * An array storing arbitrary objects.
+ * An array storing arbitrary objects. Like {@link de.woerteler.persistent.array.integer.IntArray},
+ * the elements are stored in chunks of {@link #MIN_LEAF} to {@link #MAX_LEAF} elements in the
+ * leaves of the middle tree and directly in the digits.
  *
  * @author Leo Woerteler
  * @param <E> element type
  */
-public final class ObjectArray<E> extends Array<E> {
-  /** Singleton instance of the empty array. */
-  private static final ObjectArray<?> EMPTY = new ObjectArray<>(FingerTree.empty());
+public abstract class ObjectArray<E> extends Array<E> {
+  /** Minimum size of an object leaf. */
+  static final int MIN_LEAF = 8;
+  /** Maximum size of an object leaf. */
+  static final int MAX_LEAF = 2 * MIN_LEAF - 1;
+  /** Minimum number of elements in a digit. */
+  static final int MIN_DIGIT = MIN_LEAF / 2;
+  /** Maximum number of elements in a digit. */
+  static final int MAX_DIGIT = MAX_LEAF + MIN_DIGIT;
+  /** Maximum size of a small array. */
+  static final int MAX_SMALL = 2 * MIN_DIGIT - 1;
+  /** Preferred size of leaves created in bulk. */
+  private static final int NODE_SIZE = (MIN_LEAF + MAX_LEAF + 1) / 2;
+  /** Minimum size of a spliterator that is drained in parallel. */
+  private static final int PARALLEL_SIZE = 1 << 15;
+
+  /** Serialization tag of the empty array. */
+  static final int EMPTY_TAG = 0;
+  /** Serialization tag of a small array. */
+  static final int SMALL_TAG = 1;
+  /** Serialization tag of a deep array. */
+  static final int DEEP_TAG = 2;
 
-  /** Root node. */
-  final FingerTree<E, E> root;
-
-  /**
-   * Constructor.
-   * @param root root node
-   */
-  ObjectArray(final FingerTree<E, E> root) {
-    this.root = root;
-  }
   /**
    * The empty sequence.
    * Running time: <i>O(1)</i> and no allocation
@@ -33,7 +51,7 @@ public final class ObjectArray<E> extends Array<E> {
    */
   @SuppressWarnings("unchecked")
   public static <E> ObjectArray<E> empty() {
-    return (ObjectArray<E>) EMPTY;
+    return (ObjectArray<E>) EmptyObjectArray.INSTANCE;
   }
 
   /**
@@ -43,21 +61,22 @@ public final class ObjectArray<E> extends Array<E> {
    * @return the singleton array
    */
   public static <E> ObjectArray<E> singleton(final E elem) {
-    return new ObjectArray<>(FingerTree.singleton(new Leaf<>(elem)));
+    return new SmallObjectArray<>(new Object[] { elem });
   }
 
   /**
-   * Creates an array containing the given elements.
+   * Creates an array containing the given elements. The tree is built bottom-up in a single pass.
+   * Running time: <i>O(n)</i>
    * @param <E> element type
    * @param elems elements
    * @return the resulting array
    */
   @SafeVarargs
   public static <E> ObjectArray<E> from(final E... elems) {
-    if(elems.length == 0) return empty();
-    final FingerTreeBuilder<E> builder = new FingerTreeBuilder<>();
-    for(final E e : elems) builder.append(new Leaf<>(e));
-    return new ObjectArray<>(builder.freeze());
+    final int n = elems.length;
+    final Object[] vals = new Object[n];
+    for(int i = 0; i < n; i++) vals[i] = elems[i];
+    return build(vals);
   }
 
   /**
@@ -67,231 +86,433 @@ public final class ObjectArray<E> extends Array<E> {
    * @return the resulting array
    */
   public static <E> ObjectArray<E> from(final Iterator<? extends E> iter) {
-    if(!iter.hasNext()) return empty();
-    final FingerTreeBuilder<E> builder = new FingerTreeBuilder<>();
-    do {
-      builder.append(new Leaf<E>(iter.next()));
-    } while(iter.hasNext());
-    return new ObjectArray<>(builder.freeze());
+    final ObjectArrayBuilder<E> builder = new ObjectArrayBuilder<>();
+    while(iter.hasNext()) builder.append(iter.next());
+    return builder.freeze();
   }
 
   /**
-   * Creates an array containing the elements returned by the given iterable.
+   * Creates an array containing the elements returned by the given iterable. The elements of a
+   * {@link Collection} are copied in bulk, see {@link #from(Object...)}.
    * @param <E> element type
    * @param iter element iterable
    * @return the resulting array
    */
   public static <E> ObjectArray<E> from(final Iterable<? extends E> iter) {
-    return from(iter.iterator());
+    return iter instanceof Collection ? build(((Collection<?>) iter).toArray())
+        : from(iter.iterator());
   }
 
-  @Override
-  public ObjectArray<E> cons(final E elem) {
-    return new ObjectArray<>(root.cons(new Leaf<>(elem)));
+  /**
+   * Creates an array containing the elements of the given spliterator. Large spliterators with a
+   * known size are drained in parallel, others are appended one by one.
+   * @param <E> element type
+   * @param spliter element spliterator
+   * @return the resulting array
+   */
+  public static <E> ObjectArray<E> from(final Spliterator<? extends E> spliter) {
+    final long size = spliter.getExactSizeIfKnown();
+    if(size < 0) {
+      final ObjectArrayBuilder<E> builder = new ObjectArrayBuilder<>();
+      spliter.forEachRemaining(builder::append);
+      return builder.freeze();
+    }
+    return build(StreamSupport.stream(spliter, size >= PARALLEL_SIZE).toArray());
   }
 
-  @Override
-  public ObjectArray<E> snoc(final E elem) {
-    return new ObjectArray<>(root.snoc(new Leaf<>(elem)));
+  /**
+   * Creates an array containing the given elements by cutting them into digits and leaves of
+   * equal size and building the middle tree bottom-up.
+   * @param <E> element type
+   * @param elems the elements, the array may be retained if its component type is
+   *   {@link Object}
+   * @return the resulting array
+   */
+  private static <E> ObjectArray<E> build(final Object[] elems) {
+    // Collection#toArray() may return an array of a subtype, which cannot store all elements
+    final Object[] vals = elems.getClass() == Object[].class ? elems
+        : copy(elems, 0, elems.length);
+    final int n = vals.length;
+    if(n == 0) return empty();
+    if(n <= MAX_SMALL) return new SmallObjectArray<>(vals);
+    if(n <= 2 * MAX_DIGIT) {
+      final int mid = n / 2;
+      return new DeepObjectArray<>(copy(vals, 0, mid), copy(vals, mid, n));
+    }
+
+    final int d = Math.min((MIN_DIGIT + MAX_DIGIT) / 2, (n - 2 * MIN_LEAF) / 2), m = n - 2 * d;
+    int k = (m + NODE_SIZE - 1) / NODE_SIZE;
+    while(m / k < MIN_LEAF) k--;
+    final int leaves = k;
+    final FingerTree<E, E> middle = FingerTree.build(leaves, m, i -> new ObjectLeaf<E>(
+        copy(vals, d + (int) ((long) m * i / leaves), d + (int) ((long) m * (i + 1) / leaves))));
+    return new DeepObjectArray<>(copy(vals, 0, d), middle, copy(vals, n - d, n));
   }
 
-  @Override
-  @SuppressWarnings("unchecked")
-  public Array<E> concat(final Array<E> other) {
-    if(this.isEmpty()) return other;
-    if(other.isEmpty()) return this;
-    final ObjectArray<E> right =
-        other instanceof ObjectArray ? (ObjectArray<E>) other : from(other);
-    return new ObjectArray<>(root.concat(new Node[0], 0, right.root));
+  /**
+   * Copies a range of the given array into a new array with component type {@link Object}, so
+   * that elements of any type can be stored in it later.
+   * @param vals the array
+   * @param from start of the range
+   * @param to end of the range
+   * @return copy of the range
+   */
+  private static Object[] copy(final Object[] vals, final int from, final int to) {
+    return Arrays.copyOfRange(vals, from, to, Object[].class);
   }
 
   @Override
-  public ObjectArray<E> init() {
-    return size() == 1 ? ObjectArray.<E>empty() : new ObjectArray<>(root.init());
-  }
+  public abstract ObjectArray<E> cons(final E elem);
 
   @Override
-  public ObjectArray<E> tail() {
-    return size() == 1 ? ObjectArray.<E>empty() : new ObjectArray<>(root.tail());
-  }
+  public abstract ObjectArray<E> snoc(final E elem);
 
   @Override
-  public ObjectArray<E> subArray(final long pos, final long len) {
-    if(pos < 0 || len < 0 || len > size() - pos) throw new IndexOutOfBoundsException();
-    if(len == 0) return empty();
-    if(len == size()) return this;
-    return new ObjectArray<E>(root.slice(pos, len).getTree());
-  }
+  public abstract ObjectArray<E> init();
 
   @Override
-  public ObjectArray<E> reverse() {
-    return size() < 2 ? this : new ObjectArray<>(root.reverse());
-  }
+  public abstract ObjectArray<E> tail();
 
   @Override
-  public ObjectArray<E> insertBefore(final long pos, final E val) {
-    if(pos < 0 || pos > size()) throw new IndexOutOfBoundsException();
-    if(isEmpty()) return singleton(val);
-    return new ObjectArray<>(root.insert(pos, val));
-  }
+  public abstract ObjectArray<E> subArray(final long pos, final long len);
 
   @Override
-  public ObjectArray<E> remove(final long pos) {
-    if(pos < 0 || pos >= size()) throw new IndexOutOfBoundsException();
-    final TreeSlice<E, E> slice = root.remove(pos);
-    if(slice.isTree()) return new ObjectArray<>(slice.getTree());
-    return empty();
-  }
+  public abstract ObjectArray<E> reverse();
 
   @Override
-  public E get(final long index) {
-    if(0 <= index && index < size()) return root.get(index);
-    throw new IndexOutOfBoundsException("" + index);
-  }
+  public abstract ObjectArray<E> insertBefore(final long pos, final E val);
 
   @Override
-  public long size() {
-    return root.size();
-  }
+  public abstract ObjectArray<E> remove(final long pos);
 
   @Override
-  public E head() {
-    if(isEmpty()) throw new NoSuchElementException();
-    return root.head().getSub(0);
+  public final ObjectArray<E> set(final long pos, final E val) {
+    return update(pos, old -> val);
   }
 
   @Override
-  public E last() {
-    return root.last().getSub(0);
-  }
+  public abstract ObjectArray<E> update(final long pos, final UnaryOperator<E> fun);
 
   @Override
-  public boolean isEmpty() {
-    return this == EMPTY;
+  public abstract <R> ObjectArray<R> map(final Function<? super E, ? extends R> fun);
+
+  /**
+   * Creates an {@link IntArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  public final IntArray mapToInt(final ToIntFunction<? super E> fun) {
+    return foldChunks(IntArray.empty(), chunk -> {
+      final int n = chunk.length;
+      final int[] out = new int[n];
+      for(int i = 0; i < n; i++) out[i] = fun.applyAsInt((E) chunk[i]);
+      return IntArray.from(out);
+    }, (a, b) -> (IntArray) a.concat(b));
   }
 
-  @Override
-  public ListIterator<E> listIterator(final long start) {
-    return root.listIterator(start);
+  /**
+   * Creates a {@link LongArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  public final LongArray mapToLong(final ToLongFunction<? super E> fun) {
+    return foldChunks(LongArray.empty(), chunk -> {
+      final int n = chunk.length;
+      final long[] out = new long[n];
+      for(int i = 0; i < n; i++) out[i] = fun.applyAsLong((E) chunk[i]);
+      return LongArray.from(out);
+    }, (a, b) -> (LongArray) a.concat(b));
   }
 
   /**
-   * Checks that this array's implementation does not violate any invariants.
-   * @throws AssertionError if an invariant was violated
+   * Creates a {@link DoubleArray} containing the results of applying the given function to the
+   * elements of this array. Large arrays are processed in parallel, so the function must be
+   * thread-safe and may be called in any order.
+   * Running time: <i>O(n)</i>
+   * @param fun function to apply
+   * @return array of the results
    */
-  void checkInvariants() {
-    root.checkInvariants();
+  @SuppressWarnings("unchecked")
+  public final DoubleArray mapToDouble(final ToDoubleFunction<? super E> fun) {
+    return foldChunks(DoubleArray.empty(), chunk -> {
+      final int n = chunk.length;
+      final double[] out = new double[n];
+      for(int i = 0; i < n; i++) out[i] = fun.applyAsDouble((E) chunk[i]);
+      return DoubleArray.from(out);
+    }, (a, b) -> (DoubleArray) a.concat(b));
   }
 
-  /** Empty partial node. */
-  private static final class Empty implements NodeLike<Object, Object> {
-    /** Singleton instance. */
-    static final Empty INSTANCE = new Empty();
+  @Override
+  @SuppressWarnings("unchecked")
+  public final ObjectArray<E> filter(final Predicate<? super E> pred) {
+    return foldChunks(ObjectArray.<E>empty(), chunk -> {
+      final Object[] out = new Object[chunk.length];
+      int n = 0;
+      for(final Object elem : chunk) if(pred.test((E) elem)) out[n++] = elem;
+      return build(n == out.length ? out : Arrays.copyOf(out, n));
+    }, (a, b) -> (ObjectArray<E>) a.concat(b));
+  }
 
-    /** Hidden default constructor. */
-    private Empty() {
-    }
+  @Override
+  @SuppressWarnings("unchecked")
+  public final E reduce(final E identity, final BinaryOperator<E> op) {
+    return foldChunks(identity, chunk -> {
+      E res = identity;
+      for(final Object elem : chunk) res = op.apply(res, (E) elem);
+      return res;
+    }, op);
+  }
 
-    @Override
-    public int append(final NodeLike<Object, Object>[] nodes, final int pos) {
-      return pos;
-    }
+  /**
+   * Returns the measure of all elements of this array. Measures of the nodes in the middle tree
+   * are cached, see {@link FingerTree#measure(Measure)}.
+   * Running time: <i>O(n)</i> for the first call, <i>O(1)</i> for subsequent calls
+   * @param <M> measure type
+   * @param measure the measure
+   * @return measure of this array
+   */
+  public abstract <M> M measure(final Measure<? super E, M> measure);
 
-    @Override
-    public String toString() {
-      return "Empty[]";
-    }
+  /**
+   * Searches for the first element for which the given predicate holds on the measure of all
+   * elements before and including it. The predicate must be monotone, i.e. once it holds for a
+   * prefix of this array it must hold for all longer prefixes.
+   * Running time: <i>O(log n)</i> if all measures are cached
+   * @param <M> measure type
+   * @param measure the measure
+   * @param pred monotone predicate
+   * @return position of the element, {@code -1} if the predicate does not hold for the whole
+   *   array
+   */
+  public abstract <M> long search(final Measure<? super E, M> measure,
+      final Predicate<? super M> pred);
+
+  /**
+   * Splits this array in front of the first element for which the given predicate holds on the
+   * measure of all elements before and including it, see {@link #search(Measure, Predicate)}.
+   * Running time: <i>O(log n)</i> if all measures are cached
+   * @param <M> measure type
+   * @param measure the measure
+   * @param pred monotone predicate
+   * @return array containing the elements before the found one and the remaining elements,
+   *   the second array is empty if the predicate does not hold for the whole array
+   */
+  @SuppressWarnings("unchecked")
+  public final <M> ObjectArray<E>[] split(final Measure<? super E, M> measure,
+      final Predicate<? super M> pred) {
+    final long n = size(), pos = search(measure, pred), p = pos < 0 ? n : pos;
+    return (ObjectArray<E>[]) new ObjectArray<?>[] { subArray(0, p), subArray(p, n - p) };
   }
 
   /**
-   * Leaf node containing a single element.
-   * @author Leo Woerteler
-   *
-   * @param <E> element type
+   * Applies the given function to the digits and leaves of this array and combines the results
+   * from left to right. The leaves of the middle tree are processed in parallel, see
+   * {@link FingerTree#foldLeaves(Object, Function, BinaryOperator)}.
+   * @param <R> result type
+   * @param empty result for the empty array
+   * @param chunk function applied to the digits and leaves, which must not be modified
+   * @param combine associative function combining adjacent results
+   * @return the combined result
    */
-  static class Leaf<E> implements Node<E, E> {
-    /** The element. */
-    private final E elem;
-
-    /**
-     * Constructor.
-     * @param elem the element
-     */
-    Leaf(final E elem) {
-      this.elem = elem;
-    }
+  abstract <R> R foldChunks(final R empty, final Function<Object[], R> chunk,
+      final BinaryOperator<R> combine);
 
-    @Override
-    public int append(final NodeLike<E, E>[] nodes, final int pos) {
-      final int ins = pos == 0 || nodes[pos - 1] instanceof Leaf ? pos : pos - 1;
-      nodes[ins] = this;
-      return ins + 1;
-    }
+  /**
+   * Calls the given action for consecutive chunks of the elements of this array, from left to
+   * right. The chunks are the digits and leaves of the tree, so there are only
+   * <i>O(n / MIN_LEAF)</i> calls.
+   * Running time: <i>O(n)</i>
+   * @param action action receiving the chunks, which must not be modified
+   */
+  public abstract void forEachChunk(final ChunkConsumer<Object[]> action);
 
-    @Override
-    public long size() {
-      return 1;
-    }
+  @Override
+  @SuppressWarnings("unchecked")
+  public final void forEach(final Consumer<? super E> action) {
+    forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) action.accept((E) chunk[i]);
+    });
+  }
 
-    @Override
-    public int arity() {
-      return 1;
-    }
+  /**
+   * Prepends the given elements to this array.
+   * @param vals values, with length at most {@link #MAX_SMALL}
+   * @return resulting array
+   */
+  abstract ObjectArray<E> consSmall(final Object[] vals);
 
-    @Override
-    public E getSub(final int pos) {
-      return elem;
-    }
+  /**
+   * Writes this array to the given output. Parts of the tree that are shared with arrays
+   * already written to the output are written as back-references.
+   * @param out output
+   * @param codec codec for the elements
+   * @throws IOException I/O exception
+   */
+  public abstract void write(final SharingOutput out, final ValueCodec<? super E> codec)
+      throws IOException;
 
-    @Override
-    public Node<E, E> reverse() {
-      return this;
+  /**
+   * Reads an array written by {@link #write(SharingOutput, ValueCodec)}.
+   * @param <E> element type
+   * @param in input
+   * @param codec codec for the elements
+   * @return the array
+   * @throws IOException I/O exception
+   */
+  public static <E> ObjectArray<E> read(final SharingInput in, final ValueCodec<? extends E> codec)
+      throws IOException {
+    final int tag = in.readVarInt();
+    switch(tag) {
+      case EMPTY_TAG:
+        return empty();
+      case SMALL_TAG:
+        return new SmallObjectArray<>(readElems(in, codec, 1, MAX_SMALL));
+      case DEEP_TAG:
+        final Object[] left = readElems(in, codec, MIN_DIGIT, MAX_DIGIT);
+        final Object[] right = readElems(in, codec, MIN_DIGIT, MAX_DIGIT);
+        final FingerTree<E, E> middle = FingerTree.read(in,
+            i -> new ObjectLeaf<E>(readElems(in, codec, MIN_LEAF, MAX_LEAF)));
+        return new DeepObjectArray<>(left, middle, right);
+      default:
+        throw new IOException("Unknown array tag: " + tag);
     }
+  }
 
-    @Override
-    public boolean insert(final Node<E, E>[] siblings, final long pos, final E val) {
-      siblings[3] = siblings[2];
-      if(pos == 0) {
-        siblings[1] = new Leaf<>(val);
-        siblings[2] = this;
-      } else {
-        siblings[1] = this;
-        siblings[2] = new Leaf<>(val);
-      }
-      return true;
-    }
+  /**
+   * Writes the given elements to the output, prefixed by their number.
+   * @param <E> element type
+   * @param out output
+   * @param elems the elements
+   * @param writer writer for the elements
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("unchecked")
+  static <E> void writeElems(final SharingOutput out, final Object[] elems,
+      final ValueWriter<? super E> writer) throws IOException {
+    out.writeVarInt(elems.length);
+    for(final Object e : elems) writer.write(out, (E) e);
+  }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public NodeLike<E, E>[] remove(final Node<E, E> l, final Node<E, E> r, final long pos) {
-      return new NodeLike[] { l, null, r };
-    }
+  /**
+   * Reads elements written by {@link #writeElems(SharingOutput, Object[], ValueWriter)}.
+   * The number of elements is checked against the bounds of the structure they belong to,
+   * so corrupt input cannot create arrays violating the tree's invariants.
+   * @param in input
+   * @param reader reader for the elements
+   * @param min minimum number of elements
+   * @param max maximum number of elements
+   * @return the elements
+   * @throws IOException I/O exception, or if the number of elements is out of bounds
+   */
+  static Object[] readElems(final SharingInput in, final ValueReader<?> reader, final int min,
+      final int max) throws IOException {
+    final int n = in.readVarInt();
+    if(n < min || n > max) throw new IOException("Illegal number of elements: " + n);
+    final Object[] elems = new Object[n];
+    for(int i = 0; i < n; i++) elems[i] = reader.read(in);
+    return elems;
+  }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public NodeLike<E, E> slice(final long off, final long len) {
-      return len == 0 ? (NodeLike<E, E>) Empty.INSTANCE : this;
-    }
+  /**
+   * Returns an array containing the values at the indices {@code from} to {@code to - 1} in
+   * the given array. Its length is always {@code to - from}. If {@code from} is smaller than zero,
+   * the first {@code -from} entries in the resulting array are {@code null}.
+   * If {@code to > arr.length} then the last {@code to - arr.length} entries are {@code null}.
+   * If {@code from == 0 && to == arr.length}, the original array is returned.
+   * @param arr input array
+   * @param from first index, inclusive (may be negative)
+   * @param to last index, exclusive (may be greater than {@code arr.length})
+   * @return resulting array
+   */
+  static final Object[] slice(final Object[] arr, final int from, final int to) {
+    if(from == 0 && to == arr.length) return arr;
+    final Object[] out = new Object[to - from];
+    final int in0 = Math.max(0, from), in1 = Math.min(to, arr.length);
+    final int out0 = Math.max(-from, 0);
+    System.arraycopy(arr, in0, out, out0, in1 - in0);
+    return out;
+  }
 
-    @Override
-    public long checkInvariants() {
-      return 1;
-    }
+  /**
+   * Concatenates the two object arrays.
+   * @param as first array
+   * @param bs second array
+   * @return resulting array
+   */
+  static final Object[] concat(final Object[] as, final Object[] bs) {
+    final int l = as.length, r = bs.length, n = l + r;
+    final Object[] out = new Object[n];
+    System.arraycopy(as, 0, out, 0, l);
+    System.arraycopy(bs, 0, out, l, r);
+    return out;
+  }
 
-    @Override
-    public String toString() {
-      final StringBuilder sb = new StringBuilder();
-      sb.append("Leaf[");
-      final String[] out = elem.toString().split("\n|\r\n?");
-      if(out.length == 1) {
-        sb.append(out[0]);
-      } else {
-        sb.append("\n");
-        for(final String part : out) {
-          sb.append("  ").append(part).append("\n");
-        }
-      }
-      return sb.append(']').toString();
+  /**
+   * Applies the given function to all elements of the given array.
+   * @param <E> element type
+   * @param <R> result type
+   * @param vals the elements
+   * @param fun function to apply
+   * @return array of the results
+   */
+  @SuppressWarnings("unchecked")
+  static final <E, R> Object[] map(final Object[] vals,
+      final Function<? super E, ? extends R> fun) {
+    final int n = vals.length;
+    final Object[] out = new Object[n];
+    for(int i = 0; i < n; i++) out[i] = fun.apply((E) vals[i]);
+    return out;
+  }
+
+  /**
+   * Measure of all elements in the given array.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param vals the elements
+   * @param measure the measure
+   * @return combined measure
+   */
+  @SuppressWarnings("unchecked")
+  static final <E, M> M measure(final Object[] vals, final Measure<? super E, M> measure) {
+    M res = measure.identity();
+    for(final Object val : vals) res = measure.combine(res, measure.of((E) val));
+    return res;
+  }
+
+  /**
+   * Searches for the first element in the given array for which the predicate holds on the
+   * measure of all elements up to and including it.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param vals the elements
+   * @param measure the measure
+   * @param acc single-element array holding the measure of all preceding elements, updated with
+   *   the measure up to the found element or of the whole array
+   * @param pred monotone predicate
+   * @return position of the element, {@code -1} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  static final <E, M> int search(final Object[] vals, final Measure<? super E, M> measure,
+      final Object[] acc, final Predicate<? super M> pred) {
+    for(int i = 0; i < vals.length; i++) {
+      final M curr = measure.combine((M) acc[0], measure.of((E) vals[i]));
+      acc[0] = curr;
+      if(pred.test(curr)) return i;
     }
+    return -1;
   }
+
+  /**
+   * Checks that this array's implementation does not violate any invariants.
+   * @throws AssertionError if an invariant was violated
+   */
+  abstract void checkInvariants();
 }
@@ -5,55 +5,174 @@ import java.util.*;
 import de.woerteler.persistent.fingertree.*;
 
 /**
- * Builder for {@link ObjectArray}s.
+ * A builder for creating an {@link ObjectArray} by prepending and appending elements.
  *
  * @author Leo Woerteler
  * @param <E> element type
  */
 public final class ObjectArrayBuilder<E> implements Iterable<E> {
-  /** Builder for the underlying finger tree. */
-  private FingerTreeBuilder<E> builder = new FingerTreeBuilder<>();
+  /** Capacity of the root. */
+  private static final int CAP = 2 * ObjectArray.MAX_DIGIT;
+  /** Size of inner nodes. */
+  private static final int NODE_SIZE = (ObjectArray.MIN_LEAF + ObjectArray.MAX_LEAF + 1) / 2;
+
+  /** Ring buffer containing the root-level elements. */
+  private final Object[] vals = new Object[CAP];
+
+  /** Number of elements in left digit. */
+  private int inLeft;
+  /** Middle between left and right digit in the buffer. */
+  private int mid = CAP / 2;
+  /** Number of elements in right digit. */
+  private int inRight;
+  /** Builder for the middle tree. */
+  private FingerTreeBuilder<E> tree = new FingerTreeBuilder<>();
 
   /**
-   * Prepends a single element to the array.
-   * @param elem element to prepend
+   * Adds an element to the start of the array.
+   * @param elem element to add
    * @return this builder for convenience
    */
   public ObjectArrayBuilder<E> prepend(final E elem) {
-    builder.prepend(new ObjectArray.Leaf<>(elem));
+    if(inLeft < ObjectArray.MAX_DIGIT) {
+      // just insert the element
+      vals[(mid - inLeft + CAP - 1) % CAP] = elem;
+      inLeft++;
+    } else if(tree.isEmpty() && inRight < ObjectArray.MAX_DIGIT) {
+      // move the middle to the left
+      mid = (mid + CAP - 1) % CAP;
+      vals[(mid - inLeft + CAP) % CAP] = elem;
+      inRight++;
+    } else {
+      // push leaf node into the tree
+      final Object[] leaf = new Object[NODE_SIZE];
+      final int start = (mid - NODE_SIZE + CAP) % CAP;
+      for(int i = 0; i < NODE_SIZE; i++) leaf[i] = vals[(start + i) % CAP];
+      tree.prepend(new ObjectLeaf<>(leaf));
+
+      // move rest of the nodes to the right
+      final int rest = inLeft - NODE_SIZE;
+      final int p0 = (mid - inLeft + CAP) % CAP;
+      for(int i = 0; i < rest; i++) {
+        final int from = (p0 + i) % CAP, to = (from + NODE_SIZE) % CAP;
+        vals[to] = vals[from];
+      }
+
+      // insert the element
+      vals[(mid - rest + CAP - 1) % CAP] = elem;
+      inLeft = rest + 1;
+    }
     return this;
   }
 
   /**
-   * Appends a single element to the array.
-   * @param elem element to append
+   * Adds an element to the end of the array.
+   * @param elem element to add
    * @return this builder for convenience
    */
   public ObjectArrayBuilder<E> append(final E elem) {
-    builder.append(new ObjectArray.Leaf<>(elem));
+    if(inRight < ObjectArray.MAX_DIGIT) {
+      // just insert the element
+      vals[(mid + inRight) % CAP] = elem;
+      inRight++;
+    } else if(tree.isEmpty() && inLeft < ObjectArray.MAX_DIGIT) {
+      // move the middle to the right
+      mid = (mid + 1) % CAP;
+      vals[(mid + inRight + CAP - 1) % CAP] = elem;
+      inLeft++;
+    } else {
+      // push leaf node into the tree
+      final Object[] leaf = new Object[NODE_SIZE];
+      final int start = mid;
+      for(int i = 0; i < NODE_SIZE; i++) leaf[i] = vals[(start + i) % CAP];
+      tree.append(new ObjectLeaf<>(leaf));
+
+      // move rest of the nodes to the right
+      final int rest = inRight - NODE_SIZE;
+      for(int i = 0; i < rest; i++) {
+        final int to = (mid + i) % CAP, from = (to + NODE_SIZE) % CAP;
+        vals[to] = vals[from];
+      }
+
+      // insert the element
+      vals[(mid + rest) % CAP] = elem;
+      inRight = rest + 1;
+    }
     return this;
   }
 
   /**
-   * Appends another {@link ObjectArray} to the array.
+   * Appends another {@link ObjectArray} to the array. Only the digits of a deep array are
+   * copied, its middle tree is shared.
    * @param other array to append
    * @return this builder for convenience
    */
   public ObjectArrayBuilder<E> append(final ObjectArray<E> other) {
-    builder.append(other.root);
+    if(!(other instanceof DeepObjectArray)) {
+      // small arrays have at most MAX_SMALL elements
+      for(final E e : other) append(e);
+      return this;
+    }
+
+    // concatenate in O(log n) and continue with the digits of the result
+    final DeepObjectArray<E> arr = (DeepObjectArray<E>) freeze().concat(other);
+    final Object[] ls = arr.left, rs = arr.right;
+    inLeft = ls.length;
+    inRight = rs.length;
+    mid = CAP / 2;
+    System.arraycopy(ls, 0, vals, mid - inLeft, inLeft);
+    System.arraycopy(rs, 0, vals, mid, inRight);
+    tree = new FingerTreeBuilder<>();
+    tree.append(arr.middle);
     return this;
   }
 
   /**
-   * Returns an {@link ObjectArray} containing the elements in this builder.
-   * @return object array
+   * Creates an {@link ObjectArray} containing the elements of this builder.
+   * @return resulting array
    */
   public ObjectArray<E> freeze() {
-    return builder.isEmpty() ? ObjectArray.<E>empty() : new ObjectArray<>(builder.freeze());
+    final int n = inLeft + inRight;
+    if(n == 0) return ObjectArray.empty();
+
+    final int start = (mid - inLeft + CAP) % CAP;
+    if(n <= ObjectArray.MAX_SMALL) {
+      // small array, fill directly
+      final Object[] small = new Object[n];
+      for(int i = 0; i < n; i++) small[i] = vals[(start + i) % CAP];
+      return new SmallObjectArray<>(small);
+    }
+
+    // deep array
+    final int a = tree.isEmpty() ? n / 2 : inLeft, b = n - a;
+    final Object[] ls = new Object[a], rs = new Object[b];
+    for(int i = 0; i < a; i++) ls[i] = vals[(start + i) % CAP];
+    for(int i = a; i < n; i++) rs[i - a] = vals[(start + i) % CAP];
+    return new DeepObjectArray<>(ls, tree.freeze(), rs);
   }
 
   @Override
   public Iterator<E> iterator() {
-    return builder.iterator();
+    return freeze().iterator();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append('[');
+    if(tree.isEmpty()) {
+      final int n = inLeft + inRight, first = (mid - inLeft + CAP) % CAP;
+      if(n > 0) {
+        sb.append(vals[first]);
+        for(int i = 1; i < n; i++) sb.append(", ").append(vals[(first + i) % CAP]);
+      }
+      return sb.append(']').toString();
+    }
+
+    final int first = (mid - inLeft + CAP) % CAP;
+    sb.append(vals[first]);
+    for(int i = 1; i < inLeft; i++) sb.append(", ").append(vals[(first + i) % CAP]);
+    for(final E val : tree) sb.append(", ").append(val);
+    for(int i = 0; i < inRight; i++) sb.append(", ").append(vals[(mid + i) % CAP]);
+    return sb.append(']').toString();
   }
 }
@@ -0,0 +1,252 @@
+package de.woerteler.persistent.array.object;
+
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A leaf node directly containing a chunk of elements.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class ObjectLeaf<E> implements Node<E, E> {
+  /** Elements stored in this leaf node. */
+  final Object[] values;
+
+  /**
+   * Constructor.
+   * @param values the values
+   */
+  ObjectLeaf(final Object[] values) {
+    this.values = values;
+    assert values.length >= ObjectArray.MIN_LEAF && values.length <= ObjectArray.MAX_LEAF;
+  }
+
+  @Override
+  public long size() {
+    return values.length;
+  }
+
+  @Override
+  public ObjectLeaf<E> reverse() {
+    final int n = values.length;
+    final Object[] out = new Object[n];
+    for(int i = 0; i < n; i++) out[i] = values[n - 1 - i];
+    return new ObjectLeaf<>(out);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ObjectLeaf<E> update(final long pos, final UnaryOperator<E> fun) {
+    final int p = (int) pos;
+    final Object[] out = values.clone();
+    out[p] = fun.apply((E) values[p]);
+    return new ObjectLeaf<>(out);
+  }
+
+  @Override
+  public boolean insert(final Node<E, E>[] siblings,
+      final long pos, final E val) {
+    final int p = (int) pos, n = values.length;
+    final Object[] vals = new Object[n + 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    vals[p] = val;
+    System.arraycopy(values, p, vals, p + 1, n - p);
+
+    if(n < ObjectArray.MAX_LEAF) {
+      // there is capacity
+      siblings[1] = new ObjectLeaf<>(vals);
+      return false;
+    }
+
+    final ObjectLeaf<E> left = (ObjectLeaf<E>) siblings[0];
+    if(left != null && left.values.length < ObjectArray.MAX_LEAF) {
+      // push elements to the left sibling
+      final Object[] lvals = left.values;
+      final int l = lvals.length, diff = ObjectArray.MAX_LEAF - l, move = (diff + 1) / 2;
+      final Object[] newLeft = new Object[l + move], newRight = new Object[n + 1 - move];
+      System.arraycopy(lvals, 0, newLeft, 0, l);
+      System.arraycopy(vals, 0, newLeft, l, move);
+      System.arraycopy(vals, move, newRight, 0, newRight.length);
+      siblings[0] = new ObjectLeaf<>(newLeft);
+      siblings[1] = new ObjectLeaf<>(newRight);
+      return false;
+    }
+
+    final ObjectLeaf<E> right = (ObjectLeaf<E>) siblings[2];
+    if(right != null && right.values.length < ObjectArray.MAX_LEAF) {
+      // push elements to the right sibling
+      final Object[] rvals = right.values;
+      final int r = rvals.length, diff = ObjectArray.MAX_LEAF - r, move = (diff + 1) / 2,
+          l = n + 1 - move;
+      final Object[] newLeft = new Object[l], newRight = new Object[r + move];
+      System.arraycopy(vals, 0, newLeft, 0, l);
+      System.arraycopy(vals, l, newRight, 0, move);
+      System.arraycopy(rvals, 0, newRight, move, r);
+      siblings[1] = new ObjectLeaf<>(newLeft);
+      siblings[2] = new ObjectLeaf<>(newRight);
+      return false;
+    }
+
+    // split the node
+    final int l = vals.length / 2, r = vals.length - l;
+    final Object[] newLeft = new Object[l], newRight = new Object[r];
+    System.arraycopy(vals, 0, newLeft, 0, l);
+    System.arraycopy(vals, l, newRight, 0, r);
+    siblings[3] = siblings[2];
+    siblings[1] = new ObjectLeaf<>(newLeft);
+    siblings[2] = new ObjectLeaf<>(newRight);
+    return true;
+  }
+
+  @Override
+  public NodeLike<E, E>[] remove(final Node<E, E> left,
+      final Node<E, E> right, final long pos) {
+    final int p = (int) pos, n = values.length;
+    @SuppressWarnings("unchecked")
+    final NodeLike<E, E>[] out = new NodeLike[] { left, null, right };
+    if(n > ObjectArray.MIN_LEAF) {
+      // we do not have to split
+      final Object[] vals = new Object[n - 1];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+      out[1] = new ObjectLeaf<>(vals);
+      return out;
+    }
+
+    final ObjectLeaf<E> leftLeaf = (ObjectLeaf<E>) left;
+    if(leftLeaf != null && leftLeaf.arity() > ObjectArray.MIN_LEAF) {
+      // steal from the left neighbor
+      final Object[] lvals = leftLeaf.values;
+      final int l = lvals.length, diff = l - ObjectArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = l - move, rl = n - 1 + move;
+      final Object[] newLeft = new Object[ll], newRight = new Object[rl];
+
+      System.arraycopy(lvals, 0, newLeft, 0, ll);
+      System.arraycopy(lvals, ll, newRight, 0, move);
+      System.arraycopy(values, 0, newRight, move, p);
+      System.arraycopy(values, p + 1, newRight, move + p, n - 1 - p);
+      out[0] = new ObjectLeaf<>(newLeft);
+      out[1] = new ObjectLeaf<>(newRight);
+      return out;
+    }
+
+    final ObjectLeaf<E> rightLeaf = (ObjectLeaf<E>) right;
+    if(rightLeaf != null && rightLeaf.arity() > ObjectArray.MIN_LEAF) {
+      // steal from the right neighbor
+      final Object[] rvals = rightLeaf.values;
+      final int r = rvals.length, diff = r - ObjectArray.MIN_LEAF, move = (diff + 1) / 2;
+      final int ll = n - 1 + move, rl = r - move;
+      final Object[] newLeft = new Object[ll], newRight = new Object[rl];
+
+      System.arraycopy(values, 0, newLeft, 0, p);
+      System.arraycopy(values, p + 1, newLeft, p, n - 1 - p);
+      System.arraycopy(rvals, 0, newLeft, n - 1, move);
+      System.arraycopy(rvals, move, newRight, 0, rl);
+      out[1] = new ObjectLeaf<>(newLeft);
+      out[2] = new ObjectLeaf<>(newRight);
+      return out;
+    }
+
+    if(left != null) {
+      // merge with left neighbor
+      final Object[] lvals = ((ObjectLeaf<E>) left).values;
+      final int l = lvals.length, r = values.length;
+      final Object[] vals = new Object[l + r - 1];
+      System.arraycopy(lvals, 0, vals, 0, l);
+      System.arraycopy(values, 0, vals, l, p);
+      System.arraycopy(values, p + 1, vals, l + p, r - 1 - p);
+      out[0] = new ObjectLeaf<>(vals);
+      out[1] = null;
+      return out;
+    }
+
+    if(right != null) {
+      // merge with right neighbor
+      final Object[] rvals = ((ObjectLeaf<E>) right).values;
+      final int l = values.length, r = rvals.length;
+      final Object[] vals = new Object[l - 1 + r];
+      System.arraycopy(values, 0, vals, 0, p);
+      System.arraycopy(values, p + 1, vals, p, l - 1 - p);
+      System.arraycopy(rvals, 0, vals, l - 1, r);
+      out[1] = null;
+      out[2] = new ObjectLeaf<>(vals);
+      return out;
+    }
+
+    // underflow
+    final Object[] vals = new Object[n - 1];
+    System.arraycopy(values, 0, vals, 0, p);
+    System.arraycopy(values, p + 1, vals, p, n - 1 - p);
+    out[1] = new PartialObjectLeaf<>(vals);
+    return out;
+  }
+
+  @Override
+  public int append(final NodeLike<E, E>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[pos] = this;
+      return 1;
+    }
+
+    final NodeLike<E, E> left = nodes[pos - 1];
+    if(!(left instanceof PartialObjectLeaf)) {
+      nodes[pos] = this;
+      return pos + 1;
+    }
+
+    final Object[] ls = ((PartialObjectLeaf<E>) left).elems, rs = values;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= ObjectArray.MAX_LEAF) {
+      // merge into one node
+      final Object[] vals = new Object[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new ObjectLeaf<>(vals);
+      return pos;
+    }
+
+    // split into two
+    final int ll = n / 2, rl = n - ll, move = r - rl;
+    final Object[] newLeft = new Object[ll], newRight = new Object[rl];
+    System.arraycopy(ls, 0, newLeft, 0, l);
+    System.arraycopy(rs, 0, newLeft, l, move);
+    System.arraycopy(rs, move, newRight, 0, rl);
+    nodes[pos - 1] = new ObjectLeaf<>(newLeft);
+    nodes[pos] = new ObjectLeaf<>(newRight);
+    return pos + 1;
+  }
+
+  @Override
+  public NodeLike<E, E> slice(final long off, final long size) {
+    final int p = (int) off, n = (int) size;
+    final Object[] out = new Object[n];
+    System.arraycopy(values, p, out, 0, n);
+    return n < ObjectArray.MIN_LEAF ? new PartialObjectLeaf<>(out) : new ObjectLeaf<>(out);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '(' + size() + ')' + Arrays.toString(values);
+  }
+
+  @Override
+  public long checkInvariants() {
+    if(values.length < ObjectArray.MIN_LEAF || values.length > ObjectArray.MAX_LEAF)
+      throw new AssertionError("Wrong " + getClass().getSimpleName() + " size: " + values.length);
+    return values.length;
+  }
+
+  @Override
+  public int arity() {
+    return values.length;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E getSub(final int index) {
+    return (E) values[index];
+  }
+}
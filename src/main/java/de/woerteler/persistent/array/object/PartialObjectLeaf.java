@@ -0,0 +1,60 @@
+package de.woerteler.persistent.array.object;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * A partial shallow node containing fewer elements than required in a node.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class PartialObjectLeaf<E> implements NodeLike<E, E> {
+  /** The single element. */
+  final Object[] elems;
+
+  /**
+   * Constructor.
+   * @param elems the elements
+   */
+  PartialObjectLeaf(final Object[] elems) {
+    this.elems = elems;
+  }
+
+  @Override
+  public int append(final NodeLike<E, E>[] nodes, final int pos) {
+    if(pos == 0) {
+      nodes[0] = this;
+      return 1;
+    }
+
+    final NodeLike<E, E> left = nodes[pos - 1];
+    if(left instanceof PartialObjectLeaf) {
+      final Object[] ls = ((PartialObjectLeaf<E>) left).elems, rs = elems;
+      final int l = ls.length, r = rs.length, n = l + r;
+      final Object[] vals = new Object[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = n < ObjectArray.MIN_LEAF ? new PartialObjectLeaf<>(vals) : new ObjectLeaf<>(vals);
+      return pos;
+    }
+
+    final Object[] ls = ((ObjectLeaf<E>) left).values, rs = elems;
+    final int l = ls.length, r = rs.length, n = l + r;
+    if(n <= ObjectArray.MAX_LEAF) {
+      final Object[] vals = new Object[n];
+      System.arraycopy(ls, 0, vals, 0, l);
+      System.arraycopy(rs, 0, vals, l, r);
+      nodes[pos - 1] = new ObjectLeaf<>(vals);
+      return pos;
+    }
+
+    final int ll = n / 2, rl = n - ll, move = l - ll;
+    final Object[] newLeft = new Object[ll], newRight = new Object[rl];
+    System.arraycopy(ls, 0, newLeft, 0, ll);
+    System.arraycopy(ls, ll, newRight, 0, move);
+    System.arraycopy(rs, 0, newRight, move, r);
+    nodes[pos - 1] = new ObjectLeaf<>(newLeft);
+    nodes[pos] = new ObjectLeaf<>(newRight);
+    return pos + 1;
+  }
+}
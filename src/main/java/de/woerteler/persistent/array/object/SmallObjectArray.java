@@ -0,0 +1,286 @@
+package de.woerteler.persistent.array.object;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.fingertree.*;
+import de.woerteler.persistent.io.*;
+
+/**
+ * A singleton array.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+final class SmallObjectArray<E> extends ObjectArray<E> {
+  /** The elements. */
+  final Object[] elems;
+
+  /**
+   * Constructor.
+   * @param elems elements
+   */
+  SmallObjectArray(final Object[] elems) {
+    this.elems = elems;
+    assert elems.length >= 1 && elems.length <= MAX_SMALL;
+  }
+
+  @Override
+  public ObjectArray<E> cons(final E head) {
+    if(elems.length < MAX_SMALL) {
+      final Object[] newElems = slice(elems, -1, elems.length);
+      newElems[0] = head;
+      return new SmallObjectArray<>(newElems);
+    }
+
+    final int mid = MIN_DIGIT - 1;
+    final Object[] left = slice(elems, -1, mid), right = slice(elems, mid, elems.length);
+    left[0] = head;
+    return new DeepObjectArray<>(left, right);
+  }
+
+  @Override
+  public ObjectArray<E> snoc(final E last) {
+    if(elems.length < MAX_SMALL) {
+      final Object[] newElems = slice(elems, 0, elems.length + 1);
+      newElems[newElems.length - 1] = last;
+      return new SmallObjectArray<>(newElems);
+    }
+
+    final Object[] left = slice(elems, 0, MIN_DIGIT),
+        right = slice(elems, MIN_DIGIT, elems.length + 1);
+    right[right.length - 1] = last;
+    return new DeepObjectArray<>(left, right);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(final long index) {
+    // index to small?
+    if(index < 0) throw new IndexOutOfBoundsException("Index < 0: " + index);
+
+    // index too big?
+    if(index >= elems.length) throw new IndexOutOfBoundsException(index + " >= " + elems.length);
+
+    return (E) elems[(int) index];
+  }
+
+  @Override
+  public long size() {
+    return elems.length;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Array<E> concat(final Array<E> seq) {
+    if(seq.isEmpty()) return this;
+    if(seq instanceof ObjectArray) return ((ObjectArray<E>) seq).consSmall(elems);
+    Array<E> curr = seq;
+    for(int i = elems.length; --i >= 0;) curr = curr.cons((E) elems[i]);
+    return curr;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E head() {
+    return (E) elems[0];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E last() {
+    return (E) elems[elems.length - 1];
+  }
+
+  @Override
+  public ObjectArray<E> init() {
+    if(elems.length == 1) return empty();
+    return new SmallObjectArray<>(slice(elems, 0, elems.length - 1));
+  }
+
+  @Override
+  public ObjectArray<E> tail() {
+    if(elems.length == 1) return empty();
+    return new SmallObjectArray<>(slice(elems, 1, elems.length));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+  @Override
+  public ObjectArray<E> reverse() {
+    final int n = elems.length;
+    if(n == 1) return this;
+    final Object[] es = new Object[n];
+    for(int i = 0; i < n; i++) es[i] = elems[n - 1 - i];
+    return new SmallObjectArray<>(es);
+  }
+
+  @Override
+  public ObjectArray<E> insertBefore(final long pos, final E val) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos > elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+
+    final int p = (int) pos, n = elems.length;
+    final Object[] out = new Object[n + 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    out[p] = val;
+    System.arraycopy(elems, p, out, p + 1, n - p);
+
+    if(n < MAX_SMALL) return new SmallObjectArray<>(out);
+    return new DeepObjectArray<>(slice(out, 0, MIN_DIGIT), slice(out, MIN_DIGIT, n + 1));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ObjectArray<E> update(final long pos, final UnaryOperator<E> fun) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos;
+    final Object[] out = elems.clone();
+    out[p] = fun.apply((E) elems[p]);
+    return new SmallObjectArray<>(out);
+  }
+
+  @Override
+  public ObjectArray<E> remove(final long pos) {
+    if(pos < 0) throw new IndexOutOfBoundsException("negative index: " + pos);
+    if(pos >= elems.length) throw new IndexOutOfBoundsException("position too big: " + pos);
+    final int p = (int) pos, n = elems.length;
+    if(n == 1) return empty();
+
+    final Object[] out = new Object[n - 1];
+    System.arraycopy(elems, 0, out, 0, p);
+    System.arraycopy(elems, p + 1, out, p, n - 1 - p);
+    return new SmallObjectArray<>(out);
+  }
+
+  @Override
+  public ObjectArray<E> subArray(final long pos, final long len) {
+    if(pos < 0) throw new IndexOutOfBoundsException("first index < 0: " + pos);
+    if(len < 0) throw new IndexOutOfBoundsException("length < 0: " + len);
+    if(pos + len > elems.length)
+      throw new IndexOutOfBoundsException("end out of bounds: "
+          + (pos + len) + " > " + elems.length);
+
+    final int p = (int) pos, n = (int) len;
+    return n == 0 ? ObjectArray.empty() : new SmallObjectArray<>(slice(elems, p, p + n));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ListIterator<E> listIterator(final long start) {
+    if(start < 0 || start > elems.length) throw new IndexOutOfBoundsException("" + start);
+    return new ListIterator<E>() {
+      private int index = (int) start;
+
+      @Override
+      public int nextIndex() {
+        return index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return index < elems.length;
+      }
+
+      @Override
+      public E next() {
+        if(index >= elems.length) throw new NoSuchElementException();
+        return (E) elems[index++];
+      }
+
+      @Override
+      public int previousIndex() {
+        return index - 1;
+      }
+
+      @Override
+      public boolean hasPrevious() {
+        return index > 0;
+      }
+
+      @Override
+      public E previous() {
+        if(index <= 0) throw new NoSuchElementException();
+        return (E) elems[--index];
+      }
+
+      @Override
+      public void set(final E e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void add(final E e) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public <R> ObjectArray<R> map(final Function<? super E, ? extends R> fun) {
+    return new SmallObjectArray<>(map(elems, fun));
+  }
+
+  @Override
+  <R> R foldChunks(final R empty, final Function<Object[], R> chunk,
+      final BinaryOperator<R> combine) {
+    return chunk.apply(elems);
+  }
+
+  @Override
+  public <M> M measure(final Measure<? super E, M> measure) {
+    return measure(elems, measure);
+  }
+
+  @Override
+  public <M> long search(final Measure<? super E, M> measure, final Predicate<? super M> pred) {
+    return search(elems, measure, new Object[] { measure.identity() }, pred);
+  }
+
+  @Override
+  public void forEachChunk(final ChunkConsumer<Object[]> action) {
+    action.accept(elems, 0, elems.length);
+  }
+
+  @Override
+  public void write(final SharingOutput out, final ValueCodec<? super E> codec)
+      throws IOException {
+    out.writeVarInt(SMALL_TAG);
+    writeElems(out, elems, codec);
+  }
+
+  @Override
+  void checkInvariants() {
+    final int n = elems.length;
+    if(n == 0) throw new AssertionError("Empty array in " + getClass().getSimpleName());
+    if(n > MAX_SMALL) throw new AssertionError("Array too big: " + n);
+  }
+
+  @Override
+  ObjectArray<E> consSmall(final Object[] left) {
+    final int l = left.length, r = elems.length, n = l + r;
+    if(Math.min(l, r) >= MIN_DIGIT) {
+      // both arrays can be used as digits
+      return new DeepObjectArray<>(left, elems);
+    }
+
+    final Object[] out = new Object[n];
+    System.arraycopy(left, 0, out, 0, l);
+    System.arraycopy(elems, 0, out, l, r);
+    if(n <= MAX_SMALL) return new SmallObjectArray<>(out);
+
+    final int mid = n / 2;
+    return new DeepObjectArray<>(slice(out, 0, mid), slice(out, mid, n));
+  }
+}
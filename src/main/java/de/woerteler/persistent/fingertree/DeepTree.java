@@ -1,5 +1,7 @@
 package de.woerteler.persistent.fingertree;
 
+import java.util.function.*;
+
 /**
  * A <i>deep</i> node containing elements in the left and right digit and a sub-tree in
  * the middle.
@@ -23,6 +25,8 @@ final class DeepTree<N, E> extends FingerTree<N, E> {
 
   /** Size of this tree. */
   final long size;
+  /** Cached measures of this tree, most recent first, see {@link TreeMeasures}. */
+  TreeMeasures.Cached cached;
 
   /**
    * Constructor.
@@ -343,6 +347,40 @@ final class DeepTree<N, E> extends FingerTree<N, E> {
     return new DeepTree<>(left, leftSize, middle.snoc(new InnerNode<>(ch)), newRight, size + 1);
   }
 
+  @Override
+  public FingerTree<N, E> update(final long pos, final UnaryOperator<E> fun) {
+    if(pos < leftSize) {
+      return new DeepTree<>(update(left, pos, fun), leftSize, middle, right, size);
+    }
+    final long p = pos - leftSize, midSize = middle.size();
+    if(p < midSize) return new DeepTree<>(left, leftSize, middle.update(p, fun), right, size);
+    return new DeepTree<>(left, leftSize, middle, update(right, p - midSize, fun), size);
+  }
+
+  /**
+   * Updates the element at the given position in a digit, copying only the digit array and the
+   * path to the element.
+   * @param <N> node type
+   * @param <E> element type
+   * @param digit the digit
+   * @param pos position of the element inside the digit
+   * @param fun function computing the new element from the old one
+   * @return the updated digit
+   */
+  private static <N, E> Node<N, E>[] update(final Node<N, E>[] digit, final long pos,
+      final UnaryOperator<E> fun) {
+    int i = 0;
+    long p = pos;
+    for(;; i++) {
+      final long sub = digit[i].size();
+      if(p < sub) break;
+      p -= sub;
+    }
+    final Node<N, E>[] out = digit.clone();
+    out[i] = digit[i].update(p, fun);
+    return out;
+  }
+
   @Override
   public TreeSlice<N, E> remove(final long pos) {
     if(pos < leftSize) return new TreeSlice<>(removeLeft(pos));
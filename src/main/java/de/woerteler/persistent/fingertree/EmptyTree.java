@@ -1,6 +1,7 @@
 package de.woerteler.persistent.fingertree;
 
 import java.util.*;
+import java.util.function.*;
 
 /**
  * An empty finger tree.
@@ -86,6 +87,11 @@ final class EmptyTree<N, E> extends FingerTree<N, E> {
     throw new AssertionError("Empty sub-tree.");
   }
 
+  @Override
+  public FingerTree<N, E> update(final long pos, final UnaryOperator<E> fun) {
+    throw new AssertionError("Empty sub-tree.");
+  }
+
   @Override
   public TreeSlice<N, E> remove(final long pos) {
     throw new AssertionError("Empty sub-tree.");
@@ -1,6 +1,11 @@
 package de.woerteler.persistent.fingertree;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.io.*;
 
 /**
  * A node of a FingerTree.
@@ -15,6 +20,8 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
   static final int MAX_ARITY = 4;
   /** Maximum length of a digit. */
   static final int MAX_DIGIT = MAX_ARITY + 1;
+  /** Minimum number of leaves that are created in parallel by {@link #build}. */
+  private static final int PARALLEL_LEAVES = 1 << 11;
 
   /**
    * Returns the empty finger tree.
@@ -36,6 +43,29 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
     return new SingletonTree<>(leaf);
   }
 
+  /**
+   * Creates a balanced finger tree from the given number of leaf nodes in a single bottom-up pass.
+   * Large numbers of leaves are created in parallel in the common {@link ForkJoinPool}, so the
+   * leaf function must be thread-safe.
+   * Running time: <i>O(n)</i>
+   * @param <E> element type
+   * @param n number of leaves
+   * @param size number of elements in all leaves combined
+   * @param leaf function creating the leaf at the given position
+   * @return the finger tree
+   */
+  public static <E> FingerTree<E, E> build(final int n, final long size,
+      final IntFunction<? extends Node<E, E>> leaf) {
+    @SuppressWarnings("unchecked")
+    final Node<E, E>[] leaves = new Node[n];
+    if(n < PARALLEL_LEAVES) {
+      for(int i = 0; i < n; i++) leaves[i] = leaf.apply(i);
+    } else {
+      ForkJoinPool.commonPool().invoke(new LeafTask<>(leaves, 0, n, leaf));
+    }
+    return buildTree(leaves, n, size);
+  }
+
   /**
    * Checks if this node is empty.
    * @return {@code true} if the node is empty, {@code false} otherwise
@@ -50,6 +80,19 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
    * @return the element
    */
   public final E get(final long index) {
+    final LeafPosition<E> lp = locate(index);
+    return lp.leaf.getSub(lp.pos);
+  }
+
+  /**
+   * Returns the leaf containing the element at the given position in this tree, together with
+   * the element's position inside the leaf. This allows leaves storing primitive values to be
+   * accessed without boxing. The result is meant to be used immediately, so the JIT compiler
+   * can usually eliminate its allocation.
+   * @param index index of the element
+   * @return the leaf and the position inside it
+   */
+  public final LeafPosition<E> locate(final long index) {
     // iterate down the spine
     long pos = index;
     FingerTree<?, E> curr = this;
@@ -109,8 +152,209 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
     }
 
     @SuppressWarnings("unchecked")
-    final E res = ((Node<E, E>) nd).getSub((int) pos);
-    return res;
+    final Node<E, E> leaf = (Node<E, E>) nd;
+    return new LeafPosition<>(leaf, (int) pos);
+  }
+
+  /**
+   * Calls the given action for every leaf node in this tree, from left to right.
+   * Leaves are handed over as a whole, so implementations storing their elements in arrays
+   * can be traversed without per-element dispatch.
+   * @param action action to call
+   */
+  @SuppressWarnings("unchecked")
+  public final void forEachLeaf(final Consumer<? super Node<E, E>> action) {
+    if(this instanceof SingletonTree) {
+      forEachLeaf(((SingletonTree<?, E>) this).elem, action);
+    } else if(this instanceof DeepTree) {
+      final DeepTree<?, E> deep = (DeepTree<?, E>) this;
+      for(final Node<?, E> nd : deep.left) forEachLeaf(nd, action);
+      deep.middle.forEachLeaf(action);
+      for(final Node<?, E> nd : deep.right) forEachLeaf(nd, action);
+    }
+  }
+
+  /**
+   * Calls the given action for every leaf node overlapping the elements at the positions
+   * {@code from} to {@code from + len - 1}, from left to right. Sub-trees outside of the range
+   * are skipped, so each leaf is only visited once.
+   * Running time: <i>O(k + log n)</i> for {@code k} visited leaves
+   * @param from position of the first element, the range must be contained in this tree
+   * @param len number of elements
+   * @param action action to call for the part of each leaf inside the range
+   */
+  public final void forEachLeaf(final long from, final long len, final LeafConsumer<E> action) {
+    assert from >= 0 && len >= 0 && from + len <= size();
+    if(len == 0) return;
+    if(this instanceof SingletonTree) {
+      forEachLeaf(((SingletonTree<?, E>) this).elem, from, len, action);
+    } else {
+      final DeepTree<?, E> deep = (DeepTree<?, E>) this;
+      final long l = deep.leftSize, m = deep.middle.size();
+      long pos = from, rest = len;
+      if(pos < l) {
+        final long n = Math.min(l - pos, rest);
+        forEachLeaf(deep.left, pos, n, action);
+        pos += n;
+        rest -= n;
+      }
+      if(rest > 0 && pos < l + m) {
+        final long n = Math.min(l + m - pos, rest);
+        deep.middle.forEachLeaf(pos - l, n, action);
+        pos += n;
+        rest -= n;
+      }
+      if(rest > 0) forEachLeaf(deep.right, pos - l - m, rest, action);
+    }
+  }
+
+  /**
+   * Creates a tree of the same shape as this one in which every leaf is replaced by the result
+   * of the given function. Large trees are processed in parallel in the common
+   * {@link ForkJoinPool}, so the function must be thread-safe.
+   * Running time: <i>O(n)</i>
+   * @param <R> element type of the result
+   * @param fun function mapping a leaf to a leaf of the same size
+   * @return the resulting tree
+   */
+  public final <R> FingerTree<R, R> mapLeaves(
+      final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+    @SuppressWarnings("unchecked")
+    final FingerTree<E, E> tree = (FingerTree<E, E>) this;
+    return TreeTasks.map(tree, fun);
+  }
+
+  /**
+   * Applies the given function to every leaf of this tree and combines the results of adjacent
+   * leaves from left to right. Large trees are processed in parallel in the common
+   * {@link ForkJoinPool}, so both functions must be thread-safe.
+   * Running time: <i>O(n)</i>
+   * @param <R> result type
+   * @param empty result for the empty tree
+   * @param leaf function applied to every leaf
+   * @param combine associative function combining the results of adjacent parts of the tree
+   * @return the combined result
+   */
+  public final <R> R foldLeaves(final R empty, final Function<? super Node<E, E>, ? extends R> leaf,
+      final BinaryOperator<R> combine) {
+    @SuppressWarnings("unchecked")
+    final FingerTree<E, E> tree = (FingerTree<E, E>) this;
+    return TreeTasks.fold(tree, empty, leaf, combine);
+  }
+
+  /**
+   * Returns the measure of all elements in this tree. Measures of sub-trees and inner nodes are
+   * cached, so after the first call only the nodes created since are measured again.
+   * Running time: <i>O(n)</i> for the first call, <i>O(1)</i> for subsequent calls
+   * @param <M> measure type
+   * @param measure the measure
+   * @return measure of this tree
+   */
+  public final <M> M measure(final Measure<? super E, M> measure) {
+    return TreeMeasures.measure(this, measure);
+  }
+
+  /**
+   * Searches for the first element for which the given predicate holds on the measure of all
+   * elements before and including it, combined with the given prefix. The predicate must be
+   * monotone, i.e. once it holds for a prefix of the tree it must hold for all longer prefixes.
+   * Running time: <i>O(log n)</i> if all measures are cached
+   * @param <M> measure type
+   * @param measure the measure
+   * @param prefix measure of elements before this tree
+   * @param pred monotone predicate
+   * @return position of the element, {@code -1} if the predicate does not hold for the whole tree
+   */
+  public final <M> long search(final Measure<? super E, M> measure, final M prefix,
+      final Predicate<? super M> pred) {
+    return TreeMeasures.search(this, measure, new Object[] { prefix }, pred);
+  }
+
+  /**
+   * Calls the given action for the parts of the leaves of the given nodes that overlap the
+   * given range.
+   * @param <E> element type
+   * @param nodes adjacent nodes
+   * @param from position of the first element inside the nodes
+   * @param len number of elements
+   * @param action action to call
+   */
+  private static <E> void forEachLeaf(final Node<?, E>[] nodes, final long from,
+      final long len, final LeafConsumer<E> action) {
+    long pos = from, rest = len;
+    for(int i = 0; rest > 0; i++) {
+      final Node<?, E> node = nodes[i];
+      final long size = node.size();
+      if(pos < size) {
+        final long n = Math.min(size - pos, rest);
+        forEachLeaf(node, pos, n, action);
+        pos = 0;
+        rest -= n;
+      } else {
+        pos -= size;
+      }
+    }
+  }
+
+  /**
+   * Calls the given action for the parts of the leaves below the given node that overlap the
+   * given range.
+   * @param <E> element type
+   * @param node the node
+   * @param from position of the first element inside the node
+   * @param len number of elements
+   * @param action action to call
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> void forEachLeaf(final Node<?, E> node, final long from, final long len,
+      final LeafConsumer<E> action) {
+    if(node instanceof InnerNode) {
+      forEachLeaf(((InnerNode<?, E>) node).children, from, len, action);
+    } else {
+      action.accept((Node<E, E>) node, (int) from, (int) len);
+    }
+  }
+
+  /**
+   * Calls the given action for every leaf node below the given node.
+   * @param <E> element type
+   * @param node the node
+   * @param action action to call
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> void forEachLeaf(final Node<?, E> node,
+      final Consumer<? super Node<E, E>> action) {
+    if(node instanceof InnerNode) {
+      for(final Node<?, E> child : ((InnerNode<?, E>) node).children) forEachLeaf(child, action);
+    } else {
+      action.accept((Node<E, E>) node);
+    }
+  }
+
+  /**
+   * Writes this tree to the given output. Sub-trees and inner nodes that were already written
+   * to the output are written as back-references.
+   * @param out output
+   * @param leaves writer for the leaf nodes
+   * @throws IOException I/O exception
+   */
+  public final void write(final SharingOutput out, final ValueWriter<? super Node<E, E>> leaves)
+      throws IOException {
+    TreeCodec.write(this, 0, out, leaves);
+  }
+
+  /**
+   * Reads a tree written by {@link #write(SharingOutput, ValueWriter)}.
+   * @param <E> element type
+   * @param in input
+   * @param leaves reader for the leaf nodes
+   * @return the tree
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> FingerTree<E, E> read(final SharingInput in,
+      final ValueReader<? extends Node<E, E>> leaves) throws IOException {
+    return (FingerTree<E, E>) TreeCodec.read(0, in, leaves);
   }
 
   /**
@@ -183,6 +427,29 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
    */
   public abstract FingerTree<N, E> insert(final long pos, final E val);
 
+  /**
+   * Replaces the element at the given position in this tree with the result of applying the
+   * given function to it. Only the digit and the inner nodes on the path to the element are copied.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return resulting tree
+   * @throws AssertionError if this tree is empty
+   */
+  public abstract FingerTree<N, E> update(final long pos, final UnaryOperator<E> fun);
+
+  /**
+   * Replaces the element at the given position in this tree.
+   * Running time: <i>O(log n)</i>
+   * @param pos position of the element
+   * @param val new element
+   * @return resulting tree
+   * @throws AssertionError if this tree is empty
+   */
+  public final FingerTree<N, E> set(final long pos, final E val) {
+    return update(pos, old -> val);
+  }
+
   /**
    * Removes an element from this tree.
    * @param pos position of the element to remove
@@ -249,7 +516,7 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
       final int rem = ns - i, sz = (remaining - j + rem - 1) / rem;
       @SuppressWarnings("unchecked")
       final Node<N, E>[] ch = new Node[sz];
-      System.arraycopy(nodes, j, ch, 0, sz);
+      System.arraycopy(nodes, k + j, ch, 0, sz);
       outNodes[i] = new InnerNode<>(ch);
       j += sz;
     }
@@ -324,4 +591,47 @@ public abstract class FingerTree<N, E> implements Iterable<E> {
       }
     }
   }
+
+  /**
+   * Task filling a range of a leaf array in parallel.
+   *
+   * @param <E> element type
+   */
+  private static final class LeafTask<E> extends RecursiveAction {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** Leaf array. */
+    private final Node<E, E>[] leaves;
+    /** First position to fill. */
+    private final int from;
+    /** Position after the last one to fill. */
+    private final int to;
+    /** Function creating the leaves. */
+    private final IntFunction<? extends Node<E, E>> leaf;
+
+    /**
+     * Constructor.
+     * @param leaves leaf array
+     * @param from first position to fill
+     * @param to position after the last one to fill
+     * @param leaf function creating the leaves
+     */
+    LeafTask(final Node<E, E>[] leaves, final int from, final int to,
+        final IntFunction<? extends Node<E, E>> leaf) {
+      this.leaves = leaves;
+      this.from = from;
+      this.to = to;
+      this.leaf = leaf;
+    }
+
+    @Override
+    protected void compute() {
+      if(to - from < PARALLEL_LEAVES) {
+        for(int i = from; i < to; i++) leaves[i] = leaf.apply(i);
+      } else {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new LeafTask<>(leaves, from, mid, leaf), new LeafTask<>(leaves, mid, to, leaf));
+      }
+    }
+  }
 }
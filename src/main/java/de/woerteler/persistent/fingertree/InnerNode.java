@@ -1,5 +1,7 @@
 package de.woerteler.persistent.fingertree;
 
+import java.util.function.*;
+
 /**
  * An inner node containing nested sub-nodes.
  *
@@ -13,6 +15,8 @@ final class InnerNode<N, E> implements Node<Node<N, E>, E> {
   final Node<N, E>[] children;
   /** Right bound for the elements' index in each sub-node. */
   final long[] bounds;
+  /** Cached measures of this node, most recent first, see {@link TreeMeasures}. */
+  TreeMeasures.Cached cached;
 
   /**
    * Constructor.
@@ -54,6 +58,15 @@ final class InnerNode<N, E> implements Node<Node<N, E>, E> {
     return new InnerNode<>(newChildren);
   }
 
+  @Override
+  public Node<Node<N, E>, E> update(final long pos, final UnaryOperator<E> fun) {
+    int i = 0;
+    while(pos >= bounds[i]) i++;
+    final Node<N, E>[] out = children.clone();
+    out[i] = children[i].update(i == 0 ? pos : pos - bounds[i - 1], fun);
+    return new InnerNode<>(out);
+  }
+
   @Override
   public boolean insert(final Node<Node<N, E>, E>[] siblings, final long index, final E val) {
     final Node<Node<N, E>, E> left = siblings[0], right = siblings[2];
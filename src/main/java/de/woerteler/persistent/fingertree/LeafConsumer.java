@@ -0,0 +1,18 @@
+package de.woerteler.persistent.fingertree;
+
+/**
+ * Callback receiving the parts of leaf nodes that overlap a range of a finger tree.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+@FunctionalInterface
+public interface LeafConsumer<E> {
+  /**
+   * Consumes the elements at the positions {@code off} to {@code off + len - 1} of a leaf.
+   * @param leaf leaf node
+   * @param off position of the first element in the leaf
+   * @param len number of elements, always positive
+   */
+  void accept(Node<E, E> leaf, int off, int len);
+}
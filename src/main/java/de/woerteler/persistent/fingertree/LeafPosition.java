@@ -0,0 +1,25 @@
+package de.woerteler.persistent.fingertree;
+
+/**
+ * A leaf of a finger tree together with a position inside it, returned by
+ * {@link FingerTree#locate(long)}.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+public final class LeafPosition<E> {
+  /** The leaf node. */
+  public final Node<E, E> leaf;
+  /** Position of the element in the leaf. */
+  public final int pos;
+
+  /**
+   * Constructor.
+   * @param leaf the leaf node
+   * @param pos position of the element in the leaf
+   */
+  LeafPosition(final Node<E, E> leaf, final int pos) {
+    this.leaf = leaf;
+    this.pos = pos;
+  }
+}
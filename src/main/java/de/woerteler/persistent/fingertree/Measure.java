@@ -0,0 +1,34 @@
+package de.woerteler.persistent.fingertree;
+
+/**
+ * A monoid summarizing the elements of a finger tree, e.g. their maximum or the last key of a
+ * sorted sequence. The measures of inner nodes and sub-trees are computed on demand and cached,
+ * the cache is only used for the same instance of a measure and holds a few measures per node.
+ * Implementations should therefore be kept in constants instead of being created for every call.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ * @param <M> type of the measure
+ */
+public interface Measure<E, M> {
+  /**
+   * Measure of the empty sequence, the neutral element of {@link #combine(Object, Object)}.
+   * @return the neutral element
+   */
+  M identity();
+
+  /**
+   * Measure of a single element.
+   * @param elem the element
+   * @return its measure
+   */
+  M of(final E elem);
+
+  /**
+   * Combines the measures of two adjacent sequences. This operation has to be associative.
+   * @param left measure of the left sequence
+   * @param right measure of the right sequence
+   * @return measure of the concatenation of both sequences
+   */
+  M combine(final M left, final M right);
+}
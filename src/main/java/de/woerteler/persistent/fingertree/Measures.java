@@ -0,0 +1,133 @@
+package de.woerteler.persistent.fingertree;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Commonly used {@link Measure}s. Measures are cached by instance, so the measures returned by
+ * the factory methods should be created once and kept in a constant.
+ *
+ * @author Leo Woerteler
+ */
+public final class Measures {
+  /** Polynomial hash code of a sequence, see {@link #hash()}. */
+  private static final Measure<Object, Long> HASH = new Measure<Object, Long>() {
+    @Override
+    public Long identity() {
+      return 1L;
+    }
+
+    @Override
+    public Long of(final Object elem) {
+      return (long) (elem == null ? 0 : elem.hashCode()) << 32 | HASH_BASE;
+    }
+
+    @Override
+    public Long combine(final Long left, final Long right) {
+      final int lh = (int) (left >>> 32), lp = (int) (long) left;
+      final int rh = (int) (right >>> 32), rp = (int) (long) right;
+      return (long) (lh * rp + rh) << 32 | (lp * rp) & 0xFFFFFFFFL;
+    }
+  };
+
+  /** Base of the polynomial hash, the same as in {@link List#hashCode()}. */
+  private static final int HASH_BASE = 31;
+
+  /** Hidden constructor. */
+  private Measures() {
+  }
+
+  /**
+   * Measure summing up a value derived from each element. Prefix sums make it possible to find
+   * the element at a given weighted position.
+   * @param <E> element type
+   * @param fun function computing the value of an element
+   * @return the measure
+   */
+  public static <E> Measure<E, Long> sum(final ToLongFunction<? super E> fun) {
+    return new Measure<E, Long>() {
+      @Override
+      public Long identity() {
+        return 0L;
+      }
+
+      @Override
+      public Long of(final E elem) {
+        return fun.applyAsLong(elem);
+      }
+
+      @Override
+      public Long combine(final Long left, final Long right) {
+        return left + right;
+      }
+    };
+  }
+
+  /**
+   * Measure counting the elements satisfying the given predicate.
+   * @param <E> element type
+   * @param pred the predicate
+   * @return the measure
+   */
+  public static <E> Measure<E, Long> count(final Predicate<? super E> pred) {
+    return sum(elem -> pred.test(elem) ? 1 : 0);
+  }
+
+  /**
+   * Measure selecting the smallest element, {@code null} for the empty sequence. Of several
+   * equal elements the leftmost one is selected.
+   * @param <E> element type
+   * @param comparator comparator for the elements
+   * @return the measure
+   */
+  public static <E> Measure<E, E> min(final Comparator<? super E> comparator) {
+    return new Measure<E, E>() {
+      @Override
+      public E identity() {
+        return null;
+      }
+
+      @Override
+      public E of(final E elem) {
+        return elem;
+      }
+
+      @Override
+      public E combine(final E left, final E right) {
+        return left == null ? right : right == null ? left
+            : comparator.compare(left, right) <= 0 ? left : right;
+      }
+    };
+  }
+
+  /**
+   * Measure selecting the greatest element, {@code null} for the empty sequence. Of several
+   * equal elements the leftmost one is selected.
+   * @param <E> element type
+   * @param comparator comparator for the elements
+   * @return the measure
+   */
+  public static <E> Measure<E, E> max(final Comparator<? super E> comparator) {
+    return min(comparator.reversed());
+  }
+
+  /**
+   * Measure computing the hash code of a sequence as defined by {@link List#hashCode()}. The
+   * measure packs the hash of the elements into the upper and the power of the base into the
+   * lower 32 bits of a {@code long}, use {@link #hashCode(long)} to extract the hash code.
+   * Since there is only one instance, it can be used directly.
+   * @return the measure
+   */
+  public static Measure<Object, Long> hash() {
+    return HASH;
+  }
+
+  /**
+   * Extracts the hash code from a value of the {@link #hash()} measure.
+   * @param measure the measure
+   * @return the hash code, equal to that of a {@link List} containing the same elements
+   */
+  public static int hashCode(final long measure) {
+    return (int) (measure >>> 32) + (int) measure;
+  }
+}
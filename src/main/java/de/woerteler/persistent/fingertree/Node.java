@@ -1,5 +1,7 @@
 package de.woerteler.persistent.fingertree;
 
+import java.util.function.*;
+
 /**
  * A node inside a digit.
  *
@@ -34,6 +36,15 @@ public interface Node<N, E> extends NodeLike<N, E> {
    */
   Node<N, E> reverse();
 
+  /**
+   * Replaces the element at the given position in this node with the result of applying the
+   * given function to it. Only the nodes on the path to the element are copied.
+   * @param pos position of the element
+   * @param fun function computing the new element from the old one
+   * @return the updated node
+   */
+  Node<N, E> update(final long pos, final UnaryOperator<E> fun);
+
   /**
    * Inserts the given element at the given position in this node.
    * The array {@code siblings} is used for input as well as output. It must contain the left and
@@ -1,5 +1,7 @@
 package de.woerteler.persistent.fingertree;
 
+import java.util.function.*;
+
 /**
  * A tree consisting of a single value.
  *
@@ -87,6 +89,11 @@ final class SingletonTree<N, E> extends FingerTree<N, E> {
     return DeepTree.get(left, l.size(), right, elem.size() + 1);
   }
 
+  @Override
+  public FingerTree<N, E> update(final long pos, final UnaryOperator<E> fun) {
+    return new SingletonTree<>(elem.update(pos, fun));
+  }
+
   @Override
   public TreeSlice<N, E> remove(final long pos) {
     final NodeLike<N, E>[] removed = elem.remove(null, null, pos);
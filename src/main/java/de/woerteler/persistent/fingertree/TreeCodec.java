@@ -0,0 +1,165 @@
+package de.woerteler.persistent.fingertree;
+
+import java.io.*;
+
+import de.woerteler.persistent.io.*;
+
+/**
+ * Binary serialization of finger trees. Trees and inner nodes are written once per
+ * {@link SharingOutput}, every later occurrence is written as a back-reference.
+ * Leaves are written and read by a {@link ValueWriter} and {@link ValueReader} supplied by
+ * the array implementation.
+ *
+ * @author Leo Woerteler
+ */
+final class TreeCodec {
+  /** Tag of the empty tree. */
+  private static final int EMPTY = 0;
+  /** Tag of a singleton tree. */
+  private static final int SINGLE = 1;
+  /** Tag of a deep tree. */
+  private static final int DEEP = 2;
+
+  /** Hidden constructor. */
+  private TreeCodec() {
+  }
+
+  /**
+   * Writes a tree.
+   * @param <E> element type
+   * @param tree tree to write
+   * @param depth nesting depth of the tree, {@code 0} for the root
+   * @param out output
+   * @param leaves writer for the leaves
+   * @throws IOException I/O exception
+   */
+  static <E> void write(final FingerTree<?, E> tree, final int depth, final SharingOutput out,
+      final ValueWriter<? super Node<E, E>> leaves) throws IOException {
+    if(out.writeReference(tree)) return;
+    if(tree instanceof EmptyTree) {
+      // the empty tree is a singleton, no need to register it
+      out.writeByte(EMPTY);
+      return;
+    }
+    if(tree instanceof SingletonTree) {
+      out.writeByte(SINGLE);
+      writeNode(((SingletonTree<?, E>) tree).elem, depth, out, leaves);
+    } else {
+      final DeepTree<?, E> deep = (DeepTree<?, E>) tree;
+      out.writeByte(DEEP);
+      writeDigit(deep.left, depth, out, leaves);
+      write(deep.middle, depth + 1, out, leaves);
+      writeDigit(deep.right, depth, out, leaves);
+    }
+    out.register(tree);
+  }
+
+  /**
+   * Writes a digit of a deep tree.
+   * @param <E> element type
+   * @param digit the digit
+   * @param depth depth of the nodes in the digit
+   * @param out output
+   * @param leaves writer for the leaves
+   * @throws IOException I/O exception
+   */
+  private static <E> void writeDigit(final Node<?, E>[] digit, final int depth,
+      final SharingOutput out, final ValueWriter<? super Node<E, E>> leaves) throws IOException {
+    out.writeByte(digit.length);
+    for(final Node<?, E> nd : digit) writeNode(nd, depth, out, leaves);
+  }
+
+  /**
+   * Writes a node.
+   * @param <E> element type
+   * @param node the node
+   * @param depth depth of the node, {@code 0} for leaves
+   * @param out output
+   * @param leaves writer for the leaves
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> void writeNode(final Node<?, E> node, final int depth,
+      final SharingOutput out, final ValueWriter<? super Node<E, E>> leaves) throws IOException {
+    if(depth == 0) {
+      leaves.write(out, (Node<E, E>) node);
+      return;
+    }
+    if(out.writeReference(node)) return;
+    final Node<?, E>[] children = ((InnerNode<?, E>) node).children;
+    out.writeByte(children.length);
+    for(final Node<?, E> child : children) writeNode(child, depth - 1, out, leaves);
+    out.register(node);
+  }
+
+  /**
+   * Reads a tree written by {@link #write(FingerTree, int, SharingOutput, ValueWriter)}.
+   * @param <E> element type
+   * @param depth nesting depth of the tree, {@code 0} for the root
+   * @param in input
+   * @param leaves reader for the leaves
+   * @return the tree
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static <E> FingerTree<?, E> read(final int depth, final SharingInput in,
+      final ValueReader<? extends Node<E, E>> leaves) throws IOException {
+    final Object ref = in.readReference();
+    if(ref != null) return (FingerTree<?, E>) ref;
+    final int tag = in.readUnsignedByte();
+    switch(tag) {
+      case EMPTY:
+        return FingerTree.empty();
+      case SINGLE:
+        return in.register(new SingletonTree(readNode(depth, in, leaves)));
+      case DEEP:
+        final Node[] left = readDigit(depth, in, leaves);
+        final FingerTree middle = read(depth + 1, in, leaves);
+        final Node[] right = readDigit(depth, in, leaves);
+        return in.register(DeepTree.get(left, middle, right));
+      default:
+        throw new IOException("Invalid tree tag: " + tag);
+    }
+  }
+
+  /**
+   * Reads a digit of a deep tree.
+   * @param <E> element type
+   * @param depth depth of the nodes in the digit
+   * @param in input
+   * @param leaves reader for the leaves
+   * @return the digit
+   * @throws IOException I/O exception
+   */
+  private static <E> Node<?, E>[] readDigit(final int depth, final SharingInput in,
+      final ValueReader<? extends Node<E, E>> leaves) throws IOException {
+    final int n = in.readUnsignedByte();
+    if(n == 0 || n > FingerTree.MAX_DIGIT) throw new IOException("Invalid digit size: " + n);
+    @SuppressWarnings("unchecked")
+    final Node<?, E>[] digit = new Node[n];
+    for(int i = 0; i < n; i++) digit[i] = readNode(depth, in, leaves);
+    return digit;
+  }
+
+  /**
+   * Reads a node.
+   * @param <E> element type
+   * @param depth depth of the node, {@code 0} for leaves
+   * @param in input
+   * @param leaves reader for the leaves
+   * @return the node
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <E> Node<?, E> readNode(final int depth, final SharingInput in,
+      final ValueReader<? extends Node<E, E>> leaves) throws IOException {
+    if(depth == 0) return leaves.read(in);
+    final Object ref = in.readReference();
+    if(ref != null) return (Node<?, E>) ref;
+    final int n = in.readUnsignedByte();
+    if(n < 2 || n > FingerTree.MAX_ARITY) throw new IOException("Invalid node arity: " + n);
+    final Node[] children = new Node[n];
+    for(int i = 0; i < n; i++) children[i] = readNode(depth - 1, in, leaves);
+    return in.register(new InnerNode(children));
+  }
+}
@@ -0,0 +1,232 @@
+package de.woerteler.persistent.fingertree;
+
+import java.util.function.*;
+
+/**
+ * Computation of {@link Measure}s of finger trees and searches guided by them. The measures of
+ * {@link InnerNode}s and {@link DeepTree}s are cached in the nodes themselves when they are first
+ * requested, leaves are always measured element by element. Every node keeps the values of the
+ * {@link #MAX_CACHED} most recently added measures, so a few measures used alternately on the
+ * same tree do not evict each other.
+ *
+ * @author Leo Woerteler
+ */
+@SuppressWarnings("unchecked")
+final class TreeMeasures {
+  /** Maximum number of measures cached per node or tree. */
+  static final int MAX_CACHED = 4;
+
+  /** Hidden constructor. */
+  private TreeMeasures() {
+  }
+
+  /**
+   * Measure of all elements in the given tree.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param tree the tree
+   * @param measure the measure
+   * @return measure of the tree
+   */
+  static <E, M> M measure(final FingerTree<?, E> tree, final Measure<? super E, M> measure) {
+    if(tree instanceof SingletonTree) return measure(((SingletonTree<?, E>) tree).elem, measure);
+    if(!(tree instanceof DeepTree)) return measure.identity();
+
+    final DeepTree<?, E> deep = (DeepTree<?, E>) tree;
+    final Cached cached = deep.cached, hit = Cached.get(cached, measure);
+    if(hit != null) return (M) hit.value;
+    final M left = measure(deep.left, measure), mid = measure(deep.middle, measure);
+    final M res = measure.combine(measure.combine(left, mid), measure(deep.right, measure));
+    deep.cached = Cached.add(cached, measure, res);
+    return res;
+  }
+
+  /**
+   * Measure of all elements in the given non-empty array of nodes.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param nodes the nodes
+   * @param measure the measure
+   * @return measure of the nodes
+   */
+  private static <E, M> M measure(final Node<?, E>[] nodes, final Measure<? super E, M> measure) {
+    M res = measure(nodes[0], measure);
+    for(int i = 1; i < nodes.length; i++) res = measure.combine(res, measure(nodes[i], measure));
+    return res;
+  }
+
+  /**
+   * Measure of all elements in the given node.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param node the node
+   * @param measure the measure
+   * @return measure of the node
+   */
+  static <E, M> M measure(final Node<?, E> node, final Measure<? super E, M> measure) {
+    if(node instanceof InnerNode) {
+      final InnerNode<?, E> inner = (InnerNode<?, E>) node;
+      final Cached cached = inner.cached, hit = Cached.get(cached, measure);
+      if(hit != null) return (M) hit.value;
+      final M res = measure(inner.children, measure);
+      inner.cached = Cached.add(cached, measure, res);
+      return res;
+    }
+
+    final int n = node.arity();
+    M res = measure.of((E) node.getSub(0));
+    for(int i = 1; i < n; i++) res = measure.combine(res, measure.of((E) node.getSub(i)));
+    return res;
+  }
+
+  /**
+   * Searches for the first element in the given tree for which the predicate holds on the
+   * measure of all elements up to and including it.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param tree the tree
+   * @param measure the measure
+   * @param acc single-element array holding the measure of all preceding elements, updated with
+   *   the measure up to the found element or of the whole tree
+   * @param pred monotone predicate
+   * @return position of the element in the tree, {@code -1} if there is none
+   */
+  static <E, M> long search(final FingerTree<?, E> tree, final Measure<? super E, M> measure,
+      final Object[] acc, final Predicate<? super M> pred) {
+    if(tree.isEmpty()) return -1;
+    final M total = measure.combine((M) acc[0], measure(tree, measure));
+    if(!pred.test(total)) {
+      acc[0] = total;
+      return -1;
+    }
+    if(tree instanceof SingletonTree) {
+      return search(((SingletonTree<?, E>) tree).elem, measure, acc, pred);
+    }
+
+    final DeepTree<?, E> deep = (DeepTree<?, E>) tree;
+    final long l = search(deep.left, measure, acc, pred);
+    if(l >= 0) return l;
+    final long m = search(deep.middle, measure, acc, pred);
+    if(m >= 0) return deep.leftSize + m;
+    final long r = search(deep.right, measure, acc, pred);
+    return r < 0 ? -1 : deep.leftSize + deep.middle.size() + r;
+  }
+
+  /**
+   * Searches for the first element in the given nodes for which the predicate holds on the
+   * measure of all elements up to and including it.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param nodes the nodes
+   * @param measure the measure
+   * @param acc single-element array holding the measure of all preceding elements
+   * @param pred monotone predicate
+   * @return position of the element relative to the first node, {@code -1} if there is none
+   */
+  private static <E, M> long search(final Node<?, E>[] nodes, final Measure<? super E, M> measure,
+      final Object[] acc, final Predicate<? super M> pred) {
+    long off = 0;
+    for(final Node<?, E> node : nodes) {
+      final long pos = search(node, measure, acc, pred);
+      if(pos >= 0) return off + pos;
+      off += node.size();
+    }
+    return -1;
+  }
+
+  /**
+   * Searches for the first element in the given node for which the predicate holds on the
+   * measure of all elements up to and including it.
+   * @param <E> element type
+   * @param <M> measure type
+   * @param node the node
+   * @param measure the measure
+   * @param acc single-element array holding the measure of all preceding elements
+   * @param pred monotone predicate
+   * @return position of the element in the node, {@code -1} if there is none
+   */
+  private static <E, M> long search(final Node<?, E> node, final Measure<? super E, M> measure,
+      final Object[] acc, final Predicate<? super M> pred) {
+    if(node instanceof InnerNode) {
+      final M total = measure.combine((M) acc[0], measure(node, measure));
+      if(!pred.test(total)) {
+        acc[0] = total;
+        return -1;
+      }
+      return search(((InnerNode<?, E>) node).children, measure, acc, pred);
+    }
+
+    // leaves are scanned directly
+    final int n = node.arity();
+    for(int i = 0; i < n; i++) {
+      final M curr = measure.combine((M) acc[0], measure.of((E) node.getSub(i)));
+      acc[0] = curr;
+      if(pred.test(curr)) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * A measure cached in a node or tree, linked to the measures cached before it. The entries are
+   * immutable, so concurrent updates of a node's cache can only lose entries.
+   */
+  static final class Cached {
+    /** The measure. */
+    final Measure<?, ?> measure;
+    /** Its value. */
+    final Object value;
+    /** Next older entry, {@code null} if this is the last one. */
+    final Cached next;
+    /** Number of entries in this chain. */
+    final int count;
+
+    /**
+     * Constructor.
+     * @param measure the measure
+     * @param value its value
+     * @param next next older entry, may be {@code null}
+     */
+    private Cached(final Measure<?, ?> measure, final Object value, final Cached next) {
+      this.measure = measure;
+      this.value = value;
+      this.next = next;
+      this.count = next == null ? 1 : next.count + 1;
+    }
+
+    /**
+     * Returns the entry for the given measure.
+     * @param cached first entry of the chain, may be {@code null}
+     * @param measure the measure
+     * @return the entry, {@code null} if the measure is not cached
+     */
+    static Cached get(final Cached cached, final Measure<?, ?> measure) {
+      for(Cached c = cached; c != null; c = c.next) {
+        if(c.measure == measure) return c;
+      }
+      return null;
+    }
+
+    /**
+     * Adds a measure in front of the given chain, dropping the oldest entries if there would be
+     * more than {@link #MAX_CACHED}.
+     * @param cached first entry of the chain, may be {@code null}
+     * @param measure the measure
+     * @param value its value
+     * @return the new first entry
+     */
+    static Cached add(final Cached cached, final Measure<?, ?> measure, final Object value) {
+      return new Cached(measure, value, truncate(cached, MAX_CACHED - 1));
+    }
+
+    /**
+     * Returns a chain containing the first {@code n} entries of the given one.
+     * @param cached first entry of the chain, may be {@code null}
+     * @param n maximum number of entries
+     * @return the shortened chain, {@code cached} itself if it is short enough
+     */
+    private static Cached truncate(final Cached cached, final int n) {
+      if(cached == null || cached.count <= n) return cached;
+      return n == 0 ? null : new Cached(cached.measure, cached.value, truncate(cached.next, n - 1));
+    }
+  }
+}
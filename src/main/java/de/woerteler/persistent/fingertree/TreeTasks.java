@@ -0,0 +1,337 @@
+package de.woerteler.persistent.fingertree;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Fork/join tasks traversing the leaves of a finger tree in parallel. The digits of deep trees
+ * and the children of inner nodes are processed as separate tasks as long as they contain at
+ * least {@link #PARALLEL_SIZE} elements, smaller parts are processed sequentially.
+ * <p>
+ * The node type of a tree depends on its nesting depth, so trees and nodes below the root are
+ * handled with wildcards. The unchecked casts are confined to a few small helper methods, which
+ * are only called with nodes and trees of matching depths.
+ *
+ * @author Leo Woerteler
+ */
+final class TreeTasks {
+  /** Minimum number of elements in a part of a tree that is split into sub-tasks. */
+  static final long PARALLEL_SIZE = 1 << 14;
+
+  /** Hidden constructor. */
+  private TreeTasks() {
+  }
+
+  /**
+   * Replaces every leaf of the given tree by the result of the given function.
+   * @param <E> element type
+   * @param <R> result type
+   * @param tree the tree
+   * @param fun function mapping a leaf to one of the same size
+   * @return tree with the same shape as the input
+   */
+  static <E, R> FingerTree<R, R> map(final FingerTree<E, E> tree,
+      final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+    final MapTask<E, R> task = new MapTask<>(tree, fun);
+    final FingerTree<?, R> res = tree.size() < PARALLEL_SIZE ? task.compute()
+        : ForkJoinPool.commonPool().invoke(task);
+    // the root of the mapped tree has the same depth as the input, its nodes are leaves
+    @SuppressWarnings("unchecked")
+    final FingerTree<R, R> root = (FingerTree<R, R>) res;
+    return root;
+  }
+
+  /**
+   * Combines the results of the given function for all leaves of the given tree from left to
+   * right.
+   * @param <E> element type
+   * @param <R> result type
+   * @param tree the tree
+   * @param empty result for the empty tree
+   * @param leaf function applied to every leaf
+   * @param combine associative function combining two adjacent results
+   * @return the combined result
+   */
+  static <E, R> R fold(final FingerTree<E, E> tree, final R empty,
+      final Function<? super Node<E, E>, ? extends R> leaf, final BinaryOperator<R> combine) {
+    if(tree.isEmpty()) return empty;
+    final FoldTask<E, R> task = new FoldTask<>(tree, null, leaf, combine);
+    return tree.size() < PARALLEL_SIZE ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+  }
+
+  /**
+   * Creates a deep tree from mapped digits and middle tree.
+   * @param <R> element type
+   * @param left left digit
+   * @param leftSize size of the left digit
+   * @param middle middle tree, one level deeper than the digits
+   * @param right right digit
+   * @param size size of the tree
+   * @return the deep tree
+   */
+  @SuppressWarnings("unchecked")
+  private static <R> DeepTree<?, R> deep(final Node<?, R>[] left, final long leftSize,
+      final FingerTree<?, R> middle, final Node<?, R>[] right, final long size) {
+    return new DeepTree<>((Node<Object, R>[]) left, leftSize,
+        (FingerTree<Node<Object, R>, R>) middle, (Node<Object, R>[]) right, size);
+  }
+
+  /**
+   * Creates an inner node from mapped children.
+   * @param <R> element type
+   * @param children the children, all of the same depth
+   * @return the inner node
+   */
+  @SuppressWarnings("unchecked")
+  private static <R> InnerNode<?, R> inner(final Node<?, R>[] children) {
+    return new InnerNode<>((Node<Object, R>[]) children);
+  }
+
+  /**
+   * Casts a node without children to a leaf.
+   * @param <E> element type
+   * @param node the node
+   * @return the leaf
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> Node<E, E> leaf(final Node<?, E> node) {
+    return (Node<E, E>) node;
+  }
+
+  /**
+   * Returns the children of an inner node.
+   * @param <E> element type
+   * @param node the inner node
+   * @return the children
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> Node<?, E>[] children(final Node<?, E> node) {
+    return ((InnerNode<?, E>) node).children;
+  }
+
+  /**
+   * Creates an array for mapped nodes.
+   * @param <R> element type
+   * @param n length of the array
+   * @return the array
+   */
+  @SuppressWarnings("unchecked")
+  private static <R> Node<?, R>[] nodeArray(final int n) {
+    return (Node<?, R>[]) new Node<?, ?>[n];
+  }
+
+  /**
+   * Task mapping the leaves of a tree.
+   * @param <E> element type
+   * @param <R> result type
+   */
+  private static final class MapTask<E, R> extends RecursiveTask<FingerTree<?, R>> {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** The tree to map. */
+    private final FingerTree<?, E> tree;
+    /** Function mapping the leaves. */
+    private final Function<? super Node<E, E>, ? extends Node<R, R>> fun;
+
+    /**
+     * Constructor.
+     * @param tree tree to map
+     * @param fun function mapping the leaves
+     */
+    MapTask(final FingerTree<?, E> tree,
+        final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+      this.tree = tree;
+      this.fun = fun;
+    }
+
+    @Override
+    protected FingerTree<?, R> compute() {
+      return tree(tree);
+    }
+
+    /**
+     * Maps the leaves of a tree.
+     * @param tr the tree
+     * @return the resulting tree
+     */
+    private FingerTree<?, R> tree(final FingerTree<?, E> tr) {
+      if(tr instanceof SingletonTree) {
+        return new SingletonTree<>(node(((SingletonTree<?, E>) tr).elem, fun));
+      }
+      if(!(tr instanceof DeepTree)) return EmptyTree.getInstance();
+
+      final DeepTree<?, E> deep = (DeepTree<?, E>) tr;
+      final long rightSize = deep.size - deep.leftSize - deep.middle.size();
+      if(deep.size < PARALLEL_SIZE) {
+        return deep(nodes(deep.left, deep.leftSize, fun), deep.leftSize, tree(deep.middle),
+            nodes(deep.right, rightSize, fun), deep.size);
+      }
+      final MapTask<E, R> middle = new MapTask<>(deep.middle, fun);
+      middle.fork();
+      final Node<?, R>[] left = nodes(deep.left, deep.leftSize, fun);
+      final Node<?, R>[] right = nodes(deep.right, rightSize, fun);
+      return deep(left, deep.leftSize, middle.join(), right, deep.size);
+    }
+
+    /**
+     * Maps the leaves of the given nodes.
+     * @param <E> element type
+     * @param <R> result type
+     * @param nodes the nodes
+     * @param size number of elements in all nodes
+     * @param fun function mapping the leaves
+     * @return the resulting nodes
+     */
+    static <E, R> Node<?, R>[] nodes(final Node<?, E>[] nodes, final long size,
+        final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+      final int n = nodes.length;
+      final Node<?, R>[] out = nodeArray(n);
+      if(size < PARALLEL_SIZE) {
+        for(int i = 0; i < n; i++) out[i] = node(nodes[i], fun);
+      } else {
+        final List<MapNodeTask<E, R>> tasks = new ArrayList<>(n);
+        for(final Node<?, E> node : nodes) tasks.add(new MapNodeTask<>(node, fun));
+        invokeAll(tasks);
+        for(int i = 0; i < n; i++) out[i] = tasks.get(i).join();
+      }
+      return out;
+    }
+
+    /**
+     * Maps the leaves below a node.
+     * @param <E> element type
+     * @param <R> result type
+     * @param node the node
+     * @param fun function mapping the leaves
+     * @return the resulting node
+     */
+    static <E, R> Node<?, R> node(final Node<?, E> node,
+        final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+      return node instanceof InnerNode
+          ? inner(nodes(children(node), node.size(), fun))
+          : fun.apply(leaf(node));
+    }
+  }
+
+  /**
+   * Task mapping the leaves below a node.
+   * @param <E> element type
+   * @param <R> result type
+   */
+  private static final class MapNodeTask<E, R> extends RecursiveTask<Node<?, R>> {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** The node to map. */
+    private final Node<?, E> node;
+    /** Function mapping the leaves. */
+    private final Function<? super Node<E, E>, ? extends Node<R, R>> fun;
+
+    /**
+     * Constructor.
+     * @param node node to map
+     * @param fun function mapping the leaves
+     */
+    MapNodeTask(final Node<?, E> node,
+        final Function<? super Node<E, E>, ? extends Node<R, R>> fun) {
+      this.node = node;
+      this.fun = fun;
+    }
+
+    @Override
+    protected Node<?, R> compute() {
+      return MapTask.node(node, fun);
+    }
+  }
+
+  /**
+   * Task folding the leaves of a tree or node.
+   * @param <E> element type
+   * @param <R> result type
+   */
+  private static final class FoldTask<E, R> extends RecursiveTask<R> {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** The tree to fold, {@code null} if a node is folded. */
+    private final FingerTree<?, E> tree;
+    /** The node to fold, {@code null} if a tree is folded. */
+    private final Node<?, E> node;
+    /** Function applied to the leaves. */
+    private final Function<? super Node<E, E>, ? extends R> leaf;
+    /** Function combining adjacent results. */
+    private final BinaryOperator<R> combine;
+
+    /**
+     * Constructor.
+     * @param tree non-empty tree to fold, {@code null} if a node is folded
+     * @param node node to fold, {@code null} if a tree is folded
+     * @param leaf function applied to the leaves
+     * @param combine function combining adjacent results
+     */
+    FoldTask(final FingerTree<?, E> tree, final Node<?, E> node,
+        final Function<? super Node<E, E>, ? extends R> leaf, final BinaryOperator<R> combine) {
+      this.tree = tree;
+      this.node = node;
+      this.leaf = leaf;
+      this.combine = combine;
+    }
+
+    @Override
+    protected R compute() {
+      return tree != null ? tree(tree) : node(node);
+    }
+
+    /**
+     * Folds the leaves of a non-empty tree.
+     * @param tr the tree
+     * @return the combined result
+     */
+    private R tree(final FingerTree<?, E> tr) {
+      if(tr instanceof SingletonTree) return node(((SingletonTree<?, E>) tr).elem);
+
+      final DeepTree<?, E> deep = (DeepTree<?, E>) tr;
+      final long rightSize = deep.size - deep.leftSize - deep.middle.size();
+      if(deep.middle.isEmpty()) {
+        return combine.apply(nodes(deep.left, deep.leftSize), nodes(deep.right, rightSize));
+      }
+      if(deep.size < PARALLEL_SIZE) {
+        final R left = nodes(deep.left, deep.leftSize), middle = tree(deep.middle);
+        return combine.apply(combine.apply(left, middle), nodes(deep.right, rightSize));
+      }
+      final FoldTask<E, R> middle = new FoldTask<>(deep.middle, null, leaf, combine);
+      middle.fork();
+      final R left = nodes(deep.left, deep.leftSize), right = nodes(deep.right, rightSize);
+      return combine.apply(combine.apply(left, middle.join()), right);
+    }
+
+    /**
+     * Folds the leaves of the given nodes.
+     * @param nodes the nodes, at least one
+     * @param size number of elements in all nodes
+     * @return the combined result
+     */
+    private R nodes(final Node<?, E>[] nodes, final long size) {
+      if(size < PARALLEL_SIZE) {
+        R res = node(nodes[0]);
+        for(int i = 1; i < nodes.length; i++) res = combine.apply(res, node(nodes[i]));
+        return res;
+      }
+      final List<FoldTask<E, R>> tasks = new ArrayList<>(nodes.length);
+      for(final Node<?, E> nd : nodes) tasks.add(new FoldTask<>(null, nd, leaf, combine));
+      invokeAll(tasks);
+      R res = tasks.get(0).join();
+      for(int i = 1; i < nodes.length; i++) res = combine.apply(res, tasks.get(i).join());
+      return res;
+    }
+
+    /**
+     * Folds the leaves below a node.
+     * @param nd the node
+     * @return the combined result
+     */
+    private R node(final Node<?, E> nd) {
+      return nd instanceof InnerNode ? nodes(children(nd), nd.size())
+          : leaf.apply(leaf(nd));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package de.woerteler.persistent.io;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Binary input reading persistent collections written by a {@link SharingOutput}.
+ * Back-references are resolved to the already read nodes, so the structural sharing of the
+ * written collections is preserved.
+ *
+ * @author Leo Woerteler
+ */
+public final class SharingInput extends DataInputStream {
+  /** Size of the input buffer. */
+  private static final int BUFFER = 1 << 16;
+
+  /** All nodes read so far, indexed by their identifier. */
+  private final ArrayList<Object> nodes = new ArrayList<>();
+
+  /**
+   * Constructor reading from an input stream.
+   * @param in input stream
+   * @throws IOException I/O exception, or if the stream was not written by a
+   *   {@link SharingOutput}
+   */
+  public SharingInput(final InputStream in) throws IOException {
+    super(new BufferedInputStream(in, BUFFER));
+    final int magic = readInt();
+    if(magic != SharingOutput.MAGIC)
+      throw new IOException("Unknown stream format: " + Integer.toHexString(magic));
+  }
+
+  /**
+   * Constructor reading from a channel.
+   * @param channel channel to read from
+   * @throws IOException I/O exception, or if the stream was not written by a
+   *   {@link SharingOutput}
+   */
+  public SharingInput(final ReadableByteChannel channel) throws IOException {
+    this(Channels.newInputStream(channel));
+  }
+
+  /**
+   * Reads a reference written by {@link SharingOutput#writeReference(Object)}.
+   * @return the referenced node, or {@code null} if a new node follows, which has to be read
+   *   and then passed to {@link #register(Object)}
+   * @throws IOException I/O exception, or if the reference is invalid
+   */
+  public Object readReference() throws IOException {
+    final int ref = readVarInt();
+    if(ref == 0) return null;
+    if(ref > nodes.size()) throw new IOException("Invalid back-reference: " + (ref - 1));
+    return nodes.get(ref - 1);
+  }
+
+  /**
+   * Registers a completely read node, so that it can be referenced later.
+   * @param <T> node type
+   * @param node the node
+   * @return the node for convenience
+   */
+  public <T> T register(final T node) {
+    nodes.add(node);
+    return node;
+  }
+
+  /**
+   * Reads a non-negative integer written by {@link SharingOutput#writeVarInt(int)}.
+   * @return the integer
+   * @throws IOException I/O exception
+   */
+  public int readVarInt() throws IOException {
+    int v = 0;
+    for(int shift = 0;; shift += 7) {
+      final int b = readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if((b & 0x80) == 0) return v;
+      if(shift > 28) throw new IOException("Malformed integer");
+    }
+  }
+}
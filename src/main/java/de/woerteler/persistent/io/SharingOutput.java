@@ -0,0 +1,87 @@
+package de.woerteler.persistent.io;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Binary output for persistent collections that writes every shared node only once.
+ * Nodes that were already written, by the same or by an earlier collection, are replaced by
+ * back-references, so writing many versions of a collection to the same output costs about
+ * the size of their differences. Streams written by this class are read by a
+ * {@link SharingInput}.
+ *
+ * @author Leo Woerteler
+ */
+public final class SharingOutput extends DataOutputStream {
+  /** Magic number at the start of every stream. */
+  static final int MAGIC = 0x50455253;
+  /** Size of the output buffer. */
+  private static final int BUFFER = 1 << 16;
+
+  /** Identifiers of all nodes written so far. */
+  private final IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+
+  /**
+   * Constructor writing to an output stream.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  public SharingOutput(final OutputStream out) throws IOException {
+    super(new BufferedOutputStream(out, BUFFER));
+    writeInt(MAGIC);
+  }
+
+  /**
+   * Constructor writing to a channel.
+   * @param channel channel to write to
+   * @throws IOException I/O exception
+   */
+  public SharingOutput(final WritableByteChannel channel) throws IOException {
+    this(Channels.newOutputStream(channel));
+  }
+
+  /**
+   * Writes a back-reference if the given node was written before, and a marker for a new
+   * node otherwise. In the latter case the caller has to write the node and then call
+   * {@link #register(Object)}.
+   * @param node node to write
+   * @return {@code true} if a back-reference was written, {@code false} otherwise
+   * @throws IOException I/O exception
+   */
+  public boolean writeReference(final Object node) throws IOException {
+    final Integer id = ids.get(node);
+    writeVarInt(id == null ? 0 : id + 1);
+    return id != null;
+  }
+
+  /**
+   * Registers a node after it was completely written, so that it can be referenced later.
+   * @param node written node
+   */
+  public void register(final Object node) {
+    ids.put(node, ids.size());
+  }
+
+  /**
+   * Returns the number of distinct nodes written so far.
+   * @return number of nodes
+   */
+  public int nodes() {
+    return ids.size();
+  }
+
+  /**
+   * Writes a non-negative integer using one byte per seven bits.
+   * @param value value to write
+   * @throws IOException I/O exception
+   */
+  public void writeVarInt(final int value) throws IOException {
+    int v = value;
+    while((v & ~0x7F) != 0) {
+      write(v & 0x7F | 0x80);
+      v >>>= 7;
+    }
+    write(v);
+  }
+}
@@ -0,0 +1,65 @@
+package de.woerteler.persistent.io;
+
+import java.io.*;
+
+/**
+ * Binary codec for the values stored in persistent collections, combining a writer with the
+ * reader for its output.
+ *
+ * @author Leo Woerteler
+ * @param <T> value type
+ */
+public interface ValueCodec<T> extends ValueWriter<T>, ValueReader<T> {
+  /** Codec for non-{@code null} {@link Integer}s. */
+  ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+    @Override
+    public void write(final DataOutput out, final Integer value) throws IOException {
+      out.writeInt(value);
+    }
+
+    @Override
+    public Integer read(final DataInput in) throws IOException {
+      return in.readInt();
+    }
+  };
+
+  /** Codec for non-{@code null} {@link Long}s. */
+  ValueCodec<Long> LONG = new ValueCodec<Long>() {
+    @Override
+    public void write(final DataOutput out, final Long value) throws IOException {
+      out.writeLong(value);
+    }
+
+    @Override
+    public Long read(final DataInput in) throws IOException {
+      return in.readLong();
+    }
+  };
+
+  /** Codec for non-{@code null} {@link Double}s. */
+  ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+    @Override
+    public void write(final DataOutput out, final Double value) throws IOException {
+      out.writeDouble(value);
+    }
+
+    @Override
+    public Double read(final DataInput in) throws IOException {
+      return in.readDouble();
+    }
+  };
+
+  /** Codec for {@link String}s, which may be {@code null}. */
+  ValueCodec<String> STRING = new ValueCodec<String>() {
+    @Override
+    public void write(final DataOutput out, final String value) throws IOException {
+      out.writeBoolean(value != null);
+      if(value != null) out.writeUTF(value);
+    }
+
+    @Override
+    public String read(final DataInput in) throws IOException {
+      return in.readBoolean() ? in.readUTF() : null;
+    }
+  };
+}
@@ -0,0 +1,20 @@
+package de.woerteler.persistent.io;
+
+import java.io.*;
+
+/**
+ * Reads values written by a matching {@link ValueWriter}.
+ *
+ * @author Leo Woerteler
+ * @param <T> value type
+ */
+@FunctionalInterface
+public interface ValueReader<T> {
+  /**
+   * Reads a value.
+   * @param in input to read from
+   * @return the value
+   * @throws IOException I/O exception
+   */
+  T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,20 @@
+package de.woerteler.persistent.io;
+
+import java.io.*;
+
+/**
+ * Writes values stored in persistent collections in a binary format.
+ *
+ * @author Leo Woerteler
+ * @param <T> value type
+ */
+@FunctionalInterface
+public interface ValueWriter<T> {
+  /**
+   * Writes the given value.
+   * @param out output to write to
+   * @param value value to write
+   * @throws IOException I/O exception
+   */
+  void write(DataOutput out, T value) throws IOException;
+}
@@ -0,0 +1,424 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * A thread-safe holder of an {@link ImmutableMap}. Reads return the current snapshot and never
+ * wait. Updates are pushed onto a shared stack of pending requests, and every updating thread
+ * takes all requests pending at that time and applies them as one batch with a single
+ * compare-and-set (<i>flat combining</i>). Consecutive updates of single keys are applied to a
+ * {@link TransientMap}, so nodes on shared paths are copied only once per batch. If the
+ * compare-and-set fails because another batch was stored first, the batch is applied again to
+ * the new snapshot.
+ * <p>
+ * Updates are lock-free: a request is claimed by a batch with a compare-and-set, and every
+ * thread can complete any batch. A thread whose request is not finished after a bounded number
+ * of spins claims it for itself if no batch has done so yet, or applies the batch containing
+ * it, so a stalled combining thread never blocks the others. Stored snapshots remember the
+ * batch they resulted from, and the results of that batch are published before another
+ * snapshot can replace it, so every batch is stored at most once. All functions passed to this
+ * class may be called several times and from other threads, they must not have side effects.
+ *
+ * @author Leo Woerteler
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class AtomicImmutableMap<K, V> {
+  /** Number of times a thread yields before it completes its request itself. */
+  private static final int MAX_SPINS = 64;
+
+  /** The current snapshot together with the batch it resulted from. */
+  private final AtomicReference<State<K, V>> state;
+  /** Stack of pending requests, the most recent one on top. */
+  private final AtomicReference<Request<K, V>> pending = new AtomicReference<>();
+
+  /** Number of batches that were stored. */
+  private final LongAdder batches = new LongAdder();
+  /** Number of requests that were applied. */
+  private final LongAdder updates = new LongAdder();
+  /** Number of failed compare-and-set operations. */
+  private final LongAdder retries = new LongAdder();
+
+  /** Constructor for a holder of the empty map. */
+  public AtomicImmutableMap() {
+    this(ImmutableMap.<K, V>empty());
+  }
+
+  /**
+   * Constructor.
+   * @param initial initial snapshot
+   */
+  public AtomicImmutableMap(final ImmutableMap<K, V> initial) {
+    state = new AtomicReference<>(new State<>(initial, null, null));
+  }
+
+  /**
+   * Returns the current snapshot.
+   * @return the map
+   */
+  public ImmutableMap<K, V> get() {
+    return state.get().map;
+  }
+
+  /**
+   * Looks up the given key in the current snapshot.
+   * @param key the key
+   * @return bound value, {@code null} if the key is not bound
+   */
+  public V get(final K key) {
+    return state.get().map.get(key);
+  }
+
+  /**
+   * Atomically replaces the map by the result of the given function.
+   * @param fun function computing the new map from the current one
+   * @return the map resulting from this update
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableMap<K, V> update(final UnaryOperator<ImmutableMap<K, V>> fun) {
+    return (ImmutableMap<K, V>) submit(new Request<K, V>(fun, null, null)).after;
+  }
+
+  /**
+   * Atomically adds all bindings of the given map.
+   * @param other map to add
+   * @return the map resulting from this update
+   */
+  public ImmutableMap<K, V> addAll(final ImmutableMap<K, V> other) {
+    return update(m -> m.addAll(other));
+  }
+
+  /**
+   * Atomically computes a new value for the given key, like
+   * {@link Map#compute(Object, BiFunction)}.
+   * @param key the key
+   * @param remap function receiving the key and the bound value, or {@code null} if the key is
+   *   not bound, and returning the new value, or {@code null} to remove the binding
+   * @return the new value
+   */
+  @SuppressWarnings("unchecked")
+  public V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remap) {
+    return (V) submit(new Request<K, V>(null, key, v -> remap.apply(key, v))).after;
+  }
+
+  /**
+   * Atomically merges the given value into the binding of the given key, like
+   * {@link Map#merge(Object, Object, BiFunction)}.
+   * @param key the key
+   * @param value value to bind if the key is not bound
+   * @param fun function combining the bound value and the given one, returning {@code null}
+   *   removes the binding
+   * @return the new value
+   */
+  @SuppressWarnings("unchecked")
+  public V merge(final K key, final V value,
+      final BiFunction<? super V, ? super V, ? extends V> fun) {
+    return (V) submit(new Request<K, V>(null, key,
+        v -> v == null ? value : fun.apply(v, value))).after;
+  }
+
+  /**
+   * Atomically binds the given key to the given value.
+   * @param key the key
+   * @param value the value
+   * @return the previously bound value, {@code null} if the key was not bound
+   */
+  @SuppressWarnings("unchecked")
+  public V put(final K key, final V value) {
+    return (V) submit(new Request<K, V>(null, key, v -> value)).before;
+  }
+
+  /**
+   * Atomically binds the given key to the given value if it is not bound yet.
+   * @param key the key
+   * @param value the value
+   * @return the previously bound value, {@code null} if the key was not bound
+   */
+  @SuppressWarnings("unchecked")
+  public V putIfAbsent(final K key, final V value) {
+    return (V) submit(new Request<K, V>(null, key, v -> v != null ? v : value)).before;
+  }
+
+  /**
+   * Atomically removes the binding of the given key.
+   * @param key the key
+   * @return the previously bound value, {@code null} if the key was not bound
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(final K key) {
+    return (V) submit(new Request<K, V>(null, key, v -> null)).before;
+  }
+
+  /**
+   * Number of batches stored so far, each with a single successful compare-and-set.
+   * @return number of batches
+   */
+  public long batches() {
+    return batches.sum();
+  }
+
+  /**
+   * Number of updates applied so far. Compared to {@link #batches()}, this shows how many
+   * updates were combined.
+   * @return number of updates
+   */
+  public long updates() {
+    return updates.sum();
+  }
+
+  /**
+   * Number of batches that had to be applied again because another batch was stored first.
+   * @return number of retries
+   */
+  public long retries() {
+    return retries.sum();
+  }
+
+  /**
+   * Pushes the given request onto the stack of pending ones and applies pending requests
+   * until it is done. If the request is not done after {@link #MAX_SPINS} spins, this thread
+   * completes it itself.
+   * @param req the request
+   * @return result of the request
+   */
+  private Result submit(final Request<K, V> req) {
+    Request<K, V> head;
+    do {
+      head = pending.get();
+      req.next = head;
+    } while(!pending.compareAndSet(head, req));
+
+    Result res;
+    for(int spins = 0; (res = req.result()) == null; spins++) {
+      final Batch<K, V> owner = req.owner.get();
+      if(owner == null) {
+        final Request<K, V> stack = pending.getAndSet(null);
+        if(stack != null) {
+          execute(new Batch<>(stack, false));
+          continue;
+        }
+      }
+      if(spins < MAX_SPINS) {
+        Thread.yield();
+      } else if(owner != null) {
+        // the combining thread is slow, help it
+        execute(owner);
+      } else {
+        // nobody has claimed the request yet
+        final Batch<K, V> own = new Batch<>(req, true);
+        if(req.owner.compareAndSet(null, own)) execute(own);
+      }
+    }
+    if(res.error instanceof Error) throw (Error) res.error;
+    if(res.error != null) throw (RuntimeException) res.error;
+    return res;
+  }
+
+  /**
+   * Applies the given batch to the current snapshot and stores the result, until the batch
+   * has been stored by this or another thread.
+   * @param batch the batch
+   */
+  private void execute(final Batch<K, V> batch) {
+    final ArrayList<Request<K, V>> reqs = batch.claim();
+    while(true) {
+      final State<K, V> base = state.get();
+      base.publish();
+      if(batch.results.get() != null) return;
+
+      final Result[] results = new Result[reqs.size()];
+      final ImmutableMap<K, V> res = apply(base.map, reqs, results);
+      // unchanged maps keep their identity, the batch is stored anyway to publish its results
+      final State<K, V> next = new State<>(res.root == base.map.root ? base.map : res, batch,
+          results);
+      if(state.compareAndSet(base, next)) {
+        next.publish();
+        batches.increment();
+        updates.add(reqs.size());
+        return;
+      }
+      retries.increment();
+    }
+  }
+
+  /**
+   * Applies the given requests to the given snapshot.
+   * @param base the snapshot
+   * @param reqs requests in the order of their submission
+   * @param results array for the results of the requests
+   * @return the resulting map
+   */
+  private ImmutableMap<K, V> apply(final ImmutableMap<K, V> base,
+      final ArrayList<Request<K, V>> reqs, final Result[] results) {
+    ImmutableMap<K, V> curr = base;
+    TransientMap<K, V> trans = null;
+    for(int i = 0; i < results.length; i++) {
+      final Request<K, V> req = reqs.get(i);
+      try {
+        if(req.fun == null) {
+          if(trans == null) trans = curr.asTransient();
+          final V old = trans.get(req.key), nw = req.remap.apply(old);
+          if(nw != old) {
+            if(nw == null) trans.remove(req.key);
+            else trans.put(req.key, nw);
+          }
+          results[i] = new Result(old, nw, null);
+        } else {
+          if(trans != null) {
+            curr = trans.freeze();
+            trans = null;
+          }
+          curr = Objects.requireNonNull(req.fun.apply(curr), "Function returned null.");
+          results[i] = new Result(null, curr, null);
+        }
+      } catch(final RuntimeException | Error ex) {
+        results[i] = new Result(null, null, ex);
+      }
+    }
+    return trans != null ? trans.freeze() : curr;
+  }
+
+  /**
+   * A stored snapshot.
+   * @param <K> key type
+   * @param <V> value type
+   */
+  private static final class State<K, V> {
+    /** The map. */
+    final ImmutableMap<K, V> map;
+    /** Batch whose application resulted in this snapshot, {@code null} for the initial one. */
+    final Batch<K, V> batch;
+    /** Results of the requests in {@link #batch}. */
+    final Result[] results;
+
+    /**
+     * Constructor.
+     * @param map the map
+     * @param batch batch that was applied, {@code null} for the initial snapshot
+     * @param results results of the requests in the batch
+     */
+    State(final ImmutableMap<K, V> map, final Batch<K, V> batch, final Result[] results) {
+      this.map = map;
+      this.batch = batch;
+      this.results = results;
+    }
+
+    /**
+     * Publishes the results of the batch this snapshot resulted from. This is done by every
+     * thread that tries to replace this snapshot, so a stored batch is always finished before
+     * it could be applied a second time.
+     */
+    void publish() {
+      if(batch != null) batch.results.compareAndSet(null, results);
+    }
+  }
+
+  /**
+   * A batch of requests, which is applied and stored at most once.
+   * @param <K> key type
+   * @param <V> value type
+   */
+  private static final class Batch<K, V> {
+    /** Most recent request in the batch. */
+    final Request<K, V> top;
+    /** Flag indicating that the batch only contains {@link #top}, not the older requests. */
+    final boolean single;
+    /** Results of the claimed requests in order of submission, set once the batch is stored. */
+    final AtomicReference<Result[]> results = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     * @param top most recent request
+     * @param single flag for batches consisting only of the given request
+     */
+    Batch(final Request<K, V> top, final boolean single) {
+      this.top = top;
+      this.single = single;
+    }
+
+    /**
+     * Claims all requests of this batch that were not claimed by another one before. Every
+     * request is claimed exactly once, so all threads calling this method get the same result.
+     * @return claimed requests in the order of their submission
+     */
+    ArrayList<Request<K, V>> claim() {
+      final ArrayList<Request<K, V>> reqs = new ArrayList<>();
+      for(Request<K, V> r = top; r != null; r = single ? null : r.next) {
+        if(r.owner.compareAndSet(null, this) || r.owner.get() == this) reqs.add(r);
+      }
+      Collections.reverse(reqs);
+      return reqs;
+    }
+  }
+
+  /** The result of a single request. */
+  private static final class Result {
+    /** Value bound to the key before the update. */
+    final Object before;
+    /** The new value or map. */
+    final Object after;
+    /** Exception thrown by the function, {@code null} if it succeeded. */
+    final Throwable error;
+
+    /**
+     * Constructor.
+     * @param before previously bound value
+     * @param after the new value or map
+     * @param error exception thrown by the function
+     */
+    Result(final Object before, final Object after, final Throwable error) {
+      this.before = before;
+      this.after = after;
+      this.error = error;
+    }
+  }
+
+  /**
+   * A pending update.
+   * @param <K> key type
+   * @param <V> value type
+   */
+  private static final class Request<K, V> {
+    /** Function applied to the whole map, {@code null} for updates of a single key. */
+    final UnaryOperator<ImmutableMap<K, V>> fun;
+    /** Key to update. */
+    final K key;
+    /** Function computing the new value of {@link #key} from the bound one. */
+    final UnaryOperator<V> remap;
+    /** The batch that claimed this request, {@code null} if it was not claimed yet. */
+    final AtomicReference<Batch<K, V>> owner = new AtomicReference<>();
+    /** Next older request on the stack, fixed once the request is pushed. */
+    Request<K, V> next;
+
+    /**
+     * Constructor.
+     * @param fun function applied to the whole map, {@code null} for single keys
+     * @param key key to update
+     * @param remap function computing the new value of the key
+     */
+    Request(final UnaryOperator<ImmutableMap<K, V>> fun, final K key,
+        final UnaryOperator<V> remap) {
+      this.fun = fun;
+      this.key = key;
+      this.remap = remap;
+    }
+
+    /**
+     * Returns the result of this request if the batch that claimed it was stored.
+     * @return the result, {@code null} if the request is not done yet
+     */
+    Result result() {
+      final Batch<K, V> batch = owner.get();
+      final Result[] results = batch == null ? null : batch.results.get();
+      if(results == null) return null;
+      // the batch's requests are ordered from oldest to newest
+      int pos = results.length;
+      for(Request<K, V> r = batch.top; r != this; r = r.next) {
+        if(r.owner.get() == batch) pos--;
+      }
+      return results[pos - 1];
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+
+/**
+ * Helper methods for the branches of the bitmap tries in this package. A branch only stores its
+ * used slots, the position of a child in the children array is the number of used slots before
+ * it. The arrays passed to these methods are never modified, changes return a copy of the same
+ * runtime type.
+ *
+ * @author Leo Woerteler
+ */
+final class BitmapTrie {
+  /** Hidden constructor. */
+  private BitmapTrie() {
+  }
+
+  /**
+   * Position of the child in the given slot inside the children array of a branch.
+   * @param used bit array of the used slots of the branch
+   * @param bit bit of the slot
+   * @return array position
+   */
+  static int index(final int used, final int bit) {
+    return Integer.bitCount(used & bit - 1);
+  }
+
+  /**
+   * Creates a new children array with the given child inserted at the given position.
+   * @param <N> node type
+   * @param kids children array
+   * @param pos insertion position
+   * @param kid child to insert
+   * @return new children array
+   */
+  static <N> N[] insert(final N[] kids, final int pos, final N kid) {
+    final int n = kids.length;
+    final N[] copy = Arrays.copyOf(kids, n + 1);
+    System.arraycopy(kids, pos, copy, pos + 1, n - pos);
+    copy[pos] = kid;
+    return copy;
+  }
+
+  /**
+   * Creates a new children array without the child at the given position.
+   * @param <N> node type
+   * @param kids children array
+   * @param pos position of the child to remove
+   * @return new children array
+   */
+  static <N> N[] remove(final N[] kids, final int pos) {
+    final int n = kids.length - 1;
+    final N[] copy = Arrays.copyOf(kids, n);
+    System.arraycopy(kids, pos + 1, copy, pos, n - pos);
+    return copy;
+  }
+
+  /**
+   * Creates a new children array where the child at the given position is replaced.
+   * The array is copied with {@link Arrays#copyOf(Object[], int)}, which is faster than
+   * {@code kids.clone()} according to
+   * <a href="http://www.javaspecialists.eu/archive/Issue124.html">Heinz M. Kabutz</a>.
+   * @param <N> node type
+   * @param kids children array
+   * @param pos position of the child to replace
+   * @param kid new child
+   * @return new children array
+   */
+  static <N> N[] replace(final N[] kids, final int pos, final N kid) {
+    final N[] copy = Arrays.copyOf(kids, kids.length);
+    copy[pos] = kid;
+    return copy;
+  }
+
+  /**
+   * Returns the only child of a branch with the given children if it can replace the branch in a
+   * canonical trie. This is the case if it is a leaf or collision list, whose entries do not
+   * depend on its slot.
+   * @param <N> node type
+   * @param kids non-empty children array
+   * @param branch class of the branches of the trie
+   * @return the child replacing the branch, {@code null} if the branch has to be kept
+   */
+  static <N> N single(final N[] kids, final Class<?> branch) {
+    return kids.length == 1 && !branch.isInstance(kids[0]) ? kids[0] : null;
+  }
+}
@@ -1,12 +1,19 @@
 package de.woerteler.persistent.map;
 
+import java.io.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.io.*;
+
 /**
  * Inner node of a {@link ImmutableMap}.
+ * Only the used slots are stored, the position of a child in {@link #kids} is the number of
+ * used slots before it.
  *
  * @author Leo Woerteler
  */
 final class Branch extends TrieNode {
-  /** Child array. */
+  /** Child array, containing only the used slots in ascending order. */
   private final TrieNode[] kids;
   /** Bit array with a bit set for every used slot. */
   final int used;
@@ -25,84 +32,144 @@ final class Branch extends TrieNode {
   }
 
   /**
-   * Copies the children array.
-   * This is faster than {@code kids.clone()} according to
-   * <a href="http://www.javaspecialists.eu/archive/Issue124.html">Heinz M. Kabutz</a>.
-   * @return copy of the child array
+   * Constructor for creating a branch from two children in different slots.
+   * @param a first child
+   * @param ka slot of the first child
+   * @param b second child
+   * @param kb slot of the second child
+   * @param s size of this node
+   */
+  Branch(final TrieNode a, final int ka, final TrieNode b, final int kb, final int s) {
+    this(ka < kb ? new TrieNode[] { a, b } : new TrieNode[] { b, a }, 1 << ka | 1 << kb, s);
+  }
+
+  /**
+   * Constructor for creating a branch with a single child.
+   * @param a the child
+   * @param ka slot of the child
    */
-  TrieNode[] copyKids() {
-    final TrieNode[] copy = new TrieNode[KIDS];
-    System.arraycopy(kids, 0, copy, 0, KIDS);
-    return copy;
+  Branch(final TrieNode a, final int ka) {
+    this(new TrieNode[] { a }, 1 << ka, a.size);
+  }
+
+  /**
+   * Adds all bindings of the given leaf or overflow list to this branch, overwriting existing
+   * ones. This is the common implementation of {@link Leaf#add(Branch, int)} and
+   * {@link List#add(Branch, int)}.
+   * @param o leaf or overflow list
+   * @param hash hash code of all keys in {@code o}
+   * @param l level
+   * @return updated branch
+   */
+  Branch merge(final TrieNode o, final int hash, final int l) {
+    final int bit = 1 << key(hash, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      return new Branch(BitmapTrie.insert(kids, i, o), used | bit, size + o.size);
+    }
+    final TrieNode old = kids[i], nw = old.addAll(o, l + 1);
+    return new Branch(BitmapTrie.replace(kids, i, nw), used, size - old.size + nw.size);
   }
 
   @Override
   TrieNode insert(final int h, final Object k, final Object v, final int l) {
-    final int key = key(h, l);
-    final TrieNode sub = kids[key], nsub;
-    final int bs, rem;
-    if(sub != null) {
-      nsub = sub.insert(h, k, v, l + 1);
-      bs = used;
-      rem = sub.size;
-    } else {
-      nsub = new Leaf(h, k, v);
-      bs = used | 1 << key;
-      rem = 0;
+    final int bit = 1 << key(h, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      return new Branch(BitmapTrie.insert(kids, i, new Leaf(h, k, v)), used | bit, size + 1);
     }
-    final TrieNode[] ks = copyKids();
-    ks[key] = nsub;
-    return new Branch(ks, bs, size - rem + nsub.size);
+
+    final TrieNode sub = kids[i], nsub = sub.insert(h, k, v, l + 1);
+    if(nsub == sub) return this;
+    return new Branch(BitmapTrie.replace(kids, i, nsub), used, size - sub.size + nsub.size);
   }
 
   @Override
   TrieNode delete(final int h, final Object k, final int l) {
-    final int key = key(h, l);
-    final TrieNode sub = kids[key];
-    if(sub == null) return this;
-    final TrieNode nsub = sub.delete(h, k, l + 1);
+    final int bit = 1 << key(h, l);
+    if((used & bit) == 0) return this;
+    final int i = BitmapTrie.index(used, bit);
+    final TrieNode sub = kids[i], nsub = sub.delete(h, k, l + 1);
     if(nsub == sub) return this;
 
-    final int nu;
     if(nsub == null) {
-      nu = used ^ 1 << key;
+      final int nu = used ^ bit;
       if(Integer.bitCount(nu) == 1) {
-        final TrieNode single = kids[Integer.numberOfTrailingZeros(nu)];
+        final TrieNode single = kids[i ^ 1];
         // check whether the child depends on the right offset
         if(!(single instanceof Branch)) return single;
       }
-    } else nu = used;
+      return new Branch(BitmapTrie.remove(kids, i), nu, size - 1);
+    }
+    return new Branch(BitmapTrie.replace(kids, i, nsub), used, size - 1);
+  }
+
+  @Override
+  TrieNode update(final int h, final Object k, final UnaryOperator<Object> fun, final int l) {
+    final int bit = 1 << key(h, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      final Object v = fun.apply(null);
+      return v == null ? this
+          : new Branch(BitmapTrie.insert(kids, i, new Leaf(h, k, v)), used | bit, size + 1);
+    }
 
-    final TrieNode[] ks = copyKids();
-    ks[key] = nsub;
-    return new Branch(ks, nu, size - 1);
+    final TrieNode sub = kids[i], nsub = sub.update(h, k, fun, l + 1);
+    if(nsub == sub) return this;
+    if(nsub != null) {
+      return new Branch(BitmapTrie.replace(kids, i, nsub), used, size - sub.size + nsub.size);
+    }
+    final int nu = used ^ bit;
+    if(Integer.bitCount(nu) == 1) {
+      final TrieNode single = kids[i ^ 1];
+      // check whether the child depends on the right offset
+      if(!(single instanceof Branch)) return single;
+    }
+    return new Branch(BitmapTrie.remove(kids, i), nu, size - 1);
   }
 
   @Override
   Object get(final int h, final Object k, final int l) {
-    final int key = key(h, l);
-    final TrieNode sub = kids[key];
-    return sub == null ? null : sub.get(h, k, l + 1);
+    final int bit = 1 << key(h, l);
+    return (used & bit) == 0 ? null : kids[BitmapTrie.index(used, bit)].get(h, k, l + 1);
   }
 
   @Override
   boolean contains(final int h, final Object k, final int l) {
-    final TrieNode sub = kids[key(h, l)];
-    return sub != null && sub.contains(h, k, l + 1);
+    final int bit = 1 << key(h, l);
+    return (used & bit) != 0 && kids[BitmapTrie.index(used, bit)].contains(h, k, l + 1);
   }
 
   /** End strings. */
   private static final String[] ENDS = { "|-- ", "|   ", "`-- ", "    " };
 
+  @Override
+  void forEach(final BiConsumer<Object, Object> action) {
+    for(final TrieNode kid : kids) kid.forEach(action);
+  }
+
+  /**
+   * Returns the internal array of children, which must not be modified.
+   * @return non-empty children
+   */
+  TrieNode[] children() {
+    return kids;
+  }
+
+  @Override
+  void writeNode(final SharingOutput out, final ValueCodec<Object> keys,
+      final ValueCodec<Object> values) throws IOException {
+    out.writeByte(BRANCH_TAG);
+    out.writeInt(used);
+    for(final TrieNode kid : kids) kid.write(out, keys, values);
+  }
+
   @Override
   StringBuilder toString(final StringBuilder sb, final String ind) {
-    final int s = Integer.bitCount(used);
+    final int s = kids.length;
     for(int i = 0, j = 0; i < s; i++, j++) {
       while((used & 1 << j) == 0) j++;
       final int e = i == s - 1 ? 2 : 0;
       sb.append(ind).append(ENDS[e]).append(
           String.format("%x", j)).append('\n');
-      kids[j].toString(sb, ind + ENDS[e + 1]);
+      kids[i].toString(sb, ind + ENDS[e + 1]);
     }
     return sb;
   }
@@ -114,73 +181,58 @@ final class Branch extends TrieNode {
 
   @Override
   TrieNode add(final Leaf o, final int l) {
-    final int k = key(o.hash, l);
-    final TrieNode ch = kids[k], nw;
-    if(ch != null) {
-      final TrieNode ins = ch.add(o, l + 1);
-      if(ins == ch) return this;
-      nw = ins;
-    } else nw = o;
-
-    final TrieNode[] ks = copyKids();
-    ks[k] = nw;
+    final int bit = 1 << key(o.hash, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) return new Branch(BitmapTrie.insert(kids, i, o), used | bit, size + 1);
 
-    // we don't replace here, so the size must increase
-    return new Branch(ks, used | 1 << k, size + 1);
+    final TrieNode ch = kids[i], ins = ch.add(o, l + 1);
+    if(ins == ch) return this;
+    return new Branch(BitmapTrie.replace(kids, i, ins), used, size - ch.size + ins.size);
   }
 
   @Override
   TrieNode add(final List o, final int l) {
-    final int k = key(o.hash, l);
-    final TrieNode ch = kids[k], nw;
-    int n = o.size;
-    if(ch != null) {
-      final TrieNode ins = ch.add(o, l + 1);
-      if(ins == ch) return this;
-      n = ins.size - ch.size;
-      nw = ins;
-    } else nw = o;
-
-    final TrieNode[] ks = copyKids();
-    ks[k] = nw;
+    final int bit = 1 << key(o.hash, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      return new Branch(BitmapTrie.insert(kids, i, o), used | bit, size + o.size);
+    }
 
-    // we don't replace here, so the size must increase
-    return new Branch(ks, used | 1 << k, size + n);
+    final TrieNode ch = kids[i], ins = ch.add(o, l + 1);
+    if(ins == ch) return this;
+    return new Branch(BitmapTrie.replace(kids, i, ins), used, size - ch.size + ins.size);
   }
 
   @Override
   TrieNode add(final Branch o, final int l) {
-    TrieNode[] ch = null;
-    int nu = used, ns = size;
-    for(int i = 0; i < kids.length; i++) {
-      final TrieNode k = kids[i], ok = o.kids[i];
-      if(ok != null) {
-        final TrieNode nw = k == null ? ok : ok.addAll(k, l + 1);
-        if(nw != k) {
-          if(ch == null) ch = copyKids();
-          ch[i] = nw;
-          nu |= 1 << i;
-          ns += nw.size - (k == null ? 0 : k.size);
-        }
-      }
+    final int nu = used | o.used;
+    final TrieNode[] ch = new TrieNode[Integer.bitCount(nu)];
+    boolean changed = nu != used;
+    int ns = 0;
+    for(int bits = nu, i = 0, a = 0, b = 0; bits != 0; bits &= bits - 1, i++) {
+      final int bit = bits & -bits;
+      final TrieNode k = (used & bit) != 0 ? kids[a++] : null;
+      final TrieNode ok = (o.used & bit) != 0 ? o.kids[b++] : null;
+      final TrieNode nw = ok == null ? k : k == null ? ok : ok.addAll(k, l + 1);
+      if(nw != k) changed = true;
+      ch[i] = nw;
+      ns += nw.size;
     }
-    return ch == null ? this : new Branch(ch, nu, ns);
+    return changed ? new Branch(ch, nu, ns) : this;
   }
 
   @Override
   boolean verify() {
+    if(Integer.bitCount(used) != kids.length) return false;
     int c = 0;
-    for(int i = 0; i < KIDS; i++) {
-      final boolean bit = (used & 1 << i) != 0, act = kids[i] != null;
-      if(bit ^ act) return false;
-      if(act) c += kids[i].size;
+    for(final TrieNode kid : kids) {
+      if(kid == null) return false;
+      c += kid.size;
     }
     return c == size;
   }
 
   @Override
   StringBuilder toString(final StringBuilder sb) {
-    for(int i = 0; i < KIDS; i++) if(kids[i] != null) kids[i].toString(sb);
+    for(final TrieNode kid : kids) kid.toString(sb);
     return sb;
   }
 
@@ -190,15 +242,15 @@ final class Branch extends TrieNode {
     final Branch other = (Branch) obj;
     if(used != other.used) return false;
     for(int i = 0; i < kids.length; i++)
-      if(kids[i] != null && !kids[i].equals(other.kids[i])) return false;
+      if(!kids[i].equals(other.kids[i])) return false;
     return true;
   }
 
   @Override
   public int hashCode() {
     int h = 1;
-    for(int i = 0; i < kids.length; i++)
-      h = 31 * h + (kids[i] == null ? 0 : kids[i].hashCode());
+    for(int i = 0, j = 0; i < KIDS; i++)
+      h = 31 * h + ((used & 1 << i) == 0 ? 0 : kids[j++].hashCode());
     return h;
   }
 }
@@ -0,0 +1,118 @@
+package de.woerteler.persistent.map;
+
+import java.util.stream.*;
+
+/**
+ * An immutable map with primitive {@code int} keys. The keys are stored unboxed in the leaves
+ * of a hash trie whose slots are taken directly from the key bits, so neither insertions nor
+ * lookups hash, box or call {@code equals} on a key. Lookups descend the trie in a loop.
+ * <p>
+ * The keys are widened to {@code long} and share the node classes of {@link ImmutableLongMap}.
+ * Since distinct keys differ in their lowest 32 bits, the trie has at most seven levels.
+ *
+ * @author Leo Woerteler
+ * @param <V> value type
+ */
+public final class ImmutableIntMap<V> extends LongKeyMap {
+  /** The empty map. */
+  private static final ImmutableIntMap<?> EMPTY = new ImmutableIntMap<Object>(LongNode.EMPTY);
+
+  /**
+   * Constructor.
+   * @param root root node
+   */
+  private ImmutableIntMap(final LongNode root) {
+    super(root);
+  }
+
+  /**
+   * The generic empty map.
+   * @param <V> value type
+   * @return empty map
+   */
+  @SuppressWarnings("unchecked")
+  public static <V> ImmutableIntMap<V> empty() {
+    return (ImmutableIntMap<V>) EMPTY;
+  }
+
+  /**
+   * Binds the given key to the given value.
+   * @param key the key
+   * @param value the value
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableIntMap<V> insert(final int key, final V value) {
+    return with(root.insert(key, value, 0));
+  }
+
+  /**
+   * Deletes the binding of the given key.
+   * @param key the key
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableIntMap<V> delete(final int key) {
+    return with(root.delete(key, 0));
+  }
+
+  /**
+   * Looks up the value bound to the given key.
+   * @param key the key
+   * @return bound value, {@code null} if the key is not bound
+   */
+  @SuppressWarnings("unchecked")
+  public V get(final int key) {
+    return (V) root.get(key);
+  }
+
+  /**
+   * Checks if the given key is bound in this map.
+   * @param key the key
+   * @return {@code true} if the key is bound, {@code false} otherwise
+   */
+  public boolean contains(final int key) {
+    return root.contains(key);
+  }
+
+  /**
+   * Calls the given action for every binding in this map.
+   * @param action action to call with key and value
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final EntryConsumer<? super V> action) {
+    root.forEach((k, v) -> action.accept((int) k, (V) v));
+  }
+
+  /**
+   * Returns the keys of this map in the order of {@link #forEach(EntryConsumer)}.
+   * @return stream of keys
+   */
+  public IntStream keys() {
+    return LongStream.of(keyArray()).mapToInt(k -> (int) k);
+  }
+
+  /**
+   * Wraps the given root node into a map.
+   * @param node new root node, {@code null} if no bindings are left
+   * @return {@code this} if the node is the current root, the resulting map otherwise
+   */
+  private ImmutableIntMap<V> with(final LongNode node) {
+    return node == root ? this
+        : node == null ? ImmutableIntMap.<V>empty() : new ImmutableIntMap<V>(node);
+  }
+
+  /**
+   * Action called with the bindings of an {@link ImmutableIntMap}.
+   *
+   * @author Leo Woerteler
+   * @param <V> value type
+   */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    /**
+     * Called for a binding.
+     * @param key the key
+     * @param value the value
+     */
+    void accept(int key, V value);
+  }
+}
@@ -0,0 +1,115 @@
+package de.woerteler.persistent.map;
+
+import java.util.stream.*;
+
+/**
+ * An immutable map with primitive {@code long} keys. The keys are stored unboxed in the leaves
+ * of a hash trie whose slots are taken directly from the key bits, so neither insertions nor
+ * lookups hash, box or call {@code equals} on a key. Lookups descend the trie in a loop.
+ *
+ * @author Leo Woerteler
+ * @param <V> value type
+ */
+public final class ImmutableLongMap<V> extends LongKeyMap {
+  /** The empty map. */
+  private static final ImmutableLongMap<?> EMPTY = new ImmutableLongMap<Object>(LongNode.EMPTY);
+
+  /**
+   * Constructor.
+   * @param root root node
+   */
+  private ImmutableLongMap(final LongNode root) {
+    super(root);
+  }
+
+  /**
+   * The generic empty map.
+   * @param <V> value type
+   * @return empty map
+   */
+  @SuppressWarnings("unchecked")
+  public static <V> ImmutableLongMap<V> empty() {
+    return (ImmutableLongMap<V>) EMPTY;
+  }
+
+  /**
+   * Binds the given key to the given value.
+   * @param key the key
+   * @param value the value
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableLongMap<V> insert(final long key, final V value) {
+    return with(root.insert(key, value, 0));
+  }
+
+  /**
+   * Deletes the binding of the given key.
+   * @param key the key
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableLongMap<V> delete(final long key) {
+    return with(root.delete(key, 0));
+  }
+
+  /**
+   * Looks up the value bound to the given key.
+   * @param key the key
+   * @return bound value, {@code null} if the key is not bound
+   */
+  @SuppressWarnings("unchecked")
+  public V get(final long key) {
+    return (V) root.get(key);
+  }
+
+  /**
+   * Checks if the given key is bound in this map.
+   * @param key the key
+   * @return {@code true} if the key is bound, {@code false} otherwise
+   */
+  public boolean contains(final long key) {
+    return root.contains(key);
+  }
+
+  /**
+   * Calls the given action for every binding in this map.
+   * @param action action to call with key and value
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final EntryConsumer<? super V> action) {
+    root.forEach((k, v) -> action.accept(k, (V) v));
+  }
+
+  /**
+   * Returns the keys of this map in the order of {@link #forEach(EntryConsumer)}.
+   * @return stream of keys
+   */
+  public LongStream keys() {
+    return LongStream.of(keyArray());
+  }
+
+  /**
+   * Wraps the given root node into a map.
+   * @param node new root node, {@code null} if no bindings are left
+   * @return {@code this} if the node is the current root, the resulting map otherwise
+   */
+  private ImmutableLongMap<V> with(final LongNode node) {
+    return node == root ? this
+        : node == null ? ImmutableLongMap.<V>empty() : new ImmutableLongMap<V>(node);
+  }
+
+  /**
+   * Action called with the bindings of an {@link ImmutableLongMap}.
+   *
+   * @author Leo Woerteler
+   * @param <V> value type
+   */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    /**
+     * Called for a binding.
+     * @param key the key
+     * @param value the value
+     */
+    void accept(long key, V value);
+  }
+}
@@ -1,7 +1,11 @@
 package de.woerteler.persistent.map;
 
+import java.io.*;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.function.*;
+import java.util.stream.*;
+
+import de.woerteler.persistent.io.*;
 
 /**
  * An immutable map.
@@ -10,7 +14,7 @@ import java.util.Map.Entry;
  * @param <K> key type
  * @param <V> value type
  */
-public final class ImmutableMap<K, V> {
+public final class ImmutableMap<K, V> implements Iterable<Map.Entry<K, V>> {
   /** The empty map. */
   public static final ImmutableMap<?, ?> EMPTY =
       new ImmutableMap<Object, Object>(TrieNode.EMPTY);
@@ -18,13 +22,13 @@ public final class ImmutableMap<K, V> {
   public static final int BITS = 5;
 
   /** Wrapped immutable map. */
-  private final TrieNode root;
+  final TrieNode root;
 
   /**
    * Constructor.
    * @param m map
    */
-  private ImmutableMap(final TrieNode m) {
+  ImmutableMap(final TrieNode m) {
     root = m;
   }
 
@@ -102,16 +106,101 @@ public final class ImmutableMap<K, V> {
     return upd == root ? this : upd == other.root ? other : new ImmutableMap<K, V>(upd);
   }
 
+  /**
+   * Merges the given map into this one, combining the values of keys bound in both maps with
+   * the given function. The tries are merged structurally, sub-tries that are shared by both
+   * maps are reused without calling the function, so it has to return {@code v} for
+   * {@code (v, v)}. Large maps are merged in parallel.
+   * @param other map to merge
+   * @param resolver function combining the value in this map with the one in {@code other}
+   * @return merged map, {@code this} or {@code other} if it contains all resulting bindings
+   */
+  public ImmutableMap<K, V> merge(final ImmutableMap<K, V> other,
+      final BiFunction<? super V, ? super V, ? extends V> resolver) {
+    return combine(TrieMerge.MERGE, other.root, resolver, other);
+  }
+
+  /**
+   * Computes the intersection of this map and the given one, combining the values with the
+   * given function. Like in {@link #merge(ImmutableMap, BiFunction)}, shared sub-tries are
+   * reused and the function has to return {@code v} for {@code (v, v)}.
+   * @param other the other map
+   * @param resolver function combining the value in this map with the one in {@code other}
+   * @return map containing the keys bound in both maps
+   */
+  public ImmutableMap<K, V> intersect(final ImmutableMap<K, V> other,
+      final BiFunction<? super V, ? super V, ? extends V> resolver) {
+    return combine(TrieMerge.INTERSECT, other.root, resolver, other);
+  }
+
+  /**
+   * Removes all keys of the given map from this one.
+   * @param keys map whose keys are removed, its values are ignored
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableMap<K, V> removeAll(final ImmutableMap<? extends K, ?> keys) {
+    return combine(TrieMerge.REMOVE, keys.root, (v, w) -> v, null);
+  }
+
+  /**
+   * Removes all bindings whose keys are not bound in the given map.
+   * @param keys map whose keys are retained, its values are ignored
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableMap<K, V> retainAll(final ImmutableMap<? extends K, ?> keys) {
+    return combine(TrieMerge.INTERSECT, keys.root, (v, w) -> v, null);
+  }
+
+  /**
+   * Combines the trie of this map with the given one, see {@link TrieMerge}.
+   * @param op the operation
+   * @param node root of the other trie
+   * @param resolver function combining the values of keys bound in both tries
+   * @param other the other map if it has the same types, {@code null} otherwise
+   * @return resulting map
+   */
+  @SuppressWarnings("unchecked")
+  private ImmutableMap<K, V> combine(final int op, final TrieNode node,
+      final BiFunction<? super V, ? super V, ? extends V> resolver,
+      final ImmutableMap<K, V> other) {
+    final TrieNode res = TrieMerge.apply(op, (v, w) -> resolver.apply((V) v, (V) w), root, node);
+    return res == root ? this : other != null && res == other.root ? other
+        : res == TrieNode.EMPTY ? ImmutableMap.<K, V>empty() : new ImmutableMap<K, V>(res);
+  }
+
   /**
    * Adds all bindings from the given map into {@code this}.
    * @param other map to add
    * @return updated map if changed, {@code this} otherwise
    */
   public ImmutableMap<K, V> addAll(final Map<? extends K, ? extends V> other) {
-    ImmutableMap<K, V> map = this;
-    for(final Entry<? extends K, ? extends V> e : other.entrySet())
-      map = map.insert(e.getKey(), e.getValue());
-    return map;
+    if(other.isEmpty()) return this;
+    final TransientMap<K, V> map = new TransientMap<K, V>(this);
+    map.putAll(other);
+    return map.freeze();
+  }
+
+  /**
+   * Reports all differences between this map and the given newer version of it to the given
+   * handler. Sub-tries shared by both maps are skipped, so the running time depends on the
+   * number of nodes that differ and not on the size of the maps.
+   * @param newer the newer version
+   * @param handler handler receiving added, removed and changed bindings
+   */
+  @SuppressWarnings("unchecked")
+  public void diff(final ImmutableMap<K, V> newer,
+      final MapDiffHandler<? super K, ? super V> handler) {
+    TrieNode.diff(root, newer.root, 0, (MapDiffHandler<Object, Object>) handler);
+  }
+
+  /**
+   * Creates a mutable {@link TransientMap} initialized with the bindings of this map.
+   * This is much faster than repeated calls to {@link #insert(Object, Object)} when
+   * many bindings are added at once.
+   * @return transient copy of this map
+   */
+  public TransientMap<K, V> asTransient() {
+    return new TransientMap<K, V>(this);
   }
 
   /**
@@ -121,7 +210,74 @@ public final class ImmutableMap<K, V> {
    * @return updated map if changed, {@code this} otherwise
    */
   public ImmutableMap<K, V> insert(final K key, final V value) {
-    return new ImmutableMap<K, V>(root.insert(key.hashCode(), key, value, 0));
+    final TrieNode ins = root.insert(key.hashCode(), key, value, 0);
+    return ins == root ? this : new ImmutableMap<K, V>(ins);
+  }
+
+  /**
+   * Computes a new value for the given key from the bound value, like
+   * {@link Map#compute(Object, BiFunction)}. The trie is only traversed once.
+   * @param key the key
+   * @param remap function receiving the key and the bound value, or {@code null} if the key is
+   *   not bound, and returning the new value, or {@code null} to remove the binding
+   * @return updated map if changed, {@code this} if the function returned the bound value
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableMap<K, V> compute(final K key,
+      final BiFunction<? super K, ? super V, ? extends V> remap) {
+    return update(key, v -> remap.apply(key, (V) v));
+  }
+
+  /**
+   * Binds the given key to the value computed by the given function if it is not bound to a
+   * value yet, like {@link Map#computeIfAbsent(Object, Function)}. The trie is only traversed
+   * once.
+   * @param key the key
+   * @param fun function computing the value, the map is unchanged if it returns {@code null}
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableMap<K, V> computeIfAbsent(final K key,
+      final Function<? super K, ? extends V> fun) {
+    return update(key, v -> v != null ? v : fun.apply(key));
+  }
+
+  /**
+   * Binds the given key to the given value if it is not bound to a value yet, and to the
+   * result of the given function applied to the bound value and the given one otherwise, like
+   * {@link Map#merge(Object, Object, BiFunction)}. The trie is only traversed once.
+   * @param key the key
+   * @param value the value
+   * @param fun function combining the bound value and the given one, returning {@code null}
+   *   removes the binding
+   * @return updated map if changed, {@code this} if the function returned the bound value
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableMap<K, V> merge(final K key, final V value,
+      final BiFunction<? super V, ? super V, ? extends V> fun) {
+    return update(key, v -> v == null ? value : fun.apply((V) v, value));
+  }
+
+  /**
+   * Binds the given key to the given value if it is not bound to a value yet.
+   * @param key the key
+   * @param value the value
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableMap<K, V> putIfAbsent(final K key, final V value) {
+    return update(key, v -> v != null ? v : value);
+  }
+
+  /**
+   * Updates the binding of the given key in a single traversal of the trie.
+   * @param key the key
+   * @param fun function receiving the bound value or {@code null} and returning the new value,
+   *   or {@code null} if the key should not be bound
+   * @return updated map if changed, {@code this} otherwise
+   */
+  private ImmutableMap<K, V> update(final K key, final UnaryOperator<Object> fun) {
+    final TrieNode upd = root.update(key.hashCode(), key, fun, 0);
+    return upd == root ? this :
+      upd == null ? ImmutableMap.<K, V>empty() : new ImmutableMap<K, V>(upd);
   }
 
   /**
@@ -132,6 +288,159 @@ public final class ImmutableMap<K, V> {
     return root.size;
   }
 
+  /**
+   * Calls the given action for every binding in this map.
+   * @param action action to call with key and value
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final BiConsumer<? super K, ? super V> action) {
+    root.forEach((BiConsumer<Object, Object>) action);
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, V>> iterator() {
+    return new TrieIterator<Map.Entry<K, V>>(root, ImmutableMap.<K, V>entryFun());
+  }
+
+  @Override
+  public Spliterator<Map.Entry<K, V>> spliterator() {
+    return new TrieSpliterator<Map.Entry<K, V>>(root, ImmutableMap.<K, V>entryFun(),
+        Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  /**
+   * Returns a sequential stream over the bindings of this map.
+   * @return stream of entries
+   */
+  public Stream<Map.Entry<K, V>> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel stream over the bindings of this map.
+   * @return stream of entries
+   */
+  public Stream<Map.Entry<K, V>> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Returns an unmodifiable view of the keys of this map.
+   * @return key set
+   */
+  public Set<K> keySet() {
+    return new AbstractSet<K>() {
+      @Override
+      public Iterator<K> iterator() {
+        return new TrieIterator<K>(root, ImmutableMap.<K>keyFun());
+      }
+
+      @Override
+      public Spliterator<K> spliterator() {
+        return new TrieSpliterator<K>(root, ImmutableMap.<K>keyFun(),
+            Spliterator.DISTINCT | Spliterator.NONNULL);
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean contains(final Object o) {
+        return o != null && ImmutableMap.this.contains((K) o);
+      }
+
+      @Override
+      public int size() {
+        return root.size;
+      }
+    };
+  }
+
+  /**
+   * Returns an unmodifiable view of the values of this map.
+   * @return values
+   */
+  public Collection<V> values() {
+    return new AbstractCollection<V>() {
+      @Override
+      public Iterator<V> iterator() {
+        return new TrieIterator<V>(root, ImmutableMap.<V>valueFun());
+      }
+
+      @Override
+      public Spliterator<V> spliterator() {
+        return new TrieSpliterator<V>(root, ImmutableMap.<V>valueFun(), 0);
+      }
+
+      @Override
+      public int size() {
+        return root.size;
+      }
+    };
+  }
+
+  /**
+   * Writes this map to the given output. Nodes that are shared with maps already written to
+   * the output are written as back-references, so writing many versions of a map costs about
+   * the size of their differences.
+   * @param out output
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("unchecked")
+  public void write(final SharingOutput out, final ValueCodec<? super K> keys,
+      final ValueCodec<? super V> values) throws IOException {
+    root.write(out, (ValueCodec<Object>) keys, (ValueCodec<Object>) values);
+  }
+
+  /**
+   * Reads a map written by {@link #write(SharingOutput, ValueCodec, ValueCodec)}.
+   * The keys must have the same hash codes as when the map was written.
+   * @param <K> key type
+   * @param <V> value type
+   * @param in input
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @return the map
+   * @throws IOException I/O exception
+   */
+  public static <K, V> ImmutableMap<K, V> read(final SharingInput in,
+      final ValueCodec<? extends K> keys, final ValueCodec<? extends V> values)
+      throws IOException {
+    final TrieNode root = TrieNode.read(in, keys, values);
+    return root == TrieNode.EMPTY ? ImmutableMap.<K, V>empty() : new ImmutableMap<K, V>(root);
+  }
+
+  /**
+   * Function creating an entry from a key and a value.
+   * @param <K> key type
+   * @param <V> value type
+   * @return function
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> BiFunction<Object, Object, Map.Entry<K, V>> entryFun() {
+    return (k, v) -> new AbstractMap.SimpleImmutableEntry<K, V>((K) k, (V) v);
+  }
+
+  /**
+   * Function selecting the key.
+   * @param <K> key type
+   * @return function
+   */
+  @SuppressWarnings("unchecked")
+  private static <K> BiFunction<Object, Object, K> keyFun() {
+    return (k, v) -> (K) k;
+  }
+
+  /**
+   * Function selecting the value.
+   * @param <V> value type
+   * @return function
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> BiFunction<Object, Object, V> valueFun() {
+    return (k, v) -> (V) v;
+  }
+
   @Override
   public boolean equals(final Object obj) {
     if(!(obj instanceof ImmutableMap)) return false;
@@ -0,0 +1,217 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * An immutable hash set. It uses the same hash trie as {@link ImmutableMap}, but its leaves
+ * only store the elements. Set operations recurse on the slot bitmaps of both tries and reuse
+ * every sub-trie that is not affected, sub-tries shared by both operands are not visited.
+ * <p>
+ * Elements must not be {@code null}.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+public final class ImmutableSet<E> implements Iterable<E> {
+  /** The empty set. */
+  private static final ImmutableSet<?> EMPTY = new ImmutableSet<Object>(SetNode.EMPTY);
+
+  /** Root node of the trie. */
+  final SetNode root;
+
+  /**
+   * Constructor.
+   * @param root root node
+   */
+  private ImmutableSet(final SetNode root) {
+    this.root = root;
+  }
+
+  /**
+   * The generic empty set.
+   * @param <E> element type
+   * @return empty set
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> ImmutableSet<E> empty() {
+    return (ImmutableSet<E>) EMPTY;
+  }
+
+  /**
+   * Creates a set containing the given elements.
+   * @param <E> element type
+   * @param elems elements of the set
+   * @return resulting set
+   */
+  public static <E> ImmutableSet<E> from(final Iterable<? extends E> elems) {
+    SetNode node = SetNode.EMPTY;
+    for(final E elem : elems) node = node.insert(elem.hashCode(), elem, 0);
+    return ImmutableSet.<E>empty().with(node);
+  }
+
+  /**
+   * Inserts the given element into this set.
+   * @param elem element to insert
+   * @return updated set if changed, {@code this} otherwise
+   */
+  public ImmutableSet<E> insert(final E elem) {
+    return with(root.insert(elem.hashCode(), elem, 0));
+  }
+
+  /**
+   * Deletes the given element from this set.
+   * @param elem element to delete
+   * @return updated set if changed, {@code this} otherwise
+   */
+  public ImmutableSet<E> delete(final E elem) {
+    return with(root.delete(elem.hashCode(), elem, 0));
+  }
+
+  /**
+   * Checks if the given element is contained in this set.
+   * @param elem element to look for
+   * @return {@code true} if the element is contained, {@code false} otherwise
+   */
+  public boolean contains(final E elem) {
+    return root.contains(elem.hashCode(), elem, 0);
+  }
+
+  /**
+   * Computes the union of this set and the given one.
+   * @param other the other set
+   * @return {@code this} or {@code other} if one of them contains all elements,
+   *   a new set otherwise
+   */
+  public ImmutableSet<E> union(final ImmutableSet<E> other) {
+    if(other.root == SetNode.EMPTY) return this;
+    if(root == SetNode.EMPTY) return other;
+    final SetNode res = root.union(other.root, 0);
+    return res == other.root ? other : with(res);
+  }
+
+  /**
+   * Computes the intersection of this set and the given one.
+   * @param other the other set
+   * @return {@code this} or {@code other} if one of them is a subset of the other,
+   *   a new set otherwise
+   */
+  public ImmutableSet<E> intersection(final ImmutableSet<E> other) {
+    if(root == SetNode.EMPTY) return this;
+    if(other.root == SetNode.EMPTY) return other;
+    final SetNode res = root.intersect(other.root, 0);
+    return res == other.root ? other : with(res);
+  }
+
+  /**
+   * Removes all elements of the given set from this one.
+   * @param other the other set
+   * @return updated set if changed, {@code this} otherwise
+   */
+  public ImmutableSet<E> difference(final ImmutableSet<E> other) {
+    if(root == SetNode.EMPTY || other.root == SetNode.EMPTY) return this;
+    return with(root.difference(other.root, 0));
+  }
+
+  /**
+   * Number of elements contained in this set.
+   * @return size
+   */
+  public int size() {
+    return root.size;
+  }
+
+  /**
+   * Checks if this set is empty.
+   * @return {@code true} if the set contains no elements, {@code false} otherwise
+   */
+  public boolean isEmpty() {
+    return root.size == 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(final Consumer<? super E> action) {
+    root.forEach((Consumer<Object>) action);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new SetIterator<E>(root);
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return Spliterators.spliterator(iterator(), root.size,
+        Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  /**
+   * Returns a sequential stream over the elements of this set.
+   * @return the stream
+   */
+  public Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns an unmodifiable {@link Set} view of this set.
+   * @return the view
+   */
+  public Set<E> asSet() {
+    return new AbstractSet<E>() {
+      @Override
+      public Iterator<E> iterator() {
+        return ImmutableSet.this.iterator();
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean contains(final Object o) {
+        return o != null && ImmutableSet.this.contains((E) o);
+      }
+
+      @Override
+      public int size() {
+        return root.size;
+      }
+    };
+  }
+
+  /**
+   * Wraps the given root node into a set.
+   * @param node new root node, {@code null} if no elements are left
+   * @return {@code this} if the node is the current root, the resulting set otherwise
+   */
+  private ImmutableSet<E> with(final SetNode node) {
+    return node == root ? this : node == null ? ImmutableSet.<E>empty() : new ImmutableSet<E>(node);
+  }
+
+  /**
+   * Verifies the trie of this set.
+   * @return check result
+   */
+  boolean verify() {
+    return root.verify(0);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(!(obj instanceof ImmutableSet)) return false;
+    final ImmutableSet<?> other = (ImmutableSet<?>) obj;
+    return root.size == other.root.size && root.equals(other.root);
+  }
+
+  @Override
+  public int hashCode() {
+    return root.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    forEach(e -> sb.append(sb.length() == 1 ? "" : ", ").append(e));
+    return sb.append('}').toString();
+  }
+}
@@ -0,0 +1,569 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An immutable map whose bindings are sorted by their keys. The bindings are stored in an
+ * {@link ObjectArray} whose nodes cache the last key they contain, so keys are found by a
+ * single {@link ObjectArray#search(Measure, Predicate) search} down the finger tree.
+ * Ranges of keys are extracted and maps with disjoint key ranges are merged by slicing and
+ * concatenating the arrays.
+ * <p>
+ * The last keys are computed lazily and cached in the tree nodes. Searching a map whose nodes
+ * have not been measured yet, e.g. the first lookup after {@link #from(SortedMap)}, takes
+ * <i>O(n)</i> time; afterwards each operation only measures the <i>O(log n)</i> nodes it creates.
+ * The logarithmic running times given below are therefore amortized over the lifetime of a map.
+ * <p>
+ * Keys must not be {@code null}.
+ *
+ * @author Leo Woerteler
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class ImmutableSortedMap<K, V> implements Iterable<Map.Entry<K, V>> {
+  /** The empty map using the natural ordering of its keys. */
+  private static final ImmutableSortedMap<?, ?> EMPTY =
+      new ImmutableSortedMap<>(ObjectArray.empty(), null);
+
+  /** Measure selecting the key of the last binding. */
+  private static final Measure<Map.Entry<?, ?>, Object> LAST_KEY =
+      new Measure<Map.Entry<?, ?>, Object>() {
+    @Override
+    public Object identity() {
+      return null;
+    }
+
+    @Override
+    public Object of(final Map.Entry<?, ?> elem) {
+      return elem.getKey();
+    }
+
+    @Override
+    public Object combine(final Object left, final Object right) {
+      return right == null ? left : right;
+    }
+  };
+
+  /** Bindings of this map, sorted by key. */
+  final ObjectArray<Map.Entry<K, V>> entries;
+  /** Comparator for the keys, {@code null} for their natural ordering. */
+  private final Comparator<? super K> comparator;
+
+  /**
+   * Constructor.
+   * @param entries bindings sorted by key
+   * @param comparator comparator for the keys, {@code null} for their natural ordering
+   */
+  private ImmutableSortedMap(final ObjectArray<Map.Entry<K, V>> entries,
+      final Comparator<? super K> comparator) {
+    this.entries = entries;
+    this.comparator = comparator;
+  }
+
+  /**
+   * The empty map sorted by the natural ordering of its keys.
+   * @param <K> key type
+   * @param <V> value type
+   * @return empty map
+   */
+  @SuppressWarnings("unchecked")
+  public static <K extends Comparable<? super K>, V> ImmutableSortedMap<K, V> empty() {
+    return (ImmutableSortedMap<K, V>) EMPTY;
+  }
+
+  /**
+   * The empty map sorted by the given comparator.
+   * @param <K> key type
+   * @param <V> value type
+   * @param comparator comparator for the keys, {@code null} for their natural ordering
+   * @return empty map
+   */
+  public static <K, V> ImmutableSortedMap<K, V> empty(final Comparator<? super K> comparator) {
+    return new ImmutableSortedMap<>(ObjectArray.<Map.Entry<K, V>>empty(), comparator);
+  }
+
+  /**
+   * Creates an {@link ImmutableSortedMap} from a {@link SortedMap}, effectively freezing it.
+   * The map is built bottom-up without comparing any keys.
+   * Running time: <i>O(n)</i>
+   * @param <K> key type
+   * @param <V> value type
+   * @param map map to freeze
+   * @return resulting map with the same ordering
+   */
+  public static <K, V> ImmutableSortedMap<K, V> from(final SortedMap<K, ? extends V> map) {
+    final ArrayList<Map.Entry<K, V>> list = new ArrayList<>(map.size());
+    for(final Map.Entry<K, ? extends V> e : map.entrySet()) {
+      list.add(entry(e.getKey(), e.getValue()));
+    }
+    return new ImmutableSortedMap<>(ObjectArray.from(list), map.comparator());
+  }
+
+  /**
+   * Creates an {@link ImmutableSortedMap} from a {@link Map} by sorting its bindings.
+   * Running time: <i>O(n log n)</i>
+   * @param <K> key type
+   * @param <V> value type
+   * @param map map to freeze
+   * @param comparator comparator for the keys, {@code null} for their natural ordering
+   * @return resulting map
+   */
+  public static <K, V> ImmutableSortedMap<K, V> from(final Map<? extends K, ? extends V> map,
+      final Comparator<? super K> comparator) {
+    final ArrayList<Map.Entry<K, V>> list = new ArrayList<>(map.size());
+    for(final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+      list.add(entry(e.getKey(), e.getValue()));
+    }
+    final ImmutableSortedMap<K, V> empty = empty(comparator);
+    list.sort((a, b) -> empty.compare(a.getKey(), b.getKey()));
+    return new ImmutableSortedMap<>(ObjectArray.from(list), comparator);
+  }
+
+  /**
+   * Comparator of this map.
+   * @return comparator for the keys, {@code null} for their natural ordering
+   */
+  public Comparator<? super K> comparator() {
+    return comparator;
+  }
+
+  /**
+   * Gets the value bound to the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key key to look for
+   * @return bound value if found, {@code null} otherwise
+   */
+  public V get(final K key) {
+    final long pos = ceilingIndex(key);
+    if(pos < 0) return null;
+    final Map.Entry<K, V> entry = entries.get(pos);
+    return compare(entry.getKey(), key) == 0 ? entry.getValue() : null;
+  }
+
+  /**
+   * Checks if the given key exists in the map.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key key to look for
+   * @return {@code true}, if the key exists, {@code false} otherwise
+   */
+  public boolean contains(final K key) {
+    final long pos = ceilingIndex(key);
+    return pos >= 0 && compare(entries.get(pos).getKey(), key) == 0;
+  }
+
+  /**
+   * Inserts the given binding into this map, replacing an existing binding for the same key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key key to insert
+   * @param value value to insert
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableSortedMap<K, V> insert(final K key, final V value) {
+    final long pos = ceilingIndex(Objects.requireNonNull(key));
+    if(pos < 0) return new ImmutableSortedMap<>(entries.snoc(entry(key, value)), comparator);
+
+    final Map.Entry<K, V> old = entries.get(pos);
+    if(compare(old.getKey(), key) != 0) {
+      return new ImmutableSortedMap<>(entries.insertBefore(pos, entry(key, value)), comparator);
+    }
+    return old.getValue() == value ? this
+        : new ImmutableSortedMap<>(entries.set(pos, entry(key, value)), comparator);
+  }
+
+  /**
+   * Deletes a key from this map.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key key to delete
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableSortedMap<K, V> delete(final K key) {
+    final long pos = ceilingIndex(key);
+    return pos < 0 || compare(entries.get(pos).getKey(), key) != 0 ? this
+        : new ImmutableSortedMap<>(entries.remove(pos), comparator);
+  }
+
+  /**
+   * Adds all bindings of the given map to this one, bindings of the other map replace those
+   * in this one. Runs of consecutive keys from the same map are moved as a whole, so merging
+   * two maps whose key ranges do not overlap is a single concatenation.
+   * Running time: <i>O(r log n)</i> amortized for {@code r} alternating runs of keys
+   * @param other map to add, which must use the same ordering as this one
+   * @return updated map if changed, {@code this} otherwise
+   */
+  public ImmutableSortedMap<K, V> addAll(final ImmutableSortedMap<K, V> other) {
+    if(other.isEmpty()) return this;
+    if(isEmpty()) return other.comparator == comparator ? other
+        : new ImmutableSortedMap<>(other.entries, comparator);
+
+    ObjectArray<Map.Entry<K, V>> out = ObjectArray.empty(), as = entries, bs = other.entries;
+    while(true) {
+      // keys of this map smaller than the next key of the other one, ties are dropped
+      final K b = bs.head().getKey();
+      final long p = ceilingIndex(as, b);
+      if(p < 0) {
+        out = concat(out, as);
+        as = ObjectArray.empty();
+        break;
+      }
+      out = concat(out, as.subArray(0, p));
+      as = as.subArray(p, as.size() - p);
+      if(compare(as.head().getKey(), b) == 0) as = as.tail();
+      if(as.isEmpty()) break;
+
+      // keys of the other map smaller than the next key of this one
+      final long q = ceilingIndex(bs, as.head().getKey());
+      if(q < 0) {
+        out = concat(out, bs);
+        bs = ObjectArray.empty();
+        break;
+      }
+      out = concat(out, bs.subArray(0, q));
+      bs = bs.subArray(q, bs.size() - q);
+    }
+    return new ImmutableSortedMap<>(concat(concat(out, as), bs), comparator);
+  }
+
+  /**
+   * Returns the bindings with keys smaller than the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param toKey upper bound, exclusive
+   * @return map containing the bindings
+   */
+  public ImmutableSortedMap<K, V> headMap(final K toKey) {
+    final long pos = ceilingIndex(toKey);
+    return pos < 0 ? this : slice(0, pos);
+  }
+
+  /**
+   * Returns the bindings with keys greater than or equal to the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param fromKey lower bound, inclusive
+   * @return map containing the bindings
+   */
+  public ImmutableSortedMap<K, V> tailMap(final K fromKey) {
+    final long pos = ceilingIndex(fromKey);
+    return pos < 0 ? slice(0, 0) : slice(pos, entries.size());
+  }
+
+  /**
+   * Returns the bindings with keys between the given bounds.
+   * Running time: <i>O(log n)</i> amortized
+   * @param fromKey lower bound, inclusive
+   * @param toKey upper bound, exclusive
+   * @return map containing the bindings
+   * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+   */
+  public ImmutableSortedMap<K, V> subMap(final K fromKey, final K toKey) {
+    if(compare(fromKey, toKey) > 0) {
+      throw new IllegalArgumentException("fromKey > toKey: " + fromKey + " > " + toKey);
+    }
+    return tailMap(fromKey).headMap(toKey);
+  }
+
+  /**
+   * Splits this map at the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key key to split at
+   * @return two maps, containing the bindings with keys smaller than and greater than or equal
+   *   to the key
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableSortedMap<K, V>[] split(final K key) {
+    final long pos = ceilingIndex(key), n = entries.size(), p = pos < 0 ? n : pos;
+    return (ImmutableSortedMap<K, V>[]) new ImmutableSortedMap<?, ?>[] { slice(0, p), slice(p, n) };
+  }
+
+  /**
+   * Returns the binding with the smallest key.
+   * Running time: <i>O(1)</i>
+   * @return the binding, {@code null} if the map is empty
+   */
+  public Map.Entry<K, V> firstEntry() {
+    return entries.isEmpty() ? null : entries.head();
+  }
+
+  /**
+   * Returns the binding with the greatest key.
+   * Running time: <i>O(1)</i>
+   * @return the binding, {@code null} if the map is empty
+   */
+  public Map.Entry<K, V> lastEntry() {
+    return entries.isEmpty() ? null : entries.last();
+  }
+
+  /**
+   * Returns the binding with the smallest key greater than or equal to the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key the key
+   * @return the binding, {@code null} if there is none
+   */
+  public Map.Entry<K, V> ceilingEntry(final K key) {
+    return at(ceilingIndex(key));
+  }
+
+  /**
+   * Returns the binding with the smallest key strictly greater than the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key the key
+   * @return the binding, {@code null} if there is none
+   */
+  public Map.Entry<K, V> higherEntry(final K key) {
+    return at(search(entries, k -> compare(k, key) > 0));
+  }
+
+  /**
+   * Returns the binding with the greatest key less than or equal to the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key the key
+   * @return the binding, {@code null} if there is none
+   */
+  public Map.Entry<K, V> floorEntry(final K key) {
+    final long pos = search(entries, k -> compare(k, key) > 0);
+    return at((pos < 0 ? entries.size() : pos) - 1);
+  }
+
+  /**
+   * Returns the binding with the greatest key strictly less than the given key.
+   * Running time: <i>O(log n)</i> amortized
+   * @param key the key
+   * @return the binding, {@code null} if there is none
+   */
+  public Map.Entry<K, V> lowerEntry(final K key) {
+    final long pos = ceilingIndex(key);
+    return at((pos < 0 ? entries.size() : pos) - 1);
+  }
+
+  /**
+   * Number of bindings contained in this map.
+   * @return size
+   */
+  public int size() {
+    return (int) entries.size();
+  }
+
+  /**
+   * Checks if this map is empty.
+   * @return {@code true} if the map contains no bindings, {@code false} otherwise
+   */
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Calls the given action for every binding in this map, in ascending order of the keys.
+   * @param action action to call with key and value
+   */
+  public void forEach(final BiConsumer<? super K, ? super V> action) {
+    entries.forEach(e -> action.accept(e.getKey(), e.getValue()));
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, V>> iterator() {
+    return entries.iterator();
+  }
+
+  @Override
+  public Spliterator<Map.Entry<K, V>> spliterator() {
+    return entries.spliterator();
+  }
+
+  /**
+   * Returns a sequential stream over the bindings of this map.
+   * @return the stream
+   */
+  public Stream<Map.Entry<K, V>> stream() {
+    return entries.stream();
+  }
+
+  /**
+   * Returns an unmodifiable view of the keys of this map, in ascending order.
+   * @return key set
+   */
+  public Set<K> keySet() {
+    return new AbstractSet<K>() {
+      @Override
+      public Iterator<K> iterator() {
+        final Iterator<Map.Entry<K, V>> iter = entries.iterator();
+        return new Iterator<K>() {
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public K next() {
+            return iter.next().getKey();
+          }
+        };
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public boolean contains(final Object o) {
+        return o != null && ImmutableSortedMap.this.contains((K) o);
+      }
+
+      @Override
+      public int size() {
+        return ImmutableSortedMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns an unmodifiable view of the values of this map, in ascending order of their keys.
+   * @return values
+   */
+  public Collection<V> values() {
+    return new AbstractCollection<V>() {
+      @Override
+      public Iterator<V> iterator() {
+        final Iterator<Map.Entry<K, V>> iter = entries.iterator();
+        return new Iterator<V>() {
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public V next() {
+            return iter.next().getValue();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ImmutableSortedMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * Position of the first binding whose key is greater than or equal to the given key.
+   * @param key the key
+   * @return the position, {@code -1} if there is none
+   */
+  private long ceilingIndex(final K key) {
+    return ceilingIndex(entries, key);
+  }
+
+  /**
+   * Position of the first binding in the given array whose key is greater than or equal to the
+   * given key.
+   * @param array bindings sorted by key
+   * @param key the key
+   * @return the position, {@code -1} if there is none
+   */
+  private long ceilingIndex(final ObjectArray<Map.Entry<K, V>> array, final K key) {
+    return search(array, k -> compare(k, key) >= 0);
+  }
+
+  /**
+   * Position of the first binding in the given array whose key satisfies the given monotone
+   * predicate.
+   * @param array bindings sorted by key
+   * @param pred predicate on keys
+   * @return the position, {@code -1} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> long search(final ObjectArray<Map.Entry<K, V>> array,
+      final Predicate<K> pred) {
+    return array.search(LAST_KEY, k -> pred.test((K) k));
+  }
+
+  /**
+   * Returns the binding at the given position.
+   * @param pos the position, may be out of bounds
+   * @return the binding, {@code null} if the position is out of bounds
+   */
+  private Map.Entry<K, V> at(final long pos) {
+    return pos < 0 || pos >= entries.size() ? null : entries.get(pos);
+  }
+
+  /**
+   * Returns the bindings between the given positions.
+   * @param from first position, inclusive
+   * @param to last position, exclusive
+   * @return map containing the bindings
+   */
+  private ImmutableSortedMap<K, V> slice(final long from, final long to) {
+    return from == 0 && to == entries.size() ? this
+        : new ImmutableSortedMap<>(entries.subArray(from, to - from), comparator);
+  }
+
+  /**
+   * Compares two keys.
+   * @param a first key
+   * @param b second key
+   * @return result of the comparison
+   */
+  @SuppressWarnings("unchecked")
+  private int compare(final K a, final K b) {
+    return comparator != null ? comparator.compare(a, b) : ((Comparable<? super K>) a).compareTo(b);
+  }
+
+  /**
+   * Concatenates two arrays of bindings.
+   * @param <K> key type
+   * @param <V> value type
+   * @param a first array
+   * @param b second array
+   * @return concatenation of both arrays
+   */
+  private static <K, V> ObjectArray<Map.Entry<K, V>> concat(final ObjectArray<Map.Entry<K, V>> a,
+      final ObjectArray<Map.Entry<K, V>> b) {
+    final Array<Map.Entry<K, V>> res = a.concat(b);
+    return (ObjectArray<Map.Entry<K, V>>) res;
+  }
+
+  /**
+   * Creates a binding.
+   * @param <K> key type
+   * @param <V> value type
+   * @param key the key
+   * @param value the value
+   * @return the binding
+   */
+  private static <K, V> Map.Entry<K, V> entry(final K key, final V value) {
+    return new AbstractMap.SimpleImmutableEntry<>(key, value);
+  }
+
+  /**
+   * Checks that the keys of this map are strictly ascending.
+   * @throws AssertionError if the keys are not sorted
+   */
+  void checkInvariants() {
+    K prev = null;
+    for(final Map.Entry<K, V> e : entries) {
+      if(prev != null && compare(prev, e.getKey()) >= 0) {
+        throw new AssertionError("Keys not sorted: " + prev + ", " + e.getKey());
+      }
+      prev = e.getKey();
+    }
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof ImmutableSortedMap
+        && entries.equals(((ImmutableSortedMap<?, ?>) obj).entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return entries.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    forEach((k, v) -> sb.append(sb.length() == 1 ? "" : ", ").append(k).append('=').append(v));
+    return sb.append('}').toString();
+  }
+}
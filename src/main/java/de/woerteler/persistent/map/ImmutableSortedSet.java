@@ -0,0 +1,447 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import de.woerteler.persistent.array.*;
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * An immutable sorted set. Like {@link ImmutableSortedMap}, the elements are stored in an
+ * {@link ObjectArray} whose nodes cache the last element they contain.
+ * <p>
+ * The last elements are computed lazily, so the first search in a set whose nodes have not been
+ * measured yet, e.g. after {@link #from(SortedSet)}, takes <i>O(n)</i> time. The logarithmic
+ * running times given below are amortized over the lifetime of a set.
+ * <p>
+ * Elements must not be {@code null}.
+ *
+ * @author Leo Woerteler
+ * @param <E> element type
+ */
+public final class ImmutableSortedSet<E> implements Iterable<E> {
+  /** The empty set using the natural ordering of its elements. */
+  private static final ImmutableSortedSet<?> EMPTY =
+      new ImmutableSortedSet<>(ObjectArray.empty(), null);
+
+  /** Measure selecting the last element. */
+  private static final Measure<Object, Object> LAST = new Measure<Object, Object>() {
+    @Override
+    public Object identity() {
+      return null;
+    }
+
+    @Override
+    public Object of(final Object elem) {
+      return elem;
+    }
+
+    @Override
+    public Object combine(final Object left, final Object right) {
+      return right == null ? left : right;
+    }
+  };
+
+  /** Sorted elements of this set. */
+  final ObjectArray<E> elems;
+  /** Comparator for the elements, {@code null} for their natural ordering. */
+  private final Comparator<? super E> comparator;
+
+  /**
+   * Constructor.
+   * @param elems sorted elements
+   * @param comparator comparator for the elements, {@code null} for their natural ordering
+   */
+  private ImmutableSortedSet(final ObjectArray<E> elems, final Comparator<? super E> comparator) {
+    this.elems = elems;
+    this.comparator = comparator;
+  }
+
+  /**
+   * The empty set sorted by the natural ordering of its elements.
+   * @param <E> element type
+   * @return empty set
+   */
+  @SuppressWarnings("unchecked")
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> empty() {
+    return (ImmutableSortedSet<E>) EMPTY;
+  }
+
+  /**
+   * The empty set sorted by the given comparator.
+   * @param <E> element type
+   * @param comparator comparator for the elements, {@code null} for their natural ordering
+   * @return empty set
+   */
+  public static <E> ImmutableSortedSet<E> empty(final Comparator<? super E> comparator) {
+    return new ImmutableSortedSet<>(ObjectArray.<E>empty(), comparator);
+  }
+
+  /**
+   * Creates an {@link ImmutableSortedSet} from a {@link SortedSet}, effectively freezing it.
+   * The set is built bottom-up without comparing any elements.
+   * Running time: <i>O(n)</i>
+   * @param <E> element type
+   * @param set set to freeze
+   * @return resulting set with the same ordering
+   */
+  public static <E> ImmutableSortedSet<E> from(final SortedSet<E> set) {
+    return new ImmutableSortedSet<>(ObjectArray.from(set), set.comparator());
+  }
+
+  /**
+   * Creates an {@link ImmutableSortedSet} from the distinct elements of a {@link Collection}.
+   * Running time: <i>O(n log n)</i>
+   * @param <E> element type
+   * @param coll elements
+   * @param comparator comparator for the elements, {@code null} for their natural ordering
+   * @return resulting set
+   */
+  public static <E> ImmutableSortedSet<E> from(final Collection<? extends E> coll,
+      final Comparator<? super E> comparator) {
+    final TreeSet<E> set = new TreeSet<>(comparator);
+    set.addAll(coll);
+    return new ImmutableSortedSet<>(ObjectArray.from(set), comparator);
+  }
+
+  /**
+   * Comparator of this set.
+   * @return comparator for the elements, {@code null} for their natural ordering
+   */
+  public Comparator<? super E> comparator() {
+    return comparator;
+  }
+
+  /**
+   * Checks if the given element is contained in this set.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem element to look for
+   * @return {@code true}, if the element exists, {@code false} otherwise
+   */
+  public boolean contains(final E elem) {
+    final long pos = ceilingIndex(elem);
+    return pos >= 0 && compare(elems.get(pos), elem) == 0;
+  }
+
+  /**
+   * Inserts the given element into this set.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem element to insert
+   * @return updated set if changed, {@code this} otherwise
+   */
+  public ImmutableSortedSet<E> insert(final E elem) {
+    final long pos = ceilingIndex(Objects.requireNonNull(elem));
+    if(pos < 0) return new ImmutableSortedSet<>(elems.snoc(elem), comparator);
+    return compare(elems.get(pos), elem) == 0 ? this
+        : new ImmutableSortedSet<>(elems.insertBefore(pos, elem), comparator);
+  }
+
+  /**
+   * Deletes an element from this set.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem element to delete
+   * @return updated set if changed, {@code this} otherwise
+   */
+  public ImmutableSortedSet<E> delete(final E elem) {
+    final long pos = ceilingIndex(elem);
+    return pos < 0 || compare(elems.get(pos), elem) != 0 ? this
+        : new ImmutableSortedSet<>(elems.remove(pos), comparator);
+  }
+
+  /**
+   * Adds all elements of the given set to this one. Runs of consecutive elements from the same
+   * set are moved as a whole, so merging two sets whose ranges do not overlap is a single
+   * concatenation.
+   * Running time: <i>O(r log n)</i> amortized for {@code r} alternating runs of elements
+   * @param other set to add, which must use the same ordering as this one
+   * @return union of both sets
+   */
+  public ImmutableSortedSet<E> addAll(final ImmutableSortedSet<E> other) {
+    if(other.isEmpty()) return this;
+    if(isEmpty()) return other.comparator == comparator ? other
+        : new ImmutableSortedSet<>(other.elems, comparator);
+
+    ObjectArray<E> out = ObjectArray.empty(), as = elems, bs = other.elems;
+    while(true) {
+      // elements of this set smaller than the next element of the other one, ties are dropped
+      final E b = bs.head();
+      final long p = ceilingIndex(as, b);
+      if(p < 0) {
+        out = concat(out, as);
+        as = ObjectArray.empty();
+        break;
+      }
+      out = concat(out, as.subArray(0, p));
+      as = as.subArray(p, as.size() - p);
+      if(compare(as.head(), b) == 0) as = as.tail();
+      if(as.isEmpty()) break;
+
+      // elements of the other set smaller than the next element of this one
+      final long q = ceilingIndex(bs, as.head());
+      if(q < 0) {
+        out = concat(out, bs);
+        bs = ObjectArray.empty();
+        break;
+      }
+      out = concat(out, bs.subArray(0, q));
+      bs = bs.subArray(q, bs.size() - q);
+    }
+    return new ImmutableSortedSet<>(concat(concat(out, as), bs), comparator);
+  }
+
+  /**
+   * Returns the elements smaller than the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param toElem upper bound, exclusive
+   * @return set containing the elements
+   */
+  public ImmutableSortedSet<E> headSet(final E toElem) {
+    final long pos = ceilingIndex(toElem);
+    return pos < 0 ? this : slice(0, pos);
+  }
+
+  /**
+   * Returns the elements greater than or equal to the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param fromElem lower bound, inclusive
+   * @return set containing the elements
+   */
+  public ImmutableSortedSet<E> tailSet(final E fromElem) {
+    final long pos = ceilingIndex(fromElem);
+    return pos < 0 ? slice(0, 0) : slice(pos, elems.size());
+  }
+
+  /**
+   * Returns the elements between the given bounds.
+   * Running time: <i>O(log n)</i> amortized
+   * @param fromElem lower bound, inclusive
+   * @param toElem upper bound, exclusive
+   * @return set containing the elements
+   * @throws IllegalArgumentException if {@code fromElem} is greater than {@code toElem}
+   */
+  public ImmutableSortedSet<E> subSet(final E fromElem, final E toElem) {
+    if(compare(fromElem, toElem) > 0) {
+      throw new IllegalArgumentException("fromElem > toElem: " + fromElem + " > " + toElem);
+    }
+    return tailSet(fromElem).headSet(toElem);
+  }
+
+  /**
+   * Splits this set at the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem element to split at
+   * @return two sets, containing the elements smaller than and greater than or equal to
+   *   {@code elem}
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableSortedSet<E>[] split(final E elem) {
+    final long pos = ceilingIndex(elem), n = elems.size(), p = pos < 0 ? n : pos;
+    return (ImmutableSortedSet<E>[]) new ImmutableSortedSet<?>[] { slice(0, p), slice(p, n) };
+  }
+
+  /**
+   * Returns the smallest element of this set.
+   * Running time: <i>O(1)</i>
+   * @return the element, {@code null} if the set is empty
+   */
+  public E first() {
+    return elems.isEmpty() ? null : elems.head();
+  }
+
+  /**
+   * Returns the greatest element of this set.
+   * Running time: <i>O(1)</i>
+   * @return the element, {@code null} if the set is empty
+   */
+  public E last() {
+    return elems.isEmpty() ? null : elems.last();
+  }
+
+  /**
+   * Returns the smallest element greater than or equal to the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem the element
+   * @return the element, {@code null} if there is none
+   */
+  public E ceiling(final E elem) {
+    return at(ceilingIndex(elems, elem));
+  }
+
+  /**
+   * Returns the smallest element strictly greater than the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem the element
+   * @return the element, {@code null} if there is none
+   */
+  public E higher(final E elem) {
+    return at(higherIndex(elem));
+  }
+
+  /**
+   * Returns the greatest element less than or equal to the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem the element
+   * @return the element, {@code null} if there is none
+   */
+  public E floor(final E elem) {
+    final long pos = higherIndex(elem);
+    return at((pos < 0 ? elems.size() : pos) - 1);
+  }
+
+  /**
+   * Returns the greatest element strictly less than the given element.
+   * Running time: <i>O(log n)</i> amortized
+   * @param elem the element
+   * @return the element, {@code null} if there is none
+   */
+  public E lower(final E elem) {
+    final long pos = ceilingIndex(elems, elem);
+    return at((pos < 0 ? elems.size() : pos) - 1);
+  }
+
+  /**
+   * Number of elements contained in this set.
+   * @return size
+   */
+  public int size() {
+    return (int) elems.size();
+  }
+
+  /**
+   * Checks if this set is empty.
+   * @return {@code true} if the set contains no elements, {@code false} otherwise
+   */
+  public boolean isEmpty() {
+    return elems.isEmpty();
+  }
+
+  @Override
+  public void forEach(final Consumer<? super E> action) {
+    elems.forEach(action);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return elems.iterator();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return elems.spliterator();
+  }
+
+  /**
+   * Returns a sequential stream over the elements of this set.
+   * @return the stream
+   */
+  public Stream<E> stream() {
+    return elems.stream();
+  }
+
+  /**
+   * Position of the first element greater than or equal to the given one.
+   * @param elem the element
+   * @return the position, {@code -1} if there is none
+   */
+  private long ceilingIndex(final E elem) {
+    return ceilingIndex(elems, elem);
+  }
+
+  /**
+   * Position of the first element in the given array greater than or equal to the given one.
+   * @param array sorted elements
+   * @param elem the element
+   * @return the position, {@code -1} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  private long ceilingIndex(final ObjectArray<E> array, final E elem) {
+    return array.search(LAST, e -> compare((E) e, elem) >= 0);
+  }
+
+  /**
+   * Position of the first element strictly greater than the given one.
+   * @param elem the element
+   * @return the position, {@code -1} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  private long higherIndex(final E elem) {
+    return elems.search(LAST, e -> compare((E) e, elem) > 0);
+  }
+
+  /**
+   * Returns the element at the given position.
+   * @param pos the position, may be out of bounds
+   * @return the element, {@code null} if the position is out of bounds
+   */
+  private E at(final long pos) {
+    return pos < 0 || pos >= elems.size() ? null : elems.get(pos);
+  }
+
+  /**
+   * Returns the elements between the given positions.
+   * @param from first position, inclusive
+   * @param to last position, exclusive
+   * @return set containing the elements
+   */
+  private ImmutableSortedSet<E> slice(final long from, final long to) {
+    return from == 0 && to == elems.size() ? this
+        : new ImmutableSortedSet<>(elems.subArray(from, to - from), comparator);
+  }
+
+  /**
+   * Compares two elements.
+   * @param a first element
+   * @param b second element
+   * @return result of the comparison
+   */
+  @SuppressWarnings("unchecked")
+  private int compare(final E a, final E b) {
+    return comparator != null ? comparator.compare(a, b) : ((Comparable<? super E>) a).compareTo(b);
+  }
+
+  /**
+   * Concatenates two arrays of elements.
+   * @param <E> element type
+   * @param a first array
+   * @param b second array
+   * @return concatenation of both arrays
+   */
+  private static <E> ObjectArray<E> concat(final ObjectArray<E> a, final ObjectArray<E> b) {
+    final Array<E> res = a.concat(b);
+    return (ObjectArray<E>) res;
+  }
+
+  /**
+   * Checks that the elements of this set are strictly ascending.
+   * @throws AssertionError if the elements are not sorted
+   */
+  void checkInvariants() {
+    E prev = null;
+    for(final E e : elems) {
+      if(prev != null && compare(prev, e) >= 0) {
+        throw new AssertionError("Elements not sorted: " + prev + ", " + e);
+      }
+      prev = e;
+    }
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof ImmutableSortedSet
+        && elems.equals(((ImmutableSortedSet<?>) obj).elems);
+  }
+
+  @Override
+  public int hashCode() {
+    return elems.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("[");
+    forEach(e -> sb.append(sb.length() == 1 ? "" : ", ").append(e));
+    return sb.append(']').toString();
+  }
+}
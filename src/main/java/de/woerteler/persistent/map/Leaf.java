@@ -1,5 +1,10 @@
 package de.woerteler.persistent.map;
 
+import java.io.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.io.*;
+
 /**
  * A single binding of a {@link ImmutableMap}.
  *
@@ -30,22 +35,23 @@ final class Leaf extends TrieNode {
   @Override
   TrieNode insert(final int h, final Object k, final Object v, final int l) {
     // same hash, replace or merge
-    if(h == hash) return k.equals(key) ?
-        new Leaf(h, k, v) : new List(hash, key, value, k, v);
+    if(h == hash) return !k.equals(key) ? new List(hash, key, value, k, v)
+        : v == value ? this : new Leaf(h, k, v);
 
     // different hash, branch
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int a = key(h, l), b = key(hash, l);
-    final int used;
-    if(a != b) {
-      ch[a] = new Leaf(h, k, v);
-      ch[b] = this;
-      used = 1 << a | 1 << b;
-    } else {
-      ch[a] = insert(h, k, v, l + 1);
-      used = 1 << a;
+    if(a != b) return new Branch(new Leaf(h, k, v), a, this, b, 2);
+    return new Branch(insert(h, k, v, l + 1), a);
+  }
+
+  @Override
+  TrieNode update(final int h, final Object k, final UnaryOperator<Object> fun, final int l) {
+    if(h == hash && key.equals(k)) {
+      final Object v = fun.apply(value);
+      return v == value ? this : v == null ? null : new Leaf(h, k, v);
     }
-    return new Branch(ch, used, 2);
+    final Object v = fun.apply(null);
+    return v == null ? this : insert(h, k, v, l);
   }
 
   @Override
@@ -63,6 +69,19 @@ final class Leaf extends TrieNode {
     return h == hash && key.equals(k);
   }
 
+  @Override
+  void forEach(final BiConsumer<Object, Object> action) {
+    action.accept(key, value);
+  }
+
+  @Override
+  void writeNode(final SharingOutput out, final ValueCodec<Object> keys,
+      final ValueCodec<Object> values) throws IOException {
+    out.writeByte(LEAF_TAG);
+    keys.write(out, key);
+    values.write(out, value);
+  }
+
   @Override
   StringBuilder toString(final StringBuilder sb, final String ind) {
     return sb.append(ind).append("`-- ").append(key).append(
@@ -79,21 +98,11 @@ final class Leaf extends TrieNode {
     if(hash == o.hash) return key.equals(o.key) ?
         this : new List(hash, key, value, o.key, o.value);
 
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int k = key(hash, l), ok = key(o.hash, l);
-    final int nu;
 
     // same key? add recursively
-    if(k == ok) {
-      ch[k] = add(o, l + 1);
-      nu = 1 << k;
-    } else {
-      ch[k] = this;
-      ch[ok] = o;
-      nu = 1 << k | 1 << ok;
-    }
-
-    return new Branch(ch, nu, 2);
+    if(k == ok) return new Branch(add(o, l + 1), k);
+    return new Branch(this, k, o, ok, 2);
   }
 
   @Override
@@ -113,31 +122,16 @@ final class Leaf extends TrieNode {
       return new List(hash, append(o.keys, key), append(o.values, value));
     }
 
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int k = key(hash, l), ok = key(o.hash, l);
-    final int nu;
 
     // same key? add recursively
-    if(k == ok) {
-      ch[k] = add(o, l + 1);
-      nu = 1 << k;
-    } else {
-      ch[k] = this;
-      ch[ok] = o;
-      nu = 1 << k | 1 << ok;
-    }
-
-    return new Branch(ch, nu, o.size + 1);
+    if(k == ok) return new Branch(add(o, l + 1), k);
+    return new Branch(this, k, o, ok, o.size + 1);
   }
 
   @Override
   TrieNode add(final Branch o, final int l) {
-    final int k = key(hash, l);
-    final TrieNode[] ch = o.copyKids();
-    final TrieNode old = ch[k];
-    ch[k] = old == null ? this : old.addAll(this, l + 1);
-    return new Branch(ch, o.used | 1 << k,
-        o.size + ch[k].size - (old != null ? old.size : 0));
+    return o.merge(this, hash, l);
   }
 
   @Override
@@ -1,6 +1,10 @@
 package de.woerteler.persistent.map;
 
+import java.io.*;
 import java.util.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.io.*;
 
 /**
  * Leaf that contains a collision list of keys with the same hash code.
@@ -69,6 +73,7 @@ final class List extends TrieNode {
     if(h == hash) {
       for(int i = keys.length; i-- > 0;) {
         if(k.equals(keys[i])) {
+          if(values[i] == v) return this;
           // replace value
           final Object[] vs = values.clone();
           vs[i] = v;
@@ -79,19 +84,31 @@ final class List extends TrieNode {
     }
 
     // different hash, branch
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int a = key(h, l), b = key(hash, l);
-    final int used;
-    if(a != b) {
-      ch[a] = new Leaf(h, k, v);
-      ch[b] = this;
-      used = 1 << a | 1 << b;
-    } else {
-      ch[a] = insert(h, k, v, l + 1);
-      used = 1 << a;
-    }
     // we definitely inserted one value
-    return new Branch(ch, used, size + 1);
+    if(a != b) return new Branch(new Leaf(h, k, v), a, this, b, size + 1);
+    return new Branch(insert(h, k, v, l + 1), a);
+  }
+
+  @Override
+  TrieNode update(final int h, final Object k, final UnaryOperator<Object> fun, final int l) {
+    if(h == hash) {
+      for(int i = keys.length; i-- > 0;) {
+        if(k.equals(keys[i])) {
+          final Object v = fun.apply(values[i]);
+          if(v == values[i]) return this;
+          if(v == null) {
+            if(size == 2) return new Leaf(h, keys[i ^ 1], values[i ^ 1]);
+            return new List(h, delete(keys, i), delete(values, i));
+          }
+          final Object[] vs = values.clone();
+          vs[i] = v;
+          return new List(h, keys, vs);
+        }
+      }
+    }
+    final Object v = fun.apply(null);
+    return v == null ? this : insert(h, k, v, l);
   }
 
   @Override
@@ -109,6 +126,22 @@ final class List extends TrieNode {
     return false;
   }
 
+  @Override
+  void forEach(final BiConsumer<Object, Object> action) {
+    for(int i = 0; i < keys.length; i++) action.accept(keys[i], values[i]);
+  }
+
+  @Override
+  void writeNode(final SharingOutput out, final ValueCodec<Object> ks,
+      final ValueCodec<Object> vs) throws IOException {
+    out.writeByte(LIST_TAG);
+    out.writeVarInt(keys.length);
+    for(int i = 0; i < keys.length; i++) {
+      ks.write(out, keys[i]);
+      vs.write(out, values[i]);
+    }
+  }
+
   @Override
   StringBuilder toString(final StringBuilder sb, final String ind) {
     sb.append(ind).append("`-- Collision (").append(
@@ -132,21 +165,11 @@ final class List extends TrieNode {
       return new List(hash, append(keys, o.key), append(values, o.value));
     }
 
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int k = key(hash, l), ok = key(o.hash, l);
-    final int nu;
 
     // same key? add recursively
-    if(k == ok) {
-      ch[k] = add(o, l + 1);
-      nu = 1 << k;
-    } else {
-      ch[k] = this;
-      ch[ok] = o;
-      nu = 1 << k | 1 << ok;
-    }
-
-    return new Branch(ch, nu, size + 1);
+    if(k == ok) return new Branch(add(o, l + 1), k);
+    return new Branch(this, k, o, ok, size + 1);
   }
 
   @Override
@@ -166,31 +189,16 @@ final class List extends TrieNode {
       return ks == keys ? this : new List(hash, ks, vs);
     }
 
-    final TrieNode[] ch = new TrieNode[KIDS];
     final int k = key(hash, l), ok = key(o.hash, l);
-    final int nu;
 
     // same key? add recursively
-    if(k == ok) {
-      ch[k] = add(o, l + 1);
-      nu = 1 << k;
-    } else {
-      ch[k] = this;
-      ch[ok] = o;
-      nu = 1 << k | 1 << ok;
-    }
-
-    return new Branch(ch, nu, size + o.size);
+    if(k == ok) return new Branch(add(o, l + 1), k);
+    return new Branch(this, k, o, ok, size + o.size);
   }
 
   @Override
   TrieNode add(final Branch o, final int l) {
-    final int k = key(hash, l);
-    final TrieNode[] ch = o.copyKids();
-    final TrieNode old = ch[k];
-    ch[k] = old == null ? this : old.addAll(this, l + 1);
-    return new Branch(ch,
-        o.used | 1 << k, o.size + ch[k].size - (old != null ? old.size : 0));
+    return o.merge(this, hash, l);
   }
 
   @Override
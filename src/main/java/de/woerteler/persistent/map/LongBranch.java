@@ -0,0 +1,154 @@
+package de.woerteler.persistent.map;
+
+/**
+ * Inner node of an {@link ImmutableLongMap} or {@link ImmutableIntMap}. Like in
+ * {@link Branch}, only the used slots are stored and the position of a child in {@link #kids}
+ * is the number of used slots before it.
+ *
+ * @author Leo Woerteler
+ */
+final class LongBranch extends LongNode {
+  /** Child array, containing only the used slots in ascending order. */
+  private final LongNode[] kids;
+  /** Bit array with a bit set for every used slot. */
+  private final int used;
+  /** Level of this branch, needed for descending iteratively in {@link #get(long)}. */
+  private final int lvl;
+
+  /**
+   * Constructor taking children array and the size of this node.
+   * @param ch children
+   * @param u bit array
+   * @param s size of this node
+   * @param l level
+   */
+  private LongBranch(final LongNode[] ch, final int u, final int s, final int l) {
+    super(s);
+    kids = ch;
+    used = u;
+    lvl = l;
+  }
+
+  /**
+   * Constructor for creating a branch from two children in different slots.
+   * @param a first child
+   * @param ka slot of the first child
+   * @param b second child
+   * @param kb slot of the second child
+   * @param l level
+   */
+  LongBranch(final LongNode a, final int ka, final LongNode b, final int kb, final int l) {
+    this(ka < kb ? new LongNode[] { a, b } : new LongNode[] { b, a }, 1 << ka | 1 << kb,
+        a.size + b.size, l);
+  }
+
+  /**
+   * Constructor for creating a branch with a single child, which has to be a branch.
+   * @param a the child
+   * @param ka slot of the child
+   * @param l level
+   */
+  LongBranch(final LongNode a, final int ka, final int l) {
+    this(new LongNode[] { a }, 1 << ka, a.size, l);
+  }
+
+  /**
+   * Creates a node with the given children, keeping the trie canonical.
+   * @param ch children
+   * @param u bit array
+   * @param s number of bindings in all children
+   * @param l level
+   * @return the node, {@code null} if there are no children
+   */
+  private static LongNode of(final LongNode[] ch, final int u, final int s, final int l) {
+    if(ch.length == 0) return null;
+    final LongNode single = BitmapTrie.single(ch, LongBranch.class);
+    return single != null ? single : new LongBranch(ch, u, s, l);
+  }
+
+  @Override
+  LongNode insert(final long k, final Object v, final int l) {
+    final int bit = 1 << slot(k, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      return new LongBranch(BitmapTrie.insert(kids, i, new LongLeaf(k, v)), used | bit,
+          size + 1, l);
+    }
+    final LongNode sub = kids[i], nsub = sub.insert(k, v, l + 1);
+    return nsub == sub ? this
+        : new LongBranch(BitmapTrie.replace(kids, i, nsub), used, size - sub.size + nsub.size, l);
+  }
+
+  @Override
+  LongNode delete(final long k, final int l) {
+    final int bit = 1 << slot(k, l);
+    if((used & bit) == 0) return this;
+    final int i = BitmapTrie.index(used, bit);
+    final LongNode sub = kids[i], nsub = sub.delete(k, l + 1);
+    if(nsub == sub) return this;
+    return nsub == null ? of(BitmapTrie.remove(kids, i), used ^ bit, size - 1, l)
+        : of(BitmapTrie.replace(kids, i, nsub), used, size - 1, l);
+  }
+
+  @Override
+  Object get(final long k) {
+    LongNode node = this;
+    while(node instanceof LongBranch) {
+      final LongBranch br = (LongBranch) node;
+      final int bit = 1 << slot(k, br.lvl);
+      if((br.used & bit) == 0) return null;
+      node = br.kids[BitmapTrie.index(br.used, bit)];
+    }
+    return node.get(k);
+  }
+
+  @Override
+  boolean contains(final long k) {
+    LongNode node = this;
+    while(node instanceof LongBranch) {
+      final LongBranch br = (LongBranch) node;
+      final int bit = 1 << slot(k, br.lvl);
+      if((br.used & bit) == 0) return false;
+      node = br.kids[BitmapTrie.index(br.used, bit)];
+    }
+    return node.contains(k);
+  }
+
+  @Override
+  void forEach(final Visitor action) {
+    for(final LongNode kid : kids) kid.forEach(action);
+  }
+
+  @Override
+  int hashSum() {
+    int h = 0;
+    for(final LongNode kid : kids) h += kid.hashSum();
+    return h;
+  }
+
+  @Override
+  boolean verify(final int l) {
+    if(l != lvl || kids.length == 0 || Integer.bitCount(used) != kids.length) return false;
+    if(kids.length == 1 && !(kids[0] instanceof LongBranch)) return false;
+    int c = 0;
+    for(int bits = used, a = 0; bits != 0; bits &= bits - 1, a++) {
+      final LongNode kid = kids[a];
+      if(kid == null || !kid.verify(l + 1)) return false;
+      final int s = Integer.numberOfTrailingZeros(bits);
+      final boolean[] ok = { true };
+      kid.forEach((k, v) -> ok[0] &= slot(k, l) == s);
+      if(!ok[0]) return false;
+      c += kid.size;
+    }
+    return c == size;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(this == obj) return true;
+    if(!(obj instanceof LongBranch)) return false;
+    final LongBranch other = (LongBranch) obj;
+    if(used != other.used || size != other.size) return false;
+    for(int i = 0; i < kids.length; i++) if(!kids[i].equals(other.kids[i])) return false;
+    return true;
+  }
+}
@@ -0,0 +1,76 @@
+package de.woerteler.persistent.map;
+
+/**
+ * Common superclass of the maps with primitive keys, {@link ImmutableLongMap} and
+ * {@link ImmutableIntMap}. Both store their bindings in a trie of {@link LongNode}s, the
+ * subclasses only add the typed update and lookup methods.
+ *
+ * @author Leo Woerteler
+ */
+abstract class LongKeyMap {
+  /** Root node of the trie. */
+  final LongNode root;
+
+  /**
+   * Constructor.
+   * @param root root node
+   */
+  LongKeyMap(final LongNode root) {
+    this.root = root;
+  }
+
+  /**
+   * Number of bindings in this map.
+   * @return size
+   */
+  public final int size() {
+    return root.size;
+  }
+
+  /**
+   * Checks if this map is empty.
+   * @return {@code true} if the map contains no bindings, {@code false} otherwise
+   */
+  public final boolean isEmpty() {
+    return root.size == 0;
+  }
+
+  /**
+   * Returns the keys of this map in the order of the map's {@code forEach} method.
+   * @return array of keys
+   */
+  final long[] keyArray() {
+    final long[] keys = new long[root.size];
+    final int[] pos = { 0 };
+    root.forEach((k, v) -> keys[pos[0]++] = k);
+    return keys;
+  }
+
+  /**
+   * Verifies the trie of this map.
+   * @return check result
+   */
+  final boolean verify() {
+    return root.verify(0);
+  }
+
+  @Override
+  public final boolean equals(final Object obj) {
+    if(obj == null || obj.getClass() != getClass()) return false;
+    final LongNode other = ((LongKeyMap) obj).root;
+    return root.size == other.size && root.equals(other);
+  }
+
+  @Override
+  public final int hashCode() {
+    return root.hashCode();
+  }
+
+  @Override
+  public final String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    root.forEach((k, v) -> sb.append(sb.length() == 1 ? "" : ", ").append(k).append('=')
+        .append(v));
+    return sb.append('}').toString();
+  }
+}
@@ -0,0 +1,70 @@
+package de.woerteler.persistent.map;
+
+/**
+ * A single binding of an {@link ImmutableLongMap} or {@link ImmutableIntMap}.
+ *
+ * @author Leo Woerteler
+ */
+final class LongLeaf extends LongNode {
+  /** Key of this binding. */
+  final long key;
+  /** Value of this binding. */
+  final Object value;
+
+  /**
+   * Constructor.
+   * @param k key
+   * @param v value
+   */
+  LongLeaf(final long k, final Object v) {
+    super(1);
+    key = k;
+    value = v;
+  }
+
+  @Override
+  LongNode insert(final long k, final Object v, final int l) {
+    if(k == key) return v == value ? this : new LongLeaf(k, v);
+    final int a = slot(k, l), b = slot(key, l);
+    if(a != b) return new LongBranch(new LongLeaf(k, v), a, this, b, l);
+    return new LongBranch(insert(k, v, l + 1), a, l);
+  }
+
+  @Override
+  LongNode delete(final long k, final int l) {
+    return k == key ? null : this;
+  }
+
+  @Override
+  Object get(final long k) {
+    return k == key ? value : null;
+  }
+
+  @Override
+  boolean contains(final long k) {
+    return k == key;
+  }
+
+  @Override
+  void forEach(final Visitor action) {
+    action.accept(key, value);
+  }
+
+  @Override
+  int hashSum() {
+    return Long.hashCode(key) ^ (value == null ? 0 : value.hashCode());
+  }
+
+  @Override
+  boolean verify(final int l) {
+    return true;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(!(obj instanceof LongLeaf)) return false;
+    final LongLeaf other = (LongLeaf) obj;
+    return key == other.key
+        && (value == null ? other.value == null : value.equals(other.value));
+  }
+}
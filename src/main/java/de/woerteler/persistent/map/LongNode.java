@@ -0,0 +1,136 @@
+package de.woerteler.persistent.map;
+
+/**
+ * Abstract superclass of all nodes of an {@link ImmutableLongMap} or {@link ImmutableIntMap}.
+ * The trie has the same shape as the one of {@link ImmutableMap}, but the slots are taken from
+ * the bits of the primitive key itself instead of its hash code, so keys are never boxed and
+ * never compared with {@code equals}. Since distinct keys always end up in different leaves,
+ * there are no collision lists. Starting with the lowest bits, {@code int} keys widened to
+ * {@code long} never need more than seven levels.
+ * <p>
+ * Like the trie of {@link ImmutableSet}, it is kept in a canonical form: a {@link LongBranch}
+ * never has a single child that is not a branch itself. Updates return {@code this} if nothing
+ * changed and {@code null} if no bindings are left.
+ *
+ * @author Leo Woerteler
+ */
+abstract class LongNode {
+  /** Mask for the bits used on the current level. */
+  private static final int MASK = TrieNode.KIDS - 1;
+
+  /** The empty node, only used as root of the empty map. */
+  static final LongNode EMPTY = new LongNode(0) {
+    @Override
+    LongNode insert(final long k, final Object v, final int l) { return new LongLeaf(k, v); }
+    @Override
+    LongNode delete(final long k, final int l) { return this; }
+    @Override
+    Object get(final long k) { return null; }
+    @Override
+    boolean contains(final long k) { return false; }
+    @Override
+    void forEach(final Visitor action) { }
+    @Override
+    int hashSum() { return 0; }
+    @Override
+    boolean verify(final int l) { return true; }
+    @Override
+    public boolean equals(final Object obj) { return this == obj; }
+  };
+
+  /** Number of bindings in this node. */
+  final int size;
+
+  /**
+   * Constructor.
+   * @param s size
+   */
+  LongNode(final int s) {
+    size = s;
+  }
+
+  /**
+   * Calculates the slot of the given key on the given level.
+   * @param key the key
+   * @param lvl level
+   * @return slot
+   */
+  static int slot(final long key, final int lvl) {
+    return (int) (key >>> lvl * ImmutableMap.BITS) & MASK;
+  }
+
+  /**
+   * Binds the given key to the given value.
+   * @param key the key
+   * @param value the value
+   * @param lvl level
+   * @return updated node if changed, {@code this} if the key is already bound to the value
+   */
+  abstract LongNode insert(long key, Object value, int lvl);
+
+  /**
+   * Deletes the binding of the given key.
+   * @param key the key
+   * @param lvl level
+   * @return updated node if changed, {@code null} if no bindings are left,
+   *         {@code this} otherwise
+   */
+  abstract LongNode delete(long key, int lvl);
+
+  /**
+   * Looks up the value bound to the given key. Branches are descended iteratively, so the level
+   * is not needed.
+   * @param key the key
+   * @return bound value, {@code null} if the key is not bound
+   */
+  abstract Object get(long key);
+
+  /**
+   * Checks if the given key is bound in this node.
+   * @param key the key
+   * @return result of check
+   */
+  abstract boolean contains(long key);
+
+  /**
+   * Calls the given action for every binding in this node.
+   * @param action action to call
+   */
+  abstract void forEach(Visitor action);
+
+  /**
+   * Sum of the hash codes of all bindings in this node.
+   * @return the sum
+   */
+  abstract int hashSum();
+
+  /**
+   * Verifies this node and its descendants.
+   * @param lvl level
+   * @return check result
+   */
+  abstract boolean verify(int lvl);
+
+  @Override
+  public abstract boolean equals(Object obj);
+
+  @Override
+  public final int hashCode() {
+    return hashSum();
+  }
+
+  /**
+   * Action called for the bindings of a trie.
+   *
+   * @author Leo Woerteler
+   */
+  @FunctionalInterface
+  interface Visitor {
+    /**
+     * Called for a binding.
+     * @param key the key
+     * @param value the value
+     */
+    void accept(long key, Object value);
+  }
+}
@@ -0,0 +1,33 @@
+package de.woerteler.persistent.map;
+
+/**
+ * Callback receiving the differences between two versions of an {@link ImmutableMap}, see
+ * {@link ImmutableMap#diff(ImmutableMap, MapDiffHandler)}.
+ *
+ * @author Leo Woerteler
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface MapDiffHandler<K, V> {
+  /**
+   * Called for a binding that only exists in the new version.
+   * @param key the key
+   * @param value the new value
+   */
+  void added(K key, V value);
+
+  /**
+   * Called for a binding that only exists in the old version.
+   * @param key the key
+   * @param value the old value
+   */
+  void removed(K key, V value);
+
+  /**
+   * Called for a key that is bound to different values in both versions.
+   * @param key the key
+   * @param oldValue value in the old version
+   * @param newValue value in the new version
+   */
+  void changed(K key, V oldValue, V newValue);
+}
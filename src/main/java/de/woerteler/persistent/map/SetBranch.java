@@ -0,0 +1,224 @@
+package de.woerteler.persistent.map;
+
+import java.util.function.*;
+
+/**
+ * Inner node of an {@link ImmutableSet}. Like in {@link Branch}, only the used slots are stored
+ * and the position of a child in {@link #kids} is the number of used slots before it.
+ *
+ * @author Leo Woerteler
+ */
+final class SetBranch extends SetNode {
+  /** Child array, containing only the used slots in ascending order. */
+  private final SetNode[] kids;
+  /** Bit array with a bit set for every used slot. */
+  final int used;
+
+  /**
+   * Constructor taking children array and the size of this node.
+   * @param ch children
+   * @param u bit array
+   * @param s size of this node
+   */
+  private SetBranch(final SetNode[] ch, final int u, final int s) {
+    super(s);
+    kids = ch;
+    used = u;
+  }
+
+  /**
+   * Constructor for creating a branch from two children in different slots.
+   * @param a first child
+   * @param ka slot of the first child
+   * @param b second child
+   * @param kb slot of the second child
+   */
+  SetBranch(final SetNode a, final int ka, final SetNode b, final int kb) {
+    this(ka < kb ? new SetNode[] { a, b } : new SetNode[] { b, a }, 1 << ka | 1 << kb,
+        a.size + b.size);
+  }
+
+  /**
+   * Constructor for creating a branch with a single child, which has to be a branch.
+   * @param a the child
+   * @param ka slot of the child
+   */
+  SetBranch(final SetNode a, final int ka) {
+    this(new SetNode[] { a }, 1 << ka, a.size);
+  }
+
+  /**
+   * Creates a node with the given children, keeping the trie canonical.
+   * @param ch children
+   * @param u bit array
+   * @param s number of elements in all children
+   * @return the node, {@code null} if there are no children
+   */
+  private static SetNode of(final SetNode[] ch, final int u, final int s) {
+    if(ch.length == 0) return null;
+    final SetNode single = BitmapTrie.single(ch, SetBranch.class);
+    return single != null ? single : new SetBranch(ch, u, s);
+  }
+
+  /**
+   * Returns the internal array of children, which must not be modified.
+   * @return non-empty children
+   */
+  SetNode[] children() {
+    return kids;
+  }
+
+  @Override
+  SetNode insert(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      return new SetBranch(BitmapTrie.insert(kids, i, new SetLeaf(h, k)), used | bit, size + 1);
+    }
+    final SetNode sub = kids[i], nsub = sub.insert(h, k, l + 1);
+    return nsub == sub ? this : new SetBranch(BitmapTrie.replace(kids, i, nsub), used, size + 1);
+  }
+
+  @Override
+  SetNode delete(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l);
+    if((used & bit) == 0) return this;
+    final int i = BitmapTrie.index(used, bit);
+    final SetNode sub = kids[i], nsub = sub.delete(h, k, l + 1);
+    if(nsub == sub) return this;
+    return nsub == null ? of(BitmapTrie.remove(kids, i), used ^ bit, size - 1)
+        : of(BitmapTrie.replace(kids, i, nsub), used, size - 1);
+  }
+
+  @Override
+  boolean contains(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l);
+    return (used & bit) != 0 && kids[BitmapTrie.index(used, bit)].contains(h, k, l + 1);
+  }
+
+  @Override
+  SetNode union(final SetNode o, final int l) {
+    if(o == this) return this;
+    if(!(o instanceof SetBranch)) return o.union(this, l);
+
+    final SetBranch ob = (SetBranch) o;
+    final int nu = used | ob.used;
+    final SetNode[] ch = new SetNode[Integer.bitCount(nu)];
+    boolean same = nu == used, oSame = nu == ob.used;
+    int ns = 0;
+    for(int bits = nu, i = 0, a = 0, b = 0; bits != 0; bits &= bits - 1, i++) {
+      final int bit = bits & -bits;
+      final SetNode k = (used & bit) != 0 ? kids[a++] : null;
+      final SetNode ok = (ob.used & bit) != 0 ? ob.kids[b++] : null;
+      final SetNode nw = ok == null ? k : k == null ? ok : k.union(ok, l + 1);
+      same &= nw == k;
+      oSame &= nw == ok;
+      ch[i] = nw;
+      ns += nw.size;
+    }
+    return same ? this : oSame ? o : new SetBranch(ch, nu, ns);
+  }
+
+  @Override
+  SetNode intersect(final SetNode o, final int l) {
+    if(o == this) return this;
+    if(!(o instanceof SetBranch)) return o.intersect(this, l);
+
+    final SetBranch ob = (SetBranch) o;
+    final int both = used & ob.used;
+    final SetNode[] ch = new SetNode[Integer.bitCount(both)];
+    boolean same = both == used, oSame = both == ob.used;
+    int nu = both, ns = 0, c = 0;
+    for(int bits = both; bits != 0; bits &= bits - 1) {
+      final int bit = bits & -bits;
+      final SetNode k = kids[BitmapTrie.index(used, bit)];
+      final SetNode ok = ob.kids[BitmapTrie.index(ob.used, bit)];
+      final SetNode nw = k.intersect(ok, l + 1);
+      same &= nw == k;
+      oSame &= nw == ok;
+      if(nw == null) {
+        nu ^= bit;
+      } else {
+        ch[c++] = nw;
+        ns += nw.size;
+      }
+    }
+    if(same) return this;
+    if(oSame) return o;
+    final SetNode[] res = new SetNode[c];
+    System.arraycopy(ch, 0, res, 0, c);
+    return of(res, nu, ns);
+  }
+
+  @Override
+  SetNode difference(final SetNode o, final int l) {
+    if(o == this) return null;
+    if(!(o instanceof SetBranch)) return o.removeFrom(this, l);
+
+    final SetBranch ob = (SetBranch) o;
+    if((used & ob.used) == 0) return this;
+    final SetNode[] ch = new SetNode[kids.length];
+    boolean same = true;
+    int nu = used, ns = 0, c = 0;
+    for(int bits = used, a = 0; bits != 0; bits &= bits - 1, a++) {
+      final int bit = bits & -bits;
+      final SetNode k = kids[a];
+      final SetNode nw = (ob.used & bit) == 0 ? k
+          : k.difference(ob.kids[BitmapTrie.index(ob.used, bit)], l + 1);
+      same &= nw == k;
+      if(nw == null) {
+        nu ^= bit;
+      } else {
+        ch[c++] = nw;
+        ns += nw.size;
+      }
+    }
+    if(same) return this;
+    final SetNode[] res = new SetNode[c];
+    System.arraycopy(ch, 0, res, 0, c);
+    return of(res, nu, ns);
+  }
+
+  @Override
+  SetNode removeFrom(final SetNode o, final int l) {
+    return o.difference(this, l);
+  }
+
+  @Override
+  void forEach(final Consumer<Object> action) {
+    for(final SetNode kid : kids) kid.forEach(action);
+  }
+
+  @Override
+  int hashSum() {
+    int h = 0;
+    for(final SetNode kid : kids) h += kid.hashSum();
+    return h;
+  }
+
+  @Override
+  boolean verify(final int l) {
+    if(kids.length == 0 || Integer.bitCount(used) != kids.length) return false;
+    if(kids.length == 1 && !(kids[0] instanceof SetBranch)) return false;
+    int c = 0;
+    for(int bits = used, a = 0; bits != 0; bits &= bits - 1, a++) {
+      final SetNode kid = kids[a];
+      if(kid == null || !kid.verify(l + 1)) return false;
+      final int slot = Integer.numberOfTrailingZeros(bits);
+      final boolean[] ok = { true };
+      kid.forEach(k -> ok[0] &= TrieNode.key(k.hashCode(), l) == slot);
+      if(!ok[0]) return false;
+      c += kid.size;
+    }
+    return c == size;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(this == obj) return true;
+    if(!(obj instanceof SetBranch)) return false;
+    final SetBranch other = (SetBranch) obj;
+    if(used != other.used || size != other.size) return false;
+    for(int i = 0; i < kids.length; i++) if(!kids[i].equals(other.kids[i])) return false;
+    return true;
+  }
+}
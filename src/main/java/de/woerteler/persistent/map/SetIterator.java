@@ -0,0 +1,98 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+
+/**
+ * Iterator over the elements of an {@link ImmutableSet}, the counterpart of
+ * {@link TrieIterator}. No objects are allocated while iterating.
+ *
+ * @author Leo Woerteler
+ *
+ * @param <E> element type
+ */
+final class SetIterator<E> implements Iterator<E> {
+  /** Maximum number of nested branches, one per level of hash bits. */
+  private static final int MAX_DEPTH = (Integer.SIZE + ImmutableMap.BITS - 1) / ImmutableMap.BITS;
+
+  /** Stack of children arrays of the branches on the current path. */
+  private final SetNode[][] kids = new SetNode[MAX_DEPTH][];
+  /** Position of the next child for every branch on the stack. */
+  private final int[] poss = new int[MAX_DEPTH];
+  /** Stack pointer. */
+  private int top = -1;
+
+  /** Next leaf, {@code null} if the next element is in {@link #list} or none is left. */
+  private SetLeaf leaf;
+  /** Current collision list. */
+  private SetList list;
+  /** Position of the next element inside {@link #list}. */
+  private int listPos;
+
+  /**
+   * Constructor.
+   * @param root root node
+   */
+  SetIterator(final SetNode root) {
+    descend(root);
+  }
+
+  /**
+   * Descends into the left-most element of the given node.
+   * @param node node to descend into
+   */
+  private void descend(final SetNode node) {
+    SetNode n = node;
+    while(n instanceof SetBranch) {
+      final SetNode[] ch = ((SetBranch) n).children();
+      kids[++top] = ch;
+      poss[top] = 1;
+      n = ch[0];
+    }
+    if(n instanceof SetLeaf) {
+      leaf = (SetLeaf) n;
+    } else if(n instanceof SetList) {
+      list = (SetList) n;
+      listPos = 0;
+    }
+  }
+
+  /** Moves on to the next leaf or collision list. */
+  private void advance() {
+    leaf = null;
+    list = null;
+    while(top >= 0) {
+      final SetNode[] ch = kids[top];
+      if(poss[top] < ch.length) {
+        descend(ch[poss[top]++]);
+        return;
+      }
+      kids[top--] = null;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return leaf != null || list != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E next() {
+    final Object k;
+    if(leaf != null) {
+      k = leaf.key;
+      advance();
+    } else if(list != null) {
+      k = list.keys[listPos];
+      if(++listPos == list.keys.length) advance();
+    } else {
+      throw new NoSuchElementException();
+    }
+    return (E) k;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
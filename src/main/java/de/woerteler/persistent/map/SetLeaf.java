@@ -0,0 +1,89 @@
+package de.woerteler.persistent.map;
+
+import java.util.function.*;
+
+/**
+ * A single element of an {@link ImmutableSet}.
+ *
+ * @author Leo Woerteler
+ */
+final class SetLeaf extends SetNode {
+  /** Hash code of the element, stored for performance. */
+  final int hash;
+  /** The element. */
+  final Object key;
+
+  /**
+   * Constructor.
+   * @param h hash code of the element
+   * @param k the element
+   */
+  SetLeaf(final int h, final Object k) {
+    super(1);
+    hash = h;
+    key = k;
+  }
+
+  @Override
+  SetNode insert(final int h, final Object k, final int l) {
+    // same hash, keep or create a collision list
+    if(h == hash) return k.equals(key) ? this : new SetList(h, new Object[] { key, k });
+
+    // different hash, branch
+    final int a = TrieNode.key(h, l), b = TrieNode.key(hash, l);
+    if(a != b) return new SetBranch(new SetLeaf(h, k), a, this, b);
+    return new SetBranch(insert(h, k, l + 1), a);
+  }
+
+  @Override
+  SetNode delete(final int h, final Object k, final int l) {
+    return h == hash && key.equals(k) ? null : this;
+  }
+
+  @Override
+  boolean contains(final int h, final Object k, final int l) {
+    return h == hash && key.equals(k);
+  }
+
+  @Override
+  SetNode union(final SetNode o, final int l) {
+    return o.insert(hash, key, l);
+  }
+
+  @Override
+  SetNode intersect(final SetNode o, final int l) {
+    return o.contains(hash, key, l) ? this : null;
+  }
+
+  @Override
+  SetNode difference(final SetNode o, final int l) {
+    return o.contains(hash, key, l) ? null : this;
+  }
+
+  @Override
+  SetNode removeFrom(final SetNode o, final int l) {
+    return o.delete(hash, key, l);
+  }
+
+  @Override
+  void forEach(final Consumer<Object> action) {
+    action.accept(key);
+  }
+
+  @Override
+  int hashSum() {
+    return hash;
+  }
+
+  @Override
+  boolean verify(final int l) {
+    return key.hashCode() == hash;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(!(obj instanceof SetLeaf)) return false;
+    final SetLeaf other = (SetLeaf) obj;
+    return hash == other.hash && key.equals(other.key);
+  }
+}
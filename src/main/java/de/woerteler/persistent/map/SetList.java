@@ -0,0 +1,136 @@
+package de.woerteler.persistent.map;
+
+import java.util.function.*;
+
+/**
+ * Leaf of an {@link ImmutableSet} that contains a collision list of elements with the same
+ * hash code.
+ *
+ * @author Leo Woerteler
+ */
+final class SetList extends SetNode {
+  /** Common hash code of all elements. */
+  final int hash;
+  /** The elements, at least two. */
+  final Object[] keys;
+
+  /**
+   * Constructor.
+   * @param h hash code
+   * @param ks elements
+   */
+  SetList(final int h, final Object[] ks) {
+    super(ks.length);
+    hash = h;
+    keys = ks;
+  }
+
+  /**
+   * Position of the given element in this list.
+   * @param k the element
+   * @return position, {@code -1} if not found
+   */
+  private int indexOf(final Object k) {
+    for(int i = keys.length; --i >= 0;) if(k.equals(keys[i])) return i;
+    return -1;
+  }
+
+  @Override
+  SetNode insert(final int h, final Object k, final int l) {
+    // same hash, keep or append
+    if(h == hash) return indexOf(k) >= 0 ? this : new SetList(h, TrieNode.append(keys, k));
+
+    // different hash, branch
+    final int a = TrieNode.key(h, l), b = TrieNode.key(hash, l);
+    if(a != b) return new SetBranch(new SetLeaf(h, k), a, this, b);
+    return new SetBranch(insert(h, k, l + 1), a);
+  }
+
+  @Override
+  SetNode delete(final int h, final Object k, final int l) {
+    final int i = h == hash ? indexOf(k) : -1;
+    if(i < 0) return this;
+    // a single leaf remains
+    if(keys.length == 2) return new SetLeaf(h, keys[i ^ 1]);
+    return new SetList(h, TrieNode.delete(keys, i));
+  }
+
+  @Override
+  boolean contains(final int h, final Object k, final int l) {
+    return h == hash && indexOf(k) >= 0;
+  }
+
+  @Override
+  SetNode union(final SetNode o, final int l) {
+    SetNode res = o;
+    for(final Object k : keys) res = res.insert(hash, k, l);
+    return res;
+  }
+
+  @Override
+  SetNode intersect(final SetNode o, final int l) {
+    return filter(o, true, l);
+  }
+
+  @Override
+  SetNode difference(final SetNode o, final int l) {
+    return filter(o, false, l);
+  }
+
+  /**
+   * Keeps the elements of this list that are contained or not contained in the given node.
+   * @param o the other node
+   * @param keep {@code true} for keeping the contained elements, {@code false} otherwise
+   * @param l level
+   * @return resulting node, {@code null} if no elements are left
+   */
+  private SetNode filter(final SetNode o, final boolean keep, final int l) {
+    final int n = keys.length;
+    final Object[] ks = new Object[n];
+    int c = 0;
+    for(final Object k : keys) if(o.contains(hash, k, l) == keep) ks[c++] = k;
+    if(c == n) return this;
+    if(c == 0) return null;
+    if(c == 1) return new SetLeaf(hash, ks[0]);
+    final Object[] res = new Object[c];
+    System.arraycopy(ks, 0, res, 0, c);
+    return new SetList(hash, res);
+  }
+
+  @Override
+  SetNode removeFrom(final SetNode o, final int l) {
+    SetNode res = o;
+    for(int i = 0; res != null && i < keys.length; i++) res = res.delete(hash, keys[i], l);
+    return res;
+  }
+
+  @Override
+  void forEach(final Consumer<Object> action) {
+    for(final Object k : keys) action.accept(k);
+  }
+
+  @Override
+  int hashSum() {
+    return hash * keys.length;
+  }
+
+  @Override
+  boolean verify(final int l) {
+    if(keys.length < 2) return false;
+    for(int i = 0; i < keys.length; i++) {
+      if(keys[i].hashCode() != hash) return false;
+      for(int j = i; j-- > 0;) if(keys[i].equals(keys[j])) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(!(obj instanceof SetList)) return false;
+    final SetList other = (SetList) obj;
+    if(hash != other.hash || keys.length != other.keys.length) return false;
+    // both lists are duplicate-free, so containment suffices
+    for(final Object k : keys) if(other.indexOf(k) < 0) return false;
+    return true;
+  }
+}
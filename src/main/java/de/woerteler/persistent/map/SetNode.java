@@ -0,0 +1,140 @@
+package de.woerteler.persistent.map;
+
+import java.util.function.*;
+
+/**
+ * Abstract superclass of all nodes of an {@link ImmutableSet}. The trie has the same shape as
+ * the one of {@link ImmutableMap}, but its leaves only store keys. It is kept in a canonical
+ * form, a {@link SetBranch} never has a single child that is not a branch itself, so equal sets
+ * have equal tries.
+ * <p>
+ * Updates return {@code this} if nothing changed and {@code null} if no elements are left.
+ *
+ * @author Leo Woerteler
+ */
+abstract class SetNode {
+  /** The empty node, only used as root of the empty set. */
+  static final SetNode EMPTY = new SetNode(0) {
+    @Override
+    SetNode insert(final int h, final Object k, final int l) { return new SetLeaf(h, k); }
+    @Override
+    SetNode delete(final int h, final Object k, final int l) { return this; }
+    @Override
+    boolean contains(final int h, final Object k, final int l) { return false; }
+    @Override
+    SetNode union(final SetNode o, final int l) { return o; }
+    @Override
+    SetNode intersect(final SetNode o, final int l) { return null; }
+    @Override
+    SetNode difference(final SetNode o, final int l) { return null; }
+    @Override
+    SetNode removeFrom(final SetNode o, final int l) { return o; }
+    @Override
+    void forEach(final Consumer<Object> action) { }
+    @Override
+    int hashSum() { return 0; }
+    @Override
+    boolean verify(final int l) { return true; }
+    @Override
+    public boolean equals(final Object obj) { return this == obj; }
+  };
+
+  /** Number of elements in this node. */
+  final int size;
+
+  /**
+   * Constructor.
+   * @param s size
+   */
+  SetNode(final int s) {
+    size = s;
+  }
+
+  /**
+   * Inserts the given element into this node.
+   * @param hash hash code of the element
+   * @param key element to insert
+   * @param lvl level
+   * @return updated node if changed, {@code this} otherwise
+   */
+  abstract SetNode insert(int hash, Object key, int lvl);
+
+  /**
+   * Deletes the given element from this node.
+   * @param hash hash code of the element
+   * @param key element to delete
+   * @param lvl level
+   * @return updated node if changed, {@code null} if no elements are left,
+   *         {@code this} otherwise
+   */
+  abstract SetNode delete(int hash, Object key, int lvl);
+
+  /**
+   * Checks if the given element is contained in this node.
+   * @param hash hash code of the element
+   * @param key element to look for
+   * @param lvl level
+   * @return result of check
+   */
+  abstract boolean contains(int hash, Object key, int lvl);
+
+  /**
+   * Computes the union of this node and the given one on the same level.
+   * @param o other node
+   * @param lvl level
+   * @return resulting node, {@code this} or {@code o} if one contains all elements
+   */
+  abstract SetNode union(SetNode o, int lvl);
+
+  /**
+   * Computes the intersection of this node and the given one on the same level.
+   * @param o other node
+   * @param lvl level
+   * @return resulting node, {@code null} if it is empty
+   */
+  abstract SetNode intersect(SetNode o, int lvl);
+
+  /**
+   * Removes all elements of the given node on the same level from this one.
+   * @param o other node
+   * @param lvl level
+   * @return resulting node, {@code null} if it is empty
+   */
+  abstract SetNode difference(SetNode o, int lvl);
+
+  /**
+   * Removes all elements of this node from the given one. This is the second half of
+   * {@link #difference(SetNode, int)} for nodes that are no branches.
+   * @param o node to remove the elements from
+   * @param lvl level
+   * @return resulting node, {@code null} if it is empty
+   */
+  abstract SetNode removeFrom(SetNode o, int lvl);
+
+  /**
+   * Calls the given action for every element in this node.
+   * @param action action to call
+   */
+  abstract void forEach(Consumer<Object> action);
+
+  /**
+   * Sum of the hash codes of all elements in this node.
+   * @return the sum
+   */
+  abstract int hashSum();
+
+  /**
+   * Verifies this node and its descendants.
+   * @param lvl level
+   * @return check result
+   */
+  abstract boolean verify(int lvl);
+
+  @Override
+  public abstract boolean equals(Object obj);
+
+  @Override
+  public final int hashCode() {
+    return hashSum();
+  }
+}
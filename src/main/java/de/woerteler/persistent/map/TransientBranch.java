@@ -0,0 +1,183 @@
+package de.woerteler.persistent.map;
+
+/**
+ * Mutable inner node of a {@link TransientMap}. It is only reachable from the map that created
+ * it and never shared with an {@link ImmutableMap}: {@link #freeze()} copies it into a
+ * persistent {@link Branch}. Children are either persistent {@link TrieNode}s, which may be
+ * shared with other maps and are replaced on modification, or transient branches created from
+ * persistent branches on the first update that passes through them, so that a path is copied
+ * at most once between two calls of {@link TransientMap#freeze()}.
+ * <p>
+ * Since all transient branches below the root are owned by the same map, a transient branch is
+ * only ever modified through its parent, which is transient as well.
+ *
+ * @author Leo Woerteler
+ */
+final class TransientBranch {
+  /** Children in the used slots, either {@link TrieNode}s or transient branches. */
+  private Object[] kids;
+  /** Bit array with a bit set for every used slot. */
+  private int used;
+  /** Number of bindings in this node. */
+  int size;
+
+  /**
+   * Constructor copying the given persistent branch.
+   * @param branch the branch
+   */
+  TransientBranch(final Branch branch) {
+    final TrieNode[] ch = branch.children();
+    kids = new Object[ch.length];
+    System.arraycopy(ch, 0, kids, 0, ch.length);
+    used = branch.used;
+    size = branch.size;
+  }
+
+  /**
+   * Returns the child at the given position as a transient branch, replacing a persistent
+   * branch by a transient copy.
+   * @param pos position of the child
+   * @return the transient branch, {@code null} if the child is a leaf or collision list
+   */
+  private TransientBranch branch(final int pos) {
+    final Object kid = kids[pos];
+    if(kid instanceof TransientBranch) return (TransientBranch) kid;
+    if(!(kid instanceof Branch)) return null;
+    final TransientBranch br = new TransientBranch((Branch) kid);
+    kids[pos] = br;
+    return br;
+  }
+
+  /**
+   * Inserts a child at the given position.
+   * @param pos insertion position
+   * @param bit bit of the child's slot
+   * @param kid the child
+   */
+  private void insertKid(final int pos, final int bit, final Object kid) {
+    final int n = kids.length;
+    final Object[] copy = new Object[n + 1];
+    System.arraycopy(kids, 0, copy, 0, pos);
+    copy[pos] = kid;
+    System.arraycopy(kids, pos, copy, pos + 1, n - pos);
+    kids = copy;
+    used |= bit;
+  }
+
+  /**
+   * Removes the child at the given position.
+   * @param pos position of the child
+   * @param bit bit of the child's slot
+   */
+  private void removeKid(final int pos, final int bit) {
+    final int n = kids.length - 1;
+    final Object[] copy = new Object[n];
+    System.arraycopy(kids, 0, copy, 0, pos);
+    System.arraycopy(kids, pos + 1, copy, pos, n - pos);
+    kids = copy;
+    used ^= bit;
+  }
+
+  /**
+   * Binds the given key to the given value, replacing any previous binding.
+   * @param h hash code of the key
+   * @param k the key
+   * @param v the value
+   * @param l level
+   */
+  void insert(final int h, final Object k, final Object v, final int l) {
+    final int bit = 1 << TrieNode.key(h, l), i = BitmapTrie.index(used, bit);
+    if((used & bit) == 0) {
+      insertKid(i, bit, new Leaf(h, k, v));
+      size++;
+      return;
+    }
+
+    final TransientBranch br = branch(i);
+    if(br != null) {
+      final int s = br.size;
+      br.insert(h, k, v, l + 1);
+      size += br.size - s;
+    } else {
+      final TrieNode sub = (TrieNode) kids[i], nsub = sub.insert(h, k, v, l + 1);
+      kids[i] = nsub;
+      size += nsub.size - sub.size;
+    }
+  }
+
+  /**
+   * Removes the binding of the given key. Children that become empty are removed, a single
+   * remaining leaf is only moved up in {@link #freeze()}.
+   * @param h hash code of the key
+   * @param k the key
+   * @param l level
+   */
+  void delete(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l);
+    if((used & bit) == 0) return;
+    final int i = BitmapTrie.index(used, bit);
+    final Object kid = kids[i];
+    if(kid instanceof Branch && !((Branch) kid).contains(h, k, l + 1)) return;
+
+    final TransientBranch br = branch(i);
+    if(br != null) {
+      final int s = br.size;
+      br.delete(h, k, l + 1);
+      size += br.size - s;
+      if(br.size == 0) removeKid(i, bit);
+    } else {
+      final TrieNode sub = (TrieNode) kid, nsub = sub.delete(h, k, l + 1);
+      if(nsub == sub) return;
+      size--;
+      if(nsub == null) removeKid(i, bit);
+      else kids[i] = nsub;
+    }
+  }
+
+  /**
+   * Looks up the value bound to the given key.
+   * @param h hash code of the key
+   * @param k the key
+   * @param l level
+   * @return bound value, {@code null} if the key is not bound
+   */
+  Object get(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l);
+    if((used & bit) == 0) return null;
+    final Object kid = kids[BitmapTrie.index(used, bit)];
+    return kid instanceof TransientBranch ? ((TransientBranch) kid).get(h, k, l + 1)
+        : ((TrieNode) kid).get(h, k, l + 1);
+  }
+
+  /**
+   * Checks if the given key is bound in this node.
+   * @param h hash code of the key
+   * @param k the key
+   * @param l level
+   * @return result of check
+   */
+  boolean contains(final int h, final Object k, final int l) {
+    final int bit = 1 << TrieNode.key(h, l);
+    if((used & bit) == 0) return false;
+    final Object kid = kids[BitmapTrie.index(used, bit)];
+    return kid instanceof TransientBranch ? ((TransientBranch) kid).contains(h, k, l + 1)
+        : ((TrieNode) kid).contains(h, k, l + 1);
+  }
+
+  /**
+   * Creates a persistent copy of this node. Like {@link Branch#delete(int, Object, int)}, a
+   * single child that is no branch replaces its parent.
+   * @return the persistent node, {@code null} if this node is empty
+   */
+  TrieNode freeze() {
+    final int n = kids.length;
+    if(n == 0) return null;
+    final TrieNode[] ch = new TrieNode[n];
+    for(int i = 0; i < n; i++) {
+      final Object kid = kids[i];
+      ch[i] = kid instanceof TransientBranch ? ((TransientBranch) kid).freeze() : (TrieNode) kid;
+      assert ch[i] != null : "empty child";
+    }
+    return n == 1 && !(ch[0] instanceof Branch) ? ch[0] : new Branch(ch, used, size);
+  }
+}
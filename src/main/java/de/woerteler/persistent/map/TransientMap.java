@@ -0,0 +1,144 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * A mutable builder for {@link ImmutableMap}s. Branches on the path of an update are copied
+ * into {@link TransientBranch}es, which are only reachable from this map and modified in place
+ * by subsequent updates, so every path is copied only once. The persistent nodes of
+ * {@link ImmutableMap}s are never modified. Calling {@link #freeze()} copies the transient
+ * branches into persistent ones, which takes time proportional to the number of branches
+ * modified since the last call, after which the builder can be used further without affecting
+ * the snapshot.
+ *
+ * @author Leo Woerteler
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class TransientMap<K, V> {
+  /** Root node of the trie, only valid if {@link #trans} is {@code null}. */
+  private TrieNode root;
+  /** Transient root branch, {@code null} if the trie was not modified since the last freeze. */
+  private TransientBranch trans;
+
+  /** Constructor for an empty map. */
+  public TransientMap() {
+    this(ImmutableMap.<K, V>empty());
+  }
+
+  /**
+   * Constructor initializing this map with the bindings of the given map.
+   * @param map initial bindings
+   */
+  public TransientMap(final ImmutableMap<K, V> map) {
+    root = map.root;
+  }
+
+  /**
+   * Binds the given key to the given value, replacing any previous binding.
+   * @param key key to insert
+   * @param value value to insert
+   * @return this map for convenience
+   */
+  public TransientMap<K, V> put(final K key, final V value) {
+    insert(key.hashCode(), key, value);
+    return this;
+  }
+
+  /**
+   * Adds all bindings of the given map.
+   * @param map map to add
+   * @return this map for convenience
+   */
+  public TransientMap<K, V> putAll(final Map<? extends K, ? extends V> map) {
+    for(final Entry<? extends K, ? extends V> e : map.entrySet())
+      insert(e.getKey().hashCode(), e.getKey(), e.getValue());
+    return this;
+  }
+
+  /**
+   * Binds the given key to the given value. As long as the root is a leaf or collision list,
+   * it is updated persistently.
+   * @param hash hash code of the key
+   * @param key the key
+   * @param value the value
+   */
+  private void insert(final int hash, final Object key, final Object value) {
+    if(trans == null) {
+      if(!(root instanceof Branch)) {
+        root = root.insert(hash, key, value, 0);
+        return;
+      }
+      trans = new TransientBranch((Branch) root);
+    }
+    trans.insert(hash, key, value, 0);
+  }
+
+  /**
+   * Removes the binding of the given key if it exists.
+   * @param key key to remove
+   * @return this map for convenience
+   */
+  public TransientMap<K, V> remove(final K key) {
+    final int hash = key.hashCode();
+    if(trans != null) {
+      trans.delete(hash, key, 0);
+    } else if(root instanceof Branch && root.contains(hash, key, 0)) {
+      trans = new TransientBranch((Branch) root);
+      trans.delete(hash, key, 0);
+    } else {
+      final TrieNode del = root.delete(hash, key, 0);
+      root = del == null ? TrieNode.EMPTY : del;
+    }
+    return this;
+  }
+
+  /**
+   * Gets the value bound to the given key.
+   * @param key key to look for
+   * @return bound value if found, {@code null} otherwise
+   */
+  @SuppressWarnings("unchecked")
+  public V get(final K key) {
+    final int hash = key.hashCode();
+    return (V) (trans != null ? trans.get(hash, key, 0) : root.get(hash, key, 0));
+  }
+
+  /**
+   * Checks if the given key exists in the map.
+   * @param key key to look for
+   * @return {@code true}, if the key exists, {@code false} otherwise
+   */
+  public boolean contains(final K key) {
+    final int hash = key.hashCode();
+    return trans != null ? trans.contains(hash, key, 0) : root.contains(hash, key, 0);
+  }
+
+  /**
+   * Number of bindings in this map.
+   * @return size
+   */
+  public int size() {
+    return trans != null ? trans.size : root.size;
+  }
+
+  /**
+   * Creates an {@link ImmutableMap} containing the current bindings of this map. Only the
+   * branches modified since the last call are copied.
+   * @return immutable snapshot
+   */
+  public ImmutableMap<K, V> freeze() {
+    if(trans != null) {
+      final TrieNode r = trans.freeze();
+      root = r == null ? TrieNode.EMPTY : r;
+      trans = null;
+    }
+    return root == TrieNode.EMPTY ? ImmutableMap.<K, V>empty() : new ImmutableMap<K, V>(root);
+  }
+
+  @Override
+  public String toString() {
+    return freeze().toString();
+  }
+}
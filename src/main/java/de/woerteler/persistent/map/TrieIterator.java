@@ -0,0 +1,105 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Iterator over the bindings of a trie. Apart from the elements produced by the mapping
+ * function, no objects are allocated while iterating.
+ *
+ * @author Leo Woerteler
+ *
+ * @param <T> type of the produced elements
+ */
+final class TrieIterator<T> implements Iterator<T> {
+  /** Maximum number of nested branches, one per level of hash bits. */
+  private static final int MAX_DEPTH = (Integer.SIZE + ImmutableMap.BITS - 1) / ImmutableMap.BITS;
+
+  /** Function creating the produced element from a key and a value. */
+  private final BiFunction<Object, Object, ? extends T> fun;
+
+  /** Stack of children arrays of the branches on the current path. */
+  private final TrieNode[][] kids = new TrieNode[MAX_DEPTH][];
+  /** Position of the next child for every branch on the stack. */
+  private final int[] poss = new int[MAX_DEPTH];
+  /** Stack pointer. */
+  private int top = -1;
+
+  /** Next leaf, {@code null} if the next binding is in {@link #list} or none is left. */
+  private Leaf leaf;
+  /** Current collision list. */
+  private List list;
+  /** Position of the next binding inside {@link #list}. */
+  private int listPos;
+
+  /**
+   * Constructor.
+   * @param root root node
+   * @param fun function creating the produced element from a key and a value
+   */
+  TrieIterator(final TrieNode root, final BiFunction<Object, Object, ? extends T> fun) {
+    this.fun = fun;
+    descend(root);
+  }
+
+  /**
+   * Descends into the left-most binding of the given node.
+   * @param node node to descend into
+   */
+  private void descend(final TrieNode node) {
+    TrieNode n = node;
+    while(n instanceof Branch) {
+      final TrieNode[] ch = ((Branch) n).children();
+      kids[++top] = ch;
+      poss[top] = 1;
+      n = ch[0];
+    }
+    if(n instanceof Leaf) {
+      leaf = (Leaf) n;
+    } else if(n instanceof List) {
+      list = (List) n;
+      listPos = 0;
+    }
+  }
+
+  /** Moves on to the next leaf or collision list. */
+  private void advance() {
+    leaf = null;
+    list = null;
+    while(top >= 0) {
+      final TrieNode[] ch = kids[top];
+      if(poss[top] < ch.length) {
+        descend(ch[poss[top]++]);
+        return;
+      }
+      kids[top--] = null;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return leaf != null || list != null;
+  }
+
+  @Override
+  public T next() {
+    final Object k, v;
+    if(leaf != null) {
+      k = leaf.key;
+      v = leaf.value;
+      advance();
+    } else if(list != null) {
+      k = list.keys[listPos];
+      v = list.values[listPos];
+      if(++listPos == list.keys.length) advance();
+    } else {
+      throw new NoSuchElementException();
+    }
+    return fun.apply(k, v);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,252 @@
+package de.woerteler.persistent.map;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Structural set operations on two tries. Branches are combined slot by slot on their
+ * {@link Branch#used} bitmaps, sub-tries that are only present in one trie or identical in
+ * both are reused without being visited. If one side is a leaf or collision list, its few
+ * bindings are looked up in the other side instead.
+ * <p>
+ * The children of branches containing at least {@link #PARALLEL_SIZE} bindings in both tries
+ * are combined as separate fork/join tasks.
+ *
+ * @author Leo Woerteler
+ */
+final class TrieMerge extends RecursiveTask<TrieNode> {
+  /** Serial version UID. */
+  private static final long serialVersionUID = 1L;
+
+  /** Minimum number of bindings in both branches for combining their children in parallel. */
+  static final int PARALLEL_SIZE = 1 << 15;
+
+  /** Operation keeping the bindings of both tries. */
+  static final int MERGE = 0;
+  /** Operation keeping the bindings whose keys are in both tries. */
+  static final int INTERSECT = 1;
+  /** Operation keeping the bindings of the first trie whose keys are not in the second one. */
+  static final int REMOVE = 2;
+
+  /** The operation. */
+  private final int op;
+  /** Function combining the values of keys that are bound in both tries. */
+  private final BinaryOperator<Object> resolver;
+  /** First trie. */
+  private final TrieNode a;
+  /** Second trie. */
+  private final TrieNode b;
+  /** Level of both tries. */
+  private final int lvl;
+
+  /**
+   * Constructor.
+   * @param op the operation
+   * @param resolver function combining the values of keys bound in both tries
+   * @param a first trie
+   * @param b second trie on the same level
+   * @param lvl level
+   */
+  private TrieMerge(final int op, final BinaryOperator<Object> resolver, final TrieNode a,
+      final TrieNode b, final int lvl) {
+    this.op = op;
+    this.resolver = resolver;
+    this.a = a;
+    this.b = b;
+    this.lvl = lvl;
+  }
+
+  /**
+   * Combines two tries.
+   * @param op the operation, one of {@link #MERGE}, {@link #INTERSECT} and {@link #REMOVE}
+   * @param resolver function combining the values of keys bound in both tries, it has to return
+   *   {@code v} for {@code (v, v)}
+   * @param a first trie
+   * @param b second trie
+   * @return the resulting trie, {@code a} or {@code b} if it is equal to one of them
+   */
+  static TrieNode apply(final int op, final BinaryOperator<Object> resolver, final TrieNode a,
+      final TrieNode b) {
+    final TrieMerge task = new TrieMerge(op, resolver, a, b, 0);
+    final TrieNode res = a.size < PARALLEL_SIZE || b.size < PARALLEL_SIZE ? task.compute()
+        : ForkJoinPool.commonPool().invoke(task);
+    return res == null ? TrieNode.EMPTY : res;
+  }
+
+  @Override
+  protected TrieNode compute() {
+    return combine(a, b, lvl);
+  }
+
+  /**
+   * Combines two nodes on the same level.
+   * @param x first node
+   * @param y second node
+   * @param l level
+   * @return resulting node, {@code null} if it is empty
+   */
+  private TrieNode combine(final TrieNode x, final TrieNode y, final int l) {
+    if(x == y) return op == REMOVE ? null : x;
+    if(x == TrieNode.EMPTY) return op == MERGE ? y : null;
+    if(y == TrieNode.EMPTY) return op == INTERSECT ? null : x;
+    if(x instanceof Branch && y instanceof Branch) return branches((Branch) x, (Branch) y, l);
+
+    switch(op) {
+      case MERGE:
+        return x instanceof Branch ? mergeInto((Branch) x, y, l) : mergeFrom(x, y, l);
+      case INTERSECT:
+        return intersect(x, y, l);
+      default:
+        return remove(x, y, l);
+    }
+  }
+
+  /**
+   * Combines two branches slot by slot.
+   * @param x first branch
+   * @param y second branch
+   * @param l level
+   * @return resulting node, {@code null} if it is empty
+   */
+  private TrieNode branches(final Branch x, final Branch y, final int l) {
+    final TrieNode[] xk = x.children(), yk = y.children();
+    final int bits = op == MERGE ? x.used | y.used : op == INTERSECT ? x.used & y.used : x.used;
+    final int n = Integer.bitCount(bits);
+    final TrieNode[] ch = new TrieNode[n];
+    final TrieMerge[] tasks = x.size >= PARALLEL_SIZE && y.size >= PARALLEL_SIZE
+        ? new TrieMerge[n] : null;
+
+    // children present in only one trie are kept or dropped directly
+    for(int bs = bits, i = 0; bs != 0; bs &= bs - 1, i++) {
+      final int bit = bs & -bs;
+      final boolean inX = (x.used & bit) != 0, inY = (y.used & bit) != 0;
+      final TrieNode kx = inX ? xk[Integer.bitCount(x.used & bit - 1)] : null;
+      final TrieNode ky = inY ? yk[Integer.bitCount(y.used & bit - 1)] : null;
+      if(!inY) ch[i] = kx;
+      else if(!inX) ch[i] = ky;
+      else if(tasks != null) tasks[i] = new TrieMerge(op, resolver, kx, ky, l + 1);
+      else ch[i] = combine(kx, ky, l + 1);
+    }
+    if(tasks != null) {
+      for(final TrieMerge task : tasks) if(task != null) task.fork();
+      for(int i = n; --i >= 0;) if(tasks[i] != null) ch[i] = tasks[i].join();
+    }
+
+    // drop empty children and check whether one of the inputs can be reused
+    boolean sameX = bits == x.used, sameY = op != REMOVE && bits == y.used;
+    int used = 0, size = 0, c = 0;
+    for(int bs = bits, i = 0; bs != 0; bs &= bs - 1, i++) {
+      final int bit = bs & -bs;
+      final TrieNode kid = ch[i];
+      sameX &= (x.used & bit) != 0 && kid == xk[Integer.bitCount(x.used & bit - 1)];
+      sameY &= (y.used & bit) != 0 && kid == yk[Integer.bitCount(y.used & bit - 1)];
+      if(kid != null) {
+        ch[c++] = kid;
+        used |= bit;
+        size += kid.size;
+      }
+    }
+    if(sameX) return x;
+    if(sameY) return y;
+    if(c == 0) return null;
+    // a single leaf or list does not depend on its slot
+    if(c == 1 && !(ch[0] instanceof Branch)) return ch[0];
+    final TrieNode[] kids = new TrieNode[c];
+    System.arraycopy(ch, 0, kids, 0, c);
+    return new Branch(kids, used, size);
+  }
+
+  /**
+   * Merges the bindings of a leaf or collision list into a branch.
+   * @param x the branch
+   * @param y leaf or collision list
+   * @param l level
+   * @return resulting node
+   */
+  private TrieNode mergeInto(final Branch x, final TrieNode y, final int l) {
+    final TrieNode[] res = { x };
+    y.forEach((k, v) -> {
+      final int h = k.hashCode();
+      final TrieNode r = res[0];
+      if(!r.contains(h, k, l)) {
+        res[0] = r.insert(h, k, v, l);
+      } else {
+        final Object old = r.get(h, k, l), nw = resolver.apply(old, v);
+        if(nw != old) res[0] = r.insert(h, k, nw, l);
+      }
+    });
+    return res[0];
+  }
+
+  /**
+   * Merges the bindings of a leaf or collision list into another node.
+   * @param x leaf or collision list
+   * @param y the other node
+   * @param l level
+   * @return resulting node
+   */
+  private TrieNode mergeFrom(final TrieNode x, final TrieNode y, final int l) {
+    final TrieNode[] res = { y };
+    x.forEach((k, v) -> {
+      final int h = k.hashCode();
+      final TrieNode r = res[0];
+      if(!r.contains(h, k, l)) {
+        res[0] = r.insert(h, k, v, l);
+      } else {
+        final Object old = r.get(h, k, l), nw = resolver.apply(v, old);
+        if(nw != old) res[0] = r.insert(h, k, nw, l);
+      }
+    });
+    return res[0];
+  }
+
+  /**
+   * Intersects two nodes, at least one of which is a leaf or collision list.
+   * @param x first node
+   * @param y second node
+   * @param l level
+   * @return resulting node, {@code null} if it is empty
+   */
+  private TrieNode intersect(final TrieNode x, final TrieNode y, final int l) {
+    final boolean small = !(x instanceof Branch);
+    final TrieNode s = small ? x : y, o = small ? y : x;
+    final TrieNode[] res = { TrieNode.EMPTY };
+    final boolean[] same = { true };
+    s.forEach((k, v) -> {
+      final int h = k.hashCode();
+      if(o.contains(h, k, l)) {
+        final Object ov = o.get(h, k, l);
+        final Object nw = small ? resolver.apply(v, ov) : resolver.apply(ov, v);
+        same[0] &= nw == v;
+        res[0] = res[0].insert(h, k, nw, l);
+      } else {
+        same[0] = false;
+      }
+    });
+    return same[0] ? s : res[0] == TrieNode.EMPTY ? null : res[0];
+  }
+
+  /**
+   * Removes the keys of the second node from the first one, at least one of them is a leaf or
+   * collision list.
+   * @param x first node
+   * @param y second node
+   * @param l level
+   * @return resulting node, {@code null} if it is empty
+   */
+  private static TrieNode remove(final TrieNode x, final TrieNode y, final int l) {
+    final TrieNode[] res = { x };
+    if(x instanceof Branch) {
+      y.forEach((k, v) -> {
+        if(res[0] != null) res[0] = res[0].delete(k.hashCode(), k, l);
+      });
+      return res[0];
+    }
+    x.forEach((k, v) -> {
+      if(res[0] != null && y.contains(k.hashCode(), k, l)) {
+        res[0] = res[0].delete(k.hashCode(), k, l);
+      }
+    });
+    return res[0];
+  }
+}
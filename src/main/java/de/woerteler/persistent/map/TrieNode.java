@@ -1,5 +1,10 @@
 package de.woerteler.persistent.map;
 
+import java.io.*;
+import java.util.function.*;
+
+import de.woerteler.persistent.io.*;
+
 /**
  * Abstract superclass of all trie nodes.
  *
@@ -34,11 +39,22 @@ public abstract class TrieNode {
     @Override
     TrieNode add(final Branch o, final int l) { return o; }
     @Override
+    void forEach(final BiConsumer<Object, Object> action) { }
+    @Override
+    void writeNode(final SharingOutput out, final ValueCodec<Object> ks,
+        final ValueCodec<Object> vs) throws IOException {
+      out.writeByte(EMPTY_TAG); }
+    @Override
     boolean verify() { return true; }
     @Override
-    public TrieNode insert(final int h, final Object k, final Object v, final int l) {
+    TrieNode insert(final int h, final Object k, final Object v, final int l) {
       return new Leaf(h, k, v); }
     @Override
+    TrieNode update(final int h, final Object k, final UnaryOperator<Object> fun,
+        final int l) {
+      final Object v = fun.apply(null);
+      return v == null ? this : new Leaf(h, k, v); }
+    @Override
     StringBuilder toString(final StringBuilder sb) { return sb; }
     @Override
     public boolean equals(final Object obj) { return this == obj; }
@@ -46,6 +62,15 @@ public abstract class TrieNode {
     public int hashCode() { return 0; }
   };
 
+  /** Serialization tag of the empty node. */
+  static final int EMPTY_TAG = 0;
+  /** Serialization tag of {@link Leaf}s. */
+  static final int LEAF_TAG = 1;
+  /** Serialization tag of {@link List}s. */
+  static final int LIST_TAG = 2;
+  /** Serialization tag of {@link Branch}es. */
+  static final int BRANCH_TAG = 3;
+
   /** Size of this node. */
   public final int size;
   /**
@@ -78,6 +103,19 @@ public abstract class TrieNode {
    */
   abstract TrieNode delete(int hash, Object key, int lvl);
 
+  /**
+   * Updates the binding of the given key in a single pass. The function receives the bound
+   * value, or {@code null} if the key is not bound, and returns the new value, or {@code null}
+   * if the key should not be bound.
+   * @param hash hash code of the key
+   * @param key key to update
+   * @param fun function computing the new value
+   * @param lvl level
+   * @return updated map if changed, {@code null} if no bindings are left,
+   *         {@code this} if the function returned the bound value
+   */
+  abstract TrieNode update(int hash, Object key, UnaryOperator<Object> fun, int lvl);
+
   /**
    * Looks up the value associated with the given key.
    * @param hash hash code
@@ -96,6 +134,12 @@ public abstract class TrieNode {
    */
   abstract boolean contains(int hash, Object key, int lvl);
 
+  /**
+   * Calls the given action for every binding in this node.
+   * @param action action to call with key and value
+   */
+  abstract void forEach(BiConsumer<Object, Object> action);
+
   /**
    * <p> Inserts all bindings from the given node into this one.
    * <p> This method is part of the <i>double dispatch</i> pattern and
@@ -131,12 +175,166 @@ public abstract class TrieNode {
    */
   abstract TrieNode add(final Branch o, final int lvl);
 
+  /**
+   * Writes this node to the given output, or a back-reference if it was written before.
+   * @param out output
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @throws IOException I/O exception
+   */
+  final void write(final SharingOutput out, final ValueCodec<Object> keys,
+      final ValueCodec<Object> values) throws IOException {
+    if(out.writeReference(this)) return;
+    writeNode(out, keys, values);
+    if(this != EMPTY) out.register(this);
+  }
+
+  /**
+   * Writes the tag and contents of this node to the given output.
+   * @param out output
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @throws IOException I/O exception
+   */
+  abstract void writeNode(SharingOutput out, ValueCodec<Object> keys, ValueCodec<Object> values)
+      throws IOException;
+
+  /**
+   * Reads a node written by {@link #write(SharingOutput, ValueCodec, ValueCodec)}.
+   * The hash codes of the keys are recomputed, so they have to be the same as when writing.
+   * Collision lists and branches are checked against the recomputed hash codes.
+   * @param in input
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @return the node
+   * @throws IOException I/O exception, or if the input does not describe a valid trie
+   */
+  static TrieNode read(final SharingInput in, final ValueCodec<?> keys,
+      final ValueCodec<?> values) throws IOException {
+    return read(in, keys, values, 0);
+  }
+
+  /**
+   * Reads a node on the given level of the trie.
+   * @param in input
+   * @param keys codec for the keys
+   * @param values codec for the values
+   * @param lvl level
+   * @return the node
+   * @throws IOException I/O exception, or if the input does not describe a valid trie
+   */
+  private static TrieNode read(final SharingInput in, final ValueCodec<?> keys,
+      final ValueCodec<?> values, final int lvl) throws IOException {
+    final Object ref = in.readReference();
+    if(ref != null) {
+      if(!(ref instanceof TrieNode)) throw new IOException("Reference to a non-trie node");
+      return (TrieNode) ref;
+    }
+    final int tag = in.readUnsignedByte();
+    switch(tag) {
+      case EMPTY_TAG:
+        return EMPTY;
+      case LEAF_TAG:
+        final Object key = keys.read(in);
+        return in.register(new Leaf(key.hashCode(), key, values.read(in)));
+      case LIST_TAG:
+        final int n = in.readVarInt();
+        if(n < 2) throw new IOException("Invalid collision list size: " + n);
+        final Object[] ks = new Object[n], vs = new Object[n];
+        for(int i = 0; i < n; i++) {
+          ks[i] = keys.read(in);
+          vs[i] = values.read(in);
+        }
+        final int hash = ks[0].hashCode();
+        for(int i = 1; i < n; i++) {
+          if(ks[i].hashCode() != hash) throw new IOException("Different hash codes in list");
+          for(int j = 0; j < i; j++) {
+            if(ks[i].equals(ks[j])) throw new IOException("Duplicate key in list: " + ks[i]);
+          }
+        }
+        return in.register(new List(hash, ks, vs));
+      case BRANCH_TAG:
+        final int used = in.readInt();
+        final TrieNode[] kids = new TrieNode[Integer.bitCount(used)];
+        if(kids.length == 0) throw new IOException("Empty branch");
+        if(lvl * ImmutableMap.BITS >= Integer.SIZE) throw new IOException("Branch too deep");
+        // all keys below this branch agree on the slots of the levels above it
+        final int above = (1 << lvl * ImmutableMap.BITS) - 1;
+        int size = 0, first = 0;
+        for(int i = 0, bits = used; i < kids.length; i++, bits &= bits - 1) {
+          final TrieNode kid = read(in, keys, values, lvl + 1);
+          if(kid == EMPTY) throw new IOException("Empty node in branch");
+          final int h = anyHash(kid), slot = Integer.numberOfTrailingZeros(bits);
+          if(i == 0) first = h;
+          if(key(h, lvl) != slot || ((h ^ first) & above) != 0) {
+            throw new IOException("Node in wrong slot of branch: " + slot);
+          }
+          kids[i] = kid;
+          size += kid.size;
+        }
+        return in.register(new Branch(kids, used, size));
+      default:
+        throw new IOException("Invalid node tag: " + tag);
+    }
+  }
+
+  /**
+   * Returns the hash code of one of the keys in the given non-empty node. Since the keys below
+   * a branch agree on the slots up to the branch's level, this hash code identifies the slots
+   * of the node in all branches above it.
+   * @param node the node
+   * @return the hash code
+   */
+  private static int anyHash(final TrieNode node) {
+    TrieNode nd = node;
+    while(nd instanceof Branch) nd = ((Branch) nd).children()[0];
+    return nd instanceof Leaf ? ((Leaf) nd).hash : ((List) nd).hash;
+  }
+
   /**
    * Verifies the tree.
    * @return check result
    */
   abstract boolean verify();
 
+  /**
+   * Reports the differences between two tries to the given handler. Sub-tries that are
+   * identical in both versions are skipped, so only the paths to changed bindings are visited.
+   * @param old node of the old version
+   * @param nw node of the new version on the same level
+   * @param lvl level
+   * @param handler handler receiving the differences
+   */
+  static void diff(final TrieNode old, final TrieNode nw, final int lvl,
+      final MapDiffHandler<Object, Object> handler) {
+    if(old == nw) return;
+    if(old instanceof Branch && nw instanceof Branch) {
+      final Branch a = (Branch) old, b = (Branch) nw;
+      final TrieNode[] ak = a.children(), bk = b.children();
+      for(int bits = a.used | b.used, i = 0, j = 0; bits != 0; bits &= bits - 1) {
+        final int bit = bits & -bits;
+        if((b.used & bit) == 0) ak[i++].forEach(handler::removed);
+        else if((a.used & bit) == 0) bk[j++].forEach(handler::added);
+        else diff(ak[i++], bk[j++], lvl + 1, handler);
+      }
+      return;
+    }
+
+    // at least one side is a leaf or collision list, look up all bindings on the other side
+    old.forEach((k, v) -> {
+      final int h = k.hashCode();
+      if(!nw.contains(h, k, lvl)) {
+        handler.removed(k, v);
+      } else {
+        final Object nv = nw.get(h, k, lvl);
+        if(v == null ? nv != null : !v.equals(nv)) handler.changed(k, v, nv);
+      }
+    });
+    nw.forEach((k, v) -> {
+      if(!old.contains(k.hashCode(), k, lvl)) handler.added(k, v);
+    });
+  }
+
   /**
    * Calculates the hash key for the given level.
    * @param hash hash value
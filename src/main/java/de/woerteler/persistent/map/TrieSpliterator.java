@@ -0,0 +1,130 @@
+package de.woerteler.persistent.map;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Spliterator over the bindings of a trie. It covers a range of sibling nodes and splits
+ * that range in half, descending into the children of a single remaining {@link Branch}.
+ * Since all nodes know their size, the size of every split is exact.
+ *
+ * @author Leo Woerteler
+ *
+ * @param <T> type of the produced elements
+ */
+final class TrieSpliterator<T> implements Spliterator<T> {
+  /** Function creating the produced element from a key and a value. */
+  private final BiFunction<Object, Object, ? extends T> fun;
+  /** Characteristics of this spliterator. */
+  private final int chars;
+
+  /** Sibling nodes, only the range {@code [pos, end)} belongs to this spliterator. */
+  private TrieNode[] nodes;
+  /** Position of the next node that has not been started yet. */
+  private int pos;
+  /** End of the range of nodes. */
+  private int end;
+  /** Iterator over the current node, {@code null} if no node was started. */
+  private TrieIterator<T> iter;
+  /** Number of remaining elements. */
+  private long size;
+
+  /**
+   * Constructor.
+   * @param nodes array of sibling nodes
+   * @param pos start of the range
+   * @param end end of the range
+   * @param size number of elements in the range
+   * @param fun function creating the produced element from a key and a value
+   * @param chars characteristics of the produced elements
+   */
+  private TrieSpliterator(final TrieNode[] nodes, final int pos, final int end, final long size,
+      final BiFunction<Object, Object, ? extends T> fun, final int chars) {
+    this.nodes = nodes;
+    this.pos = pos;
+    this.end = end;
+    this.size = size;
+    this.fun = fun;
+    this.chars = chars;
+  }
+
+  /**
+   * Constructor for a spliterator over a whole trie.
+   * @param root root node
+   * @param fun function creating the produced element from a key and a value
+   * @param chars characteristics of the produced elements, {@link #SIZED},
+   *   {@link #SUBSIZED} and {@link #IMMUTABLE} are always added
+   */
+  TrieSpliterator(final TrieNode root, final BiFunction<Object, Object, ? extends T> fun,
+      final int chars) {
+    this(new TrieNode[] { root }, 0, 1, root.size, fun, chars | SIZED | SUBSIZED | IMMUTABLE);
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super T> action) {
+    while(iter == null || !iter.hasNext()) {
+      if(pos == end) return false;
+      iter = new TrieIterator<T>(nodes[pos++], fun);
+    }
+    size--;
+    action.accept(iter.next());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(final Consumer<? super T> action) {
+    if(iter != null) {
+      while(iter.hasNext()) action.accept(iter.next());
+      iter = null;
+    }
+    final BiConsumer<Object, Object> bc = (k, v) -> action.accept(fun.apply(k, v));
+    while(pos < end) nodes[pos++].forEach(bc);
+    size = 0;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    // never split a node that has already been started
+    if(iter != null) return null;
+    if(end - pos == 1) {
+      // descend into the single remaining branch, skipping branches with only one child
+      TrieNode n = nodes[pos];
+      while(n instanceof Branch) {
+        final TrieNode[] ch = ((Branch) n).children();
+        if(ch.length > 1) return splitOff(ch, 0, ch.length);
+        n = ch[0];
+      }
+      return null;
+    }
+    return end - pos < 2 ? null : splitOff(nodes, pos, end);
+  }
+
+  /**
+   * Splits off the lower half of the given range of sibling nodes, this spliterator
+   * continues with the upper half.
+   * @param arr array of sibling nodes
+   * @param p start of the range
+   * @param e end of the range
+   * @return spliterator over the lower half
+   */
+  private Spliterator<T> splitOff(final TrieNode[] arr, final int p, final int e) {
+    final int mid = p + e >>> 1;
+    long s = 0;
+    for(int i = p; i < mid; i++) s += arr[i].size;
+    nodes = arr;
+    pos = mid;
+    end = e;
+    size -= s;
+    return new TrieSpliterator<T>(arr, p, mid, s, fun, chars);
+  }
+
+  @Override
+  public long estimateSize() {
+    return size;
+  }
+
+  @Override
+  public int characteristics() {
+    return chars;
+  }
+}
@@ -0,0 +1,108 @@
+package de.woerteler.persistent;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutablePriorityQueue} data structure.
+ * @author Leo Woerteler
+ */
+public class ImmutablePriorityQueueTest {
+  /** Compares random insertions and removals with a {@link PriorityQueue}. */
+  @Test public void randomOps() {
+    final Random rng = new Random(5);
+    ImmutablePriorityQueue<Integer> queue = ImmutablePriorityQueue.empty();
+    final PriorityQueue<Integer> ref = new PriorityQueue<>(Comparator.reverseOrder());
+    for(int i = 0; i < 30_000; i++) {
+      if(!ref.isEmpty() && rng.nextInt(5) < 2) {
+        assertEquals(ref.poll(), queue.peek());
+        queue = queue.extractMax();
+      } else {
+        final int v = rng.nextInt(10_000);
+        queue = queue.insert(v);
+        ref.add(v);
+      }
+      assertEquals(ref.size(), queue.size());
+      assertEquals(ref.peek(), queue.peek());
+    }
+    while(!ref.isEmpty()) {
+      assertEquals(ref.poll(), queue.peek());
+      queue = queue.extractMax();
+    }
+    assertTrue(queue.isEmpty());
+    assertNull(queue.peek());
+  }
+
+  /** Checks that older versions of a queue are not affected by later operations. */
+  @Test public void snapshots() {
+    ImmutablePriorityQueue<Integer> queue = ImmutablePriorityQueue.empty();
+    final ArrayList<ImmutablePriorityQueue<Integer>> snaps = new ArrayList<>();
+    for(int i = 0; i < 1_000; i++) {
+      queue = queue.insert(i * 7919 % 1_000);
+      snaps.add(queue);
+    }
+    for(int i = 0; i < 500; i++) queue = queue.extractMax();
+    assertEquals(Integer.valueOf(499), queue.peek());
+
+    for(int s = 0; s < snaps.size(); s++) {
+      ImmutablePriorityQueue<Integer> snap = snaps.get(s);
+      assertEquals(s + 1, snap.size());
+      final ArrayList<Integer> expected = new ArrayList<>();
+      for(int i = 0; i <= s; i++) expected.add(i * 7919 % 1_000);
+      expected.sort(Comparator.reverseOrder());
+      if(s % 50 == 0) {
+        for(final Integer e : expected) {
+          assertEquals(e, snap.peek());
+          snap = snap.extractMax();
+        }
+      } else {
+        assertEquals(expected.get(0), snap.peek());
+      }
+    }
+  }
+
+  /** Tests melding two queues. */
+  @Test public void meld() {
+    final Random rng = new Random(11);
+    final PriorityQueue<Integer> ref = new PriorityQueue<>(Comparator.reverseOrder());
+    ImmutablePriorityQueue<Integer> a = ImmutablePriorityQueue.empty(), b = a;
+    for(int i = 0; i < 5_000; i++) {
+      final int v = rng.nextInt();
+      if(i % 3 == 0) a = a.insert(v);
+      else b = b.insert(v);
+      ref.add(v);
+    }
+    ImmutablePriorityQueue<Integer> melded = a.meld(b);
+    assertSame(a, a.meld(ImmutablePriorityQueue.empty()));
+    assertEquals(ref.size(), melded.size());
+    while(!ref.isEmpty()) {
+      assertEquals(ref.poll(), melded.peek());
+      melded = melded.extractMax();
+    }
+  }
+
+  /** Equal elements are returned in insertion order, custom comparators are respected. */
+  @Test public void comparator() {
+    ImmutablePriorityQueue<String> queue = ImmutablePriorityQueue.empty(
+        Comparator.comparingInt(String::length));
+    for(final String s : new String[] { "bb", "a", "ccc", "dd", "eee", "f" }) {
+      queue = queue.insert(s);
+    }
+    assertEquals("PriorityQueue[bb, a, ccc, dd, eee, f]", queue.toString());
+    final StringBuilder sb = new StringBuilder();
+    while(!queue.isEmpty()) {
+      sb.append(queue.peek());
+      queue = queue.extractMax();
+    }
+    assertEquals("ccceeebbddaf", sb.toString());
+  }
+
+  /** Removing from the empty queue fails. */
+  @Test(expected = NoSuchElementException.class)
+  public void extractEmpty() {
+    ImmutablePriorityQueue.<Integer>empty().extractMax();
+  }
+}
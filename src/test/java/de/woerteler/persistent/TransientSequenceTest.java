@@ -0,0 +1,88 @@
+package de.woerteler.persistent;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link TransientSequence} builder.
+ * @author Leo Woerteler
+ */
+public class TransientSequenceTest {
+  /** Tests that a frozen sequence is not affected by later modifications of the builder. */
+  @Test public void testFreeze() {
+    final TransientSequence<Integer> tr = new TransientSequence<Integer>();
+    final List<TrieSequence<Integer>> snaps = new ArrayList<>();
+    for(int i = 0; i < 40_000; i++) {
+      tr.add(i);
+      if(i % 997 == 0) snaps.add(tr.freeze());
+    }
+    for(int i = 0; i < 40_000; i += 3) tr.set(i, -i);
+
+    for(int s = 0; s < snaps.size(); s++) {
+      final TrieSequence<Integer> snap = snaps.get(s);
+      assertEquals("size", s * 997 + 1, snap.size());
+      int i = 0;
+      for(final Integer v : snap) assertEquals(i++, v.intValue());
+      assertEquals(snap.size(), i);
+    }
+
+    final TrieSequence<Integer> last = tr.freeze();
+    assertEquals("size", 40_000, last.size());
+    for(int i = 0; i < 40_000; i++) {
+      final int exp = i % 3 == 0 ? -i : i;
+      assertEquals(exp, last.get(i).intValue());
+      assertEquals(exp, tr.get(i).intValue());
+    }
+    assertArrayEquals(last.toArray(), tr.freeze().toArray());
+  }
+
+  /** Tests that the source of a transient sequence is never modified. */
+  @Test public void testSource() {
+    final TrieSequence<Integer> seq = TrieSequence.from(range(1234));
+    final TransientSequence<Integer> tr = seq.asTransient();
+    for(int i = 0; i < 1234; i++) tr.set(i, -i);
+    for(int i = 0; i < 1234; i++) tr.add(i);
+    assertEquals(2468, tr.size());
+    assertEquals(1234, seq.size());
+    for(int i = 0; i < 1234; i++) {
+      assertEquals(i, seq.get(i).intValue());
+      assertEquals(-i, tr.get(i).intValue());
+      assertEquals(i, tr.get(1234 + i).intValue());
+    }
+  }
+
+  /** Compares a sequence built by the builder with one built by repeated persistent adds. */
+  @Test public void compareWithAdd() {
+    TrieSequence<Integer> seq = TrieSequence.empty();
+    final TransientSequence<Integer> tr = new TransientSequence<Integer>();
+    for(int i = 0; i < 33_000; i++) {
+      seq = seq.add(i);
+      tr.add(i);
+      if(i % 1024 == 0) assertEquals(seq, tr.freeze());
+    }
+    final TrieSequence<Integer> frozen = tr.freeze();
+    assertEquals(seq, frozen);
+    assertEquals(seq.toString(), frozen.toString());
+    assertSame(TrieSequence.empty(), new TransientSequence<Integer>().freeze());
+  }
+
+  /** Positions outside of the builder's range are rejected. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void outOfBounds() {
+    new TransientSequence<Integer>().addAll(range(32)).get(32);
+  }
+
+  /**
+   * Creates a list of consecutive integers.
+   * @param n number of integers
+   * @return the list
+   */
+  private static List<Integer> range(final int n) {
+    final List<Integer> list = new ArrayList<>(n);
+    for(int i = 0; i < n; i++) list.add(i);
+    return list;
+  }
+}
@@ -193,4 +193,138 @@ public class TrieSequenceTest {
     assertEquals(TrieSequence.from(range(0, size + 3)),
         TrieSequence.from(range(0, 3)).append(TrieSequence.from(range(3, size + 3))));
   }
+
+  /** Tests that the spliterator splits at chunk boundaries and covers all elements. */
+  @Test
+  public void spliterator() {
+    for(final int n : new int[] { 0, 1, 31, 32, 33, 1000, 12345 }) {
+      final TrieSequence<Integer> seq = TrieSequence.from(range(0, n));
+      final Deque<Spliterator<Integer>> todo = new ArrayDeque<>();
+      todo.push(seq.spliterator());
+      final List<Integer> out = new ArrayList<>();
+      while(!todo.isEmpty()) {
+        final Spliterator<Integer> spl = todo.pop();
+        assertTrue(spl.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED
+            | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+        final long size = spl.estimateSize();
+        final Spliterator<Integer> prefix = spl.trySplit();
+        if(prefix != null) {
+          assertEquals(size, prefix.estimateSize() + spl.estimateSize());
+          assertEquals(0, prefix.estimateSize() % TrieSequence.SIZE);
+          todo.push(spl);
+          todo.push(prefix);
+        } else {
+          assertTrue(size <= 2 * TrieSequence.SIZE);
+          if(spl.tryAdvance(out::add)) spl.forEachRemaining(out::add);
+        }
+      }
+      assertEquals(n, out.size());
+      for(int i = 0; i < n; i++) assertEquals(i, out.get(i).intValue());
+    }
+
+    final TrieSequence<Integer> seq = TrieSequence.from(range(0, 1_000_000));
+    assertEquals(499_999_500_000L, seq.parallelStream().mapToLong(Integer::longValue).sum());
+    assertEquals(1_000_000, seq.stream().count());
+  }
+
+  /** Tests that {@link TrieSequence#set(int, Object)} only changes the given position. */
+  @Test
+  public void set() {
+    for(final int n : new int[] { 1, 31, 32, 33, 1025, 12345 }) {
+      final TrieSequence<Integer> seq = TrieSequence.from(range(0, n));
+      for(int i = 0; i < n; i += Math.max(1, n / 100)) {
+        final TrieSequence<Integer> seq2 = seq.set(i, -1);
+        assertEquals(n, seq2.size());
+        for(int j = 0; j < n; j++) {
+          assertEquals(j == i ? -1 : j, seq2.get(j).intValue());
+          assertEquals(j, seq.get(j).intValue());
+        }
+      }
+      assertEquals(n - 1, seq.update(n - 1, v -> v + n).get(n - 1) - n);
+    }
+
+    final Integer[] arr = TEST.set(12344, -1).toArray(new Integer[0]);
+    assertEquals(12345, arr.length);
+    for(int i = 0; i < 12344; i++) assertEquals(i, arr[i].intValue());
+    assertEquals(-1, arr[12344].intValue());
+  }
+
+  /** Tests that positions outside of the sequence are rejected. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void setOutOfBounds() {
+    TEST.set(TEST.size(), 0);
+  }
+
+  /** Concatenates many sequences of random sizes and compares the result to a list. */
+  @Test
+  public void concat() {
+    final Random rng = new Random(1);
+    final List<Integer> list = new ArrayList<>();
+    TrieSequence<Integer> seq = TrieSequence.empty();
+    for(int i = 0; i < 500; i++) {
+      final int n = rng.nextInt(i % 10 == 0 ? 5_000 : 70);
+      final TrieSequence<Integer> other = TrieSequence.from(range(list.size(), list.size() + n));
+      for(final Integer v : other) list.add(v);
+      seq = rng.nextBoolean() ? seq.concat(other) : (TrieSequence<Integer>) seq.append(other);
+      seq.checkInvariants();
+      assertEquals(list.size(), seq.size());
+    }
+    for(int i = 0; i < list.size(); i++) assertEquals(list.get(i), seq.get(i));
+    assertEquals(TrieSequence.from(list), seq);
+    assertArrayEquals(list.toArray(), seq.toArray());
+  }
+
+  /** Takes random slices and compares them to sub-lists. */
+  @Test
+  public void slice() {
+    final Random rng = new Random(2);
+    final List<Integer> list = new ArrayList<>();
+    for(final Integer i : range(0, 20_000)) list.add(i);
+    final TrieSequence<Integer> seq = TrieSequence.from(list);
+    for(int k = 0; k < 300; k++) {
+      final int a = rng.nextInt(list.size() + 1), b = rng.nextInt(list.size() + 1);
+      final int from = Math.min(a, b), to = Math.max(a, b);
+      final TrieSequence<Integer> slice = seq.slice(from, to);
+      slice.checkInvariants();
+      assertEquals(to - from, slice.size());
+      assertEquals(TrieSequence.from(list.subList(from, to)), slice);
+      for(int i = from; i < to; i += 97) assertEquals(list.get(i), slice.get(i - from));
+
+      final TrieSequence<Integer>[] split = seq.split(from);
+      assertEquals(seq, split[0].concat(split[1]));
+    }
+  }
+
+  /** Randomly inserts and removes elements and compares the result to a list. */
+  @Test
+  public void insertRemove() {
+    final Random rng = new Random(3);
+    final List<Integer> list = new ArrayList<>();
+    TrieSequence<Integer> seq = TrieSequence.empty();
+    for(int k = 0; k < 5_000; k++) {
+      if(list.isEmpty() || rng.nextInt(3) > 0) {
+        final int pos = rng.nextInt(list.size() + 1);
+        list.add(pos, k);
+        seq = seq.insertAt(pos, k);
+      } else {
+        final int pos = rng.nextInt(list.size());
+        list.remove(pos);
+        seq = seq.removeAt(pos);
+      }
+      if(k % 100 == 0) {
+        seq.checkInvariants();
+        assertEquals(list, Arrays.asList(seq.toArray()));
+      }
+    }
+    for(int i = 0; i < list.size(); i++) assertEquals(list.get(i), seq.get(i));
+    seq = seq.set(0, -1).add(-2);
+    assertEquals(-1, seq.get(0).intValue());
+    assertEquals(-2, seq.get(list.size()).intValue());
+  }
+
+  /** Tests slicing with illegal bounds. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void sliceOutOfBounds() {
+    TEST.slice(1, TEST.size() + 1);
+  }
 }
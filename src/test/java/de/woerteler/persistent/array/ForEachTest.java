@@ -0,0 +1,29 @@
+package de.woerteler.persistent.array;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link Array#forEach(java.util.function.Consumer)}.
+ *
+ * @author Leo Woerteler
+ * @param <A> array type
+ */
+public abstract class ForEachTest<A extends Array<Integer>> extends ArrayTest<A> {
+  /** Compares internal iteration with the iterator for randomly built arrays. */
+  @Test public void randomTest() {
+    final Random rng = new Random(42);
+    for(int n = 0; n < 2_000; n++) {
+      Array<Integer> arr = emptyArray();
+      for(int i = 0; i < n; i++) arr = arr.insertBefore(rng.nextInt(i + 1), i);
+      final java.util.List<Integer> out = new ArrayList<>(n);
+      arr.forEach(out::add);
+      assertEquals(n, out.size());
+      final Iterator<Integer> iter = arr.iterator();
+      for(final Integer i : out) assertEquals(iter.next(), i);
+    }
+  }
+}
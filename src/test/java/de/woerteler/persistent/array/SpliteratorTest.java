@@ -0,0 +1,78 @@
+package de.woerteler.persistent.array;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link Array#spliterator()} and the streams based on it.
+ *
+ * @author Leo Woerteler
+ * @param <A> array type
+ */
+public abstract class SpliteratorTest<A extends Array<Integer>> extends ArrayTest<A> {
+  /**
+   * Creates an array containing the numbers from {@code 0} to {@code n - 1}.
+   * @param n number of elements
+   * @return the array
+   */
+  private Array<Integer> range(final int n) {
+    Array<Integer> arr = emptyArray();
+    for(int i = 0; i < n; i++) arr = arr.snoc(i);
+    return arr;
+  }
+
+  /** Splits spliterators recursively and checks that the parts are exactly sized and ordered. */
+  @Test public void splitTest() {
+    for(final int n : new int[] { 0, 1, 2, 17, 100, 1_000, 12_345 }) {
+      final Spliterator<Integer> spl = range(n).spliterator();
+      assertTrue(spl.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED
+          | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+      final java.util.List<Integer> out = new ArrayList<>();
+      collect(spl, out, new Random(n));
+      assertEquals(n, out.size());
+      for(int i = 0; i < n; i++) assertEquals(i, out.get(i).intValue());
+    }
+  }
+
+  /**
+   * Recursively splits the given spliterator and collects the elements in encounter order,
+   * randomly mixing {@link Spliterator#tryAdvance} and {@link Spliterator#forEachRemaining}.
+   * @param spl spliterator
+   * @param out list to collect the elements in
+   * @param rng random number generator
+   */
+  private static void collect(final Spliterator<Integer> spl, final java.util.List<Integer> out,
+      final Random rng) {
+    if(rng.nextInt(3) == 0 && spl.tryAdvance(out::add)) {
+      // traversal was started, splitting must still be consistent
+      assertEquals(spl.getExactSizeIfKnown(), spl.estimateSize());
+    }
+    final long size = spl.estimateSize();
+    final Spliterator<Integer> prefix = rng.nextInt(4) == 0 ? null : spl.trySplit();
+    if(prefix != null) {
+      assertEquals(size, prefix.estimateSize() + spl.estimateSize());
+      collect(prefix, out, rng);
+      collect(spl, out, rng);
+    } else {
+      final int before = out.size();
+      spl.forEachRemaining(out::add);
+      assertEquals(size, out.size() - before);
+      assertFalse(spl.tryAdvance(out::add));
+    }
+  }
+
+  /** Tests sequential and parallel streams. */
+  @Test public void streamTest() {
+    final int n = 1_000_000;
+    final Array<Integer> arr = range(n);
+    final long expected = (long) n * (n - 1) / 2;
+    assertEquals(expected, arr.stream().mapToLong(Integer::longValue).sum());
+    assertEquals(expected, arr.parallelStream().mapToLong(Integer::longValue).sum());
+    final java.util.List<Integer> list = arr.parallelStream().collect(Collectors.toList());
+    for(int i = 0; i < n; i++) assertEquals(i, list.get(i).intValue());
+  }
+}
@@ -0,0 +1,62 @@
+package de.woerteler.persistent.array.doubles;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link DoubleArrayBuilder}.
+ *
+ * @author Leo Woerteler
+ */
+public class DoubleArrayBuilderTest {
+  /**
+   * Tests building arrays with {@link DoubleArrayBuilder#prepend(double)} and
+   * {@link DoubleArrayBuilder#append(double)} in random order.
+   */
+  @Test
+  public void builderTestRandom() {
+    final Random rng = new Random(42);
+    final ArrayDeque<Double> deque = new ArrayDeque<>();
+    for(int len = 0; len < 5_000; len++) {
+      deque.clear();
+      final DoubleArrayBuilder builder = new DoubleArrayBuilder();
+
+      for(int i = 0; i < len; i++) {
+        final double val = rng.nextGaussian();
+        if(rng.nextBoolean()) {
+          builder.prepend(val);
+          deque.addFirst(val);
+        } else {
+          builder.append(val);
+          deque.addLast(val);
+        }
+      }
+
+      final DoubleArray arr = builder.freeze();
+      arr.checkInvariants();
+      assertEquals(len, arr.size());
+      long i = 0;
+      for(final Double val : deque) assertEquals(val.doubleValue(), arr.getDouble(i++), 0);
+    }
+  }
+
+  /** Tests {@link DoubleArray#from(double...)}. */
+  @Test
+  public void fromArrayTest() {
+    for(int k = 0; k < 2_000; k++) {
+      final double[] vals = new double[k];
+      DoubleArray arr1 = DoubleArray.empty();
+      for(int i = 0; i < k; i++) {
+        vals[i] = i * Math.PI;
+        arr1 = arr1.snocDouble(vals[i]);
+      }
+
+      final DoubleArray arr2 = DoubleArray.from(vals);
+      assertEquals(k, arr2.size());
+      assertEquals(arr1, arr2);
+    }
+  }
+}
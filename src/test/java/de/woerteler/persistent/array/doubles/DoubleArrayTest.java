@@ -0,0 +1,143 @@
+package de.woerteler.persistent.array.doubles;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for the {@link DoubleArray} data structure, comparing it to an {@link ArrayList}.
+ *
+ * @author Leo Woerteler
+ */
+public class DoubleArrayTest {
+  /**
+   * Checks that the array contains the same elements as the list.
+   * @param list expected elements
+   * @param arr array to check
+   */
+  private static void check(final java.util.List<Double> list, final DoubleArray arr) {
+    arr.checkInvariants();
+    assertEquals(list.size(), arr.size());
+    for(int i = 0; i < list.size(); i++) {
+      assertEquals(list.get(i).doubleValue(), arr.getDouble(i), 0);
+      assertEquals(list.get(i), arr.get(i));
+    }
+    final Iterator<Double> iter = arr.iterator();
+    for(final Double l : list) assertEquals(l, iter.next());
+    assertFalse(iter.hasNext());
+  }
+
+  /** Tests {@link DoubleArray#consDouble(double)} and {@link DoubleArray#snocDouble(double)}. */
+  @Test
+  public void consSnocTest() {
+    final int n = 100_000;
+    DoubleArray arr = DoubleArray.empty();
+    for(int i = 0; i < n; i++) arr = arr.consDouble(-i - 1L << 32).snocDouble(i + 1L << 32);
+    assertEquals(2 * n, arr.size());
+    for(int i = 0; i < n; i++) {
+      assertEquals(-(n - i) * (1L << 32), arr.getDouble(i), 0);
+      assertEquals(i + 1L << 32, arr.getDouble(n + i), 0);
+    }
+    arr.checkInvariants();
+  }
+
+  /** Tests index checks of {@link DoubleArray#getDouble(long)}. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getOutOfBounds() {
+    DoubleArray.from(1, 2, 3, 4, 5, 6, 7, 8, 9).getDouble(9);
+  }
+
+  /** Random sequence of modifications. */
+  @Test
+  public void randomTest() {
+    final Random rng = new Random(42);
+    for(int run = 0; run < 100; run++) {
+      final ArrayList<Double> list = new ArrayList<>();
+      DoubleArray arr = DoubleArray.empty();
+      for(int i = 0; i < 500; i++) {
+        final double val = rng.nextGaussian();
+        final int op = rng.nextInt(8);
+        if(op == 0) {
+          list.add(0, val);
+          arr = arr.consDouble(val);
+        } else if(op == 1) {
+          list.add(val);
+          arr = arr.snocDouble(val);
+        } else if(op == 2) {
+          final int pos = rng.nextInt(list.size() + 1);
+          list.add(pos, val);
+          arr = arr.insertBefore(pos, val);
+        } else if(op == 3 && !list.isEmpty()) {
+          final int pos = rng.nextInt(list.size());
+          list.remove(pos);
+          arr = arr.remove(pos);
+        } else if(op == 4 && !list.isEmpty()) {
+          list.remove(0);
+          arr = arr.tail();
+        } else if(op == 5 && !list.isEmpty()) {
+          list.remove(list.size() - 1);
+          arr = arr.init();
+        } else if(op == 6 && list.size() < 1_000) {
+          final int from = rng.nextInt(list.size() + 1), to = from + rng.nextInt(list.size() - from + 1);
+          final ArrayList<Double> sub = new ArrayList<>(list.subList(from, to));
+          final DoubleArray subArr = arr.subArray(from, to - from);
+          check(sub, subArr);
+          // concatenate the slice to the front again
+          final Array<Double> cat = subArr.concat(arr);
+          assertTrue(cat instanceof DoubleArray);
+          list.addAll(0, sub);
+          arr = (DoubleArray) cat;
+        } else {
+          Collections.reverse(list);
+          arr = arr.reverse();
+        }
+        check(list, arr);
+      }
+    }
+  }
+
+  /** Tests {@link DoubleArray#forEachChunk} and {@link DoubleArray#forEachDouble}. */
+  @Test
+  public void forEachChunkTest() {
+    DoubleArray arr = DoubleArray.empty();
+    for(int i = 0; i < 10_000; i++) arr = arr.snocDouble(i);
+    final int[] next = { 0 };
+    arr.forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) assertEquals(next[0]++, chunk[i], 0);
+    });
+    assertEquals(10_000, next[0]);
+    final double[] sum = { 0 };
+    arr.forEachDouble(v -> sum[0] += v);
+    assertEquals(49_995_000, sum[0], 0);
+  }
+
+  /**
+   * Tests {@link DoubleArray#mapDouble}, {@link DoubleArray#filterDouble} and that
+   * {@link DoubleArray#filter} keeps the primitive array type.
+   */
+  @Test
+  public void mapFilterTest() {
+    for(final int n : new int[] { 0, 1, 7, 100, 100_000 }) {
+      DoubleArray arr = DoubleArray.empty();
+      for(int i = 0; i < n; i++) arr = arr.snocDouble(i);
+      final DoubleArray mapped = arr.mapDouble(v -> 3 * v);
+      mapped.checkInvariants();
+      assertEquals(n, mapped.size());
+      for(int i = 0; i < n; i++) assertEquals(3 * i, mapped.getDouble(i), 0);
+
+      final DoubleArray filtered = arr.filter(v -> v % 3 == 0);
+      filtered.checkInvariants();
+      assertEquals((n + 2) / 3, filtered.size());
+      for(int i = 0; i < filtered.size(); i++) assertEquals(3 * i, filtered.getDouble(i), 0);
+      assertEquals(filtered, arr.filterDouble(v -> v % 3 == 0));
+
+      final Array<String> strs = arr.map(v -> "" + v);
+      assertEquals(n, strs.size());
+      if(n > 0) assertEquals("" + (double) (n - 1), strs.last());
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package de.woerteler.persistent.array.integer;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the bulk constructors of {@link IntArray}.
+ *
+ * @author Leo Woerteler
+ */
+public class IntArrayFromTest {
+  /** Tests {@link IntArray#from(int...)} for all small and medium sizes. */
+  @Test
+  public void fromArray() {
+    for(int len = 0; len < 5_000; len++) {
+      final int[] vals = IntStream.range(0, len).toArray();
+      final IntArray arr = IntArray.from(vals);
+      check(len, arr);
+      if(len > 0) {
+        vals[len - 1] = -1;
+        assertEquals(len - 1, arr.last().intValue());
+      }
+    }
+  }
+
+  /** Tests that bulk-loaded arrays can be modified further. */
+  @Test
+  public void modify() {
+    for(int len = 1; len < 1_000; len += 7) {
+      final IntArray arr = IntArray.from(IntStream.range(0, len).toArray());
+      final IntArray rem = arr.remove(len / 2);
+      rem.checkInvariants();
+      assertEquals(len - 1, rem.size());
+      final IntArray set = arr.setInt(len - 1, -1);
+      set.checkInvariants();
+      assertEquals(-1, set.getInt(len - 1));
+      assertEquals(len - 1, arr.getInt(len - 1));
+      final IntArray rev = arr.reverse();
+      rev.checkInvariants();
+      for(int i = 0; i < len; i++) assertEquals(len - 1 - i, rev.getInt(i));
+    }
+  }
+
+  /** Tests the different kinds of collections and spliterators. */
+  @Test
+  public void fromSources() {
+    for(final int len : new int[] { 0, 1, 7, 38, 39, 100, 40_000, 1 << 20 }) {
+      final List<Integer> list = IntStream.range(0, len).boxed().collect(Collectors.toList());
+      check(len, IntArray.from(list));
+      check(len, IntArray.from((Iterable<Integer>) () -> list.iterator()));
+      check(len, IntArray.from(IntStream.range(0, len).spliterator()));
+      check(len, IntArray.from(IntStream.iterate(0, i -> i + 1).limit(len).spliterator()));
+      check(len, IntArray.from(IntStream.range(0, len).filter(i -> true).spliterator()));
+    }
+  }
+
+  /**
+   * Checks that the given array contains the integers from {@code 0} to {@code len - 1}.
+   * @param len expected length
+   * @param arr the array
+   */
+  private static void check(final int len, final IntArray arr) {
+    arr.checkInvariants();
+    assertEquals(len, arr.size());
+    int i = 0;
+    for(final Integer v : arr) assertEquals(i++, v.intValue());
+    assertEquals(len, i);
+  }
+}
@@ -0,0 +1,108 @@
+package de.woerteler.persistent.array.integer;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.object.*;
+
+/**
+ * Tests the parallel {@link IntArray#mapInt}, {@link IntArray#mapToObj},
+ * {@link IntArray#filterInt} and {@link IntArray#reduceInt} methods.
+ *
+ * @author Leo Woerteler
+ */
+public class IntArrayMapTest {
+  /** Sizes of the tested arrays, the biggest ones are processed in parallel. */
+  private static final int[] SIZES = { 0, 1, 7, 8, 38, 39, 100, 1_000, 20_000, 1 << 20 };
+
+  /** Tests {@link IntArray#mapInt(java.util.function.IntUnaryOperator)}. */
+  @Test
+  public void mapInt() {
+    for(final int n : SIZES) check(n, range(n));
+  }
+
+  /** Tests {@link IntArray#mapToObj(java.util.function.IntFunction)}. */
+  @Test
+  public void mapToObj() {
+    for(final int n : SIZES) {
+      final ObjectArray<String> mapped = range(n).mapToObj(Integer::toString);
+      assertEquals(n, mapped.size());
+      int i = 0;
+      for(final String s : mapped) assertEquals(Integer.toString(i++), s);
+      assertEquals(n, i);
+    }
+  }
+
+  /** Tests {@link IntArray#filterInt(java.util.function.IntPredicate)}. */
+  @Test
+  public void filterInt() {
+    for(final int n : SIZES) {
+      final IntArray arr = range(n);
+      for(final int mod : new int[] { 1, 2, 3, 100, Integer.MAX_VALUE }) {
+        final IntArray filtered = arr.filterInt(i -> i % mod == 0);
+        filtered.checkInvariants();
+        final PrimitiveIterator.OfInt iter = filtered.intIterator();
+        for(int i = 0; i < n; i += mod) assertEquals(i, iter.nextInt());
+        assertFalse(iter.hasNext());
+      }
+    }
+  }
+
+  /** Tests {@link IntArray#reduceInt(int, java.util.function.IntBinaryOperator)}. */
+  @Test
+  public void reduceInt() {
+    for(final int n : SIZES) {
+      final IntArray arr = range(n);
+      assertEquals((int) ((long) n * (n - 1) / 2), arr.reduceInt(0, Integer::sum));
+      assertEquals(n == 0 ? -1 : n - 1, arr.reduceInt(-1, (a, b) -> b));
+      assertEquals(n == 0 ? 0 : n - 1, arr.reduce(0, Math::max).intValue());
+    }
+  }
+
+  /**
+   * Tests the operations on arrays stored in an arena.
+   * @throws Exception exception
+   */
+  @Test
+  public void offHeap() throws Exception {
+    final Path file = Files.createTempFile("map", ".ints");
+    try(IntArena arena = IntArena.mapped(file)) {
+      for(final int n : SIZES) {
+        final IntArray arr = arena.copyOf(range(n));
+        check(n, arr);
+        assertEquals((n + 1) / 2, arr.filterInt(i -> i % 2 == 0).size());
+        assertEquals(n == 0 ? -1 : n - 1, arr.reduceInt(-1, Math::max));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Checks {@link IntArray#mapInt(java.util.function.IntUnaryOperator)} on the given array of
+   * consecutive integers.
+   * @param n size of the array
+   * @param arr the array
+   */
+  private static void check(final int n, final IntArray arr) {
+    final IntArray mapped = arr.mapInt(i -> 3 * i);
+    mapped.checkInvariants();
+    assertEquals(n, mapped.size());
+    for(int i = 0; i < n; i++) assertEquals(3 * i, mapped.getInt(i));
+    for(int i = 0; i < n; i++) assertEquals(i, arr.getInt(i));
+  }
+
+  /**
+   * Creates an array of consecutive integers.
+   * @param n number of integers
+   * @return the array
+   */
+  private static IntArray range(final int n) {
+    return IntArray.from(IntStream.range(0, n).toArray());
+  }
+}
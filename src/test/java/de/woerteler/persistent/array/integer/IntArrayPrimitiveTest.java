@@ -0,0 +1,133 @@
+package de.woerteler.persistent.array.integer;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests the unboxed access methods of {@link IntArray}.
+ *
+ * @author Leo Woerteler
+ */
+public class IntArrayPrimitiveTest {
+  /**
+   * Creates an array containing the numbers {@code 0} to {@code n - 1}, alternately
+   * prepending and appending to get a tree with non-trivial digits.
+   * @param n size of the array
+   * @return the array
+   */
+  private static IntArray range(final int n) {
+    IntArray arr = IntArray.empty();
+    for(int i = n / 2; --i >= 0;) arr = arr.consInt(i);
+    for(int i = n / 2; i < n; i++) arr = arr.snocInt(i);
+    return arr;
+  }
+
+  /** Tests {@link IntArray#getInt(long)}. */
+  @Test
+  public void getIntTest() {
+    for(final int n : new int[] { 0, 1, 7, 8, 40, 1_000, 100_000 }) {
+      final IntArray arr = range(n);
+      arr.checkInvariants();
+      assertEquals(n, arr.size());
+      for(int i = 0; i < n; i++) assertEquals(i, arr.getInt(i));
+    }
+  }
+
+  /** Tests index checks of {@link IntArray#getInt(long)}. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getIntOutOfBounds() {
+    range(100).getInt(100);
+  }
+
+  /** Tests {@link IntArray#intIterator()}. */
+  @Test
+  public void intIteratorTest() {
+    for(int n = 0; n < 500; n++) {
+      final PrimitiveIterator.OfInt iter = range(n).intIterator();
+      for(int i = 0; i < n; i++) {
+        assertTrue(iter.hasNext());
+        assertEquals(i, iter.nextInt());
+      }
+      assertFalse(iter.hasNext());
+    }
+
+    final PrimitiveIterator.OfInt iter = range(100_000).intIterator();
+    for(int i = 0; i < 100_000; i++) assertEquals(i, iter.nextInt());
+    assertFalse(iter.hasNext());
+  }
+
+  /** Tests that an exhausted {@link IntArray#intIterator()} throws an exception. */
+  @Test(expected = NoSuchElementException.class)
+  public void intIteratorExhausted() {
+    final PrimitiveIterator.OfInt iter = range(20).intIterator();
+    while(iter.hasNext()) iter.nextInt();
+    iter.nextInt();
+  }
+
+  /** Tests {@link IntArray#copyTo(int[], long, int)} for all ranges of small arrays. */
+  @Test
+  public void copyToTest() {
+    for(final int n : new int[] { 0, 1, 7, 8, 40, 100 }) {
+      final IntArray arr = range(n);
+      for(int from = 0; from <= n; from++) {
+        for(int len = 0; from + len <= n; len++) {
+          final int[] dst = new int[len + 1];
+          dst[len] = -1;
+          arr.copyTo(dst, from, len);
+          for(int i = 0; i < len; i++) assertEquals(from + i, dst[i]);
+          assertEquals(-1, dst[len]);
+        }
+      }
+    }
+
+    final int n = 1_000_000;
+    final int[] dst = new int[n];
+    final IntArray big = range(n);
+    big.copyTo(dst, 0, n);
+    for(int i = 0; i < n; i++) assertEquals(i, dst[i]);
+
+    // ranges starting and ending inside leaves deep in the middle tree
+    final Random rng = new Random(42);
+    for(int k = 0; k < 1_000; k++) {
+      final int from = rng.nextInt(n), len = rng.nextInt(Math.min(n - from, 5_000) + 1);
+      Arrays.fill(dst, 0, len, -1);
+      big.copyTo(dst, from, len);
+      for(int i = 0; i < len; i++) assertEquals(from + i, dst[i]);
+    }
+  }
+
+  /** Tests range checks of {@link IntArray#copyTo(int[], long, int)}. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void copyToOutOfBounds() {
+    range(100).copyTo(new int[10], 95, 10);
+  }
+
+  /** Tests destination checks of {@link IntArray#copyTo(int[], long, int)}. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void copyToSmallDestination() {
+    range(100).copyTo(new int[5], 0, 10);
+  }
+
+  /** Tests {@link IntArray#forEachChunk(de.woerteler.persistent.array.ChunkConsumer)}. */
+  @Test
+  public void forEachChunkTest() {
+    for(final int n : new int[] { 0, 1, 7, 8, 40, 1_000, 100_000 }) {
+      final IntArray arr = range(n);
+      final int[] next = { 0 }, chunks = { 0 };
+      arr.forEachChunk((chunk, off, len) -> {
+        assertTrue(len > 0);
+        for(int i = off; i < off + len; i++) assertEquals(next[0]++, chunk[i]);
+        chunks[0]++;
+      });
+      assertEquals(n, next[0]);
+      assertTrue(chunks[0] <= Math.max(1, n / IntArray.MIN_DIGIT));
+
+      final long[] sum = { 0 };
+      arr.forEachInt(i -> sum[0] += i);
+      assertEquals((long) n * (n - 1) / 2, sum[0]);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package de.woerteler.persistent.array.integer;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests the {@link IntArray#setInt(long, int)} and
+ * {@link IntArray#updateInt(long, java.util.function.IntUnaryOperator)} methods.
+ *
+ * @author Leo Woerteler
+ */
+public class IntArraySetTest {
+  /** Negative index on empty array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void emptySetNegative() {
+    IntArray.empty().setInt(-1, 0);
+  }
+
+  /** Zero index on empty array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void emptySetZero() {
+    IntArray.empty().setInt(0, 0);
+  }
+
+  /** Too big index on singleton array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void singletonSetOne() {
+    IntArray.singleton(42).setInt(1, 0);
+  }
+
+  /** Too big index on deep array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void deepSetTooBig() {
+    IntArray.from(0, 1, 2, 3, 4, 5, 6, 7, 8).setInt(9, 0);
+  }
+
+  /** Sets each element once in arrays of varying length and checks that the original is kept. */
+  @Test
+  public void setEachTest() {
+    IntArray arr = IntArray.empty();
+    for(int k = 0; k < 300; k++) {
+      for(int i = 0; i < k; i++) {
+        final IntArray arr2 = arr.setInt(i, -1);
+        arr2.checkInvariants();
+        assertEquals(k, arr2.size());
+        for(int j = 0; j < k; j++) {
+          assertEquals(j == i ? -1 : j, arr2.getInt(j));
+          assertEquals(j, arr.getInt(j));
+        }
+      }
+      arr = arr.snocInt(k);
+    }
+  }
+
+  /** Randomly updates elements and compares the array to a list. */
+  @Test
+  public void fuzzyTest() {
+    final int n = 100_000;
+    final ArrayList<Integer> list = new ArrayList<>(n);
+    for(int i = 0; i < n; i++) list.add(i);
+    IntArray arr = IntArray.from(list);
+
+    final Random rng = new Random(42);
+    for(int i = 0; i < n; i++) {
+      final int pos = rng.nextInt(n), val = rng.nextInt();
+      if(i % 2 == 0) {
+        list.set(pos, val);
+        arr = arr.setInt(pos, val);
+      } else {
+        list.set(pos, list.get(pos) + val);
+        arr = arr.updateInt(pos, v -> v + val);
+      }
+      if(i % 10_000 == 9_999) {
+        arr.checkInvariants();
+        assertEquals(list, toList(arr));
+      }
+    }
+  }
+
+  /**
+   * Updates elements in the digits and in the leaves of an off-heap array.
+   * @throws Exception exception
+   */
+  @Test
+  public void offHeapTest() throws Exception {
+    final Path file = Files.createTempFile("set", ".ints");
+    try(IntArena arena = IntArena.mapped(file)) {
+      final int n = 5_000;
+      final ArrayList<Integer> list = new ArrayList<>(n);
+      for(int i = 0; i < n; i++) list.add(i);
+      IntArray arr = arena.copyOf(IntArray.from(list));
+
+      final Random rng = new Random(1);
+      for(int i = 0; i < 500; i++) {
+        final int pos = rng.nextInt(n);
+        list.set(pos, -pos);
+        arr = arr.setInt(pos, -pos);
+      }
+      assertTrue(arr instanceof OffHeapIntArray);
+      assertEquals(list, toList(arr));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Copies the given array into a list.
+   * @param arr array
+   * @return list
+   */
+  private static List<Integer> toList(final IntArray arr) {
+    final List<Integer> out = new ArrayList<>();
+    for(final Integer i : arr) out.add(i);
+    return out;
+  }
+}
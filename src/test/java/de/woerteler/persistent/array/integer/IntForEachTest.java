@@ -0,0 +1,20 @@
+package de.woerteler.persistent.array.integer;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for {@link IntArray#forEach(java.util.function.Consumer)}.
+ *
+ * @author Leo Woerteler
+ */
+public class IntForEachTest extends ForEachTest<IntArray> {
+  @Override
+  protected IntArray emptyArray() {
+    return IntArray.empty();
+  }
+
+  @Override
+  protected void checkInvariants(final IntArray arr) {
+    arr.checkInvariants();
+  }
+}
@@ -0,0 +1,20 @@
+package de.woerteler.persistent.array.integer;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for {@link IntArray#spliterator()}.
+ *
+ * @author Leo Woerteler
+ */
+public class IntSpliteratorTest extends SpliteratorTest<IntArray> {
+  @Override
+  protected IntArray emptyArray() {
+    return IntArray.empty();
+  }
+
+  @Override
+  protected void checkInvariants(final IntArray arr) {
+    arr.checkInvariants();
+  }
+}
@@ -0,0 +1,188 @@
+package de.woerteler.persistent.array.integer;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for arrays stored in an {@link IntArena}, comparing them to an {@link ArrayList}.
+ *
+ * @author Leo Woerteler
+ */
+public class OffHeapIntArrayTest {
+  /**
+   * Checks that the array contains the same elements as the list.
+   * @param list expected elements
+   * @param arr array to check
+   */
+  private static void check(final java.util.List<Integer> list, final IntArray arr) {
+    arr.checkInvariants();
+    final int n = list.size();
+    assertEquals(n, arr.size());
+    for(int i = 0; i < n; i++) assertEquals(list.get(i).intValue(), arr.getInt(i));
+    final int[] copy = new int[n];
+    arr.copyTo(copy, 0, n);
+    final Iterator<Integer> iter = arr.iterator();
+    for(int i = 0; i < n; i++) {
+      assertEquals(list.get(i).intValue(), copy[i]);
+      assertEquals(list.get(i), iter.next());
+    }
+    assertFalse(iter.hasNext());
+  }
+
+  /**
+   * Random sequence of modifications.
+   * @param arena arena to use
+   */
+  private static void randomOps(final IntArena arena) {
+    final Random rng = new Random(42);
+    for(int run = 0; run < 20; run++) {
+      final ArrayList<Integer> list = new ArrayList<>();
+      IntArray arr = arena.empty();
+      for(int i = 0; i < 300; i++) {
+        final int val = rng.nextInt();
+        final int op = rng.nextInt(12);
+        if(op == 0) {
+          list.add(0, val);
+          arr = arr.consInt(val);
+        } else if(op == 1) {
+          list.add(val);
+          arr = arr.snocInt(val);
+        } else if(op == 2) {
+          final int pos = rng.nextInt(list.size() + 1);
+          list.add(pos, val);
+          arr = arr.insertBefore(pos, val);
+        } else if(op == 3 && !list.isEmpty()) {
+          final int pos = rng.nextInt(list.size());
+          list.remove(pos);
+          arr = arr.remove(pos);
+        } else if(op == 4 && !list.isEmpty()) {
+          list.remove(0);
+          arr = arr.tail();
+        } else if(op == 5 && !list.isEmpty()) {
+          list.remove(list.size() - 1);
+          arr = arr.init();
+        } else if(op == 6 && list.size() < 5_000) {
+          final int from = rng.nextInt(list.size() + 1);
+          final int to = from + rng.nextInt(list.size() - from + 1);
+          final ArrayList<Integer> sub = new ArrayList<>(list.subList(from, to));
+          final IntArray subArr = arr.subArray(from, to - from);
+          check(sub, subArr);
+          list.addAll(0, sub);
+          arr = (IntArray) subArr.concat(arr);
+        } else if(op == 7 && list.size() < 5_000) {
+          // bulk of elements from the heap, appended or prepended
+          final int n = rng.nextInt(2 * OffHeapIntArray.MAX_REGION);
+          IntArray heap = IntArray.empty();
+          for(int j = 0; j < n; j++) heap = heap.snocInt(val + j);
+          final ArrayList<Integer> add = new ArrayList<>();
+          for(int j = 0; j < n; j++) add.add(val + j);
+          if(rng.nextBoolean()) {
+            list.addAll(add);
+            arr = (IntArray) arr.concat(heap);
+          } else {
+            list.addAll(0, add);
+            arr = (IntArray) heap.concat(arr);
+          }
+          assertTrue(arr instanceof OffHeapIntArray);
+        } else if(op == 8) {
+          Collections.reverse(list);
+          arr = arr.reverse();
+        } else {
+          for(int j = 0; j < 100; j++) {
+            list.add(val ^ j);
+            arr = arr.snocInt(val ^ j);
+          }
+        }
+        check(list, arr);
+      }
+    }
+  }
+
+  /** Random modifications of arrays in direct buffers with small blocks. */
+  @Test
+  public void direct() throws IOException {
+    try(IntArena arena = IntArena.direct(1 << 12)) {
+      randomOps(arena);
+    }
+  }
+
+  /** Random modifications of arrays in a memory-mapped file. */
+  @Test
+  public void mapped() throws IOException {
+    final Path file = Files.createTempFile("arena", ".bin");
+    try {
+      try(IntArena arena = IntArena.mapped(file, 1 << 16)) {
+        randomOps(arena);
+        assertTrue(Files.size(file) >= arena.allocated() * Integer.BYTES);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /** Checks that an update only copies the touched leaves and leaves the old version intact. */
+  @Test
+  public void copyOnWrite() {
+    final int n = 100_000;
+    final IntArena arena = IntArena.direct();
+    IntArray heap = IntArray.empty();
+    for(int i = 0; i < n; i++) heap = heap.snocInt(i);
+    final IntArray arr = arena.copyOf(heap);
+    assertSame(arr, arena.copyOf(arr));
+    assertEquals(heap, arr);
+
+    final long before = arena.allocated();
+    final IntArray inserted = arr.insertBefore(n / 2, -1);
+    final IntArray removed = inserted.remove(n / 3);
+    assertTrue(arena.allocated() - before <= 4 * OffHeapIntArray.MAX_REGION);
+
+    for(int i = 0; i < n; i++) assertEquals(i, arr.getInt(i));
+    assertEquals(-1, removed.getInt(n / 2 - 1));
+    assertEquals(n / 3 + 1, removed.getInt(n / 3));
+    assertEquals(n, removed.size());
+  }
+
+  /**
+   * Block sizes that are not powers of two between {@code 2^10} and {@code 2^28} are rejected.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void blockSize() throws IOException {
+    IntArena.direct(1 << 10).close();
+    IntArena.direct(1 << 28).close();
+    for(final int size : new int[] { 1 << 29, 1 << 30, 1000, 512, OffHeapIntArray.MAX_REGION }) {
+      try {
+        IntArena.direct(size);
+        fail("Block size accepted: " + size);
+      } catch(final IllegalArgumentException ex) {
+        // expected
+      }
+    }
+  }
+
+  /** Concatenation of arrays from different arenas copies the second one. */
+  @Test
+  public void foreignConcat() {
+    final IntArena a = IntArena.direct(), b = IntArena.direct();
+    IntArray x = a.empty(), y = b.empty();
+    final ArrayList<Integer> list = new ArrayList<>();
+    for(int i = 0; i < 3_000; i++) {
+      x = x.snocInt(i);
+      list.add(i);
+    }
+    for(int i = 0; i < 2_000; i++) {
+      y = y.consInt(-i);
+      list.add(3_000, -i);
+    }
+    final Array<Integer> cat = x.concat(y);
+    check(list, (IntArray) cat);
+    assertSame(a, ((OffHeapIntArray) cat).arena);
+  }
+}
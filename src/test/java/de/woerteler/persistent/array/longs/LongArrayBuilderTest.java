@@ -0,0 +1,62 @@
+package de.woerteler.persistent.array.longs;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link LongArrayBuilder}.
+ *
+ * @author Leo Woerteler
+ */
+public class LongArrayBuilderTest {
+  /**
+   * Tests building arrays with {@link LongArrayBuilder#prepend(long)} and
+   * {@link LongArrayBuilder#append(long)} in random order.
+   */
+  @Test
+  public void builderTestRandom() {
+    final Random rng = new Random(42);
+    final ArrayDeque<Long> deque = new ArrayDeque<>();
+    for(int len = 0; len < 5_000; len++) {
+      deque.clear();
+      final LongArrayBuilder builder = new LongArrayBuilder();
+
+      for(int i = 0; i < len; i++) {
+        final long val = rng.nextLong();
+        if(rng.nextBoolean()) {
+          builder.prepend(val);
+          deque.addFirst(val);
+        } else {
+          builder.append(val);
+          deque.addLast(val);
+        }
+      }
+
+      final LongArray arr = builder.freeze();
+      arr.checkInvariants();
+      assertEquals(len, arr.size());
+      long i = 0;
+      for(final Long val : deque) assertEquals(val.longValue(), arr.getLong(i++));
+    }
+  }
+
+  /** Tests {@link LongArray#from(long...)}. */
+  @Test
+  public void fromArrayTest() {
+    for(int k = 0; k < 2_000; k++) {
+      final long[] vals = new long[k];
+      LongArray arr1 = LongArray.empty();
+      for(int i = 0; i < k; i++) {
+        vals[i] = (long) i << 40;
+        arr1 = arr1.snocLong(vals[i]);
+      }
+
+      final LongArray arr2 = LongArray.from(vals);
+      assertEquals(k, arr2.size());
+      assertEquals(arr1, arr2);
+    }
+  }
+}
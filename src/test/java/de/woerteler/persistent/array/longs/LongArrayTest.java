@@ -0,0 +1,143 @@
+package de.woerteler.persistent.array.longs;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for the {@link LongArray} data structure, comparing it to an {@link ArrayList}.
+ *
+ * @author Leo Woerteler
+ */
+public class LongArrayTest {
+  /**
+   * Checks that the array contains the same elements as the list.
+   * @param list expected elements
+   * @param arr array to check
+   */
+  private static void check(final java.util.List<Long> list, final LongArray arr) {
+    arr.checkInvariants();
+    assertEquals(list.size(), arr.size());
+    for(int i = 0; i < list.size(); i++) {
+      assertEquals(list.get(i).longValue(), arr.getLong(i));
+      assertEquals(list.get(i), arr.get(i));
+    }
+    final Iterator<Long> iter = arr.iterator();
+    for(final Long l : list) assertEquals(l, iter.next());
+    assertFalse(iter.hasNext());
+  }
+
+  /** Tests {@link LongArray#consLong(long)} and {@link LongArray#snocLong(long)}. */
+  @Test
+  public void consSnocTest() {
+    final int n = 100_000;
+    LongArray arr = LongArray.empty();
+    for(int i = 0; i < n; i++) arr = arr.consLong(-i - 1L << 32).snocLong(i + 1L << 32);
+    assertEquals(2 * n, arr.size());
+    for(int i = 0; i < n; i++) {
+      assertEquals(-(n - i) * (1L << 32), arr.getLong(i));
+      assertEquals(i + 1L << 32, arr.getLong(n + i));
+    }
+    arr.checkInvariants();
+  }
+
+  /** Tests index checks of {@link LongArray#getLong(long)}. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getOutOfBounds() {
+    LongArray.from(1, 2, 3, 4, 5, 6, 7, 8, 9).getLong(9);
+  }
+
+  /** Random sequence of modifications. */
+  @Test
+  public void randomTest() {
+    final Random rng = new Random(42);
+    for(int run = 0; run < 100; run++) {
+      final ArrayList<Long> list = new ArrayList<>();
+      LongArray arr = LongArray.empty();
+      for(int i = 0; i < 500; i++) {
+        final long val = rng.nextLong();
+        final int op = rng.nextInt(8);
+        if(op == 0) {
+          list.add(0, val);
+          arr = arr.consLong(val);
+        } else if(op == 1) {
+          list.add(val);
+          arr = arr.snocLong(val);
+        } else if(op == 2) {
+          final int pos = rng.nextInt(list.size() + 1);
+          list.add(pos, val);
+          arr = arr.insertBefore(pos, val);
+        } else if(op == 3 && !list.isEmpty()) {
+          final int pos = rng.nextInt(list.size());
+          list.remove(pos);
+          arr = arr.remove(pos);
+        } else if(op == 4 && !list.isEmpty()) {
+          list.remove(0);
+          arr = arr.tail();
+        } else if(op == 5 && !list.isEmpty()) {
+          list.remove(list.size() - 1);
+          arr = arr.init();
+        } else if(op == 6 && list.size() < 1_000) {
+          final int from = rng.nextInt(list.size() + 1), to = from + rng.nextInt(list.size() - from + 1);
+          final ArrayList<Long> sub = new ArrayList<>(list.subList(from, to));
+          final LongArray subArr = arr.subArray(from, to - from);
+          check(sub, subArr);
+          // concatenate the slice to the front again
+          final Array<Long> cat = subArr.concat(arr);
+          assertTrue(cat instanceof LongArray);
+          list.addAll(0, sub);
+          arr = (LongArray) cat;
+        } else {
+          Collections.reverse(list);
+          arr = arr.reverse();
+        }
+        check(list, arr);
+      }
+    }
+  }
+
+  /** Tests {@link LongArray#forEachChunk} and {@link LongArray#forEachLong}. */
+  @Test
+  public void forEachChunkTest() {
+    LongArray arr = LongArray.empty();
+    for(int i = 0; i < 10_000; i++) arr = arr.snocLong(i);
+    final int[] next = { 0 };
+    arr.forEachChunk((chunk, off, len) -> {
+      for(int i = off; i < off + len; i++) assertEquals(next[0]++, chunk[i]);
+    });
+    assertEquals(10_000, next[0]);
+    final long[] sum = { 0 };
+    arr.forEachLong(v -> sum[0] += v);
+    assertEquals(49_995_000, sum[0]);
+  }
+
+  /**
+   * Tests {@link LongArray#mapLong}, {@link LongArray#filterLong} and that
+   * {@link LongArray#filter} keeps the primitive array type.
+   */
+  @Test
+  public void mapFilterTest() {
+    for(final int n : new int[] { 0, 1, 7, 100, 100_000 }) {
+      LongArray arr = LongArray.empty();
+      for(int i = 0; i < n; i++) arr = arr.snocLong(i);
+      final LongArray mapped = arr.mapLong(v -> 3 * v);
+      mapped.checkInvariants();
+      assertEquals(n, mapped.size());
+      for(int i = 0; i < n; i++) assertEquals(3 * i, mapped.getLong(i));
+
+      final LongArray filtered = arr.filter(v -> v % 3 == 0);
+      filtered.checkInvariants();
+      assertEquals((n + 2) / 3, filtered.size());
+      for(int i = 0; i < filtered.size(); i++) assertEquals(3 * i, filtered.getLong(i));
+      assertEquals(filtered, arr.filterLong(v -> v % 3 == 0));
+
+      final Array<String> strs = arr.map(v -> "" + v);
+      assertEquals(n, strs.size());
+      if(n > 0) assertEquals("" + (long) (n - 1), strs.last());
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package de.woerteler.persistent.array.object;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the bulk constructors of {@link ObjectArray}.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectArrayFromTest {
+  /** Tests {@link ObjectArray#from(Object...)} for all small and medium sizes. */
+  @Test
+  public void fromArray() {
+    for(int len = 0; len < 5_000; len++) {
+      final Integer[] vals = range(len);
+      final ObjectArray<Integer> arr = ObjectArray.from(vals);
+      check(len, arr);
+      if(len > 0) {
+        vals[0] = -1;
+        assertEquals(0, arr.head().intValue());
+      }
+    }
+  }
+
+  /** Tests that bulk-loaded arrays can be modified further. */
+  @Test
+  public void modify() {
+    for(int len = 0; len < 1_000; len += 7) {
+      final ObjectArray<Integer> arr = ObjectArray.from(range(len));
+      final ObjectArray<Integer> ins = arr.insertBefore(len / 2, -1);
+      ins.checkInvariants();
+      assertEquals(len + 1, ins.size());
+      assertEquals(-1, ins.get(len / 2).intValue());
+      final ObjectArray<Integer> sub = arr.subArray(len / 3, len / 3);
+      check(len / 3, sub, len / 3);
+      final ObjectArray<Integer> both = (ObjectArray<Integer>) arr.concat(arr);
+      both.checkInvariants();
+      assertEquals(2 * len, both.size());
+      for(int i = 0; i < 2 * len; i++) assertEquals(i % len, both.get(i).intValue());
+    }
+  }
+
+  /** Tests the different kinds of collections and spliterators. */
+  @Test
+  public void fromSources() {
+    for(final int len : new int[] { 0, 1, 7, 38, 39, 100, 40_000, 1 << 20 }) {
+      final List<Integer> list = Arrays.asList(range(len));
+      check(len, ObjectArray.from(list));
+      check(len, ObjectArray.from((Iterable<Integer>) () -> list.iterator()));
+      check(len, ObjectArray.from(list.spliterator()));
+      check(len, ObjectArray.from(IntStream.range(0, len).boxed().spliterator()));
+      check(len, ObjectArray.from(Stream.iterate(0, i -> i + 1).limit(len).spliterator()));
+      check(len, ObjectArray.from(list.stream().filter(i -> true).spliterator()));
+    }
+  }
+
+  /** Tests that arrays built from arrays of a subtype can store elements of the supertype. */
+  @Test
+  public void supertype() {
+    for(final int len : new int[] { 1, 7, 38, 39, 100, 5_000 }) {
+      final String[] strings = new String[len];
+      Arrays.fill(strings, "x");
+      final List<ObjectArray<Object>> arrays = Arrays.asList(
+          ObjectArray.<Object>from((Object[]) strings),
+          ObjectArray.<Object>from(Arrays.<Object>asList((Object[]) strings)));
+      for(final ObjectArray<Object> arr : arrays) {
+        for(final long pos : new long[] { 0, len / 2, len - 1 }) {
+          final ObjectArray<Object> set = arr.set(pos, 1);
+          set.checkInvariants();
+          assertEquals(1, set.get(pos));
+        }
+        assertEquals(1, arr.cons(1).head());
+        assertEquals(1, arr.snoc(1).last());
+      }
+    }
+  }
+
+  /**
+   * Creates an array of consecutive integers.
+   * @param n number of integers
+   * @return the array
+   */
+  private static Integer[] range(final int n) {
+    final Integer[] vals = new Integer[n];
+    for(int i = 0; i < n; i++) vals[i] = i;
+    return vals;
+  }
+
+  /**
+   * Checks that the given array contains the integers from {@code 0} to {@code len - 1}.
+   * @param len expected length
+   * @param arr the array
+   */
+  private static void check(final int len, final ObjectArray<Integer> arr) {
+    check(len, arr, 0);
+  }
+
+  /**
+   * Checks that the given array contains {@code len} consecutive integers.
+   * @param len expected length
+   * @param arr the array
+   * @param first first integer
+   */
+  private static void check(final int len, final ObjectArray<Integer> arr, final int first) {
+    arr.checkInvariants();
+    assertEquals(len, arr.size());
+    int i = first;
+    for(final Integer v : arr) assertEquals(i++, v.intValue());
+    assertEquals(first + len, i);
+  }
+}
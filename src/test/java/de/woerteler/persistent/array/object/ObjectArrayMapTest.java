@@ -0,0 +1,105 @@
+package de.woerteler.persistent.array.object;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.doubles.*;
+import de.woerteler.persistent.array.integer.*;
+import de.woerteler.persistent.array.longs.*;
+
+/**
+ * Tests the parallel {@link ObjectArray#map}, {@link ObjectArray#mapToInt},
+ * {@link ObjectArray#filter} and {@link ObjectArray#reduce} methods.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectArrayMapTest {
+  /** Sizes of the tested arrays, the biggest ones are processed in parallel. */
+  private static final int[] SIZES = { 0, 1, 7, 8, 38, 39, 100, 1_000, 20_000, 1 << 20 };
+
+  /** Tests {@link ObjectArray#map(java.util.function.Function)}. */
+  @Test
+  public void map() {
+    for(final int n : SIZES) {
+      final ObjectArray<Integer> arr = range(n);
+      final ObjectArray<String> mapped = arr.map(i -> Integer.toString(2 * i));
+      mapped.checkInvariants();
+      assertEquals(n, mapped.size());
+      long i = 0;
+      for(final String s : mapped) assertEquals(Long.toString(2 * i++), s);
+      assertEquals(n, i);
+    }
+  }
+
+  /** Tests {@link ObjectArray#mapToInt(java.util.function.ToIntFunction)}. */
+  @Test
+  public void mapToInt() {
+    for(final int n : SIZES) {
+      final IntArray mapped = range(n).mapToInt(i -> -i);
+      assertEquals(n, mapped.size());
+      for(int i = 0; i < n; i++) assertEquals(-i, mapped.getInt(i));
+    }
+  }
+
+  /**
+   * Tests {@link ObjectArray#mapToLong(java.util.function.ToLongFunction)} and
+   * {@link ObjectArray#mapToDouble(java.util.function.ToDoubleFunction)}.
+   */
+  @Test
+  public void mapToLongDouble() {
+    for(final int n : SIZES) {
+      final ObjectArray<Integer> arr = range(n);
+      final LongArray longs = arr.mapToLong(i -> (long) i << 32);
+      final DoubleArray doubles = arr.mapToDouble(i -> i / 2.0);
+      assertEquals(n, longs.size());
+      assertEquals(n, doubles.size());
+      for(int i = 0; i < n; i++) {
+        assertEquals((long) i << 32, longs.getLong(i));
+        assertEquals(i / 2.0, doubles.getDouble(i), 0);
+      }
+    }
+  }
+
+  /** Tests {@link ObjectArray#filter(java.util.function.Predicate)}. */
+  @Test
+  public void filter() {
+    for(final int n : SIZES) {
+      final ObjectArray<Integer> arr = range(n);
+      for(final int mod : new int[] { 1, 2, 3, 100, Integer.MAX_VALUE }) {
+        final ObjectArray<Integer> filtered = arr.filter(i -> i % mod == 0);
+        filtered.checkInvariants();
+        final Iterator<Integer> iter = filtered.iterator();
+        for(int i = 0; i < n; i += mod) assertEquals(i, iter.next().intValue());
+        assertFalse(iter.hasNext());
+      }
+    }
+  }
+
+  /** Tests {@link ObjectArray#reduce(Object, java.util.function.BinaryOperator)}. */
+  @Test
+  public void reduce() {
+    for(final int n : SIZES) {
+      final ObjectArray<Integer> arr = range(n);
+      final long sum = arr.map(Long::valueOf).reduce(0L, Long::sum);
+      assertEquals((long) n * (n - 1) / 2, sum);
+      // non-commutative operator
+      final ObjectArray<String> strs = arr.map(i -> i % 10 == 0 ? "x" : "");
+      assertEquals((n + 9) / 10, strs.reduce("", String::concat).length());
+      assertEquals(n == 0 ? -1 : n - 1, arr.reduce(-1, (a, b) -> b).intValue());
+    }
+  }
+
+  /**
+   * Creates an array of consecutive integers.
+   * @param n number of integers
+   * @return the array
+   */
+  private static ObjectArray<Integer> range(final int n) {
+    final Integer[] vals = new Integer[n];
+    for(int i = 0; i < n; i++) vals[i] = i;
+    return ObjectArray.from(vals);
+  }
+}
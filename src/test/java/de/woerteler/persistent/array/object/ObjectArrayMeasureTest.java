@@ -0,0 +1,179 @@
+package de.woerteler.persistent.array.object;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.fingertree.*;
+
+/**
+ * Tests the {@link ObjectArray#measure(Measure)},
+ * {@link ObjectArray#search(Measure, java.util.function.Predicate)} and
+ * {@link ObjectArray#split(Measure, java.util.function.Predicate)} methods.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectArrayMeasureTest {
+  /** Measure summing up the elements. */
+  private static final Measure<Integer, Long> SUM = new Measure<Integer, Long>() {
+    @Override
+    public Long identity() {
+      return 0L;
+    }
+
+    @Override
+    public Long of(final Integer elem) {
+      return (long) elem;
+    }
+
+    @Override
+    public Long combine(final Long left, final Long right) {
+      return left + right;
+    }
+  };
+
+  /** Checks measures and prefix searches of arrays that are modified in between. */
+  @Test
+  public void prefixSums() {
+    final Random rng = new Random(123);
+    ObjectArray<Integer> arr = ObjectArray.empty();
+    final ArrayList<Integer> ref = new ArrayList<>();
+    for(int k = 0; k < 3_000; k++) {
+      final int v = 1 + rng.nextInt(10);
+      final int pos = rng.nextInt(ref.size() + 1);
+      arr = arr.insertBefore(pos, v);
+      ref.add(pos, v);
+      if(k % 3 == 0 && !ref.isEmpty()) {
+        final int p = rng.nextInt(ref.size());
+        arr = arr.set(p, 1);
+        ref.set(p, 1);
+      }
+      if(k % 97 == 0) check(arr, ref, rng);
+    }
+    check(arr, ref, rng);
+    assertEquals(0L, ObjectArray.<Integer>empty().measure(SUM).longValue());
+    assertEquals(-1, ObjectArray.<Integer>empty().search(SUM, s -> true));
+  }
+
+  /** Checks the stock measures against sequential computations. */
+  @Test
+  public void stockMeasures() {
+    final Measure<Integer, Long> evens = Measures.count(i -> i % 2 == 0);
+    final Measure<Integer, Integer> min = Measures.min(Comparator.<Integer>naturalOrder()),
+        max = Measures.max(Comparator.<Integer>naturalOrder());
+    final Random rng = new Random(99);
+    for(final int n : new int[] { 0, 1, 7, 30, 1_000, 20_000 }) {
+      final ArrayList<Integer> ref = new ArrayList<>();
+      for(int i = 0; i < n; i++) ref.add(rng.nextInt(1_000_000));
+      ObjectArray<Integer> arr = ObjectArray.from(ref);
+      if(n > 0) {
+        arr = arr.set(n / 2, -1);
+        ref.set(n / 2, -1);
+      }
+      assertEquals(ref.stream().filter(i -> i % 2 == 0).count(), arr.measure(evens).longValue());
+      assertEquals(ref.stream().min(Integer::compare).orElse(null), arr.measure(min));
+      assertEquals(ref.stream().max(Integer::compare).orElse(null), arr.measure(max));
+      assertEquals(ref.hashCode(), Measures.hashCode(arr.measure(Measures.hash())));
+      assertEquals(ref.hashCode(), arr.hashCode());
+    }
+  }
+
+  /** Checks that measures used alternately on the same array stay cached. */
+  @Test
+  public void alternatingMeasures() {
+    final int[] calls = { 0 };
+    final ArrayList<Measure<Integer, Long>> measures = new ArrayList<>();
+    for(int m = 0; m < 3; m++) {
+      final int factor = m + 1;
+      measures.add(new Measure<Integer, Long>() {
+        @Override
+        public Long identity() {
+          return 0L;
+        }
+
+        @Override
+        public Long of(final Integer elem) {
+          calls[0]++;
+          return (long) factor * elem;
+        }
+
+        @Override
+        public Long combine(final Long left, final Long right) {
+          return left + right;
+        }
+      });
+    }
+
+    final ArrayList<Integer> ref = new ArrayList<>();
+    for(int i = 0; i < 20_000; i++) ref.add(i % 10);
+    final ObjectArray<Integer> arr = ObjectArray.from(ref);
+    for(final Measure<Integer, Long> m : measures) arr.measure(m);
+    calls[0] = 0;
+    for(int k = 0; k < 10; k++) {
+      for(int m = 0; m < measures.size(); m++) {
+        final long total = (m + 1) * 90_000L;
+        assertEquals(total, arr.measure(measures.get(m)).longValue());
+        assertEquals(-1, arr.search(measures.get(m), s -> s > total));
+      }
+    }
+    // only the digits of the root are measured again
+    assertTrue("Elements measured: " + calls[0], calls[0] < 20_000);
+  }
+
+  /** Splits an array at every possible prefix sum. */
+  @Test
+  public void split() {
+    final ArrayList<Integer> ref = new ArrayList<>();
+    for(int i = 0; i < 500; i++) ref.add(i % 4);
+    final ObjectArray<Integer> arr = ObjectArray.from(ref);
+    long sum = 0;
+    int pos = 0;
+    for(long target = 0; target <= 800; target++) {
+      final long t = target;
+      while(pos < ref.size() && sum + ref.get(pos) <= target) sum += ref.get(pos++);
+      final ObjectArray<Integer>[] parts = arr.split(SUM, s -> s > t);
+      assertEquals(ref.subList(0, pos), toList(parts[0]));
+      assertEquals(ref.subList(pos, ref.size()), toList(parts[1]));
+    }
+  }
+
+  /**
+   * Copies the elements of the given array into a list.
+   * @param arr the array
+   * @return the list
+   */
+  private static List<Integer> toList(final ObjectArray<Integer> arr) {
+    final ArrayList<Integer> list = new ArrayList<>();
+    for(final Integer i : arr) list.add(i);
+    return list;
+  }
+
+  /**
+   * Compares the measure and a few searches with the reference list.
+   * @param arr array to check
+   * @param ref reference list
+   * @param rng random number generator
+   */
+  private static void check(final ObjectArray<Integer> arr, final List<Integer> ref,
+      final Random rng) {
+    long total = 0;
+    for(final int v : ref) total += v;
+    assertEquals(total, arr.measure(SUM).longValue());
+    // measured twice to also hit the cached values
+    assertEquals(total, arr.measure(SUM).longValue());
+    for(int i = 0; i < 10; i++) {
+      final long target = rng.nextInt((int) total + 2);
+      long sum = 0, exp = -1;
+      for(int j = 0; j < ref.size(); j++) {
+        sum += ref.get(j);
+        if(sum > target) {
+          exp = j;
+          break;
+        }
+      }
+      assertEquals(exp, arr.search(SUM, s -> s > target));
+    }
+  }
+}
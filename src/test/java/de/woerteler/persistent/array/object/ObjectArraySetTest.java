@@ -0,0 +1,75 @@
+package de.woerteler.persistent.array.object;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests the {@link Array#set(long, Object)} and
+ * {@link Array#update(long, java.util.function.UnaryOperator)} methods.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectArraySetTest {
+  /** Zero index on empty array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void emptySetZero() {
+    ObjectArray.empty().set(0, null);
+  }
+
+  /** Negative index on singleton array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void singletonSetNegative() {
+    ObjectArray.<Integer>singleton(42).set(-1, 0);
+  }
+
+  /** Too big index on deep array. */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void deepSetTooBig() {
+    ObjectArray.from(0, 1, 2, 3, 4, 5, 6, 7, 8).set(9, 0);
+  }
+
+  /** Sets each element once in arrays of varying length and checks that the original is kept. */
+  @Test
+  public void setEachTest() {
+    ObjectArray<Integer> arr = ObjectArray.empty();
+    for(int k = 0; k < 300; k++) {
+      for(int i = 0; i < k; i++) {
+        final ObjectArray<Integer> arr2 = arr.set(i, null);
+        arr2.checkInvariants();
+        assertEquals(k, arr2.size());
+        for(int j = 0; j < k; j++) {
+          assertEquals(j == i ? null : Integer.valueOf(j), arr2.get(j));
+          assertEquals(j, arr.get(j).intValue());
+        }
+      }
+      arr = arr.snoc(k);
+    }
+  }
+
+  /** Randomly updates elements and compares the array to a list. */
+  @Test
+  public void fuzzyTest() {
+    final int n = 100_000;
+    final ArrayList<Integer> list = new ArrayList<>(n);
+    for(int i = 0; i < n; i++) list.add(i);
+    ObjectArray<Integer> arr = ObjectArray.from(list);
+
+    final Random rng = new Random(42);
+    for(int i = 0; i < n; i++) {
+      final int pos = rng.nextInt(n), val = rng.nextInt();
+      list.set(pos, list.get(pos) + val);
+      arr = arr.update(pos, v -> v + val);
+      if(i % 10_000 == 9_999) {
+        arr.checkInvariants();
+        final Iterator<Integer> iter = arr.iterator();
+        for(final Integer v : list) assertEquals(v, iter.next());
+        assertFalse(iter.hasNext());
+      }
+    }
+  }
+}
@@ -1,5 +1,9 @@
 package de.woerteler.persistent.array.object;
 
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
 import de.woerteler.persistent.array.*;
 
 /**
@@ -17,4 +21,22 @@ public class ObjectArrayTest extends VariousArrayTest<ObjectArray<Integer>> {
   protected void checkInvariants(final ObjectArray<Integer> arr) {
     arr.checkInvariants();
   }
+
+  /** Tests {@link ObjectArray#forEachChunk(ChunkConsumer)}. */
+  @Test
+  public void forEachChunkTest() {
+    for(final int n : new int[] { 0, 1, 7, 8, 40, 1_000, 100_000 }) {
+      ObjectArray<Integer> arr = ObjectArray.empty();
+      for(int i = n / 2; --i >= 0;) arr = arr.cons(i);
+      for(int i = n / 2; i < n; i++) arr = arr.snoc(i);
+      final int[] next = { 0 }, chunks = { 0 };
+      arr.forEachChunk((chunk, off, len) -> {
+        assertTrue(len > 0);
+        for(int i = off; i < off + len; i++) assertEquals(next[0]++, chunk[i]);
+        chunks[0]++;
+      });
+      assertEquals(n, next[0]);
+      assertTrue(chunks[0] <= Math.max(1, n / ObjectArray.MIN_DIGIT));
+    }
+  }
 }
@@ -0,0 +1,20 @@
+package de.woerteler.persistent.array.object;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for {@link ObjectArray#forEach(java.util.function.Consumer)}.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectForEachTest extends ForEachTest<ObjectArray<Integer>> {
+  @Override
+  protected ObjectArray<Integer> emptyArray() {
+    return ObjectArray.empty();
+  }
+
+  @Override
+  protected void checkInvariants(final ObjectArray<Integer> arr) {
+    arr.checkInvariants();
+  }
+}
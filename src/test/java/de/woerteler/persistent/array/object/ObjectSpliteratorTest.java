@@ -0,0 +1,20 @@
+package de.woerteler.persistent.array.object;
+
+import de.woerteler.persistent.array.*;
+
+/**
+ * Tests for {@link ObjectArray#spliterator()}.
+ *
+ * @author Leo Woerteler
+ */
+public class ObjectSpliteratorTest extends SpliteratorTest<ObjectArray<Integer>> {
+  @Override
+  protected ObjectArray<Integer> emptyArray() {
+    return ObjectArray.empty();
+  }
+
+  @Override
+  protected void checkInvariants(final ObjectArray<Integer> arr) {
+    arr.checkInvariants();
+  }
+}
@@ -0,0 +1,193 @@
+package de.woerteler.persistent.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import de.woerteler.persistent.array.object.*;
+import de.woerteler.persistent.map.*;
+
+/**
+ * Tests for {@link SharingOutput} and {@link SharingInput}.
+ *
+ * @author Leo Woerteler
+ */
+public class SharingCodecTest {
+  /** Round trip of arrays of different sizes through a file channel. */
+  @Test public void arrayRoundTrip() throws IOException {
+    final Path file = Files.createTempFile("array", ".bin");
+    try {
+      final int[] sizes = { 0, 1, 2, 5, 17, 100, 12_345 };
+      try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE);
+          SharingOutput out = new SharingOutput(ch)) {
+        for(final int n : sizes) {
+          ObjectArray<Integer> arr = ObjectArray.empty();
+          for(int i = 0; i < n; i++) arr = i % 2 == 0 ? arr.snoc(i) : arr.cons(i);
+          arr.write(out, ValueCodec.INTEGER);
+        }
+      }
+      try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+          SharingInput in = new SharingInput(ch)) {
+        for(final int n : sizes) {
+          ObjectArray<Integer> arr = ObjectArray.empty();
+          for(int i = 0; i < n; i++) arr = i % 2 == 0 ? arr.snoc(i) : arr.cons(i);
+          assertEquals(arr, ObjectArray.read(in, ValueCodec.INTEGER));
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /** Checks that later versions of an array only cost about the size of the changes. */
+  @Test public void arrayVersions() throws IOException {
+    ObjectArray<String> arr = ObjectArray.empty();
+    for(int i = 0; i < 100_000; i++) arr = arr.snoc("value " + i);
+    final java.util.List<ObjectArray<String>> versions = new ArrayList<>();
+    final Random rng = new Random(42);
+    for(int v = 0; v < 10; v++) {
+      versions.add(arr);
+      arr = arr.insertBefore(rng.nextInt((int) arr.size()), "inserted " + v).snoc("last " + v);
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final int first;
+    try(SharingOutput out = new SharingOutput(bytes)) {
+      versions.get(0).write(out, ValueCodec.STRING);
+      out.flush();
+      first = bytes.size();
+      for(int v = 1; v < versions.size(); v++) versions.get(v).write(out, ValueCodec.STRING);
+    }
+    assertTrue("deltas too big: " + bytes.size() + " vs. " + first, bytes.size() < first * 1.05);
+
+    try(SharingInput in = new SharingInput(new ByteArrayInputStream(bytes.toByteArray()))) {
+      for(final ObjectArray<String> version : versions)
+        assertEquals(version, ObjectArray.read(in, ValueCodec.STRING));
+    }
+  }
+
+  /** Round trip of maps, including hash collisions and versions sharing nodes. */
+  @Test public void mapVersions() throws IOException {
+    ImmutableMap<Long, String> map = ImmutableMap.empty();
+    for(long i = 0; i < 50_000; i++) map = map.insert(i, "v" + i);
+    // all keys of the form (i << 32 | i) have hash code 0 and end up in a collision list
+    for(long i = 0; i < 100; i++) map = map.insert(i << 32 | i, "collision " + i);
+
+    final java.util.List<ImmutableMap<Long, String>> versions = new ArrayList<>();
+    for(int v = 0; v < 10; v++) {
+      versions.add(map);
+      map = map.insert(v * 1_000L, "updated " + v).delete(v * 1_000L + 1);
+    }
+    versions.add(ImmutableMap.<Long, String>empty());
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final int first;
+    try(SharingOutput out = new SharingOutput(bytes)) {
+      versions.get(0).write(out, ValueCodec.LONG, ValueCodec.STRING);
+      out.flush();
+      first = bytes.size();
+      for(int v = 1; v < versions.size(); v++)
+        versions.get(v).write(out, ValueCodec.LONG, ValueCodec.STRING);
+    }
+    assertTrue("deltas too big: " + bytes.size() + " vs. " + first, bytes.size() < first * 1.05);
+
+    try(SharingInput in = new SharingInput(new ByteArrayInputStream(bytes.toByteArray()))) {
+      for(final ImmutableMap<Long, String> version : versions) {
+        final ImmutableMap<Long, String> read = ImmutableMap.read(in, ValueCodec.LONG,
+            ValueCodec.STRING);
+        assertEquals(version.size(), read.size());
+        assertEquals(version, read);
+      }
+    }
+  }
+
+  /** Chunks whose size is invalid for their position in the array are rejected. */
+  @Test
+  public void wrongChunkSize() throws IOException {
+    // small array (tag 1) with more elements than allowed, deep array (tag 2) with small digits
+    for(final int[] chunk : new int[][] { { 1, 10 }, { 2, 1 } }) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try(SharingOutput out = new SharingOutput(bytes)) {
+        out.writeVarInt(chunk[0]);
+        out.writeVarInt(chunk[1]);
+        for(int i = 0; i < chunk[1]; i++) out.writeInt(i);
+      }
+      try(SharingInput in = new SharingInput(new ByteArrayInputStream(bytes.toByteArray()))) {
+        ObjectArray.read(in, ValueCodec.INTEGER);
+        fail("Illegal chunk accepted: " + Arrays.toString(chunk));
+      } catch(final IOException ex) {
+        assertTrue(ex.getMessage(), ex.getMessage().startsWith("Illegal number of elements"));
+      }
+    }
+  }
+
+  /** Collision lists and branches that do not match the hash codes of their keys are rejected. */
+  @Test
+  public void invalidTrie() throws IOException {
+    final long[][] lists = { { 1, 2 }, { 1, 1 } };
+    for(final long[] list : lists) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try(SharingOutput out = new SharingOutput(bytes)) {
+        out.writeVarInt(0);
+        out.writeByte(2);
+        out.writeVarInt(list.length);
+        for(final long key : list) {
+          ValueCodec.LONG.write(out, key);
+          ValueCodec.STRING.write(out, "v" + key);
+        }
+      }
+      assertInvalid(bytes.toByteArray(), "list");
+    }
+
+    // a leaf in the wrong slot of the root, and a branch whose keys differ in the root slot
+    final long[][] branches = { { 1 << 5, 1 }, { 1 << 1, 1 << 0 | 1 << 1, 1, 34 } };
+    for(final long[] branch : branches) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try(SharingOutput out = new SharingOutput(bytes)) {
+        out.writeVarInt(0);
+        out.writeByte(3);
+        out.writeInt((int) branch[0]);
+        if(branch.length > 2) {
+          out.writeVarInt(0);
+          out.writeByte(3);
+          out.writeInt((int) branch[1]);
+        }
+        for(int i = branch.length == 2 ? 1 : 2; i < branch.length; i++) {
+          out.writeVarInt(0);
+          out.writeByte(1);
+          ValueCodec.LONG.write(out, branch[i]);
+          ValueCodec.STRING.write(out, "v");
+        }
+      }
+      assertInvalid(bytes.toByteArray(), "slot");
+    }
+  }
+
+  /**
+   * Checks that reading a map from the given bytes fails.
+   * @param bytes the bytes
+   * @param msg expected part of the error message
+   * @throws IOException I/O exception
+   */
+  private static void assertInvalid(final byte[] bytes, final String msg) throws IOException {
+    try(SharingInput in = new SharingInput(new ByteArrayInputStream(bytes))) {
+      ImmutableMap.read(in, ValueCodec.LONG, ValueCodec.STRING);
+      fail("Invalid trie accepted");
+    } catch(final IOException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains(msg));
+    }
+  }
+
+  /** Streams not written by {@link SharingOutput} are rejected. */
+  @Test(expected = IOException.class)
+  public void wrongMagic() throws IOException {
+    try(SharingInput in = new SharingInput(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }))) {
+      fail("Stream accepted");
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link AtomicImmutableMap} holder.
+ * @author Leo Woerteler
+ */
+public class AtomicImmutableMapTest {
+  /** Number of threads. */
+  private static final int THREADS = 8;
+  /** Number of updates per thread. */
+  private static final int UPDATES = 20_000;
+
+  /**
+   * Concurrent counter updates must not get lost.
+   * @throws Exception exception
+   */
+  @Test public void concurrentCounters() throws Exception {
+    final AtomicImmutableMap<Integer, Integer> counters = new AtomicImmutableMap<>();
+    final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      final ArrayList<Future<?>> futures = new ArrayList<>();
+      for(int t = 0; t < THREADS; t++) {
+        final int id = t;
+        futures.add(pool.submit(() -> {
+          for(int i = 0; i < UPDATES; i++) {
+            counters.merge(i % 100, 1, Integer::sum);
+            if(i % 1_000 == 0) counters.update(m -> m.insert(-1 - id, id));
+          }
+        }));
+      }
+      for(final Future<?> f : futures) f.get();
+    } finally {
+      pool.shutdown();
+    }
+
+    final ImmutableMap<Integer, Integer> snap = counters.get();
+    assertEquals(100 + THREADS, snap.size());
+    for(int k = 0; k < 100; k++) assertEquals(THREADS * UPDATES / 100, snap.get(k).intValue());
+    for(int t = 0; t < THREADS; t++) assertEquals(t, snap.get(-1 - t).intValue());
+
+    final long updates = THREADS * (UPDATES + UPDATES / 1_000);
+    assertEquals(updates, counters.updates());
+    assertTrue(counters.batches() > 0 && counters.batches() <= updates);
+    assertTrue(counters.retries() >= 0);
+  }
+
+  /** Tests the results of the single-key operations. */
+  @Test public void results() {
+    final AtomicImmutableMap<String, Integer> map = new AtomicImmutableMap<>();
+    assertNull(map.put("a", 1));
+    assertEquals(Integer.valueOf(1), map.put("a", 2));
+    assertEquals(Integer.valueOf(2), map.putIfAbsent("a", 3));
+    assertNull(map.putIfAbsent("b", 3));
+    assertEquals(Integer.valueOf(5), map.merge("a", 3, Integer::sum));
+    assertEquals(Integer.valueOf(6), map.compute("b", (k, v) -> v * 2));
+    assertNull(map.compute("c", (k, v) -> null));
+    assertEquals(Integer.valueOf(6), map.remove("b"));
+    assertNull(map.get("b"));
+    assertEquals(1, map.get().size());
+
+    final ImmutableMap<String, Integer> before = map.get();
+    map.compute("a", (k, v) -> v);
+    assertSame(before, map.get());
+    assertEquals(2, map.addAll(ImmutableMap.singleton("d", 4)).size());
+    assertEquals(Integer.valueOf(4), map.get("d"));
+  }
+
+  /** Exceptions thrown by a function are passed to the caller and do not affect others. */
+  @Test public void exception() {
+    final AtomicImmutableMap<String, Integer> map = new AtomicImmutableMap<>();
+    map.put("a", 1);
+    try {
+      map.compute("a", (k, v) -> {
+        throw new IllegalStateException(k);
+      });
+      fail("exception expected");
+    } catch(final IllegalStateException ex) {
+      assertEquals("a", ex.getMessage());
+    }
+    assertEquals(Integer.valueOf(1), map.get("a"));
+    assertEquals(Integer.valueOf(2), map.merge("a", 1, Integer::sum));
+    try {
+      map.update(m -> null);
+      fail("exception expected");
+    } catch(final NullPointerException ex) {
+      assertEquals(Integer.valueOf(2), map.get("a"));
+    }
+  }
+
+  /**
+   * Failing updates must not keep other threads waiting.
+   * @throws Exception exception
+   */
+  @Test public void concurrentFailures() throws Exception {
+    final AtomicImmutableMap<Integer, Integer> map = new AtomicImmutableMap<>();
+    final ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+    try {
+      final ArrayList<Future<?>> futures = new ArrayList<>();
+      for(int t = 0; t < THREADS; t++) {
+        final int id = t;
+        futures.add(pool.submit(() -> {
+          for(int i = 0; i < UPDATES; i++) map.put(i % 100, id);
+        }));
+      }
+      final Future<Integer> failing = pool.submit(() -> {
+        int failed = 0;
+        for(int i = 0; i < UPDATES; i++) {
+          try {
+            map.update(m -> null);
+          } catch(final NullPointerException ex) {
+            failed++;
+          }
+        }
+        return failed;
+      });
+      for(final Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+      assertEquals(UPDATES, failing.get(60, TimeUnit.SECONDS).intValue());
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(100, map.get().size());
+  }
+}
@@ -0,0 +1,70 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutableIntMap} data structure.
+ * @author Leo Woerteler
+ */
+public class ImmutableIntMapTest {
+  /** Compares random insertions and deletions with a {@link HashMap}, including negative keys. */
+  @Test public void randomOps() {
+    final Random rng = new Random(7);
+    ImmutableIntMap<Integer> map = ImmutableIntMap.empty();
+    final HashMap<Integer, Integer> ref = new HashMap<>();
+    for(int i = 0; i < 50_000; i++) {
+      final int k = rng.nextInt(4) == 0 ? rng.nextInt() : rng.nextInt(4_000) - 2_000;
+      if(rng.nextInt(3) == 0) {
+        map = map.delete(k);
+        ref.remove(k);
+      } else {
+        map = map.insert(k, i);
+        ref.put(k, i);
+      }
+      if(i % 997 == 0) check(ref, map);
+    }
+    check(ref, map);
+    for(final int k : ref.keySet()) map = map.delete(k);
+    assertSame(ImmutableIntMap.empty(), map);
+  }
+
+  /** Tests extreme keys, {@code null} values and the string representation. */
+  @Test public void edgeCases() {
+    ImmutableIntMap<String> map = ImmutableIntMap.<String>empty().insert(Integer.MIN_VALUE, "min")
+        .insert(Integer.MAX_VALUE, "max").insert(-1, null);
+    assertTrue(map.verify());
+    assertEquals("min", map.get(Integer.MIN_VALUE));
+    assertEquals("max", map.get(Integer.MAX_VALUE));
+    assertNull(map.get(-1));
+    assertTrue(map.contains(-1));
+    assertFalse(map.contains(0));
+    assertSame(map, map.insert(-1, null));
+
+    map = map.delete(Integer.MIN_VALUE).delete(-1);
+    assertEquals("{2147483647=max}", map.toString());
+    assertEquals(ImmutableIntMap.<String>empty().insert(Integer.MAX_VALUE, "max"), map);
+  }
+
+  /**
+   * Checks that the map has the same bindings as the reference map.
+   * @param ref reference map
+   * @param map map to check
+   */
+  private static void check(final HashMap<Integer, Integer> ref,
+      final ImmutableIntMap<Integer> map) {
+    assertTrue("invalid trie", map.verify());
+    assertEquals(ref.size(), map.size());
+    for(final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+      assertEquals(e.getValue(), map.get(e.getKey()));
+      assertTrue(map.contains(e.getKey()));
+    }
+    final HashMap<Integer, Integer> seen = new HashMap<>();
+    map.forEach((k, v) -> assertNull(seen.put(k, v)));
+    assertEquals(ref, seen);
+    assertEquals(ref.size(), map.keys().filter(ref::containsKey).count());
+  }
+}
@@ -0,0 +1,81 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutableLongMap} data structure.
+ * @author Leo Woerteler
+ */
+public class ImmutableLongMapTest {
+  /** Compares random insertions and deletions with a {@link HashMap}. */
+  @Test public void randomOps() {
+    final Random rng = new Random(5);
+    ImmutableLongMap<Integer> map = ImmutableLongMap.empty();
+    final HashMap<Long, Integer> ref = new HashMap<>();
+    for(int i = 0; i < 50_000; i++) {
+      // keys that only differ in their highest bits create deep tries
+      final long k = rng.nextInt(2_000) * (rng.nextBoolean() ? 1L : 0x1000_0000_0000_0001L);
+      if(rng.nextInt(3) == 0) {
+        map = map.delete(k);
+        ref.remove(k);
+      } else {
+        map = map.insert(k, i);
+        ref.put(k, i);
+      }
+      if(i % 997 == 0) check(ref, map);
+    }
+    check(ref, map);
+    for(final long k : ref.keySet()) map = map.delete(k);
+    assertSame(ImmutableLongMap.empty(), map);
+  }
+
+  /** Tests extreme keys, identity of unchanged maps and canonical equality. */
+  @Test public void edgeCases() {
+    final long[] keys = { 0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 63 | 1, 1L << 62 };
+    ImmutableLongMap<String> map = ImmutableLongMap.empty();
+    for(final long k : keys) map = map.insert(k, Long.toString(k));
+    assertTrue(map.verify());
+    assertEquals(keys.length, map.size());
+    for(final long k : keys) assertEquals(Long.toString(k), map.get(k));
+    assertNull(map.get(2));
+    assertFalse(map.contains(1L << 61));
+
+    final String v = map.get(-1);
+    assertSame(map, map.insert(-1, v));
+    assertSame(map, map.delete(42));
+
+    // insertion order does not matter
+    ImmutableLongMap<String> rev = ImmutableLongMap.empty();
+    for(int i = keys.length; --i >= 0;) rev = rev.insert(keys[i], Long.toString(keys[i]));
+    assertEquals(map, rev);
+    assertEquals(map.hashCode(), rev.hashCode());
+    assertNotEquals(map, rev.insert(0, "x"));
+    assertEquals(map.delete(Long.MIN_VALUE), rev.delete(Long.MIN_VALUE));
+  }
+
+  /**
+   * Checks that the map has the same bindings as the reference map.
+   * @param ref reference map
+   * @param map map to check
+   */
+  private static void check(final HashMap<Long, Integer> ref,
+      final ImmutableLongMap<Integer> map) {
+    assertTrue("invalid trie", map.verify());
+    assertEquals(ref.size(), map.size());
+    for(final Map.Entry<Long, Integer> e : ref.entrySet()) {
+      assertEquals(e.getValue(), map.get(e.getKey()));
+      assertTrue(map.contains(e.getKey()));
+    }
+    final HashMap<Long, Integer> seen = new HashMap<>();
+    map.forEach((k, v) -> assertNull(seen.put(k, v)));
+    assertEquals(ref, seen);
+    assertEquals(ref.keySet().stream().mapToLong(Long::longValue).sorted().boxed()
+        .collect(Collectors.toList()), map.keys().sorted().boxed()
+        .collect(Collectors.toList()));
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 import static de.woerteler.persistent.TrieSequenceTest.*;
 
 import java.util.*;
+import java.util.function.*;
 
 import org.junit.*;
 
@@ -447,4 +448,328 @@ public class ImmutableMapTest {
         ImmutableMap.from(utilMap(0, 0, 0L, null)));
     assertEquals("branch", mapFrom(0, 1), ImmutableMap.from(utilMap(0, 0, 1, 1)));
   }
+
+  /** Random insertions and deletions, compared against a {@link HashMap}. */
+  @Test public void randomInsertDelete() {
+    final Random rng = new Random(42);
+    final Map<Integer, Integer> ref = new HashMap<>();
+    ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+    for(int i = 0; i < 100_000; i++) {
+      final int k = rng.nextInt(5_000) * (rng.nextBoolean() ? 1 : 1 << 2 * ImmutableMap.BITS);
+      if(rng.nextInt(3) == 0) {
+        ref.remove(k);
+        map = map.delete(k);
+      } else {
+        ref.put(k, i);
+        map = map.insert(k, i);
+      }
+      assertEquals("size", ref.size(), map.size());
+    }
+    for(final Map.Entry<Integer, Integer> e : ref.entrySet())
+      assertEquals("lookup", e.getValue(), map.get(e.getKey()));
+    assertTrue(equalsWithHash(map, ImmutableMap.from(ref)));
+  }
+
+  /**
+   * Creates a map with random keys, half of which share their lower hash bits.
+   * @param n number of insertions
+   * @param ref reference map to fill
+   * @return map with the same bindings as {@code ref}
+   */
+  private static ImmutableMap<Integer, Integer> randomMap(final int n,
+      final Map<Integer, Integer> ref) {
+    final Random rng = new Random(n);
+    for(int i = 0; i < n; i++)
+      ref.put(rng.nextInt(n) * (rng.nextBoolean() ? 1 : 1 << 2 * ImmutableMap.BITS), i);
+    return ImmutableMap.from(ref);
+  }
+
+  /** Tests the iterators over entries, keys and values. */
+  @Test public void testIteration() {
+    assertFalse(ImmutableMap.empty().iterator().hasNext());
+    final Map<Integer, Integer> ref = new HashMap<>();
+    final ImmutableMap<Integer, Integer> map = randomMap(50_000, ref);
+    final Map<Integer, Integer> seen = new HashMap<>();
+    for(final Map.Entry<Integer, Integer> e : map)
+      assertNull("duplicate", seen.put(e.getKey(), e.getValue()));
+    assertEquals(ref, seen);
+    assertEquals(ref.keySet(), map.keySet());
+    assertTrue(map.keySet().contains(ref.keySet().iterator().next()));
+    final java.util.List<Integer> vals = new ArrayList<>(map.values());
+    final java.util.List<Integer> refVals = new ArrayList<>(ref.values());
+    Collections.sort(vals);
+    Collections.sort(refVals);
+    assertEquals(refVals, vals);
+
+    final Map<Integer, Integer> each = new HashMap<>();
+    map.forEach((k, v) -> each.put(k, v));
+    assertEquals(ref, each);
+
+    // collision lists
+    final ImmutableMap<Number, Number> coll = mapFrom(1, 1L, (short) 1, 2);
+    int sum = 0;
+    for(final Map.Entry<Number, Number> e : coll) sum += e.getValue().intValue();
+    assertEquals(5, sum);
+  }
+
+  /** Tests that the spliterator splits into exactly sized parts covering the whole map. */
+  @Test public void testSpliterator() {
+    final Map<Integer, Integer> ref = new HashMap<>();
+    final ImmutableMap<Integer, Integer> map = randomMap(100_000, ref);
+    final Deque<Spliterator<Map.Entry<Integer, Integer>>> todo = new ArrayDeque<>();
+    todo.add(map.spliterator());
+    final Map<Integer, Integer> seen = new HashMap<>();
+    int parts = 0;
+    while(!todo.isEmpty()) {
+      final Spliterator<Map.Entry<Integer, Integer>> spl = todo.poll();
+      final Spliterator<Map.Entry<Integer, Integer>> lo = spl.trySplit();
+      if(lo != null) {
+        assertTrue(lo.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        todo.add(lo);
+        todo.add(spl);
+        continue;
+      }
+      final long size = spl.estimateSize();
+      final long[] count = { 0 };
+      if(spl.tryAdvance(e -> { seen.put(e.getKey(), e.getValue()); count[0]++; }))
+        spl.forEachRemaining(e -> { seen.put(e.getKey(), e.getValue()); count[0]++; });
+      assertEquals("exact size", size, count[0]);
+      assertEquals(0, spl.estimateSize());
+      parts++;
+    }
+    assertTrue(parts > 1000);
+    assertEquals(ref, seen);
+
+    final long sum = map.parallelStream().mapToLong(Map.Entry::getValue).sum();
+    assertEquals(ref.values().stream().mapToLong(Integer::longValue).sum(), sum);
+    assertEquals(ref.size(), map.keySet().parallelStream().distinct().count());
+    assertEquals(ref.size(), map.values().stream().count());
+  }
+
+  /** Compares the structural diff of successive versions with the differences of hash maps. */
+  @Test public void diff() {
+    final Random rng = new Random(2718);
+    Map<Number, Number> ref = new HashMap<>();
+    ImmutableMap<Number, Number> map = ImmutableMap.empty();
+    for(int v = 0; v < 50; v++) {
+      final Map<Number, Number> nref = new HashMap<>(ref);
+      ImmutableMap<Number, Number> nmap = map;
+      final int changes = v % 10 == 0 ? 2_000 : rng.nextInt(20);
+      for(int i = 0; i < changes; i++) {
+        final int k = rng.nextInt(3_000);
+        // integers and longs with the same value collide
+        final Number key = rng.nextBoolean() ? (Number) k : (Number) (long) k;
+        if(rng.nextInt(4) == 0) {
+          nref.remove(key);
+          nmap = nmap.delete(key);
+        } else {
+          final Number val = rng.nextInt(3);
+          nref.put(key, val);
+          nmap = nmap.insert(key, val);
+        }
+      }
+
+      final Map<Number, Number> added = new HashMap<>(), removed = new HashMap<>();
+      final Map<Number, Number[]> changed = new HashMap<>();
+      map.diff(nmap, new MapDiffHandler<Number, Number>() {
+        @Override
+        public void added(final Number key, final Number value) {
+          assertNull(added.put(key, value));
+        }
+
+        @Override
+        public void removed(final Number key, final Number value) {
+          assertNull(removed.put(key, value));
+        }
+
+        @Override
+        public void changed(final Number key, final Number oldValue, final Number newValue) {
+          assertNull(changed.put(key, new Number[] { oldValue, newValue }));
+        }
+      });
+
+      for(final Map.Entry<Number, Number> e : nref.entrySet()) {
+        final Number key = e.getKey();
+        if(!ref.containsKey(key)) {
+          assertEquals("added", e.getValue(), added.remove(key));
+        } else if(!ref.get(key).equals(e.getValue())) {
+          assertArrayEquals("changed", new Number[] { ref.get(key), e.getValue() },
+              changed.remove(key));
+        }
+      }
+      for(final Map.Entry<Number, Number> e : ref.entrySet()) {
+        if(!nref.containsKey(e.getKey())) {
+          assertEquals("removed", e.getValue(), removed.remove(e.getKey()));
+        }
+      }
+      assertTrue("spurious additions: " + added, added.isEmpty());
+      assertTrue("spurious removals: " + removed, removed.isEmpty());
+      assertTrue("spurious changes: " + changed.keySet(), changed.isEmpty());
+      ref = nref;
+      map = nmap;
+    }
+  }
+
+  /** A map differs from itself in nothing, a single update is reported once. */
+  @Test public void diffShared() {
+    ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+    for(int i = 0; i < 100_000; i++) map = map.insert(i, i);
+    final ImmutableMap<Integer, Integer> upd = map.insert(4711, -1);
+    final StringBuilder sb = new StringBuilder();
+    final MapDiffHandler<Integer, Integer> handler = new MapDiffHandler<Integer, Integer>() {
+      @Override
+      public void added(final Integer key, final Integer value) {
+        sb.append('+').append(key);
+      }
+
+      @Override
+      public void removed(final Integer key, final Integer value) {
+        sb.append('-').append(key);
+      }
+
+      @Override
+      public void changed(final Integer key, final Integer oldValue, final Integer newValue) {
+        sb.append(key).append(':').append(oldValue).append("->").append(newValue);
+      }
+    };
+    map.diff(map, handler);
+    assertEquals("", sb.toString());
+    map.diff(upd, handler);
+    assertEquals("4711:4711->-1", sb.toString());
+    sb.setLength(0);
+    upd.diff(upd.delete(4711).insert(-5, 5), handler);
+    assertEquals("-4711+-5", sb.toString());
+  }
+
+  /** Compares the structural set operations with per-key loops over hash maps. */
+  @Test public void setOperations() {
+    final Random rng = new Random(161);
+    for(final int n : new int[] { 0, 1, 3, 50, 1_000, 100_000 }) {
+      final Map<Number, Number> ra = new HashMap<>(), rb = new HashMap<>();
+      ImmutableMap<Number, Number> a = ImmutableMap.empty();
+      for(int i = 0; i < n; i++) {
+        final Number k = rng.nextBoolean() ? (Number) rng.nextInt(2 * n) : (Number) (long) i;
+        ra.put(k, i);
+        a = a.insert(k, i);
+      }
+      // the second map shares most of its structure with the first one
+      ImmutableMap<Number, Number> b = n > 1_000 ? a : ImmutableMap.<Number, Number>empty();
+      rb.putAll(n > 1_000 ? ra : Collections.<Number, Number>emptyMap());
+      for(int i = 0; i < Math.min(n, 2_000); i++) {
+        final Number k = rng.nextBoolean() ? (Number) rng.nextInt(2 * n) : (Number) (long) i;
+        if(rng.nextInt(4) == 0) {
+          rb.remove(k);
+          b = b.delete(k);
+        } else {
+          rb.put(k, -i);
+          b = b.insert(k, -i);
+        }
+      }
+
+      final Map<Number, Number> merged = new HashMap<>(ra), inter = new HashMap<>(),
+          removed = new HashMap<>(ra), retained = new HashMap<>();
+      for(final Map.Entry<Number, Number> e : rb.entrySet()) {
+        final Number k = e.getKey(), v = e.getValue(), old = ra.get(k);
+        merged.put(k, old == null ? v : Math.max(old.intValue(), v.intValue()));
+        if(old != null) {
+          inter.put(k, Math.min(old.intValue(), v.intValue()));
+          retained.put(k, old);
+        }
+        removed.remove(k);
+      }
+      compare(merged, a.merge(b, (x, y) -> Math.max(x.intValue(), y.intValue())));
+      compare(inter, a.intersect(b, (x, y) -> Math.min(x.intValue(), y.intValue())));
+      compare(removed, a.removeAll(b));
+      compare(retained, a.retainAll(b));
+    }
+  }
+
+  /** Unchanged maps are returned as they are. */
+  @Test public void setOperationsSharing() {
+    ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+    for(int i = 0; i < 10_000; i++) map = map.insert(i, i);
+    final ImmutableMap<Integer, Integer> more = map.insert(-1, -1);
+    final ImmutableMap<Integer, String> other = ImmutableMap.singleton(-1, "x");
+    assertSame(map, map.merge(map, (x, y) -> x + y));
+    assertSame(more, map.merge(more, (x, y) -> x));
+    assertSame(map, map.intersect(more, (x, y) -> y));
+    assertSame(map, map.removeAll(other));
+    assertSame(ImmutableMap.empty(), map.removeAll(more));
+    final ImmutableMap<Integer, Integer> less = more.removeAll(other);
+    assertEquals(map, less);
+    assertSame(less, less.retainAll(map));
+    assertEquals(1, more.retainAll(other).size());
+    assertEquals(Integer.valueOf(-1), more.retainAll(other).get(-1));
+  }
+
+  /**
+   * Checks that the given map contains exactly the bindings of the reference map.
+   * @param ref reference map
+   * @param map map to check
+   */
+  private static void compare(final Map<Number, Number> ref,
+      final ImmutableMap<Number, Number> map) {
+    assertEquals("size", ref.size(), map.size());
+    final Map<Number, Number> seen = new HashMap<>();
+    map.forEach((k, v) -> assertNull("duplicate key " + k, seen.put(k, v)));
+    assertEquals(ref, seen);
+    assertTrue(map.root.verify());
+  }
+
+  /** Compares the single-pass updates with the {@link Map} methods of the same name. */
+  @Test public void computeFamily() {
+    final Random rng = new Random(99);
+    final Map<Number, Number> ref = new HashMap<>();
+    ImmutableMap<Number, Number> map = ImmutableMap.empty();
+    for(int i = 0; i < 40_000; i++) {
+      final int k = rng.nextInt(2_000);
+      // integers and longs with the same value collide
+      final Number key = rng.nextBoolean() ? (Number) k : (Number) (long) k;
+      final Number val = rng.nextInt(5);
+      final ImmutableMap<Number, Number> old = map;
+      final Number before = ref.get(key);
+      switch(rng.nextInt(4)) {
+        case 0:
+          // removes the binding if the sum is zero
+          final BiFunction<Number, Number, Number> add =
+              (x, y) -> x.intValue() + y.intValue() == 0 ? null : x.intValue() + y.intValue();
+          ref.merge(key, val, add);
+          map = map.merge(key, val, add);
+          break;
+        case 1:
+          final BiFunction<Number, Number, Number> remap =
+              (x, y) -> y == null ? val : y.intValue() > 2 ? null : y;
+          ref.compute(key, remap);
+          map = map.compute(key, remap);
+          break;
+        case 2:
+          ref.computeIfAbsent(key, x -> val.intValue() == 0 ? null : val);
+          map = map.computeIfAbsent(key, x -> val.intValue() == 0 ? null : val);
+          break;
+        default:
+          ref.putIfAbsent(key, val);
+          map = map.putIfAbsent(key, val);
+      }
+      final Number after = ref.get(key);
+      if(before == after) assertSame("unchanged map expected", old, map);
+      if(i % 1_000 == 0) compare(ref, map);
+    }
+    compare(ref, map);
+  }
+
+  /** Updates that keep the bound value return the same map. */
+  @Test public void identicalUpdates() {
+    ImmutableMap<Number, Number> map = ImmutableMap.empty();
+    for(int i = 0; i < 1_000; i++) map = map.insert(i, i).insert((long) i, i);
+    final Number v = map.get(500);
+    assertSame(map, map.insert(500, v));
+    assertSame(map, map.insert(500L, map.get(500L)));
+    assertSame(map, map.compute(7, (k, x) -> x));
+    assertSame(map, map.compute(-7, (k, x) -> null));
+    assertSame(map, map.putIfAbsent(7L, -1));
+    assertSame(map, map.computeIfAbsent(7L, k -> -1));
+    assertSame(map, map.merge(8, 0, (x, y) -> x));
+    assertEquals(Integer.valueOf(-1), map.putIfAbsent(-7, -1).get(-7));
+    assertEquals(1_999, map.compute(8L, (k, x) -> null).size());
+  }
 }
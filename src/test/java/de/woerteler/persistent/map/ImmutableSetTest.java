@@ -0,0 +1,128 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutableSet} data structure. Integers and longs with the same value
+ * have the same hash code, so mixing them creates collision lists.
+ * @author Leo Woerteler
+ */
+public class ImmutableSetTest {
+  /** Compares random insertions and deletions with a {@link HashSet}. */
+  @Test public void randomOps() {
+    final Random rng = new Random(3);
+    ImmutableSet<Number> set = ImmutableSet.empty();
+    final HashSet<Number> ref = new HashSet<>();
+    for(int i = 0; i < 50_000; i++) {
+      final Number n = number(rng, 5_000);
+      if(rng.nextInt(3) == 0) {
+        set = set.delete(n);
+        ref.remove(n);
+      } else {
+        set = set.insert(n);
+        ref.add(n);
+      }
+      if(i % 997 == 0) check(ref, set);
+    }
+    check(ref, set);
+    while(!ref.isEmpty()) {
+      final Number n = ref.iterator().next();
+      ref.remove(n);
+      set = set.delete(n);
+    }
+    assertSame(ImmutableSet.empty(), set);
+  }
+
+  /** Tests union, intersection and difference against the {@link Set} operations. */
+  @Test public void setOperations() {
+    final Random rng = new Random(17);
+    for(final int n : new int[] { 0, 1, 2, 10, 100, 3_000 }) {
+      for(int run = 0; run < 5; run++) {
+        final HashSet<Number> a = new HashSet<>(), b = new HashSet<>();
+        for(int i = 0; i < n; i++) a.add(number(rng, 2 * n + 1));
+        for(int i = 0; i < n; i++) b.add(number(rng, 2 * n + 1));
+        final ImmutableSet<Number> sa = ImmutableSet.from(a), sb = ImmutableSet.from(b);
+
+        final HashSet<Number> union = new HashSet<>(a), inter = new HashSet<>(a),
+            diff = new HashSet<>(a);
+        union.addAll(b);
+        inter.retainAll(b);
+        diff.removeAll(b);
+        check(union, sa.union(sb));
+        check(union, sb.union(sa));
+        check(inter, sa.intersection(sb));
+        check(inter, sb.intersection(sa));
+        check(diff, sa.difference(sb));
+        check(a, sa);
+        check(b, sb);
+      }
+    }
+  }
+
+  /** Unchanged operands are returned as they are, shared sub-tries are reused. */
+  @Test public void sharing() {
+    final ArrayList<Integer> list = new ArrayList<>();
+    for(int i = 0; i < 10_000; i++) list.add(i);
+    final ImmutableSet<Integer> big = ImmutableSet.from(list);
+    final ImmutableSet<Integer> small = ImmutableSet.from(list.subList(100, 200));
+    final ImmutableSet<Integer> grown = big.insert(-1);
+
+    assertSame(big, big.union(big));
+    assertSame(big, big.union(small));
+    assertSame(big, small.union(big));
+    assertSame(grown, grown.union(big));
+    assertSame(small, big.intersection(small));
+    assertSame(small, small.intersection(big));
+    assertSame(big, grown.intersection(big));
+    assertSame(big, big.difference(ImmutableSet.from(Arrays.asList(-5, -6))));
+    assertSame(ImmutableSet.empty(), big.difference(grown));
+    assertEquals(ImmutableSet.from(Arrays.asList(-1)), grown.difference(big));
+    assertEquals(big, grown.delete(-1));
+    assertEquals(big.hashCode(), grown.delete(-1).hashCode());
+  }
+
+  /** Tests the collection views and string representation. */
+  @Test public void views() {
+    final ImmutableSet<Number> set = ImmutableSet.<Number>empty().insert(42).insert(42L)
+        .insert(1);
+    assertEquals(3, set.size());
+    assertTrue(set.contains(42L));
+    assertFalse(set.contains((short) 42));
+    final HashSet<Number> ref = new HashSet<>(Arrays.<Number>asList(1, 42, 42L));
+    assertEquals(ref, set.asSet());
+    assertEquals(ref.hashCode(), set.hashCode());
+    assertEquals(3, set.stream().count());
+    assertEquals("{}", ImmutableSet.empty().toString());
+  }
+
+  /**
+   * Creates a random integer or long.
+   * @param rng random number generator
+   * @param max maximum value, exclusive
+   * @return the number
+   */
+  private static Number number(final Random rng, final int max) {
+    final int v = rng.nextInt(max);
+    return rng.nextBoolean() ? (Number) v : (Number) (long) v;
+  }
+
+  /**
+   * Checks that the given set contains exactly the elements of the reference set.
+   * @param ref reference set
+   * @param set set to check
+   */
+  private static void check(final Set<Number> ref, final ImmutableSet<Number> set) {
+    assertTrue("invalid trie", set.verify());
+    assertEquals(ref.size(), set.size());
+    final HashSet<Number> elems = new HashSet<>();
+    for(final Number n : set) assertTrue("duplicate: " + n, elems.add(n));
+    assertEquals(ref, elems);
+    for(final Number n : ref) assertTrue(set.contains(n));
+    assertEquals(ref.hashCode(), set.hashCode());
+    assertEquals(ImmutableSet.from(ref), set);
+  }
+}
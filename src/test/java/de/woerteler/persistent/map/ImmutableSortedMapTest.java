@@ -0,0 +1,122 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutableSortedMap} data structure.
+ * @author Leo Woerteler
+ */
+public class ImmutableSortedMapTest {
+  /** Compares random insertions and deletions with a {@link TreeMap}. */
+  @Test public void randomOps() {
+    final Random rng = new Random(42);
+    ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.empty();
+    final TreeMap<Integer, Integer> ref = new TreeMap<>();
+    for(int i = 0; i < 20_000; i++) {
+      final int key = rng.nextInt(5_000);
+      if(rng.nextInt(3) == 0) {
+        map = map.delete(key);
+        ref.remove(key);
+      } else {
+        map = map.insert(key, i);
+        ref.put(key, i);
+      }
+      if(i % 1_000 == 0) {
+        map.checkInvariants();
+        compare(ref, map);
+      }
+    }
+    map.checkInvariants();
+    compare(ref, map);
+
+    for(int k = -1; k <= 5_000; k++) {
+      assertEquals(ref.get(k), map.get(k));
+      assertEquals(ref.containsKey(k), map.contains(k));
+      assertEquals(ref.ceilingEntry(k), map.ceilingEntry(k));
+      assertEquals(ref.higherEntry(k), map.higherEntry(k));
+      assertEquals(ref.floorEntry(k), map.floorEntry(k));
+      assertEquals(ref.lowerEntry(k), map.lowerEntry(k));
+    }
+    assertEquals(ref.firstEntry(), map.firstEntry());
+    assertEquals(ref.lastEntry(), map.lastEntry());
+  }
+
+  /** Tests the range operations. */
+  @Test public void ranges() {
+    final TreeMap<Integer, Integer> ref = new TreeMap<>();
+    for(int i = 0; i < 3_000; i += 3) ref.put(i, -i);
+    final ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.from(ref);
+    map.checkInvariants();
+    compare(ref, map);
+
+    for(int k = -2; k <= 3_002; k += 7) {
+      compare(ref.headMap(k), map.headMap(k));
+      compare(ref.tailMap(k), map.tailMap(k));
+      compare(ref.subMap(k, k + 100), map.subMap(k, k + 100));
+      final ImmutableSortedMap<Integer, Integer>[] parts = map.split(k);
+      compare(ref.headMap(k), parts[0]);
+      compare(ref.tailMap(k), parts[1]);
+    }
+  }
+
+  /** Tests merging two maps. */
+  @Test public void addAll() {
+    final Random rng = new Random(1);
+    for(final int n : new int[] { 0, 5, 30, 500, 4_000 }) {
+      final TreeMap<Integer, Integer> a = new TreeMap<>(), b = new TreeMap<>();
+      for(int i = 0; i < n; i++) {
+        a.put(rng.nextInt(10 * n + 1), 1);
+        // disjoint range, interleaved range and overlapping keys
+        b.put(rng.nextInt(2) == 0 ? 20 * n + i : rng.nextInt(10 * n + 1), 2);
+      }
+      final ImmutableSortedMap<Integer, Integer> ma = ImmutableSortedMap.from(a),
+          mb = ImmutableSortedMap.from(b), merged = ma.addAll(mb);
+      merged.checkInvariants();
+      final TreeMap<Integer, Integer> ref = new TreeMap<>(a);
+      ref.putAll(b);
+      compare(ref, merged);
+      compare(a, ma);
+      compare(b, mb);
+    }
+  }
+
+  /** Tests maps with a custom comparator. */
+  @Test public void comparator() {
+    final Comparator<String> cmp = String.CASE_INSENSITIVE_ORDER;
+    final ImmutableSortedMap<String, Integer> map = ImmutableSortedMap.<String, Integer>empty(cmp)
+        .insert("b", 1).insert("A", 2).insert("c", 3).insert("a", 4);
+    assertSame(cmp, map.comparator());
+    assertEquals(3, map.size());
+    assertEquals(Integer.valueOf(4), map.get("A"));
+    assertEquals("{a=4, b=1, c=3}", map.toString());
+    assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(map.keySet()));
+    assertEquals(Arrays.asList(4, 1, 3), new ArrayList<>(map.values()));
+  }
+
+  /** Inserting an unchanged binding returns the same map. */
+  @Test public void unchanged() {
+    final Integer one = 1;
+    final ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.<Integer, Integer>empty()
+        .insert(1, one).insert(2, 2);
+    assertSame(map, map.insert(1, one));
+    assertSame(map, map.delete(3));
+  }
+
+  /**
+   * Checks that the given map contains the same bindings in the same order as the reference.
+   * @param ref reference map
+   * @param map map to check
+   */
+  private static void compare(final SortedMap<Integer, Integer> ref,
+      final ImmutableSortedMap<Integer, Integer> map) {
+    assertEquals(ref.size(), map.size());
+    assertEquals(ref.isEmpty(), map.isEmpty());
+    final Iterator<Map.Entry<Integer, Integer>> it = map.iterator();
+    for(final Map.Entry<Integer, Integer> e : ref.entrySet()) assertEquals(e, it.next());
+    assertFalse(it.hasNext());
+  }
+}
@@ -0,0 +1,93 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link ImmutableSortedSet} data structure.
+ * @author Leo Woerteler
+ */
+public class ImmutableSortedSetTest {
+  /** Compares random insertions and deletions with a {@link TreeSet}. */
+  @Test public void randomOps() {
+    final Random rng = new Random(7);
+    ImmutableSortedSet<Integer> set = ImmutableSortedSet.empty();
+    final TreeSet<Integer> ref = new TreeSet<>();
+    for(int i = 0; i < 20_000; i++) {
+      final int elem = rng.nextInt(5_000);
+      if(rng.nextInt(3) == 0) {
+        set = set.delete(elem);
+        ref.remove(elem);
+      } else {
+        set = set.insert(elem);
+        ref.add(elem);
+      }
+      if(i % 1_000 == 0) {
+        set.checkInvariants();
+        compare(ref, set);
+      }
+    }
+    set.checkInvariants();
+    compare(ref, set);
+
+    for(int e = -1; e <= 5_000; e++) {
+      assertEquals(ref.contains(e), set.contains(e));
+      assertEquals(ref.ceiling(e), set.ceiling(e));
+      assertEquals(ref.higher(e), set.higher(e));
+      assertEquals(ref.floor(e), set.floor(e));
+      assertEquals(ref.lower(e), set.lower(e));
+    }
+    assertEquals(ref.first(), set.first());
+    assertEquals(ref.last(), set.last());
+  }
+
+  /** Tests the range operations and merging. */
+  @Test public void ranges() {
+    final TreeSet<Integer> ref = new TreeSet<>(), other = new TreeSet<>();
+    for(int i = 0; i < 3_000; i += 3) ref.add(i);
+    for(int i = 0; i < 6_000; i += 5) other.add(i);
+    final ImmutableSortedSet<Integer> set = ImmutableSortedSet.from(ref);
+    compare(ref, set);
+
+    for(int e = -2; e <= 3_002; e += 7) {
+      compare(ref.headSet(e), set.headSet(e));
+      compare(ref.tailSet(e), set.tailSet(e));
+      compare(ref.subSet(e, e + 100), set.subSet(e, e + 100));
+      final ImmutableSortedSet<Integer>[] parts = set.split(e);
+      compare(ref.headSet(e), parts[0]);
+      compare(ref.tailSet(e), parts[1]);
+    }
+
+    final ImmutableSortedSet<Integer> merged = set.addAll(ImmutableSortedSet.from(other));
+    merged.checkInvariants();
+    final TreeSet<Integer> union = new TreeSet<>(ref);
+    union.addAll(other);
+    compare(union, merged);
+    assertEquals(ImmutableSortedSet.from(union), merged);
+  }
+
+  /** Tests sets with a custom comparator. */
+  @Test public void comparator() {
+    final ImmutableSortedSet<Integer> set = ImmutableSortedSet.from(Arrays.asList(3, 1, 2, 1),
+        Comparator.<Integer>reverseOrder());
+    assertEquals("[3, 2, 1]", set.toString());
+    assertEquals(Integer.valueOf(2), set.ceiling(2));
+    assertEquals(Integer.valueOf(1), set.higher(2));
+  }
+
+  /**
+   * Checks that the given set contains the same elements in the same order as the reference.
+   * @param ref reference set
+   * @param set set to check
+   */
+  private static void compare(final SortedSet<Integer> ref, final ImmutableSortedSet<Integer> set) {
+    assertEquals(ref.size(), set.size());
+    assertEquals(ref.isEmpty(), set.isEmpty());
+    final Iterator<Integer> it = set.iterator();
+    for(final Integer e : ref) assertEquals(e, it.next());
+    assertFalse(it.hasNext());
+  }
+}
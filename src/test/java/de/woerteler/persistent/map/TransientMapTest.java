@@ -0,0 +1,92 @@
+package de.woerteler.persistent.map;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests for the {@link TransientMap} builder.
+ * @author Leo Woerteler
+ */
+public class TransientMapTest {
+  /** Tests that a frozen map is not affected by later modifications of the builder. */
+  @Test public void testFreeze() {
+    final TransientMap<Integer, Integer> tr = new TransientMap<Integer, Integer>();
+    for(int i = 0; i < 1000; i++) tr.put(i, i);
+    final ImmutableMap<Integer, Integer> frozen = tr.freeze();
+    for(int i = 0; i < 2000; i += 2) tr.put(i, -i);
+    for(int i = 1; i < 1000; i += 4) tr.remove(i);
+
+    assertEquals("size", 1000, frozen.size());
+    for(int i = 0; i < 1000; i++) assertEquals(Integer.valueOf(i), frozen.get(i));
+    assertEquals("size", 1250, tr.size());
+    final ImmutableMap<Integer, Integer> second = tr.freeze();
+    for(int i = 0; i < 2000; i++) {
+      final Integer exp = i % 2 == 0 ? Integer.valueOf(-i) : i % 4 == 1 || i > 1000 ? null : i;
+      assertEquals(exp, second.get(i));
+      assertEquals(exp, tr.get(i));
+    }
+  }
+
+  /** Tests that the source of a transient map is never modified. */
+  @Test public void testSource() {
+    ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+    for(int i = 0; i < 1000; i++) map = map.insert(i, i);
+    final TransientMap<Integer, Integer> tr = map.asTransient();
+    for(int i = 0; i < 1000; i++) tr.remove(i);
+    assertEquals(0, tr.size());
+    assertSame(ImmutableMap.empty(), tr.freeze());
+    assertEquals("size", 1000, map.size());
+    for(int i = 0; i < 1000; i++) assertEquals(Integer.valueOf(i), map.get(i));
+  }
+
+  /** Tests that unchanged tries are not copied. */
+  @Test public void testUnchanged() {
+    ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+    for(int i = 0; i < 1000; i++) map = map.insert(i, i);
+    final TransientMap<Integer, Integer> tr = map.asTransient();
+    tr.remove(-1);
+    assertSame(map.root, tr.freeze().root);
+    tr.put(1, 1);
+    final ImmutableMap<Integer, Integer> first = tr.freeze();
+    assertSame(first.root, tr.freeze().root);
+    assertEquals(map, first);
+  }
+
+  /** Compares random updates against {@link HashMap}, including hash collisions. */
+  @Test public void randomPutRemove() {
+    final Random rng = new Random(1337);
+    final Map<Integer, Integer> ref = new HashMap<>();
+    final TransientMap<Integer, Integer> tr = new TransientMap<Integer, Integer>();
+    final java.util.List<ImmutableMap<Integer, Integer>> snaps = new ArrayList<>();
+    final java.util.List<Map<Integer, Integer>> refs = new ArrayList<>();
+    for(int i = 0; i < 100_000; i++) {
+      final int k = rng.nextInt(5_000) * (rng.nextBoolean() ? 1 : 1 << 2 * ImmutableMap.BITS);
+      if(rng.nextInt(3) == 0) {
+        ref.remove(k);
+        tr.remove(k);
+      } else {
+        ref.put(k, i);
+        tr.put(k, i);
+      }
+      assertEquals("size", ref.size(), tr.size());
+      if(i % 10_000 == 0) {
+        snaps.add(tr.freeze());
+        refs.add(new HashMap<>(ref));
+      }
+    }
+    for(int i = 0; i < snaps.size(); i++) {
+      assertEquals("size", refs.get(i).size(), snaps.get(i).size());
+      for(final Map.Entry<Integer, Integer> e : refs.get(i).entrySet())
+        assertEquals("lookup", e.getValue(), snaps.get(i).get(e.getKey()));
+    }
+    final ImmutableMap<Integer, Integer> map = tr.freeze();
+    ImmutableMap<Integer, Integer> seq = ImmutableMap.empty();
+    for(final Map.Entry<Integer, Integer> e : ref.entrySet())
+      seq = seq.insert(e.getKey(), e.getValue());
+    assertEquals(seq, map);
+    assertEquals(seq.hashCode(), map.hashCode());
+  }
+}